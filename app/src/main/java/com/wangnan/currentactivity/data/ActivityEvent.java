@@ -0,0 +1,89 @@
+package com.wangnan.currentactivity.data;
+
+/**
+ * @ClassName: ActivityEvent
+ * @Description: 窗口变化事件记录（包名ID、类名ID、事件时间），可复用，不随事件分配
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class ActivityEvent {
+
+    /**
+     * 包名ID（见{@link NameTable}）
+     */
+    private int mPackageId = NameTable.NO_ID;
+
+    /**
+     * 类名ID（见{@link NameTable}）
+     */
+    private int mClassId = NameTable.NO_ID;
+
+    /**
+     * 事件时间（{@link android.os.SystemClock#uptimeMillis()}时间基准）
+     */
+    private long mEventTime;
+
+    /**
+     * 设置事件内容
+     */
+    public void set(int packageId, int classId, long eventTime) {
+        mPackageId = packageId;
+        mClassId = classId;
+        mEventTime = eventTime;
+    }
+
+    /**
+     * 复制另一事件的内容
+     */
+    public void set(ActivityEvent other) {
+        set(other.mPackageId, other.mClassId, other.mEventTime);
+    }
+
+    /**
+     * 清空事件内容
+     */
+    public void clear() {
+        set(NameTable.NO_ID, NameTable.NO_ID, 0);
+    }
+
+    /**
+     * 是否为空事件
+     */
+    public boolean isEmpty() {
+        return mPackageId == NameTable.NO_ID;
+    }
+
+    /**
+     * 是否与另一事件的包名、类名相同
+     */
+    public boolean isSameScreen(ActivityEvent other) {
+        return mPackageId == other.mPackageId && mClassId == other.mClassId;
+    }
+
+    public int getPackageId() {
+        return mPackageId;
+    }
+
+    public int getClassId() {
+        return mClassId;
+    }
+
+    public long getEventTime() {
+        return mEventTime;
+    }
+
+    /**
+     * 获取(包名ID, 类名ID)组合键
+     */
+    public long getPairKey() {
+        return pairKey(mPackageId, mClassId);
+    }
+
+    /**
+     * 将两个int ID组合为一个long键
+     */
+    public static long pairKey(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,263 @@
+package com.wangnan.currentactivity.data;
+
+import java.util.Arrays;
+
+/**
+ * @ClassName: BackStacks
+ * @Description: 推断的返回栈（每个包名一个栈，近似为一个任务；栈元素为(窗口ID, 类名ID)）
+ * <p>
+ * 每个Activity有独立的窗口，窗口ID在其销毁前保持不变，因此只根据Activity切换事件增量推断：
+ * 切换到栈中已有的窗口时弹出其上方的元素（返回或清除栈顶），否则压栈（前进）；
+ * 从其它应用进入、且为栈底的类名但窗口ID不同时，视为任务已重建，重置该栈。
+ * 窗口ID未知时按类名匹配。每次切换只处理当前包名的栈，O(栈深度)，不遍历窗口树。
+ * 只在事件处理线程使用。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class BackStacks {
+
+    /**
+     * 未知窗口ID
+     */
+    public static final int NO_WINDOW = -1;
+
+    /**
+     * 每个栈的最大深度（超出时丢弃栈底）
+     */
+    private static final int MAX_DEPTH = 32;
+
+    /**
+     * 最多保留的栈数量（超出时丢弃最久未使用的）
+     */
+    private static final int MAX_STACKS = 64;
+
+    /**
+     * 面包屑中最多显示的元素数（超出时省略中间部分）
+     */
+    private static final int BREADCRUMB_ITEMS = 4;
+
+    /**
+     * 名称驻留表
+     */
+    private final NameTable mNameTable;
+
+    /**
+     * 包名ID -> 栈
+     */
+    private final LongObjectMap<Stack> mStacks = new LongObjectMap<>();
+
+    /**
+     * 上一次切换的包名ID
+     */
+    private int mLastPackageId = NameTable.NO_ID;
+
+    /**
+     * 切换序号（用于淘汰最久未使用的栈）
+     */
+    private long mSequence;
+
+    /**
+     * 最近一次拼接的显示文本（原文本、面包屑、结果，相同时直接复用）
+     */
+    private String mLastText;
+    private String mLastBreadcrumb;
+    private String mLastDecorated;
+
+    public BackStacks(NameTable nameTable) {
+        mNameTable = nameTable;
+    }
+
+    /**
+     * 切换到一个Activity
+     *
+     * @param windowId 窗口ID（未知时为{@link #NO_WINDOW}）
+     */
+    public void onActivity(int packageId, int classId, int windowId) {
+        Stack stack = mStacks.get(packageId);
+        if (stack == null) {
+            if (mStacks.size() >= MAX_STACKS) {
+                evictOldest();
+            }
+            stack = new Stack();
+            mStacks.put(packageId, stack);
+        }
+        stack.lastUsed = ++mSequence;
+        boolean isReentry = packageId != mLastPackageId;
+        mLastPackageId = packageId;
+        int index = stack.indexOf(classId, windowId);
+        if (index >= 0) {
+            stack.popAbove(index, classId);
+        } else if (isReentry && stack.size > 0 && stack.classIds[0] == classId) {
+            stack.size = 0;
+            stack.push(classId, windowId);
+        } else {
+            stack.push(classId, windowId);
+        }
+    }
+
+    /**
+     * 获取栈深度（没有记录时为0）
+     */
+    public int getDepth(int packageId) {
+        Stack stack = mStacks.get(packageId);
+        return stack == null ? 0 : stack.size;
+    }
+
+    /**
+     * 复制栈中的类名ID（栈底在前）
+     *
+     * @return 复制的数量
+     */
+    public int copyClassIds(int packageId, int[] classIds) {
+        Stack stack = mStacks.get(packageId);
+        if (stack == null) {
+            return 0;
+        }
+        int count = Math.min(stack.size, classIds.length);
+        System.arraycopy(stack.classIds, 0, classIds, 0, count);
+        return count;
+    }
+
+    /**
+     * 获取面包屑（如"[5] Main › … › List › Detail"，深度不超过1时返回null；栈变化时才重新拼接）
+     */
+    public String getBreadcrumb(int packageId) {
+        Stack stack = mStacks.get(packageId);
+        if (stack == null || stack.size <= 1) {
+            return null;
+        }
+        if (stack.breadcrumb == null) {
+            StringBuilder builder = new StringBuilder().append('[').append(stack.size).append(']');
+            int skipFrom = stack.size > BREADCRUMB_ITEMS ? 1 : stack.size;
+            int skipTo = stack.size - (BREADCRUMB_ITEMS - 1);
+            for (int i = 0; i < stack.size; i++) {
+                if (i >= skipFrom && i < skipTo) {
+                    if (i == skipFrom) {
+                        builder.append(" › …");
+                    }
+                    continue;
+                }
+                builder.append(i == 0 ? " " : " › ").append(simpleName(mNameTable.getName(stack.classIds[i])));
+            }
+            stack.breadcrumb = builder.toString();
+        }
+        return stack.breadcrumb;
+    }
+
+    /**
+     * 在显示文本后追加面包屑行（没有面包屑时返回原文本；与上一次相同时不重新拼接）
+     */
+    public String decorate(int packageId, String text) {
+        String breadcrumb = getBreadcrumb(packageId);
+        if (breadcrumb == null) {
+            return text;
+        }
+        if (text != mLastText || breadcrumb != mLastBreadcrumb) {
+            mLastText = text;
+            mLastBreadcrumb = breadcrumb;
+            mLastDecorated = text + "\n" + breadcrumb;
+        }
+        return mLastDecorated;
+    }
+
+    /**
+     * 移除包名的栈（应用更新/卸载）
+     */
+    public void remove(int packageId) {
+        mStacks.remove(packageId);
+    }
+
+    /**
+     * 清空
+     */
+    public void clear() {
+        mStacks.clear();
+        mLastPackageId = NameTable.NO_ID;
+    }
+
+    /**
+     * 栈数量
+     */
+    public int size() {
+        return mStacks.size();
+    }
+
+    /**
+     * 丢弃最久未使用的栈
+     */
+    private void evictOldest() {
+        long oldestUsed = Long.MAX_VALUE;
+        long oldestKey = 0;
+        for (int i = 0; i < mStacks.capacity(); i++) {
+            if (mStacks.isOccupied(i) && mStacks.valueAt(i).lastUsed < oldestUsed) {
+                oldestUsed = mStacks.valueAt(i).lastUsed;
+                oldestKey = mStacks.keyAt(i);
+            }
+        }
+        mStacks.remove(oldestKey);
+    }
+
+    /**
+     * 简单类名（去掉包名前缀）
+     */
+    private static String simpleName(String className) {
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * 单个包名的栈
+     */
+    private static final class Stack {
+        int[] classIds = new int[4];
+        int[] windowIds = new int[4];
+        int size;
+        long lastUsed;
+
+        /**
+         * 面包屑缓存（栈变化时清除）
+         */
+        String breadcrumb;
+
+        /**
+         * 查找窗口在栈中的位置（窗口ID未知时按类名从栈顶向下查找），不存在返回-1
+         */
+        int indexOf(int classId, int windowId) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (windowId != NO_WINDOW ? windowIds[i] == windowId : classIds[i] == classId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 弹出index上方的元素（同一窗口的类名变化时一并更新）
+         */
+        void popAbove(int index, int classId) {
+            if (size != index + 1 || classIds[index] != classId) {
+                size = index + 1;
+                classIds[index] = classId;
+                breadcrumb = null;
+            }
+        }
+
+        /**
+         * 压栈（超出最大深度时丢弃栈底）
+         */
+        void push(int classId, int windowId) {
+            if (size == MAX_DEPTH) {
+                System.arraycopy(classIds, 1, classIds, 0, size - 1);
+                System.arraycopy(windowIds, 1, windowIds, 0, size - 1);
+                size--;
+            } else if (size == classIds.length) {
+                classIds = Arrays.copyOf(classIds, size * 2);
+                windowIds = Arrays.copyOf(windowIds, size * 2);
+            }
+            classIds[size] = classId;
+            windowIds[size] = windowId;
+            size++;
+            breadcrumb = null;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.wangnan.currentactivity.data;
+
+/**
+ * @ClassName: DisplayTextCache
+ * @Description: 悬浮窗显示文本缓存（每个(包名, 类名)组合只拼接一次字符串）
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class DisplayTextCache {
+
+    /**
+     * 名称驻留表
+     */
+    private final NameTable mNameTable;
+
+    /**
+     * 显示文本（键为{@link ActivityEvent#pairKey(int, int)}）
+     */
+    private final LongObjectMap<String> mTexts = new LongObjectMap<>(256);
+
+    /**
+     * "Activity + 当前窗口"显示文本（外层键为Activity的组合键，内层键为窗口的组合键）
+     */
+    private final LongObjectMap<LongObjectMap<String>> mWindowTexts = new LongObjectMap<>(64);
+
+    public DisplayTextCache(NameTable nameTable) {
+        mNameTable = nameTable;
+    }
+
+    /**
+     * 获取显示文本（包名 + 换行 + 类名）
+     */
+    public String getText(int packageId, int classId) {
+        long key = ActivityEvent.pairKey(packageId, classId);
+        String text = mTexts.get(key);
+        if (text == null) {
+            text = mNameTable.getName(packageId) + "\n" + mNameTable.getName(classId);
+            mTexts.put(key, text);
+        }
+        return text;
+    }
+
+    /**
+     * 获取事件对应的显示文本
+     */
+    public String getText(ActivityEvent event) {
+        return getText(event.getPackageId(), event.getClassId());
+    }
+
+    /**
+     * 获取"最近的Activity + 当前窗口"显示文本（包名 + 换行 + Activity类名 + 换行 + 窗口类名，
+     * 窗口与Activity不属于同一包名时窗口显示为"包名/类名"）
+     */
+    public String getText(ActivityEvent activity, ActivityEvent window) {
+        long activityKey = activity.getPairKey();
+        LongObjectMap<String> texts = mWindowTexts.get(activityKey);
+        if (texts == null) {
+            texts = new LongObjectMap<>();
+            mWindowTexts.put(activityKey, texts);
+        }
+        long windowKey = window.getPairKey();
+        String text = texts.get(windowKey);
+        if (text == null) {
+            StringBuilder builder = new StringBuilder(getText(activity)).append("\n└ ");
+            if (window.getPackageId() != activity.getPackageId()) {
+                builder.append(mNameTable.getName(window.getPackageId())).append('/');
+            }
+            text = builder.append(mNameTable.getName(window.getClassId())).toString();
+            texts.put(windowKey, text);
+        }
+        return text;
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        mTexts.clear();
+        mWindowTexts.clear();
+    }
+}
@@ -0,0 +1,249 @@
+package com.wangnan.currentactivity.data;
+
+import java.util.TimeZone;
+
+/**
+ * @ClassName: DwellStats
+ * @Description: 前台停留时长统计（按界面、按包名，分总计/每天/每小时累计，存储在long键long值的开放寻址表中，不装箱）
+ * <p>
+ * 每次切换只把上一界面的停留时长（跨整点时按小时拆分）累加到各表中，O(1)。
+ * 键为 (时段序号 << 32) | ID，时段序号为本地时间的小时/天序号，总计为0。
+ * 由事件处理线程写入、界面读取，方法均已同步。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class DwellStats {
+
+    /**
+     * 分组：按界面 / 按包名
+     */
+    public static final int GROUP_SCREEN = 0;
+    public static final int GROUP_PACKAGE = 1;
+
+    /**
+     * 时段：总计 / 每天 / 每小时
+     */
+    public static final int PERIOD_ALL = 0;
+    public static final int PERIOD_DAY = 1;
+    public static final int PERIOD_HOUR = 2;
+
+    /**
+     * 每小时/每天统计的保留数量
+     */
+    private static final int HOUR_RETENTION = 48;
+    private static final int DAY_RETENTION = 31;
+
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    /**
+     * 界面驻留表
+     */
+    private final ScreenTable mScreens;
+
+    /**
+     * 各分组、时段的累计时长（毫秒），下标为[分组][时段]
+     */
+    private final LongLongMap[][] mMaps = {
+            {new LongLongMap(256), new LongLongMap(256), new LongLongMap(256)},
+            {new LongLongMap(64), new LongLongMap(64), new LongLongMap(256)}
+    };
+
+    /**
+     * 时区（计算本地小时/天序号）
+     */
+    private TimeZone mTimeZone = TimeZone.getDefault();
+
+    /**
+     * 当前前台界面ID、包名ID（没有时为NO_ID）
+     */
+    private int mCurrentScreenId = ScreenTable.NO_ID;
+    private int mCurrentPackageId = NameTable.NO_ID;
+
+    /**
+     * 当前界面开始（或上次累计）时间（毫秒）
+     */
+    private long mStartTime;
+
+    /**
+     * 上次清理过期数据时的天序号
+     */
+    private long mPrunedDay;
+
+    public DwellStats(ScreenTable screens) {
+        mScreens = screens;
+    }
+
+    /**
+     * 切换到新界面（累计上一界面的停留时长）
+     *
+     * @param time 切换时间（System.currentTimeMillis()时间基准）
+     */
+    public synchronized void onScreen(int packageId, int classId, long time) {
+        accrue(time);
+        mCurrentScreenId = mScreens.intern(packageId, classId);
+        mCurrentPackageId = packageId;
+        mStartTime = time;
+    }
+
+    /**
+     * 暂停计时（灭屏、服务暂停等，累计当前界面的停留时长，下一次切换前不再计时）
+     */
+    public synchronized void pause(long time) {
+        accrue(time);
+        mCurrentScreenId = ScreenTable.NO_ID;
+        mCurrentPackageId = NameTable.NO_ID;
+    }
+
+    /**
+     * 累计当前界面从开始时间到now的停留时长（跨整点时按小时拆分）
+     */
+    private void accrue(long now) {
+        if (mCurrentScreenId == ScreenTable.NO_ID || now <= mStartTime) {
+            mStartTime = Math.max(mStartTime, now);
+            return;
+        }
+        long time = mStartTime;
+        while (time < now) {
+            int offset = mTimeZone.getOffset(time);
+            long local = time + offset;
+            long hour = local / HOUR_MILLIS;
+            long day = local / DAY_MILLIS;
+            long end = Math.min(now, (hour + 1) * HOUR_MILLIS - offset);
+            long duration = end - time;
+            add(GROUP_SCREEN, mCurrentScreenId, hour, day, duration);
+            add(GROUP_PACKAGE, mCurrentPackageId, hour, day, duration);
+            time = end;
+            if (day > mPrunedDay) {
+                prune(hour, day);
+            }
+        }
+        mStartTime = now;
+    }
+
+    /**
+     * 累加到一个分组的各时段
+     */
+    private void add(int group, int id, long hour, long day, long duration) {
+        LongLongMap[] maps = mMaps[group];
+        maps[PERIOD_ALL].add(key(0, id), duration);
+        maps[PERIOD_DAY].add(key(day, id), duration);
+        maps[PERIOD_HOUR].add(key(hour, id), duration);
+    }
+
+    /**
+     * 清理过期的每小时/每天统计（每天最多一次）
+     */
+    private void prune(final long hour, final long day) {
+        mPrunedDay = day;
+        for (LongLongMap[] maps : mMaps) {
+            maps[PERIOD_HOUR].removeIf(new LongObjectMap.KeyPredicate() {
+                @Override
+                public boolean test(long key) {
+                    return (key >> 32) <= hour - HOUR_RETENTION;
+                }
+            });
+            maps[PERIOD_DAY].removeIf(new LongObjectMap.KeyPredicate() {
+                @Override
+                public boolean test(long key) {
+                    return (key >> 32) <= day - DAY_RETENTION;
+                }
+            });
+        }
+    }
+
+    /**
+     * 按时长降序复制某分组、时段的统计（只保留前ids.length项）
+     *
+     * @param group       分组（界面ID或包名ID）
+     * @param period      时段
+     * @param periodIndex 时段序号（见{@link #dayIndex(long)}、{@link #hourIndex(long)}，总计时忽略）
+     * @param now         当前时间（先累计当前界面到该时间）
+     * @param ids         输出：界面ID或包名ID
+     * @param millis      输出：时长（毫秒）
+     * @return 输出数量
+     */
+    public synchronized int copySorted(int group, int period, long periodIndex, long now, int[] ids, long[] millis) {
+        accrue(now);
+        if (period == PERIOD_ALL) {
+            periodIndex = 0;
+        }
+        LongLongMap map = mMaps[group][period];
+        int count = 0;
+        for (int i = 0; i < map.capacity(); i++) {
+            if (!map.isOccupied(i) || (map.keyAt(i) >> 32) != periodIndex) {
+                continue;
+            }
+            long value = map.valueAt(i);
+            // 插入排序（只保留前N项，N通常很小）
+            int position = count;
+            while (position > 0 && millis[position - 1] < value) {
+                position--;
+            }
+            if (position >= ids.length) {
+                continue;
+            }
+            int moved = Math.min(count, ids.length - 1) - position;
+            System.arraycopy(ids, position, ids, position + 1, moved);
+            System.arraycopy(millis, position, millis, position + 1, moved);
+            ids[position] = (int) map.keyAt(i);
+            millis[position] = value;
+            count = Math.min(count + 1, ids.length);
+        }
+        return count;
+    }
+
+    /**
+     * 获取某个ID在某时段的累计时长（毫秒）
+     */
+    public synchronized long getMillis(int group, int period, long periodIndex, int id) {
+        return mMaps[group][period].get(key(period == PERIOD_ALL ? 0 : periodIndex, id), 0);
+    }
+
+    /**
+     * 本地时间的天序号
+     */
+    public synchronized long dayIndex(long time) {
+        return (time + mTimeZone.getOffset(time)) / DAY_MILLIS;
+    }
+
+    /**
+     * 本地时间的小时序号
+     */
+    public synchronized long hourIndex(long time) {
+        return (time + mTimeZone.getOffset(time)) / HOUR_MILLIS;
+    }
+
+    /**
+     * 设置时区（系统时区变化时调用）
+     */
+    public synchronized void setTimeZone(TimeZone timeZone) {
+        mTimeZone = timeZone;
+    }
+
+    /**
+     * 获取界面驻留表
+     */
+    public ScreenTable getScreens() {
+        return mScreens;
+    }
+
+    /**
+     * 清空
+     */
+    public synchronized void clear() {
+        for (LongLongMap[] maps : mMaps) {
+            for (LongLongMap map : maps) {
+                map.clear();
+            }
+        }
+    }
+
+    /**
+     * 组合键
+     */
+    private static long key(long periodIndex, int id) {
+        return (periodIndex << 32) | (id & 0xFFFFFFFFL);
+    }
+}
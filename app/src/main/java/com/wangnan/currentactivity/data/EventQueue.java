@@ -0,0 +1,163 @@
+package com.wangnan.currentactivity.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @ClassName: EventQueue
+ * @Description: 单生产者/单消费者无锁事件队列（预分配槽位，入队只复制事件字段，不分配对象）
+ * <p>
+ * 生产者为辅助服务主线程，消费者为事件处理线程。队列满时丢弃新事件并计数。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class EventQueue {
+
+    /**
+     * 槽位：事件类型
+     */
+    private final int[] mEventTypes;
+
+    /**
+     * 槽位：包名
+     */
+    private final CharSequence[] mPackageNames;
+
+    /**
+     * 槽位：类名
+     */
+    private final CharSequence[] mClassNames;
+
+    /**
+     * 槽位：窗口ID
+     */
+    private final int[] mWindowIds;
+
+    /**
+     * 槽位：事件时间
+     */
+    private final long[] mEventTimes;
+
+    /**
+     * 槽位：事件标志（如窗口变化事件的变化类型，没有时为0）
+     */
+    private final int[] mFlags;
+
+    /**
+     * 槽位：附加对象（如需在处理线程读取的事件副本，通常为null）
+     */
+    private final Object[] mExtras;
+
+    /**
+     * 下标掩码
+     */
+    private final int mMask;
+
+    /**
+     * 下一个出队位置（仅消费者写入）
+     */
+    private final AtomicLong mHead = new AtomicLong();
+
+    /**
+     * 下一个入队位置（仅生产者写入）
+     */
+    private final AtomicLong mTail = new AtomicLong();
+
+    /**
+     * 因队列已满丢弃的事件数（仅生产者写入）
+     */
+    private volatile long mDroppedCount;
+
+    /**
+     * @param capacity 容量（会向上取整为2的幂）
+     */
+    public EventQueue(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        mEventTypes = new int[size];
+        mPackageNames = new CharSequence[size];
+        mClassNames = new CharSequence[size];
+        mWindowIds = new int[size];
+        mEventTimes = new long[size];
+        mFlags = new int[size];
+        mExtras = new Object[size];
+        mMask = size - 1;
+    }
+
+    /**
+     * 入队（仅生产者线程调用）
+     *
+     * @return 队列已满返回false
+     */
+    public boolean offer(int eventType, CharSequence packageName, CharSequence className, int windowId, long eventTime,
+                         int flags, Object extra) {
+        long tail = mTail.get();
+        if (tail - mHead.get() > mMask) {
+            mDroppedCount++;
+            return false;
+        }
+        int index = (int) tail & mMask;
+        mEventTypes[index] = eventType;
+        mPackageNames[index] = packageName;
+        mClassNames[index] = className;
+        mWindowIds[index] = windowId;
+        mEventTimes[index] = eventTime;
+        mFlags[index] = flags;
+        mExtras[index] = extra;
+        // 有序写入：槽位内容对消费者可见后才发布新的tail
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * 取出当前所有事件并逐个交给消费者（仅消费者线程调用）
+     *
+     * @return 处理的事件数
+     */
+    public int drain(Consumer consumer) {
+        long head = mHead.get();
+        long tail = mTail.get();
+        int count = 0;
+        while (head < tail) {
+            int index = (int) head & mMask;
+            CharSequence packageName = mPackageNames[index];
+            CharSequence className = mClassNames[index];
+            Object extra = mExtras[index];
+            // 释放引用，避免队列持有事件内容
+            mPackageNames[index] = null;
+            mClassNames[index] = null;
+            mExtras[index] = null;
+            consumer.onEvent(mEventTypes[index], packageName, className, mWindowIds[index], mEventTimes[index],
+                    mFlags[index], extra);
+            head++;
+            count++;
+            // 每处理一个就释放槽位，生产者可以尽早复用
+            mHead.lazySet(head);
+        }
+        return count;
+    }
+
+    /**
+     * 当前队列中的事件数
+     */
+    public int size() {
+        return (int) (mTail.get() - mHead.get());
+    }
+
+    /**
+     * 因队列已满丢弃的事件数
+     */
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * 事件消费者
+     */
+    public interface Consumer {
+        void onEvent(int eventType, CharSequence packageName, CharSequence className, int windowId, long eventTime,
+                     int flags, Object extra);
+    }
+}
@@ -0,0 +1,119 @@
+package com.wangnan.currentactivity.data;
+
+/**
+ * @ClassName: FrameBuffer
+ * @Description: 单个订阅者的有界帧缓冲区（生产者不阻塞，满时丢弃最旧的帧并计数）
+ * <p>
+ * 生产者为事件处理线程，消费者为该订阅者的发送线程。客户端读取过慢时只影响自己：
+ * 保留最新的切换、丢弃最旧的，发送线程在下一帧之前先发送丢帧通知。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class FrameBuffer {
+
+    /**
+     * 帧（环形数组）
+     */
+    private final byte[][] mFrames;
+
+    /**
+     * 队首位置、帧数量
+     */
+    private int mHead;
+    private int mSize;
+
+    /**
+     * 丢弃的帧总数、尚未通知消费者的丢弃帧数
+     */
+    private long mDroppedCount;
+    private long mUnreportedDropped;
+
+    /**
+     * 是否已关闭
+     */
+    private boolean isClosed;
+
+    public FrameBuffer(int capacity) {
+        mFrames = new byte[capacity][];
+    }
+
+    /**
+     * 放入一帧（不阻塞，满时丢弃最旧的帧）
+     *
+     * @return 已关闭返回false
+     */
+    public synchronized boolean offer(byte[] frame) {
+        if (isClosed) {
+            return false;
+        }
+        if (mSize == mFrames.length) {
+            mFrames[mHead] = null;
+            mHead = (mHead + 1) % mFrames.length;
+            mSize--;
+            mDroppedCount++;
+            mUnreportedDropped++;
+        }
+        mFrames[(mHead + mSize) % mFrames.length] = frame;
+        mSize++;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * 取出所有帧（为空时阻塞等待）
+     *
+     * @param out 输出数组（长度不小于容量）
+     * @return 取出的帧数，已关闭返回-1
+     */
+    public synchronized int drainTo(byte[][] out) throws InterruptedException {
+        while (mSize == 0 && !isClosed) {
+            wait();
+        }
+        if (isClosed) {
+            return -1;
+        }
+        int count = mSize;
+        for (int i = 0; i < count; i++) {
+            int index = (mHead + i) % mFrames.length;
+            out[i] = mFrames[index];
+            mFrames[index] = null;
+        }
+        mHead = 0;
+        mSize = 0;
+        return count;
+    }
+
+    /**
+     * 取出尚未通知消费者的丢弃帧数（取出后清零）
+     */
+    public synchronized long takeUnreportedDropped() {
+        long dropped = mUnreportedDropped;
+        mUnreportedDropped = 0;
+        return dropped;
+    }
+
+    /**
+     * 关闭（唤醒等待的消费者）
+     */
+    public synchronized void close() {
+        isClosed = true;
+        for (int i = 0; i < mFrames.length; i++) {
+            mFrames[i] = null;
+        }
+        mSize = 0;
+        notifyAll();
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    public int capacity() {
+        return mFrames.length;
+    }
+
+    public synchronized long getDroppedCount() {
+        return mDroppedCount;
+    }
+}
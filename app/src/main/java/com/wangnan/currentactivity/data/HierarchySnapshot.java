@@ -0,0 +1,245 @@
+package com.wangnan.currentactivity.data;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * @ClassName: HierarchySnapshot
+ * @Description: 窗口视图层级快照（先序数组：节点键、子树结束位置（不含）、资源ID）
+ * <p>
+ * 节点i的子树为区间[i, getEnd(i))，因此某个节点的内容变化时可以只重新遍历其子树，
+ * 用{@link #replace(int, HierarchySnapshot)}拼接回数组（后续节点整体平移，祖先节点的结束位置随之调整）。
+ * 只在事件处理线程使用。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class HierarchySnapshot {
+
+    /**
+     * 框架资源ID前缀（不进入摘要）
+     */
+    private static final String FRAMEWORK_ID_PREFIX = "android:id/";
+
+    /**
+     * 节点键（AccessibilityNodeInfo.hashCode()，由节点ID和窗口ID计算）
+     */
+    private int[] mKeys = new int[64];
+
+    /**
+     * 子树结束位置（不含）
+     */
+    private int[] mEnds = new int[64];
+
+    /**
+     * 资源ID（不可见或没有ID时为null）
+     */
+    private String[] mIds = new String[64];
+
+    /**
+     * 节点数量
+     */
+    private int mSize;
+
+    /**
+     * 窗口ID（未使用时为-1）
+     */
+    private int mWindowId = -1;
+
+    /**
+     * 遍历是否因预算中止（部分节点不在快照中）
+     */
+    private boolean isTruncated;
+
+    /**
+     * 最近使用时间（缓存淘汰）
+     */
+    private long mLastUsed;
+
+    /**
+     * 摘要（为null时没有可显示的内容）
+     */
+    private String mSummary;
+
+    /**
+     * 追加节点（子树结束位置由调用方在遍历完子节点后通过{@link #setEnd(int, int)}填写）
+     *
+     * @return 节点位置
+     */
+    public int add(int key, String id) {
+        ensureCapacity(mSize + 1);
+        mKeys[mSize] = key;
+        mEnds[mSize] = mSize + 1;
+        mIds[mSize] = id;
+        return mSize++;
+    }
+
+    /**
+     * 查找节点，不存在返回-1
+     */
+    public int indexOf(int key) {
+        for (int i = 0; i < mSize; i++) {
+            if (mKeys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 用新遍历的子树替换位置start的节点及其子树
+     */
+    public void replace(int start, HierarchySnapshot subtree) {
+        int end = mEnds[start];
+        int delta = subtree.mSize - (end - start);
+        ensureCapacity(mSize + delta);
+        System.arraycopy(mKeys, end, mKeys, end + delta, mSize - end);
+        System.arraycopy(mEnds, end, mEnds, end + delta, mSize - end);
+        System.arraycopy(mIds, end, mIds, end + delta, mSize - end);
+        for (int i = end + delta; i < mSize + delta; i++) {
+            mEnds[i] += delta;
+        }
+        // 之前的节点中只有祖先的子树覆盖[start, end)
+        for (int i = 0; i < start; i++) {
+            if (mEnds[i] >= end) {
+                mEnds[i] += delta;
+            }
+        }
+        for (int i = 0; i < subtree.mSize; i++) {
+            mKeys[start + i] = subtree.mKeys[i];
+            mEnds[start + i] = subtree.mEnds[i] + start;
+            mIds[start + i] = subtree.mIds[i];
+        }
+        mSize += delta;
+        if (delta < 0) {
+            // 释放被移出的资源ID引用
+            Arrays.fill(mIds, mSize, mSize - delta, null);
+        }
+        isTruncated |= subtree.isTruncated;
+    }
+
+    /**
+     * 生成摘要：先序中最先出现的资源ID（去掉包名前缀，同名只取一次），含"fragment"的容器ID排在前面
+     *
+     * @param maxIds 最多包含的资源ID数
+     * @return 如"▣ #nav_host_fragment  #toolbar #list"，没有资源ID时为null
+     */
+    public String buildSummary(int maxIds) {
+        String[] fragments = new String[maxIds];
+        String[] views = new String[maxIds];
+        int fragmentCount = 0;
+        int viewCount = 0;
+        for (int i = 0; i < mSize && fragmentCount + viewCount < maxIds; i++) {
+            String id = mIds[i];
+            if (id == null || id.startsWith(FRAMEWORK_ID_PREFIX)) {
+                continue;
+            }
+            String name = id.substring(id.indexOf('/') + 1);
+            if (contains(fragments, fragmentCount, name) || contains(views, viewCount, name)) {
+                continue;
+            }
+            if (name.toLowerCase(Locale.US).contains("fragment")) {
+                fragments[fragmentCount++] = name;
+            } else {
+                views[viewCount++] = name;
+            }
+        }
+        if (fragmentCount + viewCount == 0) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < fragmentCount; i++) {
+            builder.append(i == 0 ? "▣ #" : " › #").append(fragments[i]);
+        }
+        for (int i = 0; i < viewCount; i++) {
+            builder.append(builder.length() == 0 ? "#" : i == 0 ? "  #" : " #").append(views[i]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 清空节点（重新遍历前调用）
+     */
+    public void clear() {
+        Arrays.fill(mIds, 0, mSize, null);
+        mSize = 0;
+        isTruncated = false;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int getKey(int index) {
+        return mKeys[index];
+    }
+
+    public int getEnd(int index) {
+        return mEnds[index];
+    }
+
+    public void setEnd(int index, int end) {
+        mEnds[index] = end;
+    }
+
+    public String getId(int index) {
+        return mIds[index];
+    }
+
+    public int getWindowId() {
+        return mWindowId;
+    }
+
+    public void setWindowId(int windowId) {
+        mWindowId = windowId;
+    }
+
+    public boolean isTruncated() {
+        return isTruncated;
+    }
+
+    public void setTruncated(boolean truncated) {
+        isTruncated = truncated;
+    }
+
+    public long getLastUsed() {
+        return mLastUsed;
+    }
+
+    public void setLastUsed(long lastUsed) {
+        mLastUsed = lastUsed;
+    }
+
+    public String getSummary() {
+        return mSummary;
+    }
+
+    public void setSummary(String summary) {
+        mSummary = summary;
+    }
+
+    /**
+     * 确保容量
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mKeys.length) {
+            return;
+        }
+        int length = Math.max(capacity, mKeys.length * 2);
+        mKeys = Arrays.copyOf(mKeys, length);
+        mEnds = Arrays.copyOf(mEnds, length);
+        mIds = Arrays.copyOf(mIds, length);
+    }
+
+    /**
+     * 数组前count项中是否包含value
+     */
+    private static boolean contains(String[] values, int count, String value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i].equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
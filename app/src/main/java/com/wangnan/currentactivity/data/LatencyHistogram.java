@@ -0,0 +1,132 @@
+package com.wangnan.currentactivity.data;
+
+import java.util.Arrays;
+
+/**
+ * @ClassName: LatencyHistogram
+ * @Description: 固定分桶的延迟直方图（毫秒，记录时只做一次桶查找和计数，不分配对象）
+ * <p>
+ * 百分位取所在桶的上界（最后一个桶取最大值），精度由分桶决定。非线程安全。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class LatencyHistogram {
+
+    /**
+     * 各桶上界（毫秒，包含），最后一个桶为无上界
+     */
+    private static final long[] BOUNDS = {
+            1, 2, 4, 8, 12, 16, 24, 33, 50, 67, 100, 150, 200, 300, 500, 1000, 2000, 5000
+    };
+
+    /**
+     * 各桶计数（比上界多一个溢出桶）
+     */
+    private final long[] mCounts = new long[BOUNDS.length + 1];
+
+    /**
+     * 记录总数
+     */
+    private long mCount;
+
+    /**
+     * 延迟总和、最大值（毫秒）
+     */
+    private long mSum;
+    private long mMax;
+
+    /**
+     * 记录一次延迟（负值按0处理）
+     */
+    public void record(long millis) {
+        if (millis < 0) {
+            millis = 0;
+        }
+        int index = Arrays.binarySearch(BOUNDS, millis);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        mCounts[index]++;
+        mCount++;
+        mSum += millis;
+        if (millis > mMax) {
+            mMax = millis;
+        }
+    }
+
+    /**
+     * 获取百分位延迟（毫秒）
+     *
+     * @param percentile 百分位（0~100）
+     */
+    public long getPercentile(double percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(mCount * percentile / 100d);
+        if (rank < 1) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < mCounts.length; i++) {
+            seen += mCounts[i];
+            if (seen >= rank) {
+                return i < BOUNDS.length ? Math.min(BOUNDS[i], mMax) : mMax;
+            }
+        }
+        return mMax;
+    }
+
+    /**
+     * 获取记录总数
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * 获取平均延迟（毫秒）
+     */
+    public double getMean() {
+        return mCount == 0 ? 0 : (double) mSum / mCount;
+    }
+
+    /**
+     * 获取最大延迟（毫秒）
+     */
+    public long getMax() {
+        return mMax;
+    }
+
+    /**
+     * 获取桶数量（含溢出桶）
+     */
+    public int getBucketCount() {
+        return mCounts.length;
+    }
+
+    /**
+     * 获取桶上界（溢出桶返回Long.MAX_VALUE）
+     */
+    public long getBucketBound(int index) {
+        return index < BOUNDS.length ? BOUNDS[index] : Long.MAX_VALUE;
+    }
+
+    /**
+     * 获取桶计数
+     */
+    public long getCountInBucket(int index) {
+        return mCounts[index];
+    }
+
+    /**
+     * 清空
+     */
+    public void reset() {
+        Arrays.fill(mCounts, 0);
+        mCount = 0;
+        mSum = 0;
+        mMax = 0;
+    }
+}
@@ -0,0 +1,155 @@
+package com.wangnan.currentactivity.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @ClassName: LaunchStats
+ * @Description: 应用启动耗时统计（按包名及启动类型分组，保留最近若干次样本，计算最小值/中位数/最大值）
+ * <p>
+ * 由事件处理线程写入、界面读取，方法均已同步。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class LaunchStats {
+
+    /**
+     * 启动类型：本次服务运行期间（或应用更新后）首次启动，进程大概率不存在（接近冷启动）
+     */
+    public static final int KIND_FIRST = 0;
+
+    /**
+     * 启动类型：重复启动（接近温/热启动）
+     */
+    public static final int KIND_REPEAT = 1;
+
+    /**
+     * 无数据（未等待稳定或未稳定）
+     */
+    public static final int NO_VALUE = -1;
+
+    /**
+     * 每组保留的样本数
+     */
+    private static final int SAMPLE_COUNT = 64;
+
+    /**
+     * 分组（键为{@link ActivityEvent#pairKey(int, int)}(包名ID, 启动类型)）
+     */
+    private final LongObjectMap<Entry> mEntries = new LongObjectMap<>();
+
+    /**
+     * 分组键列表（按首次出现顺序，便于遍历）
+     */
+    private long[] mKeys = new long[16];
+    private int mKeyCount;
+
+    /**
+     * 记录一次启动
+     *
+     * @param packageId     包名ID
+     * @param kind          启动类型
+     * @param firstWindowMs 点击到首个窗口的耗时（毫秒）
+     * @param settledMs     点击到界面稳定的耗时（毫秒，{@link #NO_VALUE}表示无数据）
+     */
+    public synchronized void record(int packageId, int kind, int firstWindowMs, int settledMs) {
+        long key = ActivityEvent.pairKey(packageId, kind);
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            entry = new Entry();
+            mEntries.put(key, entry);
+            if (mKeyCount == mKeys.length) {
+                mKeys = Arrays.copyOf(mKeys, mKeyCount * 2);
+            }
+            mKeys[mKeyCount++] = key;
+        }
+        int index = (int) (entry.count % SAMPLE_COUNT);
+        entry.firstWindow[index] = firstWindowMs;
+        entry.settled[index] = settledMs;
+        entry.count++;
+    }
+
+    /**
+     * 获取所有分组的统计摘要（按首次出现顺序）
+     */
+    public synchronized List<Summary> getSummaries() {
+        List<Summary> summaries = new ArrayList<>(mKeyCount);
+        for (int i = 0; i < mKeyCount; i++) {
+            long key = mKeys[i];
+            Entry entry = mEntries.get(key);
+            int size = (int) Math.min(entry.count, SAMPLE_COUNT);
+            summaries.add(new Summary((int) (key >>> 32), (int) key, entry.count,
+                    summarize(entry.firstWindow, size), summarize(entry.settled, size)));
+        }
+        return summaries;
+    }
+
+    /**
+     * 计算{最小值, 中位数, 最大值}（忽略{@link #NO_VALUE}，没有有效样本时均为{@link #NO_VALUE}）
+     */
+    static int[] summarize(int[] samples, int size) {
+        int[] values = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (samples[i] != NO_VALUE) {
+                values[count++] = samples[i];
+            }
+        }
+        if (count == 0) {
+            return new int[]{NO_VALUE, NO_VALUE, NO_VALUE};
+        }
+        Arrays.sort(values, 0, count);
+        int median = count % 2 == 1 ? values[count / 2] : (values[count / 2 - 1] + values[count / 2]) / 2;
+        return new int[]{values[0], median, values[count - 1]};
+    }
+
+    /**
+     * 清空
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+        mKeyCount = 0;
+    }
+
+    /**
+     * 分组样本
+     */
+    private static final class Entry {
+        final int[] firstWindow = new int[SAMPLE_COUNT];
+        final int[] settled = new int[SAMPLE_COUNT];
+        long count;
+    }
+
+    /**
+     * 分组统计摘要（不可变）
+     */
+    public static final class Summary {
+
+        /**
+         * 包名ID、启动类型
+         */
+        public final int packageId;
+        public final int kind;
+
+        /**
+         * 启动次数（统计值只基于最近{@link #SAMPLE_COUNT}次）
+         */
+        public final long count;
+
+        /**
+         * 首个窗口耗时、界面稳定耗时：{最小值, 中位数, 最大值}（毫秒）
+         */
+        public final int[] firstWindow;
+        public final int[] settled;
+
+        Summary(int packageId, int kind, long count, int[] firstWindow, int[] settled) {
+            this.packageId = packageId;
+            this.kind = kind;
+            this.count = count;
+            this.firstWindow = firstWindow;
+            this.settled = settled;
+        }
+    }
+}
@@ -0,0 +1,491 @@
+package com.wangnan.currentactivity.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * @ClassName: LogCompactor
+ * @Description: 切换日志压缩与保留策略（把已封存的段文件改写为时间差分+变长整数编码，合并字典，并按大小/时间删除最旧数据）
+ * <p>
+ * 压缩文件格式：文件头(40) = 魔数(4) + 版本(4) + 起始段序号(4) + 结束段序号(4) + 记录数(4) + 字典偏移(4) + 首条时间(8) + 末条时间(8)；
+ * 之后为记录：64位zigzag变长整数(与上一条的时间差) + 变长整数(包名本地ID) + 变长整数(类名本地ID)；
+ * 最后为本地字典：变长整数(条目数)，每个条目为 变长整数(长度) + UTF-8字节。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class LogCompactor {
+
+    /**
+     * 压缩文件名前缀/后缀
+     */
+    public static final String COMPACTED_PREFIX = "cseg_";
+    public static final String COMPACTED_SUFFIX = ".clog";
+
+    /**
+     * 魔数（"CACS"）
+     */
+    static final int MAGIC = 0x43414353;
+
+    /**
+     * 版本号
+     */
+    static final int VERSION = 1;
+
+    /**
+     * 文件头长度
+     */
+    static final int HEADER_SIZE = 40;
+
+    /**
+     * 每个压缩文件最多合并的段文件数量
+     */
+    static final int MAX_SEGMENTS_PER_FILE = 8;
+
+    /**
+     * 日志目录
+     */
+    private final File mDir;
+
+    /**
+     * 是否已取消（系统停止后台任务时设置，在段与段之间检查）
+     */
+    private volatile boolean isCancelled;
+
+    public LogCompactor(File dir) {
+        mDir = dir;
+    }
+
+    /**
+     * 取消执行
+     */
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    /**
+     * 执行压缩与保留策略（最新的段文件正在被写入，不会被处理）
+     *
+     * @param maxBytes     日志目录数据文件总大小上限
+     * @param maxAgeMillis 数据最长保留时间
+     * @param now          当前时间（毫秒）
+     */
+    public Result run(long maxBytes, long maxAgeMillis, long now) throws IOException {
+        // 期间写入线程不重建字典
+        TransitionLog.DIRECTORY_LOCK.lock();
+        try {
+            return runLocked(maxBytes, maxAgeMillis, now);
+        } finally {
+            TransitionLog.DIRECTORY_LOCK.unlock();
+        }
+    }
+
+    private Result runLocked(long maxBytes, long maxAgeMillis, long now) throws IOException {
+        Result result = new Result();
+        result.bytesBefore = totalSize();
+        File dictionaryFile = new File(mDir, TransitionLog.DICTIONARY_NAME);
+        File[] segments = TransitionLog.listSegments(mDir);
+        // 最新段正在写入，保留
+        int sealedCount = segments.length - 1;
+        if (sealedCount > 0 && dictionaryFile.exists()) {
+            LogDictionary dictionary = LogDictionary.read(dictionaryFile);
+            for (int start = 0; start < sealedCount && !isCancelled; start += MAX_SEGMENTS_PER_FILE) {
+                int end = Math.min(start + MAX_SEGMENTS_PER_FILE, sealedCount);
+                compact(Arrays.copyOfRange(segments, start, end), dictionary);
+                result.compactedSegments += end - start;
+            }
+        }
+        if (!isCancelled) {
+            result.deletedFiles = applyRetention(maxBytes, maxAgeMillis, now);
+        }
+        result.bytesAfter = totalSize();
+        return result;
+    }
+
+    /**
+     * 把一组段文件合并压缩为一个文件（先写临时文件并落盘，再重命名，最后删除原段文件）
+     */
+    private void compact(File[] segments, final LogDictionary dictionary) throws IOException {
+        int firstSequence = TransitionLog.parseSequence(segments[0]);
+        int lastSequence = TransitionLog.parseSequence(segments[segments.length - 1]);
+        File target = new File(mDir, compactedName(firstSequence));
+        File temp = new File(mDir, target.getName() + ".tmp");
+        final RecordEncoder encoder = new RecordEncoder(new BufferedOutputStream(new FileOutputStream(temp)), dictionary.size());
+        try {
+            encoder.writeHeaderPlaceholder();
+            for (File segment : segments) {
+                TransitionLog.readSegment(segment, new TransitionLog.RecordVisitor() {
+                    @Override
+                    public void onRecord(long time, int packageId, int classId) {
+                        encoder.writeRecord(time, packageId, classId);
+                    }
+                });
+                if (encoder.mError != null) {
+                    throw encoder.mError;
+                }
+            }
+            encoder.writeDictionary(dictionary);
+        } finally {
+            encoder.close();
+        }
+        // 回填文件头
+        RandomAccessFile file = new RandomAccessFile(temp, "rw");
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(firstSequence).putInt(lastSequence)
+                    .putInt(encoder.mCount).putInt(encoder.mDictionaryOffset)
+                    .putLong(encoder.mFirstTime).putLong(encoder.mPreviousTime);
+            file.write(header.array());
+            // 重命名并删除原段文件之前先落盘，避免断电后只剩空的或残缺的压缩文件
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("rename failed: " + temp);
+        }
+        for (File segment : segments) {
+            segment.delete();
+        }
+    }
+
+    /**
+     * 按总大小和保留时间删除最旧的数据文件（不删除正在写入的最新段）
+     *
+     * @return 删除的文件数
+     */
+    private int applyRetention(long maxBytes, long maxAgeMillis, long now) throws IOException {
+        List<File> files = listDataFiles();
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        int deleted = 0;
+        // 最后一个文件为正在写入的段，始终保留
+        for (int i = 0; i < files.size() - 1; i++) {
+            File file = files.get(i);
+            boolean expired = now - lastRecordTime(file) > maxAgeMillis;
+            if (total <= maxBytes && !expired) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 获取数据文件中最后一条记录的时间（没有记录时返回0）
+     */
+    private static long lastRecordTime(File file) throws IOException {
+        if (file.getName().startsWith(COMPACTED_PREFIX)) {
+            DataInputStream input = new DataInputStream(new FileInputStream(file));
+            try {
+                byte[] header = new byte[HEADER_SIZE];
+                input.readFully(header);
+                return ByteBuffer.wrap(header).getLong(32);
+            } finally {
+                input.close();
+            }
+        }
+        // 段文件通过内存映射写入，修改时间不可靠，读取最后一条记录
+        final long[] lastTime = {0};
+        TransitionLog.readSegment(file, new TransitionLog.RecordVisitor() {
+            @Override
+            public void onRecord(long time, int packageId, int classId) {
+                lastTime[0] = time;
+            }
+        });
+        return lastTime[0];
+    }
+
+    /**
+     * 列出所有数据文件（压缩文件与段文件，按起始段序号升序）
+     */
+    private List<File> listDataFiles() {
+        File[] files = mDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                String name = file.getName();
+                return (name.startsWith(COMPACTED_PREFIX) && name.endsWith(COMPACTED_SUFFIX))
+                        || (name.startsWith(TransitionLog.SEGMENT_PREFIX) && name.endsWith(TransitionLog.SEGMENT_SUFFIX));
+            }
+        });
+        List<File> list = new ArrayList<>();
+        if (files != null) {
+            list.addAll(Arrays.asList(files));
+        }
+        Collections.sort(list, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Integer.compare(TransitionLog.parseSequence(a), TransitionLog.parseSequence(b));
+            }
+        });
+        return list;
+    }
+
+    /**
+     * 日志目录下所有文件的总大小
+     */
+    private long totalSize() {
+        long total = 0;
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                total += file.length();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 列出压缩文件（按起始段序号升序）
+     */
+    public static File[] listCompacted(File dir) {
+        File[] files = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                String name = file.getName();
+                return name.startsWith(COMPACTED_PREFIX) && name.endsWith(COMPACTED_SUFFIX);
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Integer.compare(TransitionLog.parseSequence(a), TransitionLog.parseSequence(b));
+            }
+        });
+        return files;
+    }
+
+    /**
+     * 读取压缩文件的记录数（只读取文件头，文件无效时返回0）
+     */
+    public static int readRecordCount(File file) throws IOException {
+        DataInputStream input = new DataInputStream(new FileInputStream(file));
+        try {
+            byte[] header = new byte[HEADER_SIZE];
+            input.readFully(header);
+            ByteBuffer buffer = ByteBuffer.wrap(header);
+            return buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION ? buffer.getInt(16) : 0;
+        } catch (EOFException e) {
+            return 0;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * 读取压缩文件（一次读入内存后顺序解码）
+     *
+     * @return 读取的记录数
+     */
+    public static int readCompacted(File file, NamedRecordVisitor visitor) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        DataInputStream input = new DataInputStream(new FileInputStream(file));
+        try {
+            input.readFully(bytes);
+        } finally {
+            input.close();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (bytes.length < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            return 0;
+        }
+        int count = buffer.getInt(16);
+        int dictionaryOffset = buffer.getInt(20);
+        long time = buffer.getLong(24);
+        // 先读取字典
+        buffer.position(dictionaryOffset);
+        String[] names = new String[readVarint(buffer)];
+        for (int i = 0; i < names.length; i++) {
+            int length = readVarint(buffer);
+            names[i] = new String(bytes, buffer.position(), length, LogDictionary.UTF_8);
+            buffer.position(buffer.position() + length);
+        }
+        // 再顺序解码记录
+        buffer.position(HEADER_SIZE);
+        for (int i = 0; i < count; i++) {
+            long delta = readVarlong(buffer);
+            time = i == 0 ? time : time + ((delta >>> 1) ^ -(delta & 1));
+            visitor.onRecord(time, names[readVarint(buffer)], names[readVarint(buffer)]);
+        }
+        return count;
+    }
+
+    /**
+     * 读取变长整数
+     */
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    /**
+     * 读取64位变长整数（时间差，int范围内的值与{@link #readVarint(ByteBuffer)}编码相同）
+     */
+    private static long readVarlong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    /**
+     * 压缩文件名
+     */
+    static String compactedName(int sequence) {
+        return String.format(Locale.US, "%s%08d%s", COMPACTED_PREFIX, sequence, COMPACTED_SUFFIX);
+    }
+
+    /**
+     * 记录编码器（流式写入，全局ID -> 本地ID按首次出现顺序分配）
+     */
+    private static final class RecordEncoder {
+
+        private final OutputStream mOutput;
+        private final int[] mLocalIds;
+        private final List<Integer> mGlobalIds = new ArrayList<>();
+        private int mCount;
+        private int mOffset;
+        private int mDictionaryOffset;
+        private long mFirstTime;
+        private long mPreviousTime;
+        private IOException mError;
+
+        RecordEncoder(OutputStream output, int dictionarySize) {
+            mOutput = output;
+            mLocalIds = new int[dictionarySize];
+            Arrays.fill(mLocalIds, -1);
+        }
+
+        void writeHeaderPlaceholder() throws IOException {
+            mOutput.write(new byte[HEADER_SIZE]);
+            mOffset = HEADER_SIZE;
+        }
+
+        void writeRecord(long time, int packageId, int classId) {
+            if (mError != null) {
+                return;
+            }
+            try {
+                if (mCount == 0) {
+                    mFirstTime = time;
+                }
+                // 时间差按完整的long编码：记录间隔很长或系统时间大幅回拨时也不丢失精度
+                long delta = mCount == 0 ? 0 : time - mPreviousTime;
+                writeVarlong((delta << 1) ^ (delta >> 63));
+                writeVarint(toLocalId(packageId));
+                writeVarint(toLocalId(classId));
+                mPreviousTime = time;
+                mCount++;
+            } catch (IOException e) {
+                mError = e;
+            }
+        }
+
+        void writeDictionary(LogDictionary dictionary) throws IOException {
+            mDictionaryOffset = mOffset;
+            writeVarint(mGlobalIds.size());
+            for (Integer globalId : mGlobalIds) {
+                byte[] bytes = dictionary.getName(globalId).getBytes(LogDictionary.UTF_8);
+                writeVarint(bytes.length);
+                mOutput.write(bytes);
+                mOffset += bytes.length;
+            }
+        }
+
+        private int toLocalId(int globalId) {
+            int localId = mLocalIds[globalId];
+            if (localId < 0) {
+                localId = mGlobalIds.size();
+                mGlobalIds.add(globalId);
+                mLocalIds[globalId] = localId;
+            }
+            return localId;
+        }
+
+        private void writeVarint(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                mOutput.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+                mOffset++;
+            }
+            mOutput.write(value);
+            mOffset++;
+        }
+
+        private void writeVarlong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                mOutput.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+                mOffset++;
+            }
+            mOutput.write((int) value);
+            mOffset++;
+        }
+
+        void close() throws IOException {
+            mOutput.close();
+        }
+    }
+
+    /**
+     * 压缩结果
+     */
+    public static final class Result {
+        public int compactedSegments;
+        public int deletedFiles;
+        public long bytesBefore;
+        public long bytesAfter;
+
+        @Override
+        public String toString() {
+            return "compacted=" + compactedSegments + ", deleted=" + deletedFiles
+                    + ", bytes=" + bytesBefore + "->" + bytesAfter;
+        }
+    }
+
+    /**
+     * 带名称的记录访问者
+     */
+    public interface NamedRecordVisitor {
+        void onRecord(long time, String packageName, String className);
+    }
+}
@@ -0,0 +1,224 @@
+package com.wangnan.currentactivity.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @ClassName: LogDictionary
+ * @Description: 切换日志的名称字典（包名/类名 -> 持久化ID，只追加，写入在新名称首次出现时发生）
+ * <p>
+ * 文件格式：魔数(4) + 版本(4)，之后每个条目为 长度(2) + UTF-8字节。条目下标即持久化ID。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class LogDictionary {
+
+    /**
+     * 魔数（"CADC"）
+     */
+    static final int MAGIC = 0x43414443;
+
+    /**
+     * 版本号
+     */
+    static final int VERSION = 1;
+
+    /**
+     * 文件头长度
+     */
+    static final int HEADER_SIZE = 8;
+
+    /**
+     * 名称编码
+     */
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 字典文件
+     */
+    private final File mFile;
+
+    /**
+     * 持久化ID -> 名称
+     */
+    private final List<String> mNames = new ArrayList<>();
+
+    /**
+     * 名称 -> 持久化ID（只在进程内名称第一次出现时查询）
+     */
+    private final Map<String, Integer> mIds = new HashMap<>();
+
+    /**
+     * 追加写入用的文件（打开后保持）
+     */
+    private RandomAccessFile mWriter;
+
+    private LogDictionary(File file) {
+        mFile = file;
+    }
+
+    /**
+     * 打开字典（文件不存在则创建；尾部存在不完整条目时截断）
+     */
+    public static LogDictionary open(File file) throws IOException {
+        LogDictionary dictionary = new LogDictionary(file);
+        dictionary.load();
+        return dictionary;
+    }
+
+    /**
+     * 只读加载字典（不会修改文件）
+     */
+    public static LogDictionary read(File file) throws IOException {
+        LogDictionary dictionary = new LogDictionary(file);
+        dictionary.readEntries();
+        return dictionary;
+    }
+
+    /**
+     * 写入完整的字典文件并刷盘（重建字典时使用）
+     */
+    static void write(File file, List<String> names) throws IOException {
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+            output.setLength(0);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            for (String name : names) {
+                byte[] entry = name.getBytes(UTF_8);
+                int length = Math.min(entry.length, 0xFFFF);
+                data.writeShort(length);
+                data.write(entry, 0, length);
+            }
+            output.write(bytes.toByteArray());
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * 加载已有条目并准备追加写入
+     */
+    private void load() throws IOException {
+        long validLength = readEntries();
+        mWriter = new RandomAccessFile(mFile, "rw");
+        if (validLength == 0) {
+            // 新文件，写入文件头
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION);
+            mWriter.setLength(0);
+            mWriter.write(header.array());
+        } else if (mWriter.length() > validLength) {
+            // 截断崩溃时写了一半的条目
+            mWriter.setLength(validLength);
+        }
+        mWriter.seek(mWriter.length());
+    }
+
+    /**
+     * 读取所有完整条目
+     *
+     * @return 有效数据长度（文件不存在或文件头无效返回0）
+     */
+    private long readEntries() throws IOException {
+        if (!mFile.exists() || mFile.length() < HEADER_SIZE) {
+            return 0;
+        }
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+        try {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return 0;
+            }
+            long validLength = HEADER_SIZE;
+            while (true) {
+                int length;
+                byte[] bytes;
+                try {
+                    length = input.readUnsignedShort();
+                    bytes = new byte[length];
+                    input.readFully(bytes);
+                } catch (EOFException e) {
+                    break;
+                }
+                addEntry(new String(bytes, UTF_8));
+                validLength += 2 + length;
+            }
+            return validLength;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * 获取名称对应的持久化ID，不存在时追加写入
+     */
+    public int getOrAdd(String name) throws IOException {
+        Integer id = mIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        byte[] bytes = name.getBytes(UTF_8);
+        int length = Math.min(bytes.length, 0xFFFF);
+        ByteBuffer entry = ByteBuffer.allocate(2 + length);
+        entry.putShort((short) length).put(bytes, 0, length);
+        // 先写字典再写引用该条目的记录，保证崩溃后记录引用的ID一定存在
+        mWriter.write(entry.array());
+        return addEntry(name);
+    }
+
+    /**
+     * 添加内存中的条目
+     */
+    private int addEntry(String name) {
+        int id = mNames.size();
+        mNames.add(name);
+        if (!mIds.containsKey(name)) {
+            mIds.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * 根据持久化ID获取名称
+     */
+    public String getName(int id) {
+        if (id < 0 || id >= mNames.size()) {
+            return null;
+        }
+        return mNames.get(id);
+    }
+
+    /**
+     * 条目数量
+     */
+    public int size() {
+        return mNames.size();
+    }
+
+    /**
+     * 关闭
+     */
+    public void close() throws IOException {
+        if (mWriter != null) {
+            mWriter.close();
+            mWriter = null;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.wangnan.currentactivity.data;
+
+import java.util.Arrays;
+
+/**
+ * @ClassName: LongIntLruCache
+ * @Description: long键 -> int值的定容LRU缓存（条目预分配，查找、写入、淘汰都不分配对象）
+ * <p>
+ * 条目存放在定长数组中，用下标双向链表维护访问顺序，用开放寻址表（存储条目下标+1，0表示空槽）索引键。
+ * 非线程安全，由调用方保证单线程访问。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class LongIntLruCache {
+
+    /**
+     * 空下标
+     */
+    private static final int NONE = -1;
+
+    /**
+     * 条目：键
+     */
+    private final long[] mKeys;
+
+    /**
+     * 条目：值
+     */
+    private final int[] mValues;
+
+    /**
+     * 条目：链表前驱/后继（前驱方向为较新的条目）
+     */
+    private final int[] mPrev;
+    private final int[] mNext;
+
+    /**
+     * 开放寻址槽位（存储条目下标+1，0表示空槽）
+     */
+    private final int[] mSlots;
+
+    /**
+     * 最近使用的条目
+     */
+    private int mHead = NONE;
+
+    /**
+     * 最久未使用的条目
+     */
+    private int mTail = NONE;
+
+    /**
+     * 空闲条目链表（通过mNext串联）
+     */
+    private int mFree;
+
+    /**
+     * 条目数量
+     */
+    private int mSize;
+
+    /**
+     * 统计：命中次数、未命中次数、淘汰次数
+     */
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    public LongIntLruCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        mKeys = new long[maxSize];
+        mValues = new int[maxSize];
+        mPrev = new int[maxSize];
+        mNext = new int[maxSize];
+        int capacity = 4;
+        while (capacity < maxSize * 2) {
+            capacity <<= 1;
+        }
+        mSlots = new int[capacity];
+        clear();
+    }
+
+    /**
+     * 获取键对应的值并标记为最近使用（不存在返回missing）
+     */
+    public int get(long key, int missing) {
+        int entry = findEntry(key);
+        if (entry == NONE) {
+            mMissCount++;
+            return missing;
+        }
+        mHitCount++;
+        moveToHead(entry);
+        return mValues[entry];
+    }
+
+    /**
+     * 写入键值（已满时淘汰最久未使用的条目）
+     */
+    public void put(long key, int value) {
+        int entry = findEntry(key);
+        if (entry != NONE) {
+            mValues[entry] = value;
+            moveToHead(entry);
+            return;
+        }
+        if (mFree == NONE) {
+            removeEntry(mTail);
+            mEvictionCount++;
+        }
+        entry = mFree;
+        mFree = mNext[entry];
+        mKeys[entry] = key;
+        mValues[entry] = value;
+        linkHead(entry);
+        int mask = mSlots.length - 1;
+        int index = mix(key) & mask;
+        while (mSlots[index] != 0) {
+            index = (index + 1) & mask;
+        }
+        mSlots[index] = entry + 1;
+        mSize++;
+    }
+
+    /**
+     * 移除键
+     *
+     * @return 是否存在
+     */
+    public boolean remove(long key) {
+        int entry = findEntry(key);
+        if (entry == NONE) {
+            return false;
+        }
+        removeEntry(entry);
+        return true;
+    }
+
+    /**
+     * 移除所有满足条件的键
+     *
+     * @return 移除数量
+     */
+    public int removeIf(LongObjectMap.KeyPredicate predicate) {
+        int removed = 0;
+        int entry = mHead;
+        while (entry != NONE) {
+            int next = mNext[entry];
+            if (predicate.test(mKeys[entry])) {
+                removeEntry(entry);
+                removed++;
+            }
+            entry = next;
+        }
+        return removed;
+    }
+
+    /**
+     * 清空
+     */
+    public void clear() {
+        Arrays.fill(mSlots, 0);
+        for (int i = 0; i < mNext.length; i++) {
+            mNext[i] = i + 1 < mNext.length ? i + 1 : NONE;
+        }
+        mFree = 0;
+        mHead = NONE;
+        mTail = NONE;
+        mSize = 0;
+    }
+
+    /**
+     * 条目数量
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 最大条目数量
+     */
+    public int maxSize() {
+        return mKeys.length;
+    }
+
+    public long getHitCount() {
+        return mHitCount;
+    }
+
+    public long getMissCount() {
+        return mMissCount;
+    }
+
+    public long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * 查找键对应的条目下标
+     */
+    private int findEntry(long key) {
+        int mask = mSlots.length - 1;
+        int index = mix(key) & mask;
+        int slot;
+        while ((slot = mSlots[index]) != 0) {
+            if (mKeys[slot - 1] == key) {
+                return slot - 1;
+            }
+            index = (index + 1) & mask;
+        }
+        return NONE;
+    }
+
+    /**
+     * 删除条目（解除链表、删除槽位、放回空闲链表）
+     */
+    private void removeEntry(int entry) {
+        unlink(entry);
+        int mask = mSlots.length - 1;
+        int index = mix(mKeys[entry]) & mask;
+        while (mSlots[index] != entry + 1) {
+            index = (index + 1) & mask;
+        }
+        shiftDelete(index);
+        mNext[entry] = mFree;
+        mFree = entry;
+        mSize--;
+    }
+
+    /**
+     * 删除槽位并将后续冲突链前移（与{@link LongObjectMap}相同）
+     */
+    private void shiftDelete(int index) {
+        int mask = mSlots.length - 1;
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (mSlots[next] != 0) {
+            int ideal = mix(mKeys[mSlots[next] - 1]) & mask;
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                mSlots[hole] = mSlots[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        mSlots[hole] = 0;
+    }
+
+    /**
+     * 移到链表头部
+     */
+    private void moveToHead(int entry) {
+        if (entry == mHead) {
+            return;
+        }
+        unlink(entry);
+        linkHead(entry);
+    }
+
+    /**
+     * 插入链表头部
+     */
+    private void linkHead(int entry) {
+        mPrev[entry] = NONE;
+        mNext[entry] = mHead;
+        if (mHead != NONE) {
+            mPrev[mHead] = entry;
+        }
+        mHead = entry;
+        if (mTail == NONE) {
+            mTail = entry;
+        }
+    }
+
+    /**
+     * 从链表中摘除
+     */
+    private void unlink(int entry) {
+        int prev = mPrev[entry];
+        int next = mNext[entry];
+        if (prev != NONE) {
+            mNext[prev] = next;
+        } else {
+            mHead = next;
+        }
+        if (next != NONE) {
+            mPrev[next] = prev;
+        } else {
+            mTail = prev;
+        }
+    }
+
+    /**
+     * 扰动哈希值
+     */
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
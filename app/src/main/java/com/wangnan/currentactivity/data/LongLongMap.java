@@ -0,0 +1,254 @@
+package com.wangnan.currentactivity.data;
+
+import java.util.Arrays;
+
+/**
+ * @ClassName: LongLongMap
+ * @Description: long键 -> long值开放寻址哈希表（键值均不装箱，累加、查找不分配对象）
+ * <p>
+ * 遍历方式：for (int i = 0; i < map.capacity(); i++) if (map.isOccupied(i)) { map.keyAt(i); map.valueAt(i); }
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class LongLongMap {
+
+    /**
+     * 键数组
+     */
+    private long[] mKeys;
+
+    /**
+     * 值数组
+     */
+    private long[] mValues;
+
+    /**
+     * 槽位是否已使用
+     */
+    private boolean[] mUsed;
+
+    /**
+     * 元素数量
+     */
+    private int mSize;
+
+    public LongLongMap() {
+        this(16);
+    }
+
+    public LongLongMap(int expectedSize) {
+        int capacity = 4;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        mKeys = new long[capacity];
+        mValues = new long[capacity];
+        mUsed = new boolean[capacity];
+    }
+
+    /**
+     * 获取键对应的值（不存在返回defaultValue）
+     */
+    public long get(long key, long defaultValue) {
+        int index = indexOf(key);
+        return index < 0 ? defaultValue : mValues[index];
+    }
+
+    /**
+     * 是否包含键
+     */
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * 写入键值
+     */
+    public void put(long key, long value) {
+        int index = insertionIndex(key);
+        mValues[index] = value;
+    }
+
+    /**
+     * 累加键对应的值（不存在时视为0）
+     *
+     * @return 累加后的值
+     */
+    public long add(long key, long delta) {
+        int index = insertionIndex(key);
+        mValues[index] += delta;
+        return mValues[index];
+    }
+
+    /**
+     * 移除键（后移删除，不留墓碑）
+     *
+     * @return 是否存在
+     */
+    public boolean remove(long key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return false;
+        }
+        shiftDelete(index);
+        mSize--;
+        return true;
+    }
+
+    /**
+     * 移除所有满足条件的键
+     *
+     * @return 移除数量
+     */
+    public int removeIf(LongObjectMap.KeyPredicate predicate) {
+        int removed = 0;
+        int index = 0;
+        while (index < mKeys.length) {
+            if (mUsed[index] && predicate.test(mKeys[index])) {
+                // 删除后当前槽位可能被后移元素填充，需要重新检查同一槽位
+                shiftDelete(index);
+                mSize--;
+                removed++;
+            } else {
+                index++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 清空
+     */
+    public void clear() {
+        Arrays.fill(mUsed, false);
+        mSize = 0;
+    }
+
+    /**
+     * 元素数量
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 槽位数量（用于遍历）
+     */
+    public int capacity() {
+        return mKeys.length;
+    }
+
+    /**
+     * 槽位是否已使用（用于遍历）
+     */
+    public boolean isOccupied(int index) {
+        return mUsed[index];
+    }
+
+    /**
+     * 槽位的键（用于遍历）
+     */
+    public long keyAt(int index) {
+        return mKeys[index];
+    }
+
+    /**
+     * 槽位的值（用于遍历）
+     */
+    public long valueAt(int index) {
+        return mValues[index];
+    }
+
+    /**
+     * 查找键所在槽位（不存在返回-1）
+     */
+    private int indexOf(long key) {
+        int mask = mKeys.length - 1;
+        int index = mix(key) & mask;
+        while (mUsed[index]) {
+            if (mKeys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * 查找键所在槽位，不存在时插入（值为0）
+     */
+    private int insertionIndex(long key) {
+        int mask = mKeys.length - 1;
+        int index = mix(key) & mask;
+        while (mUsed[index]) {
+            if (mKeys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        if ((mSize + 1) * 2 > mKeys.length) {
+            rehash(mKeys.length * 2);
+            return insertionIndex(key);
+        }
+        mKeys[index] = key;
+        mValues[index] = 0;
+        mUsed[index] = true;
+        mSize++;
+        return index;
+    }
+
+    /**
+     * 删除槽位并将后续冲突链前移
+     */
+    private void shiftDelete(int index) {
+        int mask = mKeys.length - 1;
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (mUsed[next]) {
+            int ideal = mix(mKeys[next]) & mask;
+            // 判断next元素的理想位置是否不在(hole, next]区间内，是则可前移到hole
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                mKeys[hole] = mKeys[next];
+                mValues[hole] = mValues[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        mUsed[hole] = false;
+    }
+
+    /**
+     * 扩容重建
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = mKeys;
+        long[] oldValues = mValues;
+        boolean[] oldUsed = mUsed;
+        mKeys = new long[capacity];
+        mValues = new long[capacity];
+        mUsed = new boolean[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int index = mix(oldKeys[i]) & mask;
+                while (mUsed[index]) {
+                    index = (index + 1) & mask;
+                }
+                mKeys[index] = oldKeys[i];
+                mValues[index] = oldValues[i];
+                mUsed[index] = true;
+            }
+        }
+    }
+
+    /**
+     * 扰动哈希值
+     */
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
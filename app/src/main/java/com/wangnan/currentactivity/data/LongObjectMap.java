@@ -0,0 +1,224 @@
+package com.wangnan.currentactivity.data;
+
+import java.util.Arrays;
+
+/**
+ * @ClassName: LongObjectMap
+ * @Description: long键开放寻址哈希表（键不装箱，值不允许为null）
+ * <p>
+ * 遍历方式：for (int i = 0; i < map.capacity(); i++) if (map.isOccupied(i)) { map.keyAt(i); map.valueAt(i); }
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class LongObjectMap<V> {
+
+    /**
+     * 键数组
+     */
+    private long[] mKeys;
+
+    /**
+     * 值数组（null表示空槽）
+     */
+    private Object[] mValues;
+
+    /**
+     * 元素数量
+     */
+    private int mSize;
+
+    public LongObjectMap() {
+        this(16);
+    }
+
+    public LongObjectMap(int expectedSize) {
+        int capacity = 4;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        mKeys = new long[capacity];
+        mValues = new Object[capacity];
+    }
+
+    /**
+     * 获取键对应的值（不存在返回null）
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int mask = mKeys.length - 1;
+        int index = mix(key) & mask;
+        while (mValues[index] != null) {
+            if (mKeys[index] == key) {
+                return (V) mValues[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * 写入键值（值不允许为null）
+     */
+    public void put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value == null");
+        }
+        int mask = mKeys.length - 1;
+        int index = mix(key) & mask;
+        while (mValues[index] != null) {
+            if (mKeys[index] == key) {
+                mValues[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        mKeys[index] = key;
+        mValues[index] = value;
+        if (++mSize * 2 > mKeys.length) {
+            rehash(mKeys.length * 2);
+        }
+    }
+
+    /**
+     * 移除键（后移删除，不留墓碑）
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int mask = mKeys.length - 1;
+        int index = mix(key) & mask;
+        while (mValues[index] != null) {
+            if (mKeys[index] == key) {
+                V old = (V) mValues[index];
+                shiftDelete(index);
+                mSize--;
+                return old;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * 移除所有满足条件的键
+     *
+     * @return 移除数量
+     */
+    public int removeIf(KeyPredicate predicate) {
+        int removed = 0;
+        int index = 0;
+        while (index < mKeys.length) {
+            if (mValues[index] != null && predicate.test(mKeys[index])) {
+                // 删除后当前槽位可能被后移元素填充，需要重新检查同一槽位
+                shiftDelete(index);
+                mSize--;
+                removed++;
+            } else {
+                index++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 清空
+     */
+    public void clear() {
+        Arrays.fill(mValues, null);
+        mSize = 0;
+    }
+
+    /**
+     * 元素数量
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 槽位数量（用于遍历）
+     */
+    public int capacity() {
+        return mKeys.length;
+    }
+
+    /**
+     * 槽位是否已使用（用于遍历）
+     */
+    public boolean isOccupied(int index) {
+        return mValues[index] != null;
+    }
+
+    /**
+     * 槽位的键（用于遍历）
+     */
+    public long keyAt(int index) {
+        return mKeys[index];
+    }
+
+    /**
+     * 槽位的值（用于遍历）
+     */
+    @SuppressWarnings("unchecked")
+    public V valueAt(int index) {
+        return (V) mValues[index];
+    }
+
+    /**
+     * 删除槽位并将后续冲突链前移
+     */
+    private void shiftDelete(int index) {
+        int mask = mKeys.length - 1;
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (mValues[next] != null) {
+            int ideal = mix(mKeys[next]) & mask;
+            // 判断next元素的理想位置是否不在(hole, next]区间内，是则可前移到hole
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                mKeys[hole] = mKeys[next];
+                mValues[hole] = mValues[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        mValues[hole] = null;
+    }
+
+    /**
+     * 扩容重建
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = mKeys;
+        Object[] oldValues = mValues;
+        mKeys = new long[capacity];
+        mValues = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int index = mix(oldKeys[i]) & mask;
+                while (mValues[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                mKeys[index] = oldKeys[i];
+                mValues[index] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * 扰动哈希值
+     */
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * 键过滤条件
+     */
+    public interface KeyPredicate {
+        boolean test(long key);
+    }
+}
@@ -0,0 +1,163 @@
+package com.wangnan.currentactivity.data;
+
+/**
+ * @ClassName: NameTable
+ * @Description: 名称驻留表（包名/类名 -> int ID，已存在的名称查找过程不产生任何对象分配）
+ * <p>
+ * 只允许单一线程写入（intern），其它线程可通过已获得的ID安全读取名称。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class NameTable {
+
+    /**
+     * 无效ID
+     */
+    public static final int NO_ID = -1;
+
+    /**
+     * 初始容量
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * 名称数组（下标即ID）
+     */
+    private volatile String[] mNames = new String[INITIAL_CAPACITY];
+
+    /**
+     * 名称哈希值（下标即ID）
+     */
+    private int[] mHashes = new int[INITIAL_CAPACITY];
+
+    /**
+     * 开放寻址槽位（存储ID+1，0表示空槽）
+     */
+    private int[] mSlots = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * 已驻留的名称数量
+     */
+    private volatile int mSize;
+
+    /**
+     * 驻留名称，返回对应ID（名称已存在时不分配对象）
+     */
+    public int intern(CharSequence name) {
+        int hash = hash(name);
+        int mask = mSlots.length - 1;
+        int index = mix(hash) & mask;
+        String[] names = mNames;
+        while (true) {
+            int slot = mSlots[index];
+            if (slot == 0) {
+                break;
+            }
+            int id = slot - 1;
+            if (mHashes[id] == hash && names[id].contentEquals(name)) {
+                return id;
+            }
+            index = (index + 1) & mask;
+        }
+        // 新名称：仅首次出现时分配一次String
+        int id = mSize;
+        if (id == names.length) {
+            names = grow();
+            mask = mSlots.length - 1;
+            index = mix(hash) & mask;
+            while (mSlots[index] != 0) {
+                index = (index + 1) & mask;
+            }
+        }
+        names[id] = name.toString();
+        mHashes[id] = hash;
+        mSlots[index] = id + 1;
+        mSize = id + 1;
+        return id;
+    }
+
+    /**
+     * 查找名称对应的ID（不存在返回{@link #NO_ID}）
+     */
+    public int find(CharSequence name) {
+        int hash = hash(name);
+        int mask = mSlots.length - 1;
+        int index = mix(hash) & mask;
+        String[] names = mNames;
+        while (true) {
+            int slot = mSlots[index];
+            if (slot == 0) {
+                return NO_ID;
+            }
+            int id = slot - 1;
+            if (mHashes[id] == hash && names[id].contentEquals(name)) {
+                return id;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * 根据ID获取名称
+     */
+    public String getName(int id) {
+        if (id < 0 || id >= mSize) {
+            return null;
+        }
+        return mNames[id];
+    }
+
+    /**
+     * 获取已驻留的名称数量
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 扩容（名称数组与槽位数组同时翻倍，并重建槽位）
+     */
+    private String[] grow() {
+        int capacity = mNames.length * 2;
+        String[] names = new String[capacity];
+        System.arraycopy(mNames, 0, names, 0, mSize);
+        int[] hashes = new int[capacity];
+        System.arraycopy(mHashes, 0, hashes, 0, mSize);
+        int[] slots = new int[capacity * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < mSize; id++) {
+            int index = mix(hashes[id]) & mask;
+            while (slots[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            slots[index] = id + 1;
+        }
+        mHashes = hashes;
+        mSlots = slots;
+        mNames = names;
+        return names;
+    }
+
+    /**
+     * 计算CharSequence哈希值（与String.hashCode()一致，String直接使用其缓存值）
+     */
+    private static int hash(CharSequence name) {
+        if (name instanceof String) {
+            return name.hashCode();
+        }
+        int h = 0;
+        for (int i = 0, length = name.length(); i < length; i++) {
+            h = 31 * h + name.charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * 扰动哈希值，减少开放寻址冲突
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,520 @@
+package com.wangnan.currentactivity.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * @ClassName: RuleMatcher
+ * @Description: 界面规则匹配器（所有规则编译为一个Aho-Corasick自动机，每次切换只扫描一遍"包名/类名"）
+ * <p>
+ * 规则文本每行一条："模式 [动作...]"，#开头为注释。模式为"包名通配/类名通配"，*匹配任意字符，
+ * 不含"/"时只匹配类名（如"*.CheckoutActivity"）；动作为highlight、vibrate、log，可用逗号或空格分隔，缺省为highlight,log。
+ * <p>
+ * 编译：每个模式加上首尾锚点后按*拆分为字面片段，所有规则的片段放入同一个自动机。只由锚点或分隔符构成的片段
+ * 总能匹配，不放入自动机（否则每次扫描都要推进这些规则），其位置约束改为：分隔符之前的片段须在包名内结束，
+ * 之后的片段须在类名内开始；没有片段的规则（如"*"）匹配所有界面。
+ * 匹配：扫描"锚点+包名+/+类名+锚点"一遍，片段按结束位置依次报告，只推进出现了片段的规则
+ * （每条规则按顺序贪心匹配其片段），耗时与文本长度及实际出现的片段数有关，与规则总数无关。
+ * 结果按(包名ID, 类名ID)缓存，同一界面再次出现时直接返回。只在事件处理线程使用。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class RuleMatcher {
+
+    /**
+     * 动作：悬浮窗高亮
+     */
+    public static final int ACTION_HIGHLIGHT = 1;
+
+    /**
+     * 动作：振动
+     */
+    public static final int ACTION_VIBRATE = 1 << 1;
+
+    /**
+     * 动作：输出日志标记
+     */
+    public static final int ACTION_LOG = 1 << 2;
+
+    /**
+     * 未指定动作时的默认动作
+     */
+    private static final int DEFAULT_ACTIONS = ACTION_HIGHLIGHT | ACTION_LOG;
+
+    /**
+     * 没有匹配的规则
+     */
+    public static final Match NO_MATCH = new Match(0, null);
+
+    /**
+     * 文本首尾锚点及包名与类名的分隔符（包名、类名中不会出现）
+     */
+    private static final char BEGIN = '\u0002';
+    private static final char END = '\u0003';
+    private static final char SEPARATOR = '/';
+
+    /**
+     * 片段位置约束：不限（片段本身含分隔符）、须在包名内、须在类名内
+     */
+    private static final int SIDE_ANY = 0;
+    private static final int SIDE_PACKAGE = 1;
+    private static final int SIDE_CLASS = 2;
+
+    /**
+     * 每条规则最多的片段数（片段序号占8位）
+     */
+    private static final int MAX_SEGMENTS = 255;
+
+    /**
+     * 结果缓存容量（(包名, 类名)组合数）
+     */
+    private static final int CACHE_SIZE = 1024;
+
+    /**
+     * 自动机转移（键为(节点 << 16 | 字符)，值为子节点）
+     */
+    private final LongLongMap mGoto = new LongLongMap();
+
+    /**
+     * 失败链接（节点 -> 最长真后缀节点）
+     */
+    private int[] mFail;
+
+    /**
+     * 输出链接（节点 -> 失败链上最近的有输出的节点，没有时为-1）
+     */
+    private int[] mOutputLink;
+
+    /**
+     * 节点输出：以该节点结尾的片段（规则序号 << 8 | 片段序号）
+     */
+    private int[][] mOutputs;
+
+    /**
+     * 节点数
+     */
+    private int mNodeCount = 1;
+
+    /**
+     * 每条规则的片段长度、片段位置约束、动作、模式文本
+     */
+    private final int[][] mSegmentLengths;
+    private final int[][] mSegmentSides;
+    private final int[] mActions;
+    private final String[] mPatterns;
+
+    /**
+     * 没有片段、匹配所有界面的规则
+     */
+    private final int[] mUnconditionalRules;
+
+    /**
+     * 无效的行数
+     */
+    private final int mInvalidCount;
+
+    /**
+     * 匹配状态：每条规则下一个待匹配的片段、下一个片段的最早开始位置，以及本次推进过的规则（用于复位）
+     */
+    private final int[] mProgress;
+    private final int[] mMinStart;
+    private final int[] mTouched;
+    private int mTouchedCount;
+
+    /**
+     * 本次扫描中分隔符的位置
+     */
+    private int mSeparatorPosition;
+
+    /**
+     * 结果缓存（组合键 -> 结果序号）及去重后的结果
+     */
+    private final LongIntLruCache mCache = new LongIntLruCache(CACHE_SIZE);
+    private final List<Match> mResults = new ArrayList<>();
+    private final HashMap<String, Integer> mResultIndexes = new HashMap<>();
+
+    private RuleMatcher(List<String> patterns, List<int[]> segmentLengths, List<int[]> segmentSides,
+                        List<Integer> actions, int invalidCount) {
+        int ruleCount = patterns.size();
+        mPatterns = patterns.toArray(new String[ruleCount]);
+        mSegmentLengths = segmentLengths.toArray(new int[ruleCount][]);
+        mSegmentSides = segmentSides.toArray(new int[ruleCount][]);
+        mActions = new int[ruleCount];
+        int unconditional = 0;
+        for (int i = 0; i < ruleCount; i++) {
+            mActions[i] = actions.get(i);
+            if (mSegmentLengths[i].length == 0) {
+                unconditional++;
+            }
+        }
+        mUnconditionalRules = new int[unconditional];
+        for (int i = 0, n = 0; i < ruleCount; i++) {
+            if (mSegmentLengths[i].length == 0) {
+                mUnconditionalRules[n++] = i;
+            }
+        }
+        mInvalidCount = invalidCount;
+        mProgress = new int[ruleCount];
+        mMinStart = new int[ruleCount];
+        mTouched = new int[ruleCount];
+        mResults.add(NO_MATCH);
+    }
+
+    /**
+     * 编译规则文本
+     */
+    public static RuleMatcher compile(String text) {
+        List<String> patterns = new ArrayList<>();
+        List<String[]> segments = new ArrayList<>();
+        List<int[]> segmentLengths = new ArrayList<>();
+        List<int[]> segmentSides = new ArrayList<>();
+        List<Integer> actions = new ArrayList<>();
+        int invalid = 0;
+        for (String line : text == null ? new String[0] : text.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] tokens = line.split("[\\s,]+");
+            int ruleActions = parseActions(tokens);
+            List<Integer> sides = new ArrayList<>();
+            String[] ruleSegments = split(tokens[0], sides);
+            if (ruleActions < 0 || ruleSegments == null) {
+                invalid++;
+                continue;
+            }
+            int[] lengths = new int[ruleSegments.length];
+            int[] ruleSides = new int[ruleSegments.length];
+            for (int i = 0; i < lengths.length; i++) {
+                lengths[i] = ruleSegments[i].length();
+                ruleSides[i] = sides.get(i);
+            }
+            patterns.add(tokens[0]);
+            segments.add(ruleSegments);
+            segmentLengths.add(lengths);
+            segmentSides.add(ruleSides);
+            actions.add(ruleActions);
+        }
+        RuleMatcher matcher = new RuleMatcher(patterns, segmentLengths, segmentSides, actions, invalid);
+        matcher.build(segments);
+        return matcher;
+    }
+
+    /**
+     * 匹配一个界面（结果按(包名ID, 类名ID)缓存）
+     */
+    public Match match(NameTable nameTable, int packageId, int classId) {
+        if (mPatterns.length == 0) {
+            return NO_MATCH;
+        }
+        long key = ActivityEvent.pairKey(packageId, classId);
+        int index = mCache.get(key, -1);
+        if (index < 0) {
+            String packageName = nameTable.getName(packageId);
+            String className = nameTable.getName(classId);
+            index = intern(scan(packageName == null ? "" : packageName, className == null ? "" : className));
+            mCache.put(key, index);
+        }
+        return mResults.get(index);
+    }
+
+    /**
+     * 匹配一个界面（不使用缓存）
+     *
+     * @return 匹配的规则序号（升序）
+     */
+    public int[] scan(CharSequence packageName, CharSequence className) {
+        int state = 0;
+        int position = 0;
+        // 包名内的片段在读到分隔符之前就会报告，需预先确定分隔符位置
+        mSeparatorPosition = packageName.length() + 1;
+        state = step(state, BEGIN, position++);
+        for (int i = 0; i < packageName.length(); i++) {
+            state = step(state, packageName.charAt(i), position++);
+        }
+        state = step(state, SEPARATOR, position++);
+        for (int i = 0; i < className.length(); i++) {
+            state = step(state, className.charAt(i), position++);
+        }
+        step(state, END, position);
+        // 收集完成的规则并复位推进过的规则
+        int matched = 0;
+        for (int i = 0; i < mTouchedCount; i++) {
+            int rule = mTouched[i];
+            if (mProgress[rule] == mSegmentLengths[rule].length) {
+                mTouched[matched++] = rule;
+            }
+            mProgress[rule] = 0;
+            mMinStart[rule] = 0;
+        }
+        mTouchedCount = 0;
+        int[] rules = Arrays.copyOf(mTouched, matched + mUnconditionalRules.length);
+        System.arraycopy(mUnconditionalRules, 0, rules, matched, mUnconditionalRules.length);
+        Arrays.sort(rules);
+        return rules;
+    }
+
+    /**
+     * 规则数
+     */
+    public int getRuleCount() {
+        return mPatterns.length;
+    }
+
+    /**
+     * 无效的行数
+     */
+    public int getInvalidCount() {
+        return mInvalidCount;
+    }
+
+    /**
+     * 自动机节点数
+     */
+    public int getNodeCount() {
+        return mNodeCount;
+    }
+
+    /**
+     * 结果缓存命中次数、未命中次数
+     */
+    public long getHitCount() {
+        return mCache.getHitCount();
+    }
+
+    public long getMissCount() {
+        return mCache.getMissCount();
+    }
+
+    /**
+     * 读入一个字符：沿转移（失败时沿失败链接）前进，并报告以该位置结尾的所有片段
+     */
+    private int step(int state, char c, int position) {
+        long next;
+        while ((next = mGoto.get(edge(state, c), -1)) < 0 && state != 0) {
+            state = mFail[state];
+        }
+        state = next < 0 ? 0 : (int) next;
+        for (int node = mOutputs[state] != null ? state : mOutputLink[state]; node > 0; node = mOutputLink[node]) {
+            for (int output : mOutputs[node]) {
+                onSegment(output >>> 8, output & 0xFF, position);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * 规则rule的第segment个片段在position结束（按顺序贪心：接受开始位置不早于上一片段结束位置的最早出现）
+     */
+    private void onSegment(int rule, int segment, int position) {
+        if (mProgress[rule] != segment) {
+            return;
+        }
+        int start = position - mSegmentLengths[rule][segment] + 1;
+        if (start < mMinStart[rule]) {
+            return;
+        }
+        int side = mSegmentSides[rule][segment];
+        if ((side == SIDE_PACKAGE && position >= mSeparatorPosition)
+                || (side == SIDE_CLASS && start <= mSeparatorPosition)) {
+            return;
+        }
+        if (segment == 0) {
+            mTouched[mTouchedCount++] = rule;
+        }
+        mProgress[rule] = segment + 1;
+        mMinStart[rule] = position + 1;
+    }
+
+    /**
+     * 构建自动机：字典树 + 失败链接 + 输出链接
+     */
+    private void build(List<String[]> segments) {
+        List<int[]> outputs = new ArrayList<>();
+        outputs.add(null);
+        for (int rule = 0; rule < segments.size(); rule++) {
+            String[] ruleSegments = segments.get(rule);
+            for (int segment = 0; segment < ruleSegments.length; segment++) {
+                int node = 0;
+                String literal = ruleSegments[segment];
+                for (int i = 0; i < literal.length(); i++) {
+                    long key = edge(node, literal.charAt(i));
+                    long child = mGoto.get(key, -1);
+                    if (child < 0) {
+                        child = mNodeCount++;
+                        mGoto.put(key, child);
+                        outputs.add(null);
+                    }
+                    node = (int) child;
+                }
+                int[] nodeOutputs = outputs.get(node);
+                nodeOutputs = nodeOutputs == null ? new int[1] : Arrays.copyOf(nodeOutputs, nodeOutputs.length + 1);
+                nodeOutputs[nodeOutputs.length - 1] = rule << 8 | segment;
+                outputs.set(node, nodeOutputs);
+            }
+        }
+        mOutputs = outputs.toArray(new int[mNodeCount][]);
+        mFail = new int[mNodeCount];
+        mOutputLink = new int[mNodeCount];
+        // 按层（广度优先）计算失败链接：先收集每个节点的子节点
+        int[][] children = new int[mNodeCount][];
+        char[][] labels = new char[mNodeCount][];
+        int[] childCounts = new int[mNodeCount];
+        for (int i = 0; i < mGoto.capacity(); i++) {
+            if (mGoto.isOccupied(i)) {
+                childCounts[(int) (mGoto.keyAt(i) >>> 16)]++;
+            }
+        }
+        for (int node = 0; node < mNodeCount; node++) {
+            children[node] = new int[childCounts[node]];
+            labels[node] = new char[childCounts[node]];
+            childCounts[node] = 0;
+        }
+        for (int i = 0; i < mGoto.capacity(); i++) {
+            if (mGoto.isOccupied(i)) {
+                int parent = (int) (mGoto.keyAt(i) >>> 16);
+                int n = childCounts[parent]++;
+                children[parent][n] = (int) mGoto.valueAt(i);
+                labels[parent][n] = (char) mGoto.keyAt(i);
+            }
+        }
+        int[] queue = new int[mNodeCount];
+        int head = 0;
+        int tail = 0;
+        mOutputLink[0] = -1;
+        for (int child : children[0]) {
+            mFail[child] = 0;
+            mOutputLink[child] = -1;
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            for (int i = 0; i < children[node].length; i++) {
+                int child = children[node][i];
+                char c = labels[node][i];
+                int fail = mFail[node];
+                long next;
+                while ((next = mGoto.get(edge(fail, c), -1)) < 0 && fail != 0) {
+                    fail = mFail[fail];
+                }
+                mFail[child] = next < 0 ? 0 : (int) next;
+                int target = mFail[child];
+                mOutputLink[child] = mOutputs[target] != null ? target : mOutputLink[target];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * 去重保存匹配结果
+     *
+     * @return 结果序号（0为没有匹配）
+     */
+    private int intern(int[] rules) {
+        if (rules.length == 0) {
+            return 0;
+        }
+        String key = Arrays.toString(rules);
+        Integer index = mResultIndexes.get(key);
+        if (index == null) {
+            int actions = 0;
+            StringBuilder label = new StringBuilder();
+            for (int rule : rules) {
+                actions |= mActions[rule];
+                label.append(label.length() == 0 ? "" : ", ").append(mPatterns[rule]);
+            }
+            index = mResults.size();
+            mResults.add(new Match(actions, label.toString()));
+            mResultIndexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * 转移键
+     */
+    private static long edge(int node, char c) {
+        return (long) node << 16 | c;
+    }
+
+    /**
+     * 解析动作（从第二个记号开始），有未知动作时返回-1
+     */
+    private static int parseActions(String[] tokens) {
+        int actions = 0;
+        for (int i = 1; i < tokens.length; i++) {
+            switch (tokens[i].toLowerCase(Locale.US)) {
+                case "highlight":
+                    actions |= ACTION_HIGHLIGHT;
+                    break;
+                case "vibrate":
+                    actions |= ACTION_VIBRATE;
+                    break;
+                case "log":
+                    actions |= ACTION_LOG;
+                    break;
+                default:
+                    return -1;
+            }
+        }
+        return actions == 0 ? DEFAULT_ACTIONS : actions;
+    }
+
+    /**
+     * 把模式加上锚点后按*拆分为字面片段（不含"/"时只匹配类名），无效时返回null
+     * <p>
+     * 只由一个锚点或分隔符构成的片段总能匹配，直接丢弃；其余片段按其在分隔符之前/之后记录位置约束。
+     *
+     * @param sides 输出：每个片段的位置约束
+     */
+    private static String[] split(String pattern, List<Integer> sides) {
+        int separator = pattern.indexOf(SEPARATOR);
+        if (separator != pattern.lastIndexOf(SEPARATOR)) {
+            return null;
+        }
+        String anchored = BEGIN + (separator < 0 ? "*" + SEPARATOR + pattern : pattern) + END;
+        int separatorIndex = anchored.indexOf(SEPARATOR);
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        while (start <= anchored.length()) {
+            int end = anchored.indexOf('*', start);
+            if (end < 0) {
+                end = anchored.length();
+            }
+            String segment = anchored.substring(start, end);
+            boolean isTrivial = segment.length() == 1
+                    && (segment.charAt(0) == BEGIN || segment.charAt(0) == END || segment.charAt(0) == SEPARATOR);
+            if (!segment.isEmpty() && !isTrivial) {
+                segments.add(segment);
+                sides.add(end <= separatorIndex ? SIDE_PACKAGE : start > separatorIndex ? SIDE_CLASS : SIDE_ANY);
+            }
+            start = end + 1;
+        }
+        return segments.size() > MAX_SEGMENTS ? null : segments.toArray(new String[0]);
+    }
+
+    /**
+     * 匹配结果（不可变，同一组规则的结果共用一个对象）
+     */
+    public static final class Match {
+
+        /**
+         * 动作（位掩码）
+         */
+        public final int actions;
+
+        /**
+         * 匹配的规则模式（多条时用", "分隔，没有匹配时为null）
+         */
+        public final String label;
+
+        Match(int actions, String label) {
+            this.actions = actions;
+            this.label = label;
+        }
+    }
+}
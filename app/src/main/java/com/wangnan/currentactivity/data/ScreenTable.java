@@ -0,0 +1,81 @@
+package com.wangnan.currentactivity.data;
+
+import java.util.Arrays;
+
+/**
+ * @ClassName: ScreenTable
+ * @Description: 界面驻留表（(包名ID, 类名ID) -> 连续的界面ID，便于用数组或更紧凑的键存储按界面统计的数据）
+ * <p>
+ * 与{@link NameTable}相同，只允许单一线程写入（intern），其它线程可通过已获得的ID安全读取。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class ScreenTable {
+
+    /**
+     * 无效ID
+     */
+    public static final int NO_ID = -1;
+
+    /**
+     * 组合键 -> 界面ID
+     */
+    private final LongLongMap mIds = new LongLongMap(256);
+
+    /**
+     * 界面ID -> 包名ID / 类名ID
+     */
+    private volatile int[] mPackageIds = new int[256];
+    private volatile int[] mClassIds = new int[256];
+
+    /**
+     * 界面数量
+     */
+    private volatile int mSize;
+
+    /**
+     * 驻留界面，返回对应ID
+     */
+    public int intern(int packageId, int classId) {
+        long key = ActivityEvent.pairKey(packageId, classId);
+        long id = mIds.get(key, NO_ID);
+        if (id != NO_ID) {
+            return (int) id;
+        }
+        int screenId = mSize;
+        if (screenId == mPackageIds.length) {
+            // 先写新数组再发布，读线程看到的数组总是完整的
+            int[] packageIds = Arrays.copyOf(mPackageIds, screenId * 2);
+            int[] classIds = Arrays.copyOf(mClassIds, screenId * 2);
+            mClassIds = classIds;
+            mPackageIds = packageIds;
+        }
+        mPackageIds[screenId] = packageId;
+        mClassIds[screenId] = classId;
+        mIds.put(key, screenId);
+        mSize = screenId + 1;
+        return screenId;
+    }
+
+    /**
+     * 获取界面所属包名ID
+     */
+    public int getPackageId(int screenId) {
+        return screenId < 0 || screenId >= mSize ? NameTable.NO_ID : mPackageIds[screenId];
+    }
+
+    /**
+     * 获取界面类名ID
+     */
+    public int getClassId(int screenId) {
+        return screenId < 0 || screenId >= mSize ? NameTable.NO_ID : mClassIds[screenId];
+    }
+
+    /**
+     * 界面数量
+     */
+    public int size() {
+        return mSize;
+    }
+}
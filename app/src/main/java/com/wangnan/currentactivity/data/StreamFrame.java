@@ -0,0 +1,176 @@
+package com.wangnan.currentactivity.data;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * @ClassName: StreamFrame
+ * @Description: 切换推送帧（长度前缀的二进制格式，整数均为大端序）
+ * <p>
+ * 帧 = int32 负载长度 + 负载；负载 = uint8 类型 + int64 时间（毫秒时间戳） + 类型相关内容：
+ * <ul>
+ * <li>{@link #TYPE_ACTIVITY}、{@link #TYPE_WINDOW}：uint16 长度 + UTF-8 包名，uint16 长度 + UTF-8 类名</li>
+ * <li>{@link #TYPE_DROPPED}：int64 自上一帧以来因客户端缓冲区已满丢弃的帧数</li>
+ * <li>{@link #TYPE_NONE}：无内容（查询当前Activity时尚未收到任何切换）</li>
+ * </ul>
+ * 每次切换只编码一次，同一个字节数组交给所有订阅者（只读）。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class StreamFrame {
+
+    /**
+     * 帧类型：切换到Activity
+     */
+    public static final int TYPE_ACTIVITY = 1;
+
+    /**
+     * 帧类型：切换到对话框、弹窗等非Activity窗口
+     */
+    public static final int TYPE_WINDOW = 2;
+
+    /**
+     * 帧类型：丢帧通知
+     */
+    public static final int TYPE_DROPPED = 3;
+
+    /**
+     * 帧类型：没有当前Activity
+     */
+    public static final int TYPE_NONE = 4;
+
+    /**
+     * 长度前缀字节数
+     */
+    public static final int HEADER_SIZE = 4;
+
+    /**
+     * 名称最大字节数（uint16）
+     */
+    private static final int MAX_NAME_BYTES = 0xFFFF;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 解码结果：类型、时间、包名、类名、丢弃帧数
+     */
+    public final int type;
+    public final long time;
+    public final String packageName;
+    public final String className;
+    public final long droppedCount;
+
+    private StreamFrame(int type, long time, String packageName, String className, long droppedCount) {
+        this.type = type;
+        this.time = time;
+        this.packageName = packageName;
+        this.className = className;
+        this.droppedCount = droppedCount;
+    }
+
+    /**
+     * 编码切换帧
+     *
+     * @param type {@link #TYPE_ACTIVITY}或{@link #TYPE_WINDOW}
+     */
+    public static byte[] encode(int type, long time, String packageName, String className) {
+        byte[] packageBytes = truncate(packageName.getBytes(UTF_8));
+        byte[] classBytes = truncate(className.getBytes(UTF_8));
+        int payload = 1 + 8 + 2 + packageBytes.length + 2 + classBytes.length;
+        byte[] frame = new byte[HEADER_SIZE + payload];
+        int offset = putInt(frame, 0, payload);
+        frame[offset++] = (byte) type;
+        offset = putLong(frame, offset, time);
+        offset = putBytes(frame, offset, packageBytes);
+        putBytes(frame, offset, classBytes);
+        return frame;
+    }
+
+    /**
+     * 编码丢帧通知
+     */
+    public static byte[] encodeDropped(long time, long droppedCount) {
+        byte[] frame = new byte[HEADER_SIZE + 1 + 8 + 8];
+        int offset = putInt(frame, 0, frame.length - HEADER_SIZE);
+        frame[offset++] = TYPE_DROPPED;
+        offset = putLong(frame, offset, time);
+        putLong(frame, offset, droppedCount);
+        return frame;
+    }
+
+    /**
+     * 编码"没有当前Activity"
+     */
+    public static byte[] encodeNone(long time) {
+        byte[] frame = new byte[HEADER_SIZE + 1 + 8];
+        int offset = putInt(frame, 0, frame.length - HEADER_SIZE);
+        frame[offset++] = TYPE_NONE;
+        putLong(frame, offset, time);
+        return frame;
+    }
+
+    /**
+     * 从流中读取一帧（测试及客户端参考实现）
+     */
+    public static StreamFrame read(DataInputStream in) throws IOException {
+        int payload = in.readInt();
+        int type = in.readUnsignedByte();
+        long time = in.readLong();
+        switch (type) {
+            case TYPE_ACTIVITY:
+            case TYPE_WINDOW:
+                String packageName = readName(in);
+                String className = readName(in);
+                return new StreamFrame(type, time, packageName, className, 0);
+            case TYPE_DROPPED:
+                return new StreamFrame(type, time, null, null, in.readLong());
+            default:
+                // 未知类型：跳过剩余负载
+                in.skipBytes(payload - 1 - 8);
+                return new StreamFrame(type, time, null, null, 0);
+        }
+    }
+
+    /**
+     * 读取uint16长度 + UTF-8名称
+     */
+    private static String readName(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * 名称超出uint16长度时截断（正常的包名、类名远小于该长度）
+     */
+    private static byte[] truncate(byte[] bytes) {
+        if (bytes.length <= MAX_NAME_BYTES) {
+            return bytes;
+        }
+        byte[] truncated = new byte[MAX_NAME_BYTES];
+        System.arraycopy(bytes, 0, truncated, 0, MAX_NAME_BYTES);
+        return truncated;
+    }
+
+    private static int putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+        return offset + 4;
+    }
+
+    private static int putLong(byte[] buffer, int offset, long value) {
+        offset = putInt(buffer, offset, (int) (value >>> 32));
+        return putInt(buffer, offset, (int) value);
+    }
+
+    private static int putBytes(byte[] buffer, int offset, byte[] bytes) {
+        buffer[offset] = (byte) (bytes.length >>> 8);
+        buffer[offset + 1] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, buffer, offset + 2, bytes.length);
+        return offset + 2 + bytes.length;
+    }
+}
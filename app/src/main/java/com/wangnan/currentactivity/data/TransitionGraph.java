@@ -0,0 +1,533 @@
+package com.wangnan.currentactivity.data;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @ClassName: TransitionGraph
+ * @Description: 界面切换图（一阶马尔可夫转移矩阵：from界面 -> to界面的切换次数，节点为{@link ScreenTable}界面ID）
+ * <p>
+ * 边计数存于long键long值开放寻址表（键为(fromID, toID)），每个节点另有出边/入边的int数组邻接表，
+ * 每次切换只累加一条边，O(1)。节点数或边数超过上限时，批量淘汰访问次数最少的节点（连同其出入边）。
+ * 节点数组按图内槽位（而非界面ID）索引，淘汰节点时槽位回收复用，数组大小只取决于节点数上限。
+ * 由事件处理线程写入、dumpsys读取，方法均已同步。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class TransitionGraph {
+
+    /**
+     * 默认节点、边数上限
+     */
+    public static final int DEFAULT_MAX_NODES = 512;
+    public static final int DEFAULT_MAX_EDGES = 8192;
+
+    /**
+     * 路径查询的集束宽度下限
+     */
+    private static final int MIN_BEAM_WIDTH = 32;
+
+    /**
+     * 节点、边数上限
+     */
+    private final int mMaxNodes;
+    private final int mMaxEdges;
+
+    /**
+     * 边计数（键为{@link ActivityEvent#pairKey(int, int)}(fromID, toID)）
+     */
+    private final LongLongMap mEdges;
+
+    /**
+     * 无效槽位
+     */
+    private static final int NO_SLOT = -1;
+
+    /**
+     * 节点数组初始容量
+     */
+    private static final int INITIAL_SLOTS = 64;
+
+    /**
+     * 界面ID -> 图内槽位
+     */
+    private final LongLongMap mSlots = new LongLongMap();
+
+    /**
+     * 槽位对应的界面ID（以下节点数组的下标均为槽位）
+     */
+    private int[] mScreenIds = new int[INITIAL_SLOTS];
+
+    /**
+     * 节点访问次数（进入该界面的次数，0表示槽位空闲）
+     */
+    private long[] mVisits = new long[INITIAL_SLOTS];
+
+    /**
+     * 节点出边总数（转移概率的分母）
+     */
+    private long[] mOutTotals = new long[INITIAL_SLOTS];
+
+    /**
+     * 出边/入边邻接表（对端槽位）及其长度
+     */
+    private int[][] mOut = new int[INITIAL_SLOTS][];
+    private int[] mOutSizes = new int[INITIAL_SLOTS];
+    private int[][] mIn = new int[INITIAL_SLOTS][];
+    private int[] mInSizes = new int[INITIAL_SLOTS];
+
+    /**
+     * 已使用过的槽位数（高水位），被淘汰节点回收的空闲槽位栈
+     */
+    private int mSlotLimit;
+    private int[] mFreeSlots = new int[16];
+    private int mFreeCount;
+
+    /**
+     * 图中节点数量
+     */
+    private int mNodeCount;
+
+    /**
+     * 上一个界面的槽位（没有或已被淘汰时为NO_SLOT）
+     */
+    private int mLastSlot = NO_SLOT;
+
+    /**
+     * 累计切换次数、淘汰的节点数
+     */
+    private long mTransitionCount;
+    private long mEvictedCount;
+
+    public TransitionGraph() {
+        this(DEFAULT_MAX_NODES, DEFAULT_MAX_EDGES);
+    }
+
+    public TransitionGraph(int maxNodes, int maxEdges) {
+        mMaxNodes = maxNodes;
+        mMaxEdges = maxEdges;
+        mEdges = new LongLongMap(Math.min(maxEdges, 1024));
+    }
+
+    /**
+     * 进入一个界面（与上一个界面不同时累加一条切换边）
+     */
+    public synchronized void onScreen(int screenId) {
+        int slot = (int) mSlots.get(screenId, NO_SLOT);
+        if (slot == NO_SLOT) {
+            slot = allocateSlot(screenId);
+        }
+        mVisits[slot]++;
+        int from = mLastSlot;
+        mLastSlot = slot;
+        if (from != NO_SLOT && from != slot) {
+            long key = ActivityEvent.pairKey(mScreenIds[from], screenId);
+            if (mEdges.add(key, 1) == 1) {
+                mOut[from] = append(mOut[from], mOutSizes[from]++, slot);
+                mIn[slot] = append(mIn[slot], mInSizes[slot]++, from);
+            }
+            mOutTotals[from]++;
+            mTransitionCount++;
+        }
+        if (mNodeCount > mMaxNodes || mEdges.size() > mMaxEdges) {
+            evictLeastUsed();
+        }
+    }
+
+    /**
+     * 断开切换链（服务暂停等，下一个界面不与之前的界面连边）
+     */
+    public synchronized void breakChain() {
+        mLastSlot = NO_SLOT;
+    }
+
+    /**
+     * 为新节点分配槽位（优先复用被淘汰节点的槽位）
+     */
+    private int allocateSlot(int screenId) {
+        int slot;
+        if (mFreeCount > 0) {
+            slot = mFreeSlots[--mFreeCount];
+        } else {
+            slot = mSlotLimit++;
+            ensureSlots(mSlotLimit);
+        }
+        mScreenIds[slot] = screenId;
+        mSlots.put(screenId, slot);
+        mNodeCount++;
+        return slot;
+    }
+
+    /**
+     * 查询界面的槽位（不在图中返回NO_SLOT）
+     */
+    private int slotOf(int screenId) {
+        return (int) mSlots.get(screenId, NO_SLOT);
+    }
+
+    /**
+     * 淘汰访问次数最少的约1/8节点（不淘汰当前界面），均摊到每次切换的开销很小
+     */
+    private void evictLeastUsed() {
+        long[] visits = new long[mNodeCount];
+        int count = 0;
+        for (int i = 0; i < mSlotLimit; i++) {
+            if (mVisits[i] != 0 && i != mLastSlot) {
+                visits[count++] = mVisits[i];
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        Arrays.sort(visits, 0, count);
+        int target = Math.min(count, Math.max(1, mNodeCount / 8));
+        long threshold = visits[target - 1];
+        // 先淘汰低于阈值的节点，再按槽位顺序淘汰等于阈值的节点直到数量足够
+        int evicted = 0;
+        for (int pass = 0; pass < 2 && evicted < target; pass++) {
+            for (int i = 0; i < mSlotLimit && evicted < target; i++) {
+                long value = mVisits[i];
+                if (value != 0 && i != mLastSlot && (pass == 0 ? value < threshold : value == threshold)) {
+                    removeNode(i);
+                    evicted++;
+                }
+            }
+        }
+        mEvictedCount += evicted;
+    }
+
+    /**
+     * 移除节点及其出入边，回收其槽位
+     */
+    private void removeNode(int node) {
+        int screenId = mScreenIds[node];
+        for (int i = 0; i < mOutSizes[node]; i++) {
+            int to = mOut[node][i];
+            mEdges.remove(ActivityEvent.pairKey(screenId, mScreenIds[to]));
+            mInSizes[to] = removeValue(mIn[to], mInSizes[to], node);
+        }
+        for (int i = 0; i < mInSizes[node]; i++) {
+            int from = mIn[node][i];
+            long key = ActivityEvent.pairKey(mScreenIds[from], screenId);
+            mOutTotals[from] -= mEdges.get(key, 0);
+            mEdges.remove(key);
+            mOutSizes[from] = removeValue(mOut[from], mOutSizes[from], node);
+        }
+        mSlots.remove(screenId);
+        if (mFreeCount == mFreeSlots.length) {
+            mFreeSlots = Arrays.copyOf(mFreeSlots, mFreeCount * 2);
+        }
+        mFreeSlots[mFreeCount++] = node;
+        mVisits[node] = 0;
+        mOutTotals[node] = 0;
+        mOutSizes[node] = 0;
+        mInSizes[node] = 0;
+        mOut[node] = null;
+        mIn[node] = null;
+        mNodeCount--;
+    }
+
+    /**
+     * 按切换次数降序复制某界面的出边（只保留前targets.length项）
+     *
+     * @param targets 输出：目标界面ID
+     * @param counts  输出：切换次数
+     * @return 输出数量
+     */
+    public synchronized int copyTopOutgoing(int from, int[] targets, long[] counts) {
+        int slot = slotOf(from);
+        if (slot == NO_SLOT) {
+            return 0;
+        }
+        int count = 0;
+        for (int i = 0; i < mOutSizes[slot]; i++) {
+            int to = mScreenIds[mOut[slot][i]];
+            long value = mEdges.get(ActivityEvent.pairKey(from, to), 0);
+            // 插入排序（只保留前N项，N通常很小）
+            int position = count;
+            while (position > 0 && counts[position - 1] < value) {
+                position--;
+            }
+            if (position >= targets.length) {
+                continue;
+            }
+            int moved = Math.min(count, targets.length - 1) - position;
+            System.arraycopy(targets, position, targets, position + 1, moved);
+            System.arraycopy(counts, position, counts, position + 1, moved);
+            targets[position] = to;
+            counts[position] = value;
+            count = Math.min(count + 1, targets.length);
+        }
+        return count;
+    }
+
+    /**
+     * 查询最常见的长度为k（k次切换、k+1个界面）的路径
+     * <p>
+     * 路径得分为其在马尔可夫模型下的期望出现次数：count(s0->s1) * P(s1->s2) * ... * P(sk-1->sk)。
+     * 采用集束搜索，每一步只保留得分最高的若干条路径，结果为近似值。
+     *
+     * @param length 切换次数（>=1）
+     * @param limit  最多返回的路径数
+     * @return 按得分降序排列的路径
+     */
+    public synchronized List<Path> findTopPaths(int length, int limit) {
+        List<Path> result = new ArrayList<>();
+        if (length < 1 || limit < 1 || mEdges.size() == 0) {
+            return result;
+        }
+        int width = Math.max(limit, MIN_BEAM_WIDTH);
+        int[][] beam = new int[width][];
+        double[] scores = new double[width];
+        int size = 0;
+        // 第一步：所有边，得分为切换次数（集束中的路径以槽位表示）
+        for (int i = 0; i < mEdges.capacity(); i++) {
+            if (mEdges.isOccupied(i)) {
+                long key = mEdges.keyAt(i);
+                int[] path = new int[]{slotOf((int) (key >>> 32)), slotOf((int) key)};
+                size = offer(beam, scores, size, path, mEdges.valueAt(i));
+            }
+        }
+        // 后续每一步：扩展集束中每条路径的出边
+        for (int step = 1; step < length && size > 0; step++) {
+            int[][] next = new int[width][];
+            double[] nextScores = new double[width];
+            int nextSize = 0;
+            for (int p = 0; p < size; p++) {
+                int last = beam[p][step];
+                long total = mOutTotals[last];
+                for (int i = 0; i < mOutSizes[last]; i++) {
+                    int to = mOut[last][i];
+                    long key = ActivityEvent.pairKey(mScreenIds[last], mScreenIds[to]);
+                    double score = scores[p] * mEdges.get(key, 0) / total;
+                    if (nextSize == width && score <= nextScores[width - 1]) {
+                        continue;
+                    }
+                    int[] path = Arrays.copyOf(beam[p], step + 2);
+                    path[step + 1] = to;
+                    nextSize = offer(next, nextScores, nextSize, path, score);
+                }
+            }
+            beam = next;
+            scores = nextScores;
+            size = nextSize;
+        }
+        for (int i = 0; i < Math.min(size, limit); i++) {
+            int[] screenIds = beam[i];
+            for (int j = 0; j < screenIds.length; j++) {
+                screenIds[j] = mScreenIds[screenIds[j]];
+            }
+            result.add(new Path(screenIds, scores[i]));
+        }
+        return result;
+    }
+
+    /**
+     * 按得分降序插入集束（已满时丢弃得分最低的）
+     *
+     * @return 插入后的数量
+     */
+    private static int offer(int[][] beam, double[] scores, int size, int[] path, double score) {
+        int position = size;
+        while (position > 0 && scores[position - 1] < score) {
+            position--;
+        }
+        if (position >= beam.length) {
+            return size;
+        }
+        int moved = Math.min(size, beam.length - 1) - position;
+        System.arraycopy(beam, position, beam, position + 1, moved);
+        System.arraycopy(scores, position, scores, position + 1, moved);
+        beam[position] = path;
+        scores[position] = score;
+        return Math.min(size + 1, beam.length);
+    }
+
+    /**
+     * 导出完整转移矩阵（稀疏格式，每行一条边：from、to、次数、转移概率，以制表符分隔）
+     * <p>
+     * 先在锁内复制边，再在锁外写出，避免慢速读取方阻塞事件处理线程。
+     */
+    public void exportMatrix(Writer writer, ScreenTable screens, NameTable names) throws IOException {
+        int size;
+        int[] froms;
+        int[] tos;
+        long[] counts;
+        long[] totals;
+        synchronized (this) {
+            size = mEdges.size();
+            froms = new int[size];
+            tos = new int[size];
+            counts = new long[size];
+            totals = new long[size];
+            int n = 0;
+            for (int i = 0; i < mEdges.capacity(); i++) {
+                if (mEdges.isOccupied(i)) {
+                    long key = mEdges.keyAt(i);
+                    froms[n] = (int) (key >>> 32);
+                    tos[n] = (int) key;
+                    counts[n] = mEdges.valueAt(i);
+                    totals[n] = mOutTotals[slotOf(froms[n])];
+                    n++;
+                }
+            }
+        }
+        writer.write("# from\tto\tcount\tprobability\n");
+        for (int i = 0; i < size; i++) {
+            writer.write(screenName(screens, names, froms[i]));
+            writer.write('\t');
+            writer.write(screenName(screens, names, tos[i]));
+            writer.write('\t');
+            writer.write(Long.toString(counts[i]));
+            writer.write('\t');
+            writer.write(Double.toString((double) counts[i] / totals[i]));
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * 界面名称（包名/类名）
+     */
+    public static String screenName(ScreenTable screens, NameTable names, int screenId) {
+        return names.getName(screens.getPackageId(screenId)) + "/" + names.getName(screens.getClassId(screenId));
+    }
+
+    /**
+     * 获取节点访问次数（不在图中返回0）
+     */
+    public synchronized long getVisits(int screenId) {
+        int slot = slotOf(screenId);
+        return slot == NO_SLOT ? 0 : mVisits[slot];
+    }
+
+    /**
+     * 获取节点出边总数
+     */
+    public synchronized long getOutTotal(int screenId) {
+        int slot = slotOf(screenId);
+        return slot == NO_SLOT ? 0 : mOutTotals[slot];
+    }
+
+    /**
+     * 获取边的切换次数
+     */
+    public synchronized long getCount(int from, int to) {
+        return mEdges.get(ActivityEvent.pairKey(from, to), 0);
+    }
+
+    /**
+     * 图中节点数量
+     */
+    public synchronized int getNodeCount() {
+        return mNodeCount;
+    }
+
+    /**
+     * 图中边数量
+     */
+    public synchronized int getEdgeCount() {
+        return mEdges.size();
+    }
+
+    /**
+     * 累计切换次数（包括已被淘汰的边）
+     */
+    public synchronized long getTransitionCount() {
+        return mTransitionCount;
+    }
+
+    /**
+     * 累计淘汰的节点数
+     */
+    public synchronized long getEvictedCount() {
+        return mEvictedCount;
+    }
+
+    /**
+     * 清空
+     */
+    public synchronized void clear() {
+        mEdges.clear();
+        mSlots.clear();
+        Arrays.fill(mVisits, 0);
+        Arrays.fill(mOutTotals, 0);
+        Arrays.fill(mOutSizes, 0);
+        Arrays.fill(mInSizes, 0);
+        Arrays.fill(mOut, null);
+        Arrays.fill(mIn, null);
+        mNodeCount = 0;
+        mSlotLimit = 0;
+        mFreeCount = 0;
+        mLastSlot = NO_SLOT;
+    }
+
+    /**
+     * 确保节点数组能容纳size个槽位
+     */
+    private void ensureSlots(int size) {
+        if (size <= mVisits.length) {
+            return;
+        }
+        int capacity = mVisits.length << 1;
+        mScreenIds = Arrays.copyOf(mScreenIds, capacity);
+        mVisits = Arrays.copyOf(mVisits, capacity);
+        mOutTotals = Arrays.copyOf(mOutTotals, capacity);
+        mOut = Arrays.copyOf(mOut, capacity);
+        mOutSizes = Arrays.copyOf(mOutSizes, capacity);
+        mIn = Arrays.copyOf(mIn, capacity);
+        mInSizes = Arrays.copyOf(mInSizes, capacity);
+    }
+
+    /**
+     * 向邻接表追加一个值（容量不足时扩容）
+     */
+    private static int[] append(int[] list, int size, int value) {
+        if (list == null) {
+            list = new int[4];
+        } else if (size == list.length) {
+            list = Arrays.copyOf(list, size * 2);
+        }
+        list[size] = value;
+        return list;
+    }
+
+    /**
+     * 从邻接表移除一个值（与最后一个交换）
+     *
+     * @return 移除后的长度
+     */
+    private static int removeValue(int[] list, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (list[i] == value) {
+                list[i] = list[size - 1];
+                return size - 1;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 路径查询结果（不可变）
+     */
+    public static final class Path {
+
+        /**
+         * 依次经过的界面ID
+         */
+        public final int[] screenIds;
+
+        /**
+         * 马尔可夫模型下的期望出现次数
+         */
+        public final double score;
+
+        Path(int[] screenIds, double score) {
+            this.screenIds = screenIds;
+            this.score = score;
+        }
+    }
+}
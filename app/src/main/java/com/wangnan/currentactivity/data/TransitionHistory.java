@@ -0,0 +1,147 @@
+package com.wangnan.currentactivity.data;
+
+/**
+ * @ClassName: TransitionHistory
+ * @Description: 窗口切换历史（固定容量环形缓冲区，时间/包名ID/类名ID分别存于基本类型数组，不为每条记录分配对象）
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class TransitionHistory {
+
+    /**
+     * 默认容量（约4MB：每条记录8字节时间 + 4字节包名ID + 4字节类名ID）
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 18;
+
+    /**
+     * 切换时间（毫秒，System.currentTimeMillis()时间基准）
+     */
+    private final long[] mTimes;
+
+    /**
+     * 包名ID
+     */
+    private final int[] mPackageIds;
+
+    /**
+     * 类名ID
+     */
+    private final int[] mClassIds;
+
+    /**
+     * 下一条记录的写入位置
+     */
+    private int mHead;
+
+    /**
+     * 当前记录数量（不超过容量）
+     */
+    private int mSize;
+
+    /**
+     * 累计写入的记录数量（包括已被覆盖的）
+     */
+    private long mTotalCount;
+
+    public TransitionHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TransitionHistory(int capacity) {
+        mTimes = new long[capacity];
+        mPackageIds = new int[capacity];
+        mClassIds = new int[capacity];
+    }
+
+    /**
+     * 追加一条记录（已满时覆盖最旧的记录）
+     */
+    public synchronized void add(int packageId, int classId, long time) {
+        mTimes[mHead] = time;
+        mPackageIds[mHead] = packageId;
+        mClassIds[mHead] = classId;
+        mHead = (mHead + 1) % mTimes.length;
+        if (mSize < mTimes.length) {
+            mSize++;
+        }
+        mTotalCount++;
+    }
+
+    /**
+     * 复制最近的记录（最新的在前）
+     *
+     * @param offset     跳过最近的条数
+     * @param count      最多复制的条数
+     * @param times      时间输出数组
+     * @param packageIds 包名ID输出数组
+     * @param classIds   类名ID输出数组
+     * @return 实际复制的条数
+     */
+    public synchronized int copyRecent(int offset, int count, long[] times, int[] packageIds, int[] classIds) {
+        int available = Math.max(0, mSize - offset);
+        int n = Math.min(Math.min(count, available), times.length);
+        int capacity = mTimes.length;
+        for (int i = 0; i < n; i++) {
+            int index = ((mHead - 1 - offset - i) % capacity + capacity) % capacity;
+            times[i] = mTimes[index];
+            packageIds[i] = mPackageIds[index];
+            classIds[i] = mClassIds[index];
+        }
+        return n;
+    }
+
+    /**
+     * 按序号复制记录（序号为写入顺序，从0开始；从sequence开始向更早的记录复制，最新的在前）
+     * <p>
+     * 序号不随新记录写入而变化，分页读取时不会因期间的新切换而错位。
+     *
+     * @return 实际复制的条数（sequence超出范围或更早的记录已被覆盖时少于count）
+     */
+    public synchronized int copyBefore(long sequence, int count, long[] times, int[] packageIds, int[] classIds) {
+        long oldest = mTotalCount - mSize;
+        if (sequence >= mTotalCount || sequence < oldest) {
+            return 0;
+        }
+        int n = (int) Math.min(Math.min(count, sequence - oldest + 1), times.length);
+        int capacity = mTimes.length;
+        // 序号为sequence的记录位于写入位置之前(mTotalCount - sequence)条
+        int index = (int) (((mHead - (mTotalCount - sequence)) % capacity + capacity) % capacity);
+        for (int i = 0; i < n; i++) {
+            times[i] = mTimes[index];
+            packageIds[i] = mPackageIds[index];
+            classIds[i] = mClassIds[index];
+            index = index == 0 ? capacity - 1 : index - 1;
+        }
+        return n;
+    }
+
+    /**
+     * 当前记录数量
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * 累计写入的记录数量
+     */
+    public synchronized long getTotalCount() {
+        return mTotalCount;
+    }
+
+    /**
+     * 容量
+     */
+    public int capacity() {
+        return mTimes.length;
+    }
+
+    /**
+     * 清空
+     */
+    public synchronized void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+}
@@ -0,0 +1,566 @@
+package com.wangnan.currentactivity.data;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @ClassName: TransitionLog
+ * @Description: 切换日志（只追加的二进制文件，通过MappedByteBuffer写入，追加一条记录只是几次内存写入，无系统调用）
+ * <p>
+ * 目录结构：names.dict（名称字典，见{@link LogDictionary}）+ 若干段文件seg_XXXXXXXX.log。
+ * 段文件固定大小，文件头为 魔数(4) + 版本(4) + 段序号(4) + 记录数(4，写满封存时写入，未封存为0)，
+ * 之后为定长记录：包名ID(4) + 类名ID(4) + 时间(8)。时间最后写入，非0即表示记录完整。
+ * <p>
+ * 字典只追加，已封存的段都压缩为自带字典的压缩文件后，由写入线程重建字典（见{@link #rebuildDictionary()}）。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class TransitionLog {
+
+    /**
+     * 段文件大小
+     */
+    public static final int SEGMENT_SIZE = 1 << 20;
+
+    /**
+     * 段文件头长度
+     */
+    public static final int HEADER_SIZE = 16;
+
+    /**
+     * 记录长度
+     */
+    public static final int RECORD_SIZE = 16;
+
+    /**
+     * 每个段文件可容纳的记录数
+     */
+    public static final int RECORDS_PER_SEGMENT = (SEGMENT_SIZE - HEADER_SIZE) / RECORD_SIZE;
+
+    /**
+     * 段文件魔数（"CASG"）
+     */
+    static final int MAGIC = 0x43415347;
+
+    /**
+     * 版本号
+     */
+    static final int VERSION = 1;
+
+    /**
+     * 字典文件名
+     */
+    public static final String DICTIONARY_NAME = "names.dict";
+
+    /**
+     * 段文件名前缀/后缀
+     */
+    static final String SEGMENT_PREFIX = "seg_";
+    static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * 重建字典时的临时文件后缀
+     */
+    static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * 日志目录锁（压缩读取段文件与字典期间不重建字典）
+     */
+    static final ReentrantLock DIRECTORY_LOCK = new ReentrantLock();
+
+    /**
+     * 日志目录
+     */
+    private final File mDir;
+
+    /**
+     * 名称字典（重建后替换）
+     */
+    private LogDictionary mDictionary;
+
+    /**
+     * 进程内名称ID -> 持久化ID（-1表示尚未映射）
+     */
+    private int[] mPersistentIds = new int[0];
+
+    /**
+     * 当前段文件
+     */
+    private RandomAccessFile mFile;
+
+    /**
+     * 当前段文件映射
+     */
+    private MappedByteBuffer mBuffer;
+
+    /**
+     * 当前段序号
+     */
+    private int mSequence;
+
+    /**
+     * 下一条记录的写入位置
+     */
+    private int mPosition;
+
+    /**
+     * 打开日志时从尾部恢复出的有效记录数
+     */
+    private int mRecoveredCount;
+
+    /**
+     * 打开日志时丢弃的不完整记录数
+     */
+    private int mDiscardedCount;
+
+    private TransitionLog(File dir, LogDictionary dictionary) {
+        mDir = dir;
+        mDictionary = dictionary;
+    }
+
+    /**
+     * 打开日志目录（加载字典，映射最新段文件并恢复写入位置）
+     */
+    public static TransitionLog open(File dir) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("mkdirs failed: " + dir);
+        }
+        finishRebuild(dir);
+        TransitionLog log = new TransitionLog(dir, LogDictionary.open(new File(dir, DICTIONARY_NAME)));
+        File[] segments = listSegments(dir);
+        if (segments.length == 0) {
+            log.openSegment(1);
+        } else {
+            log.recover(segments[segments.length - 1]);
+        }
+        return log;
+    }
+
+    /**
+     * 追加一条切换记录
+     *
+     * @param nameTable 进程内名称驻留表
+     * @param packageId 包名ID（进程内）
+     * @param classId   类名ID（进程内）
+     * @param time      切换时间（毫秒，非0）
+     */
+    public void append(NameTable nameTable, int packageId, int classId, long time) throws IOException {
+        int persistentPackageId = toPersistentId(nameTable, packageId);
+        int persistentClassId = toPersistentId(nameTable, classId);
+        if (mPosition + RECORD_SIZE > SEGMENT_SIZE) {
+            rollover();
+        }
+        MappedByteBuffer buffer = mBuffer;
+        int position = mPosition;
+        buffer.putInt(position, persistentPackageId);
+        buffer.putInt(position + 4, persistentClassId);
+        // 时间最后写入，作为记录完整的标志
+        buffer.putLong(position + 8, time);
+        mPosition = position + RECORD_SIZE;
+    }
+
+    /**
+     * 进程内ID转换为持久化ID（名称首次出现时写入字典）
+     */
+    private int toPersistentId(NameTable nameTable, int id) throws IOException {
+        if (id >= mPersistentIds.length) {
+            int oldLength = mPersistentIds.length;
+            mPersistentIds = Arrays.copyOf(mPersistentIds, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(mPersistentIds, oldLength, mPersistentIds.length, -1);
+        }
+        int persistentId = mPersistentIds[id];
+        if (persistentId < 0) {
+            persistentId = mDictionary.getOrAdd(nameTable.getName(id));
+            mPersistentIds[id] = persistentId;
+        }
+        return persistentId;
+    }
+
+    /**
+     * 当前段写满，封存并打开下一段
+     */
+    private void rollover() throws IOException {
+        seal();
+        openSegment(mSequence + 1);
+    }
+
+    /**
+     * 封存当前段（写入记录数并刷盘）
+     */
+    private void seal() throws IOException {
+        mBuffer.putInt(12, (mPosition - HEADER_SIZE) / RECORD_SIZE);
+        mBuffer.force();
+        mFile.close();
+        mBuffer = null;
+        mFile = null;
+    }
+
+    /**
+     * 创建并映射新的段文件
+     */
+    private void openSegment(int sequence) throws IOException {
+        File file = new File(mDir, segmentName(sequence));
+        mFile = new RandomAccessFile(file, "rw");
+        mFile.setLength(SEGMENT_SIZE);
+        mBuffer = mFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+        mBuffer.putInt(0, MAGIC);
+        mBuffer.putInt(4, VERSION);
+        mBuffer.putInt(8, sequence);
+        mBuffer.putInt(12, 0);
+        mSequence = sequence;
+        mPosition = HEADER_SIZE;
+    }
+
+    /**
+     * 恢复最新段文件的写入位置（扫描到第一条不完整记录为止，并清除其后的残留数据）
+     */
+    private void recover(File file) throws IOException {
+        int sequence = parseSequence(file);
+        mFile = new RandomAccessFile(file, "rw");
+        if (mFile.length() != SEGMENT_SIZE) {
+            mFile.setLength(SEGMENT_SIZE);
+        }
+        mBuffer = mFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+        if (mBuffer.getInt(0) != MAGIC || mBuffer.getInt(4) != VERSION) {
+            // 文件头损坏，作为空段重新初始化
+            mBuffer.putInt(0, MAGIC);
+            mBuffer.putInt(4, VERSION);
+            mBuffer.putInt(8, sequence);
+        }
+        mSequence = sequence;
+        int dictionarySize = mDictionary.size();
+        int position = HEADER_SIZE;
+        while (position + RECORD_SIZE <= SEGMENT_SIZE
+                && isValidRecord(mBuffer, position, dictionarySize)) {
+            position += RECORD_SIZE;
+        }
+        mPosition = position;
+        mRecoveredCount = (position - HEADER_SIZE) / RECORD_SIZE;
+        // 清除尾部不完整的记录，避免后续追加后被误读
+        while (position + RECORD_SIZE <= SEGMENT_SIZE && !isEmptyRecord(mBuffer, position)) {
+            mBuffer.putLong(position, 0);
+            mBuffer.putLong(position + 8, 0);
+            position += RECORD_SIZE;
+            mDiscardedCount++;
+        }
+        // 已写满（或已封存）的段直接打开下一段
+        if (mPosition + RECORD_SIZE > SEGMENT_SIZE || mBuffer.getInt(12) != 0) {
+            rollover();
+        }
+    }
+
+    /**
+     * 判断记录是否完整有效
+     */
+    private static boolean isValidRecord(ByteBuffer buffer, int position, int dictionarySize) {
+        int packageId = buffer.getInt(position);
+        int classId = buffer.getInt(position + 4);
+        long time = buffer.getLong(position + 8);
+        return time > 0 && packageId >= 0 && packageId < dictionarySize && classId >= 0 && classId < dictionarySize;
+    }
+
+    /**
+     * 判断记录区域是否全为0
+     */
+    private static boolean isEmptyRecord(ByteBuffer buffer, int position) {
+        return buffer.getLong(position) == 0 && buffer.getLong(position + 8) == 0;
+    }
+
+    /**
+     * 将已写入的数据刷到磁盘（不在每次追加时调用，由调用方延迟合并调用）
+     */
+    public void flush() {
+        if (mBuffer != null) {
+            mBuffer.force();
+        }
+    }
+
+    /**
+     * 重建名称字典：只保留当前段引用的名称并重新编号（写入线程调用；还有未压缩的已封存段、
+     * 压缩正在进行或没有可清理的条目时不执行）
+     * <p>
+     * 新字典写入临时文件，重新编号后的记录写入下一序号的临时段文件，然后替换字典（提交点），
+     * 删除旧段、重命名新段。中途崩溃时由{@link #open(File)}按残留的临时文件回滚或完成。
+     *
+     * @return 是否已重建
+     */
+    public boolean rebuildDictionary() throws IOException {
+        if (!DIRECTORY_LOCK.tryLock()) {
+            return false;
+        }
+        try {
+            File[] segments = listSegments(mDir);
+            if (segments.length != 1 || parseSequence(segments[0]) != mSequence) {
+                return false;
+            }
+            // 按首次引用的顺序重新编号
+            int[] newIds = new int[mDictionary.size()];
+            Arrays.fill(newIds, -1);
+            List<String> names = new ArrayList<>();
+            int end = mPosition;
+            ByteBuffer records = ByteBuffer.allocate(end);
+            records.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, mSequence + 1).putInt(12, 0);
+            for (int position = HEADER_SIZE; position < end; position += RECORD_SIZE) {
+                records.putInt(position, remap(mBuffer.getInt(position), newIds, names));
+                records.putInt(position + 4, remap(mBuffer.getInt(position + 4), newIds, names));
+                records.putLong(position + 8, mBuffer.getLong(position + 8));
+            }
+            if (names.size() == mDictionary.size()) {
+                return false;
+            }
+            File dictionaryFile = new File(mDir, DICTIONARY_NAME);
+            File dictionaryTemp = new File(mDir, DICTIONARY_NAME + TEMP_SUFFIX);
+            LogDictionary.write(dictionaryTemp, names);
+            int sequence = mSequence + 1;
+            File segmentTemp = new File(mDir, segmentName(sequence) + TEMP_SUFFIX);
+            RandomAccessFile output = new RandomAccessFile(segmentTemp, "rw");
+            try {
+                output.setLength(SEGMENT_SIZE);
+                output.write(records.array());
+                output.getFD().sync();
+            } finally {
+                output.close();
+            }
+            // 提交点：替换字典后旧段文件不再可读
+            mDictionary.close();
+            if (!dictionaryTemp.renameTo(dictionaryFile)) {
+                dictionaryTemp.delete();
+                segmentTemp.delete();
+                mDictionary = LogDictionary.open(dictionaryFile);
+                throw new IOException("rename failed: " + dictionaryTemp);
+            }
+            mBuffer = null;
+            mFile.close();
+            mFile = null;
+            segments[0].delete();
+            File segmentFile = new File(mDir, segmentName(sequence));
+            if (!segmentTemp.renameTo(segmentFile)) {
+                throw new IOException("rename failed: " + segmentTemp);
+            }
+            mDictionary = LogDictionary.open(dictionaryFile);
+            mPersistentIds = new int[0];
+            mFile = new RandomAccessFile(segmentFile, "rw");
+            mBuffer = mFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+            mSequence = sequence;
+            mPosition = end;
+            return true;
+        } finally {
+            DIRECTORY_LOCK.unlock();
+        }
+    }
+
+    /**
+     * 旧持久化ID转换为重建后的ID
+     */
+    private int remap(int id, int[] newIds, List<String> names) {
+        if (newIds[id] < 0) {
+            newIds[id] = names.size();
+            names.add(mDictionary.getName(id));
+        }
+        return newIds[id];
+    }
+
+    /**
+     * 处理上次重建字典中断时残留的临时文件（字典未替换时回滚，已替换时完成）
+     */
+    private static void finishRebuild(File dir) {
+        File dictionaryTemp = new File(dir, DICTIONARY_NAME + TEMP_SUFFIX);
+        File[] temps = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                String name = file.getName();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX + TEMP_SUFFIX);
+            }
+        });
+        if (!dictionaryTemp.exists() && (temps == null || temps.length == 0)) {
+            return;
+        }
+        DIRECTORY_LOCK.lock();
+        try {
+            rollbackOrFinish(dir, dictionaryTemp, temps);
+        } finally {
+            DIRECTORY_LOCK.unlock();
+        }
+    }
+
+    /**
+     * 回滚（字典临时文件仍在）或完成（字典已替换）重建
+     */
+    private static void rollbackOrFinish(File dir, File dictionaryTemp, File[] temps) {
+        if (dictionaryTemp.exists()) {
+            dictionaryTemp.delete();
+            if (temps != null) {
+                for (File temp : temps) {
+                    temp.delete();
+                }
+            }
+            return;
+        }
+        for (File temp : temps) {
+            String name = temp.getName();
+            File target = new File(dir, name.substring(0, name.length() - TEMP_SUFFIX.length()));
+            int sequence = parseSequence(target);
+            // 旧段引用的是替换前的字典
+            for (File segment : listSegments(dir)) {
+                if (parseSequence(segment) < sequence) {
+                    segment.delete();
+                }
+            }
+            temp.renameTo(target);
+        }
+    }
+
+    /**
+     * 关闭日志
+     */
+    public void close() throws IOException {
+        if (mBuffer != null) {
+            mBuffer.force();
+            mBuffer = null;
+        }
+        if (mFile != null) {
+            mFile.close();
+            mFile = null;
+        }
+        mDictionary.close();
+    }
+
+    /**
+     * 获取名称字典
+     */
+    public LogDictionary getDictionary() {
+        return mDictionary;
+    }
+
+    /**
+     * 获取当前段序号
+     */
+    public int getSequence() {
+        return mSequence;
+    }
+
+    /**
+     * 获取当前段已写入的记录数
+     */
+    public int getSegmentRecordCount() {
+        return (mPosition - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    /**
+     * 获取打开时恢复出的有效记录数
+     */
+    public int getRecoveredCount() {
+        return mRecoveredCount;
+    }
+
+    /**
+     * 获取打开时丢弃的不完整记录数
+     */
+    public int getDiscardedCount() {
+        return mDiscardedCount;
+    }
+
+    /**
+     * 获取日志目录
+     */
+    public File getDir() {
+        return mDir;
+    }
+
+    /**
+     * 读取段文件中的记录（ID为持久化ID，名称见{@link LogDictionary}）
+     *
+     * @return 读取的记录数
+     */
+    public static int readSegment(File file, RecordVisitor visitor) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            int length = (int) Math.min(input.length(), SEGMENT_SIZE);
+            if (length < HEADER_SIZE) {
+                return 0;
+            }
+            MappedByteBuffer buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                return 0;
+            }
+            int sealedCount = buffer.getInt(12);
+            int count = 0;
+            int position = HEADER_SIZE;
+            while (position + RECORD_SIZE <= length && (sealedCount == 0 || count < sealedCount)) {
+                long time = buffer.getLong(position + 8);
+                if (time <= 0) {
+                    break;
+                }
+                visitor.onRecord(time, buffer.getInt(position), buffer.getInt(position + 4));
+                position += RECORD_SIZE;
+                count++;
+            }
+            return count;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * 列出目录下的段文件（按序号升序）
+     */
+    public static File[] listSegments(File dir) {
+        File[] files = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                String name = file.getName();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Integer.compare(parseSequence(a), parseSequence(b));
+            }
+        });
+        return files;
+    }
+
+    /**
+     * 段文件名
+     */
+    static String segmentName(int sequence) {
+        return String.format(Locale.US, "%s%08d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * 从文件名解析段序号
+     */
+    static int parseSequence(File file) {
+        String name = file.getName();
+        int start = name.indexOf('_') + 1;
+        int end = name.lastIndexOf('.');
+        try {
+            return Integer.parseInt(name.substring(start, end));
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 记录访问者
+     */
+    public interface RecordVisitor {
+        void onRecord(long time, int packageId, int classId);
+    }
+}
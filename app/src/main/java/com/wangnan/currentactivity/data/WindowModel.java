@@ -0,0 +1,345 @@
+package com.wangnan.currentactivity.data;
+
+import java.util.Arrays;
+
+/**
+ * @ClassName: WindowModel
+ * @Description: 可见应用窗口模型（分屏、自由窗口、多屏幕时同时有多个前台Activity，每个窗口一条记录）
+ * <p>
+ * 增量维护：窗口列表查询结果通过{@link #beginUpdate()}、{@link #update(int, int, int)}、{@link #endUpdate()}
+ * 与已有记录比较，未出现的记录被移除（查询中途失败时用{@link #abortUpdate()}结束，保留所有记录）；
+ * 只有显示屏、层级、包名、类名变化时才重新拼接显示文本。
+ * 窗口移除、Activity切换可以不查询窗口列表直接更新。只在事件处理线程使用。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public final class WindowModel {
+
+    /**
+     * 最多记录的窗口数（超出时忽略，正常情况下可见应用窗口只有几个）
+     */
+    private static final int MAX_WINDOWS = 32;
+
+    /**
+     * 窗口ID
+     */
+    private int[] mWindowIds = new int[4];
+
+    /**
+     * 显示屏ID
+     */
+    private int[] mDisplayIds = new int[4];
+
+    /**
+     * 层级（越大越靠上）
+     */
+    private int[] mLayers = new int[4];
+
+    /**
+     * 包名ID、类名ID（未知时为{@link NameTable#NO_ID}）
+     */
+    private int[] mPackageIds = new int[4];
+    private int[] mClassIds = new int[4];
+
+    /**
+     * 最近一次出现在窗口列表中的更新序号（0表示只收到过Activity切换，尚未出现在窗口列表中）
+     */
+    private int[] mGenerations = new int[4];
+
+    /**
+     * 是否已请求过读取窗口根节点（读取失败也不再重试，保证每个窗口只读取一次）
+     */
+    private boolean[] mRootRequested = new boolean[4];
+
+    /**
+     * 记录数量
+     */
+    private int mSize;
+
+    /**
+     * 当前更新序号
+     */
+    private int mGeneration;
+
+    /**
+     * 自上次生成显示文本后是否有变化
+     */
+    private boolean isChanged;
+
+    /**
+     * 本次更新是否有变化
+     */
+    private boolean isUpdateChanged;
+
+    /**
+     * 显示文本缓存（isChanged为true时失效）
+     */
+    private String mText;
+
+    /**
+     * 开始一次窗口列表更新
+     */
+    public void beginUpdate() {
+        mGeneration++;
+        isUpdateChanged = false;
+    }
+
+    /**
+     * 更新窗口列表中的一个窗口（只在{@link #beginUpdate()}与{@link #endUpdate()}之间调用）
+     *
+     * @return 包名未知且尚未请求过读取根节点（需要调用方读取窗口根节点后{@link #setPackage(int, int)}）时返回true，
+     * 每个窗口最多返回一次
+     */
+    public boolean update(int windowId, int displayId, int layer) {
+        int index = indexOf(windowId);
+        if (index < 0) {
+            index = append(windowId);
+            if (index < 0) {
+                return false;
+            }
+        }
+        if (mGenerations[index] == 0 || mDisplayIds[index] != displayId || mLayers[index] != layer) {
+            mDisplayIds[index] = displayId;
+            mLayers[index] = layer;
+            markChanged();
+        }
+        mGenerations[index] = mGeneration;
+        if (mPackageIds[index] != NameTable.NO_ID || mRootRequested[index]) {
+            return false;
+        }
+        mRootRequested[index] = true;
+        return true;
+    }
+
+    /**
+     * 结束一次窗口列表更新（移除本次未出现的窗口）
+     *
+     * @return 本次更新是否有变化
+     */
+    public boolean endUpdate() {
+        for (int i = mSize - 1; i >= 0; i--) {
+            if (mGenerations[i] != mGeneration) {
+                removeAt(i);
+            }
+        }
+        return isUpdateChanged;
+    }
+
+    /**
+     * 放弃一次窗口列表更新（查询中途失败时调用：不移除本次尚未出现的窗口，已更新的窗口保留）
+     *
+     * @return 本次更新是否有变化
+     */
+    public boolean abortUpdate() {
+        return isUpdateChanged;
+    }
+
+    /**
+     * 设置窗口的包名（新窗口尚未收到Activity切换时，由调用方从窗口根节点读取）
+     *
+     * @return 是否有变化
+     */
+    public boolean setPackage(int windowId, int packageId) {
+        int index = indexOf(windowId);
+        if (index < 0 || mPackageIds[index] == packageId) {
+            return false;
+        }
+        mPackageIds[index] = packageId;
+        mClassIds[index] = NameTable.NO_ID;
+        markChanged();
+        return true;
+    }
+
+    /**
+     * 窗口中切换到一个Activity（窗口尚未出现在窗口列表中时先记录，出现后才显示）
+     *
+     * @return 是否有变化
+     */
+    public boolean setActivity(int windowId, int packageId, int classId) {
+        int index = indexOf(windowId);
+        if (index < 0) {
+            index = append(windowId);
+            if (index < 0) {
+                return false;
+            }
+        } else if (mPackageIds[index] == packageId && mClassIds[index] == classId) {
+            return false;
+        }
+        mPackageIds[index] = packageId;
+        mClassIds[index] = classId;
+        markChanged();
+        return true;
+    }
+
+    /**
+     * 移除窗口
+     *
+     * @return 窗口是否存在
+     */
+    public boolean remove(int windowId) {
+        int index = indexOf(windowId);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * 获取显示文本：每个可见窗口一行，按显示屏、层级（从上到下）排序，如"[0] com.a/Main\n[0] com.b/Detail"
+     *
+     * @param minWindows 可见窗口少于该数量时返回null（单窗口时悬浮窗已显示当前Activity）
+     */
+    public String getText(NameTable nameTable, int minWindows) {
+        if (isChanged) {
+            isChanged = false;
+            mText = buildText(nameTable);
+        }
+        return getVisibleCount() < minWindows ? null : mText;
+    }
+
+    /**
+     * 出现在窗口列表中的窗口数
+     */
+    public int getVisibleCount() {
+        int count = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (mGenerations[i] != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 记录数量（包括尚未出现在窗口列表中的）
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 清空
+     */
+    public void clear() {
+        mSize = 0;
+        mText = null;
+        isChanged = false;
+    }
+
+    /**
+     * 拼接显示文本
+     */
+    private String buildText(NameTable nameTable) {
+        int count = 0;
+        int[] order = new int[mSize];
+        for (int i = 0; i < mSize; i++) {
+            if (mGenerations[i] != 0) {
+                // 插入排序：显示屏升序，同一显示屏内层级降序
+                int j = count++;
+                while (j > 0 && compare(order[j - 1], i) > 0) {
+                    order[j] = order[j - 1];
+                    j--;
+                }
+                order[j] = i;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int k = 0; k < count; k++) {
+            int i = order[k];
+            if (k > 0) {
+                builder.append('\n');
+            }
+            builder.append('[').append(mDisplayIds[i]).append("] ");
+            if (mPackageIds[i] == NameTable.NO_ID) {
+                builder.append('#').append(mWindowIds[i]);
+                continue;
+            }
+            builder.append(nameTable.getName(mPackageIds[i]));
+            if (mClassIds[i] != NameTable.NO_ID) {
+                String className = nameTable.getName(mClassIds[i]);
+                builder.append('/').append(className, className.lastIndexOf('.') + 1, className.length());
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 比较两条记录的显示顺序
+     */
+    private int compare(int a, int b) {
+        if (mDisplayIds[a] != mDisplayIds[b]) {
+            return mDisplayIds[a] < mDisplayIds[b] ? -1 : 1;
+        }
+        return mLayers[a] > mLayers[b] ? -1 : mLayers[a] == mLayers[b] ? 0 : 1;
+    }
+
+    /**
+     * 标记有变化
+     */
+    private void markChanged() {
+        isChanged = true;
+        isUpdateChanged = true;
+    }
+
+    /**
+     * 查找记录，不存在返回-1
+     */
+    private int indexOf(int windowId) {
+        for (int i = 0; i < mSize; i++) {
+            if (mWindowIds[i] == windowId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 追加记录（已达上限返回-1）
+     */
+    private int append(int windowId) {
+        if (mSize == MAX_WINDOWS) {
+            return -1;
+        }
+        if (mSize == mWindowIds.length) {
+            int length = mSize * 2;
+            mWindowIds = Arrays.copyOf(mWindowIds, length);
+            mDisplayIds = Arrays.copyOf(mDisplayIds, length);
+            mLayers = Arrays.copyOf(mLayers, length);
+            mPackageIds = Arrays.copyOf(mPackageIds, length);
+            mClassIds = Arrays.copyOf(mClassIds, length);
+            mGenerations = Arrays.copyOf(mGenerations, length);
+            mRootRequested = Arrays.copyOf(mRootRequested, length);
+        }
+        int index = mSize++;
+        mWindowIds[index] = windowId;
+        mDisplayIds[index] = 0;
+        mLayers[index] = 0;
+        mPackageIds[index] = NameTable.NO_ID;
+        mClassIds[index] = NameTable.NO_ID;
+        mGenerations[index] = 0;
+        mRootRequested[index] = false;
+        return index;
+    }
+
+    /**
+     * 移除记录（末尾记录移到该位置，顺序在拼接文本时重新排列）
+     */
+    private void removeAt(int index) {
+        if (mGenerations[index] != 0) {
+            markChanged();
+        }
+        int last = --mSize;
+        mWindowIds[index] = mWindowIds[last];
+        mDisplayIds[index] = mDisplayIds[last];
+        mLayers[index] = mLayers[last];
+        mPackageIds[index] = mPackageIds[last];
+        mClassIds[index] = mClassIds[last];
+        mGenerations[index] = mGenerations[last];
+        mRootRequested[index] = mRootRequested[last];
+    }
+}
@@ -0,0 +1,130 @@
+package com.wangnan.currentactivity.provider;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.UriMatcher;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.wangnan.currentactivity.data.TransitionHistory;
+import com.wangnan.currentactivity.service.ActivityMonitor;
+
+/**
+ * @ClassName: ActivityStateProvider
+ * @Description: 只读的当前Activity及切换历史查询接口（需要签名级权限{@link #PERMISSION_READ}）
+ * <p>
+ * content://com.wangnan.currentactivity.state/current：当前（最近一次切换的）窗口，0或1行；
+ * content://com.wangnan.currentactivity.state/history?offset=0&amp;limit=100&amp;before=序号：切换历史，最新的在前。
+ * 翻页时把上一页最后一行的_id作为before传入，不受期间新切换的影响。
+ * 直接读取辅助服务进程内存中的数据（{@link ActivityMonitor}），游标按需分批复制，不复制整个历史。
+ * 列：_id（记录序号）、time（毫秒时间戳）、package、class。忽略projection、selection、sortOrder。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class ActivityStateProvider extends ContentProvider {
+
+    /**
+     * 授权名
+     */
+    public static final String AUTHORITY = "com.wangnan.currentactivity.state";
+
+    /**
+     * 读取权限（签名级，与清单文件中的声明一致）
+     */
+    public static final String PERMISSION_READ = "com.wangnan.currentactivity.permission.READ_STATE";
+
+    /**
+     * 查询参数：跳过最近的条数、最多返回的条数、只返回序号小于该值的记录
+     */
+    public static final String PARAM_OFFSET = "offset";
+    public static final String PARAM_LIMIT = "limit";
+    public static final String PARAM_BEFORE = "before";
+
+    /**
+     * 默认每页条数
+     */
+    private static final int DEFAULT_LIMIT = 100;
+
+    /**
+     * 路径匹配码
+     */
+    private static final int MATCH_CURRENT = 1;
+    private static final int MATCH_HISTORY = 2;
+
+    private static final UriMatcher URI_MATCHER = new UriMatcher(UriMatcher.NO_MATCH);
+
+    static {
+        URI_MATCHER.addURI(AUTHORITY, "current", MATCH_CURRENT);
+        URI_MATCHER.addURI(AUTHORITY, "history", MATCH_HISTORY);
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        ActivityMonitor monitor = ActivityMonitor.getInstance();
+        TransitionHistory history = monitor.getHistory();
+        long total = history.getTotalCount();
+        switch (URI_MATCHER.match(uri)) {
+            case MATCH_CURRENT:
+                return new HistoryCursor(history, monitor.getNameTable(), total - 1, total > 0 ? 1 : 0);
+            case MATCH_HISTORY:
+                long offset = Math.max(0, parseLong(uri, PARAM_OFFSET, 0));
+                long limit = Math.min(history.capacity(), Math.max(0, parseLong(uri, PARAM_LIMIT, DEFAULT_LIMIT)));
+                long before = Math.min(total, parseLong(uri, PARAM_BEFORE, total));
+                long newest = before - 1 - offset;
+                // 可用的最早序号之前的记录已被覆盖
+                long oldest = Math.max(0, total - history.size());
+                int count = (int) Math.max(0, Math.min(limit, newest - oldest + 1));
+                return new HistoryCursor(history, monitor.getNameTable(), newest, count);
+            default:
+                throw new IllegalArgumentException("Unknown uri: " + uri);
+        }
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        switch (URI_MATCHER.match(uri)) {
+            case MATCH_CURRENT:
+                return "vnd.android.cursor.item/vnd." + AUTHORITY + ".transition";
+            case MATCH_HISTORY:
+                return "vnd.android.cursor.dir/vnd." + AUTHORITY + ".transition";
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException("Read-only provider");
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Read-only provider");
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Read-only provider");
+    }
+
+    /**
+     * 读取整数查询参数（缺省或格式错误时返回默认值）
+     */
+    private static long parseLong(Uri uri, String name, long defaultValue) {
+        String value = uri.getQueryParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.wangnan.currentactivity.provider;
+
+import android.database.AbstractCursor;
+
+import com.wangnan.currentactivity.data.NameTable;
+import com.wangnan.currentactivity.data.TransitionHistory;
+
+/**
+ * @ClassName: HistoryCursor
+ * @Description: 切换历史分页游标（直接读取内存中的切换历史，按窗口分批复制，不复制整页）
+ * <p>
+ * 第i行为序号(newestSequence - i)的记录。移动到当前窗口之外的行时才从{@link TransitionHistory}复制下一批，
+ * 每批最多{@link #WINDOW_ROWS}行，只复制基本类型数组；名称在读取列时通过ID查表，不创建字符串。
+ * 查询期间被覆盖的旧记录各列为null/0。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class HistoryCursor extends AbstractCursor {
+
+    /**
+     * 列名
+     */
+    public static final String COLUMN_ID = "_id";
+    public static final String COLUMN_TIME = "time";
+    public static final String COLUMN_PACKAGE = "package";
+    public static final String COLUMN_CLASS = "class";
+
+    /**
+     * 列名（顺序即列下标）
+     */
+    static final String[] COLUMNS = {COLUMN_ID, COLUMN_TIME, COLUMN_PACKAGE, COLUMN_CLASS};
+
+    /**
+     * 列下标
+     */
+    private static final int INDEX_ID = 0;
+    private static final int INDEX_TIME = 1;
+    private static final int INDEX_PACKAGE = 2;
+    private static final int INDEX_CLASS = 3;
+
+    /**
+     * 每批复制的行数
+     */
+    private static final int WINDOW_ROWS = 256;
+
+    /**
+     * 切换历史
+     */
+    private final TransitionHistory mHistory;
+
+    /**
+     * 名称驻留表
+     */
+    private final NameTable mNameTable;
+
+    /**
+     * 第0行的序号
+     */
+    private final long mNewestSequence;
+
+    /**
+     * 行数
+     */
+    private final int mCount;
+
+    /**
+     * 当前窗口：起始行（尚未复制时为-1）、有效行数（其余行已被覆盖）
+     */
+    private int mWindowStart = -1;
+    private int mWindowCount;
+
+    /**
+     * 当前窗口数据
+     */
+    private final long[] mTimes;
+    private final int[] mPackageIds;
+    private final int[] mClassIds;
+
+    /**
+     * @param newestSequence 第0行的序号
+     * @param count          行数
+     */
+    public HistoryCursor(TransitionHistory history, NameTable nameTable, long newestSequence, int count) {
+        mHistory = history;
+        mNameTable = nameTable;
+        mNewestSequence = newestSequence;
+        mCount = Math.max(0, count);
+        int windowRows = Math.min(WINDOW_ROWS, Math.max(1, mCount));
+        mTimes = new long[windowRows];
+        mPackageIds = new int[windowRows];
+        mClassIds = new int[windowRows];
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return COLUMNS;
+    }
+
+    @Override
+    public boolean onMove(int oldPosition, int newPosition) {
+        if (mWindowStart < 0 || newPosition < mWindowStart || newPosition >= mWindowStart + mTimes.length) {
+            // 移出当前窗口：从新位置开始复制下一批
+            mWindowStart = newPosition;
+            mWindowCount = mHistory.copyBefore(mNewestSequence - newPosition,
+                    Math.min(mTimes.length, mCount - newPosition), mTimes, mPackageIds, mClassIds);
+        }
+        return true;
+    }
+
+    /**
+     * 当前行在窗口中的位置（记录已被覆盖时返回-1）
+     */
+    private int windowIndex() {
+        int index = getPosition() - mWindowStart;
+        return index < mWindowCount ? index : -1;
+    }
+
+    @Override
+    public String getString(int column) {
+        int index = windowIndex();
+        switch (column) {
+            case INDEX_PACKAGE:
+                return index < 0 ? null : mNameTable.getName(mPackageIds[index]);
+            case INDEX_CLASS:
+                return index < 0 ? null : mNameTable.getName(mClassIds[index]);
+            default:
+                return isNull(column) ? null : Long.toString(getLong(column));
+        }
+    }
+
+    @Override
+    public long getLong(int column) {
+        int index = windowIndex();
+        switch (column) {
+            case INDEX_ID:
+                return mNewestSequence - getPosition();
+            case INDEX_TIME:
+                return index < 0 ? 0 : mTimes[index];
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public int getType(int column) {
+        return column == INDEX_PACKAGE || column == INDEX_CLASS ? FIELD_TYPE_STRING : FIELD_TYPE_INTEGER;
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return column != INDEX_ID && windowIndex() < 0;
+    }
+}
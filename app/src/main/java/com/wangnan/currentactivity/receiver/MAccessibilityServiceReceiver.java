@@ -4,10 +4,14 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
+import android.os.PowerManager;
 
+import com.wangnan.currentactivity.service.ActivityMonitor;
 import com.wangnan.currentactivity.service.MAccessibilityService;
 import com.wangnan.currentactivity.ui.window.WindowViewContainer;
 
+import java.util.TimeZone;
+
 /**
  * @ClassName: MAccessibilityServiceReceiver
  * @Description: 辅助服务广播接收器
@@ -27,6 +31,16 @@ public class MAccessibilityServiceReceiver extends BroadcastReceiver {
      */
     public static final String CLOSE_ACTION = "android.intent.action.CLOSE";
 
+    /**
+     * 导出视图层级Action名称
+     */
+    public static final String DUMP_ACTION = "android.intent.action.DUMP_HIERARCHY";
+
+    /**
+     * 发送导出视图层级广播所需的权限（签名级）
+     */
+    public static final String DUMP_PERMISSION = "com.wangnan.currentactivity.permission.DUMP_HIERARCHY";
+
     @Override
     public void onReceive(Context context, Intent intent) {
         // 只处理"辅助服务"Intent消息
@@ -47,6 +61,32 @@ public class MAccessibilityServiceReceiver extends BroadcastReceiver {
                     service.disableSelf();
                 }
                 break;
+            case DUMP_ACTION: // 导出当前屏幕的完整视图层级
+                ((MAccessibilityService) context).dumpHierarchy();
+                break;
+            case Intent.ACTION_SCREEN_OFF: // 灭屏，暂停事件处理
+                ((MAccessibilityService) context).setSuspended(MAccessibilityService.SUSPEND_SCREEN_OFF, true);
+                break;
+            case Intent.ACTION_SCREEN_ON: // 亮屏，恢复事件处理
+                ((MAccessibilityService) context).setSuspended(MAccessibilityService.SUSPEND_SCREEN_OFF, false);
+                break;
+            case PowerManager.ACTION_DEVICE_IDLE_MODE_CHANGED: // 设备进入/退出空闲（Doze）模式
+                PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+                if (powerManager != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                    ((MAccessibilityService) context).setSuspended(MAccessibilityService.SUSPEND_IDLE, powerManager.isDeviceIdleMode());
+                }
+                break;
+            case Intent.ACTION_TIMEZONE_CHANGED: // 时区变化，停留时长按新时区划分小时/天
+                ActivityMonitor.getInstance().getDwellStats().setTimeZone(TimeZone.getDefault());
+                break;
+            case Intent.ACTION_PACKAGE_ADDED: // 应用安装/更新/卸载，清除窗口类名分类缓存
+            case Intent.ACTION_PACKAGE_REPLACED:
+            case Intent.ACTION_PACKAGE_REMOVED:
+            case Intent.ACTION_PACKAGE_CHANGED:
+                if (intent.getData() != null) {
+                    ((MAccessibilityService) context).onPackageChanged(intent.getData().getSchemeSpecificPart());
+                }
+                break;
             default:
                 break;
         }
@@ -0,0 +1,130 @@
+package com.wangnan.currentactivity.service;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import com.wangnan.currentactivity.data.ActivityEvent;
+import com.wangnan.currentactivity.data.LongIntLruCache;
+import com.wangnan.currentactivity.data.LongObjectMap;
+import com.wangnan.currentactivity.data.NameTable;
+
+/**
+ * @ClassName: ActivityClassifier
+ * @Description: 窗口类名分类器（判断窗口状态变化事件的类名是否为真正的Activity）
+ * <p>
+ * 对话框、弹窗、Toast以及普通View（如android.widget.FrameLayout）也会触发窗口状态变化事件。
+ * 每个(包名, 类名)组合只通过PackageManager.getActivityInfo查询一次，肯定/否定结果都缓存在定容LRU中，
+ * 应用安装/更新/卸载时按包名失效。只在事件处理线程调用。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class ActivityClassifier {
+
+    /**
+     * 缓存条目数
+     */
+    private static final int CACHE_SIZE = 1024;
+
+    /**
+     * 查询结果：不是Activity / 是Activity / 未缓存
+     */
+    private static final int RESULT_NOT_ACTIVITY = 0;
+    private static final int RESULT_ACTIVITY = 1;
+    private static final int RESULT_UNKNOWN = -1;
+
+    /**
+     * 包管理器
+     */
+    private final PackageManager mPackageManager;
+
+    /**
+     * 名称驻留表
+     */
+    private final NameTable mNameTable;
+
+    /**
+     * 查询结果缓存（键为{@link ActivityEvent#pairKey(int, int)}）
+     */
+    private final LongIntLruCache mCache = new LongIntLruCache(CACHE_SIZE);
+
+    /**
+     * 统计：PackageManager查询次数
+     */
+    private volatile long mLookupCount;
+
+    public ActivityClassifier(Context context, NameTable nameTable) {
+        mPackageManager = context.getApplicationContext().getPackageManager();
+        mNameTable = nameTable;
+    }
+
+    /**
+     * 判断(包名, 类名)是否为Activity（未缓存时查询PackageManager）
+     */
+    public boolean isActivity(int packageId, int classId) {
+        long key = ActivityEvent.pairKey(packageId, classId);
+        int result = mCache.get(key, RESULT_UNKNOWN);
+        if (result == RESULT_UNKNOWN) {
+            result = lookup(mNameTable.getName(packageId), mNameTable.getName(classId));
+            if (result == RESULT_UNKNOWN) {
+                return false;
+            }
+            mCache.put(key, result);
+        }
+        return result == RESULT_ACTIVITY;
+    }
+
+    /**
+     * 查询PackageManager（一次Binder调用）
+     */
+    private int lookup(String packageName, String className) {
+        if (packageName == null || className == null) {
+            return RESULT_NOT_ACTIVITY;
+        }
+        mLookupCount++;
+        try {
+            mPackageManager.getActivityInfo(new ComponentName(packageName, className), 0);
+            return RESULT_ACTIVITY;
+        } catch (PackageManager.NameNotFoundException e) {
+            return RESULT_NOT_ACTIVITY;
+        } catch (RuntimeException e) {
+            // Binder异常等，本次按普通窗口处理，不缓存结果
+            Log.d("ERROR", Log.getStackTraceString(e));
+            return RESULT_UNKNOWN;
+        }
+    }
+
+    /**
+     * 应用安装/更新/卸载后，清除该包名的缓存结果
+     *
+     * @return 清除的条目数
+     */
+    public int invalidatePackage(String packageName) {
+        final int packageId = mNameTable.find(packageName);
+        if (packageId == NameTable.NO_ID) {
+            return 0;
+        }
+        return mCache.removeIf(new LongObjectMap.KeyPredicate() {
+            @Override
+            public boolean test(long key) {
+                return (int) (key >>> 32) == packageId;
+            }
+        });
+    }
+
+    /**
+     * 获取PackageManager查询次数
+     */
+    public long getLookupCount() {
+        return mLookupCount;
+    }
+
+    /**
+     * 获取缓存命中次数
+     */
+    public long getHitCount() {
+        return mCache.getHitCount();
+    }
+}
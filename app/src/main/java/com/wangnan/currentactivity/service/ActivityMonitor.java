@@ -0,0 +1,286 @@
+package com.wangnan.currentactivity.service;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.wangnan.currentactivity.data.ActivityEvent;
+import com.wangnan.currentactivity.data.DisplayTextCache;
+import com.wangnan.currentactivity.data.DwellStats;
+import com.wangnan.currentactivity.data.LaunchStats;
+import com.wangnan.currentactivity.data.LogCompactor;
+import com.wangnan.currentactivity.data.LogDictionary;
+import com.wangnan.currentactivity.data.NameTable;
+import com.wangnan.currentactivity.data.ScreenTable;
+import com.wangnan.currentactivity.data.TransitionGraph;
+import com.wangnan.currentactivity.data.TransitionHistory;
+import com.wangnan.currentactivity.data.TransitionLog;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * @ClassName: ActivityMonitor
+ * @Description: 窗口变化数据中心（名称驻留表、显示文本缓存、切换历史、切换日志、切换图、停留时长及启动耗时统计），进程内唯一，辅助服务写入、界面读取
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class ActivityMonitor {
+
+    /***
+     * 数据中心（引用变量）
+     */
+    private static ActivityMonitor mInstance;
+
+    /**
+     * 私有构造器
+     */
+    private ActivityMonitor() {
+    }
+
+    /**
+     * 获取数据中心
+     */
+    public static synchronized ActivityMonitor getInstance() {
+        if (mInstance == null) {
+            mInstance = new ActivityMonitor();
+        }
+        return mInstance;
+    }
+
+    /*******************************************************************************************/
+
+    /**
+     * 名称驻留表（包名/类名 -> int ID）
+     */
+    private final NameTable mNameTable = new NameTable();
+
+    /**
+     * 显示文本缓存
+     */
+    private final DisplayTextCache mTextCache = new DisplayTextCache(mNameTable);
+
+    /**
+     * 切换历史
+     */
+    private final TransitionHistory mHistory = new TransitionHistory();
+
+    /**
+     * 界面驻留表（(包名ID, 类名ID) -> 界面ID）
+     */
+    private final ScreenTable mScreenTable = new ScreenTable();
+
+    /**
+     * 前台停留时长统计
+     */
+    private final DwellStats mDwellStats = new DwellStats(mScreenTable);
+
+    /**
+     * 界面切换图
+     */
+    private final TransitionGraph mTransitionGraph = new TransitionGraph();
+
+    /**
+     * 应用启动耗时统计
+     */
+    private final LaunchStats mLaunchStats = new LaunchStats();
+
+    /**
+     * 最近一次记录的事件（用于判断是否发生切换）
+     */
+    private final ActivityEvent mLastEvent = new ActivityEvent();
+
+    /**
+     * 切换日志（持久化，未打开或写入失败时为null）
+     */
+    private TransitionLog mLog;
+
+    /**
+     * 是否需要重建切换日志字典（压缩任务完成后设置，下次刷盘时在事件处理线程执行）
+     */
+    private volatile boolean isDictionaryRebuildRequested;
+
+    /**
+     * 处理一次窗口状态变化（包名/类名与上一次不同时记为一次切换）
+     *
+     * @return 是否发生切换
+     */
+    public boolean onActivityEvent(ActivityEvent event) {
+        if (event.isSameScreen(mLastEvent)) {
+            return false;
+        }
+        mLastEvent.set(event);
+        long time = toWallTime(event.getEventTime());
+        mHistory.add(event.getPackageId(), event.getClassId(), time);
+        if (mLog != null) {
+            try {
+                mLog.append(mNameTable, event.getPackageId(), event.getClassId(), time);
+            } catch (IOException e) {
+                // 写入失败（如磁盘已满）时停止持久化，不影响悬浮窗显示
+                Log.d("ERROR", Log.getStackTraceString(e));
+                closeLog();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 打开切换日志（恢复日志尾部；进程重启后内存历史为空时，用最新段的记录恢复内存历史）
+     *
+     * @param dir 日志目录
+     */
+    public void openLog(File dir) {
+        if (mLog != null) {
+            return;
+        }
+        try {
+            mLog = TransitionLog.open(dir);
+            Log.d("TransitionLog", "recovered=" + mLog.getRecoveredCount() + ", discarded=" + mLog.getDiscardedCount());
+            if (mHistory.size() == 0) {
+                restoreHistory(dir);
+            }
+        } catch (IOException e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+            mLog = null;
+        }
+    }
+
+    /**
+     * 恢复内存历史（未压缩的段文件记录不足内存历史容量时，先从最新的压缩文件往前补足）
+     */
+    private void restoreHistory(File dir) throws IOException {
+        File[] segments = TransitionLog.listSegments(dir);
+        File[] compacted = LogCompactor.listCompacted(dir);
+        // 压缩文件按记录数从新往旧选取，按时间顺序添加，内存历史只保留最新的记录
+        int first = compacted.length;
+        int count = 0;
+        while (first > 0 && count < mHistory.capacity()) {
+            first--;
+            count += LogCompactor.readRecordCount(compacted[first]);
+        }
+        for (int i = first; i < compacted.length; i++) {
+            LogCompactor.readCompacted(compacted[i], new LogCompactor.NamedRecordVisitor() {
+                @Override
+                public void onRecord(long time, String packageName, String className) {
+                    restoreRecord(mNameTable.intern(packageName), mNameTable.intern(className), time);
+                }
+            });
+        }
+        final LogDictionary dictionary = mLog.getDictionary();
+        for (File segment : segments) {
+            TransitionLog.readSegment(segment, new TransitionLog.RecordVisitor() {
+                @Override
+                public void onRecord(long time, int packageId, int classId) {
+                    restoreRecord(mNameTable.intern(dictionary.getName(packageId)),
+                            mNameTable.intern(dictionary.getName(classId)), time);
+                }
+            });
+        }
+    }
+
+    /**
+     * 恢复一条历史记录
+     */
+    private void restoreRecord(int packageId, int classId, long time) {
+        mHistory.add(packageId, classId, time);
+        mLastEvent.set(packageId, classId, 0);
+    }
+
+    /**
+     * 将切换日志刷到磁盘（事件处理线程在切换后延迟调用及暂停时调用）
+     */
+    public void flushLog() {
+        if (mLog == null) {
+            return;
+        }
+        mLog.flush();
+        if (isDictionaryRebuildRequested) {
+            isDictionaryRebuildRequested = false;
+            try {
+                boolean rebuilt = mLog.rebuildDictionary();
+                Log.d("TransitionLog", "rebuild dictionary: " + rebuilt + ", size=" + mLog.getDictionary().size());
+            } catch (IOException e) {
+                Log.d("ERROR", Log.getStackTraceString(e));
+                closeLog();
+            }
+        }
+    }
+
+    /**
+     * 请求重建切换日志字典（压缩任务完成后调用，任意线程）
+     */
+    public void requestDictionaryRebuild() {
+        isDictionaryRebuildRequested = true;
+    }
+
+    /**
+     * 关闭切换日志
+     */
+    public void closeLog() {
+        if (mLog == null) {
+            return;
+        }
+        try {
+            mLog.close();
+        } catch (IOException e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+        }
+        mLog = null;
+    }
+
+    /**
+     * 将事件时间（uptimeMillis时间基准）换算为System.currentTimeMillis()时间基准
+     */
+    public static long toWallTime(long uptimeMillis) {
+        return System.currentTimeMillis() - (SystemClock.uptimeMillis() - uptimeMillis);
+    }
+
+    /**
+     * 获取名称驻留表
+     */
+    public NameTable getNameTable() {
+        return mNameTable;
+    }
+
+    /**
+     * 获取显示文本缓存
+     */
+    public DisplayTextCache getTextCache() {
+        return mTextCache;
+    }
+
+    /**
+     * 获取切换历史
+     */
+    public TransitionHistory getHistory() {
+        return mHistory;
+    }
+
+    /**
+     * 获取界面驻留表
+     */
+    public ScreenTable getScreenTable() {
+        return mScreenTable;
+    }
+
+    /**
+     * 获取前台停留时长统计
+     */
+    public DwellStats getDwellStats() {
+        return mDwellStats;
+    }
+
+    /**
+     * 获取界面切换图
+     */
+    public TransitionGraph getTransitionGraph() {
+        return mTransitionGraph;
+    }
+
+    /**
+     * 获取应用启动耗时统计
+     */
+    public LaunchStats getLaunchStats() {
+        return mLaunchStats;
+    }
+}
@@ -0,0 +1,330 @@
+package com.wangnan.currentactivity.service;
+
+import android.net.LocalServerSocket;
+import android.net.LocalSocket;
+import android.os.Process;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import com.wangnan.currentactivity.data.FrameBuffer;
+import com.wangnan.currentactivity.data.StreamFrame;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @ClassName: ActivityStreamServer
+ * @Description: 本地切换推送服务（抽象命名空间LocalServerSocket，可通过adb forward tcp:7100 localabstract:currentactivity转发）
+ * <p>
+ * 客户端连接后发送一个命令字节：'S'订阅（先推送当前Activity，之后推送每次切换），'C'查询当前Activity（回复一帧后关闭）。
+ * 帧格式见{@link StreamFrame}。每个客户端一个发送线程和一个有界缓冲区（{@link FrameBuffer}），
+ * 读取过慢的客户端只会丢弃自己的旧帧，不会阻塞事件处理线程。只接受shell、root及本应用的连接。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class ActivityStreamServer {
+
+    /**
+     * 抽象命名空间中的套接字名称
+     */
+    public static final String SOCKET_NAME = "currentactivity";
+
+    /**
+     * 命令：订阅
+     */
+    private static final int COMMAND_SUBSCRIBE = 'S';
+
+    /**
+     * 命令：查询当前Activity
+     */
+    private static final int COMMAND_CURRENT = 'C';
+
+    /**
+     * 最大客户端数
+     */
+    private static final int MAX_CLIENTS = 8;
+
+    /**
+     * 每个客户端的缓冲帧数
+     */
+    private static final int CLIENT_BUFFER_FRAMES = 64;
+
+    /**
+     * 等待命令字节的超时（毫秒）
+     */
+    private static final int COMMAND_TIMEOUT_MS = 5000;
+
+    /**
+     * shell用户ID（adb）
+     */
+    private static final int SHELL_UID = 2000;
+
+    /**
+     * 已连接的客户端
+     */
+    private final CopyOnWriteArrayList<Client> mClients = new CopyOnWriteArrayList<>();
+
+    /**
+     * 服务端套接字（未启动时为null）
+     */
+    private LocalServerSocket mServerSocket;
+
+    /**
+     * 接受连接线程
+     */
+    private Thread mAcceptThread;
+
+    /**
+     * 当前Activity（事件处理线程写入，查询时读取，受mCurrentLock保护；有客户端时同时保存已编码的帧）
+     */
+    private final Object mCurrentLock = new Object();
+    private int mCurrentType;
+    private long mCurrentTime;
+    private String mCurrentPackage;
+    private String mCurrentClass;
+    private byte[] mCurrentFrame;
+
+    /**
+     * 统计：连接数、拒绝的连接数、推送的切换数
+     */
+    private volatile long mAcceptedCount;
+    private volatile long mRejectedCount;
+    private volatile long mPublishedCount;
+
+    /**
+     * 启动（绑定套接字并开始接受连接）
+     */
+    public synchronized void start() throws IOException {
+        if (mServerSocket != null) {
+            return;
+        }
+        final LocalServerSocket serverSocket = new LocalServerSocket(SOCKET_NAME);
+        mServerSocket = serverSocket;
+        mAcceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop(serverSocket);
+            }
+        }, "ActivityStream-accept");
+        mAcceptThread.start();
+    }
+
+    /**
+     * 停止（关闭套接字及所有客户端）
+     */
+    public synchronized void stop() {
+        if (mServerSocket == null) {
+            return;
+        }
+        try {
+            // close()不会唤醒阻塞在accept()的线程，先shutdown
+            Os.shutdown(mServerSocket.getFileDescriptor(), OsConstants.SHUT_RDWR);
+        } catch (ErrnoException e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+        }
+        try {
+            mServerSocket.close();
+        } catch (IOException e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+        }
+        mServerSocket = null;
+        mAcceptThread.interrupt();
+        mAcceptThread = null;
+        for (Client client : mClients) {
+            client.close();
+        }
+        mClients.clear();
+    }
+
+    /**
+     * 推送一次切换（事件处理线程调用；没有客户端时只记录当前Activity，不编码）
+     *
+     * @param type {@link StreamFrame#TYPE_ACTIVITY}或{@link StreamFrame#TYPE_WINDOW}
+     */
+    public void publish(int type, long time, String packageName, String className) {
+        byte[] frame = mClients.isEmpty() ? null : StreamFrame.encode(type, time, packageName, className);
+        synchronized (mCurrentLock) {
+            mCurrentType = type;
+            mCurrentTime = time;
+            mCurrentPackage = packageName;
+            mCurrentClass = className;
+            mCurrentFrame = frame;
+        }
+        if (frame == null) {
+            return;
+        }
+        mPublishedCount++;
+        for (Client client : mClients) {
+            if (client.isSubscribed) {
+                client.buffer.offer(frame);
+            }
+        }
+    }
+
+    /**
+     * 获取当前Activity帧（没有客户端时记录的切换在这里编码）
+     */
+    private byte[] getCurrentFrame() {
+        synchronized (mCurrentLock) {
+            if (mCurrentFrame == null) {
+                mCurrentFrame = mCurrentPackage == null
+                        ? StreamFrame.encodeNone(System.currentTimeMillis())
+                        : StreamFrame.encode(mCurrentType, mCurrentTime, mCurrentPackage, mCurrentClass);
+            }
+            return mCurrentFrame;
+        }
+    }
+
+    /**
+     * 统计信息（dumpsys）
+     */
+    public String getStats() {
+        StringBuilder builder = new StringBuilder("clients=").append(mClients.size())
+                .append(" accepted=").append(mAcceptedCount)
+                .append(" rejected=").append(mRejectedCount)
+                .append(" published=").append(mPublishedCount);
+        for (Client client : mClients) {
+            builder.append("\n  uid=").append(client.uid)
+                    .append(" sent=").append(client.sentCount)
+                    .append(" dropped=").append(client.buffer.getDroppedCount())
+                    .append(" queued=").append(client.buffer.size());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 接受连接（接受线程）
+     */
+    private void acceptLoop(LocalServerSocket serverSocket) {
+        while (!Thread.currentThread().isInterrupted()) {
+            LocalSocket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                // 停止时shutdown导致accept失败
+                break;
+            }
+            int uid = -1;
+            try {
+                uid = socket.getPeerCredentials().getUid();
+            } catch (IOException e) {
+                Log.d("ERROR", Log.getStackTraceString(e));
+            }
+            if (!isAllowed(uid) || mClients.size() >= MAX_CLIENTS) {
+                mRejectedCount++;
+                closeQuietly(socket);
+                continue;
+            }
+            mAcceptedCount++;
+            final Client client = new Client(socket, uid);
+            mClients.add(client);
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    client.run();
+                    mClients.remove(client);
+                }
+            }, "ActivityStream-" + uid).start();
+        }
+    }
+
+    /**
+     * 是否允许该用户连接（shell、root及本应用）
+     */
+    private static boolean isAllowed(int uid) {
+        return uid == SHELL_UID || uid == Process.ROOT_UID || uid == Process.myUid();
+    }
+
+    private static void closeQuietly(LocalSocket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+
+    /**
+     * 客户端（发送线程）
+     */
+    private final class Client {
+
+        final LocalSocket socket;
+        final int uid;
+        final FrameBuffer buffer = new FrameBuffer(CLIENT_BUFFER_FRAMES);
+
+        /**
+         * 是否已订阅（收到'S'命令后才放入切换帧）
+         */
+        volatile boolean isSubscribed;
+
+        /**
+         * 已发送的帧数
+         */
+        volatile long sentCount;
+
+        Client(LocalSocket socket, int uid) {
+            this.socket = socket;
+            this.uid = uid;
+        }
+
+        void run() {
+            try {
+                socket.setSoTimeout(COMMAND_TIMEOUT_MS);
+                InputStream in = socket.getInputStream();
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+                int command = in.read();
+                if (command == COMMAND_SUBSCRIBE) {
+                    // 先订阅再读取当前Activity，期间的切换会进入缓冲区，不会遗漏
+                    isSubscribed = true;
+                    socket.setSoTimeout(0);
+                    out.write(getCurrentFrame());
+                    out.flush();
+                    sentCount++;
+                    stream(out);
+                } else if (command == COMMAND_CURRENT) {
+                    out.write(getCurrentFrame());
+                    out.flush();
+                    sentCount++;
+                }
+            } catch (IOException e) {
+                // 客户端断开
+                Log.d("ActivityStreamServer", "client " + uid + " closed: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * 推送缓冲区中的帧（每批只flush一次）
+         */
+        private void stream(OutputStream out) throws IOException, InterruptedException {
+            byte[][] frames = new byte[buffer.capacity()][];
+            int count;
+            while ((count = buffer.drainTo(frames)) >= 0) {
+                long dropped = buffer.takeUnreportedDropped();
+                if (dropped > 0) {
+                    out.write(StreamFrame.encodeDropped(System.currentTimeMillis(), dropped));
+                }
+                for (int i = 0; i < count; i++) {
+                    out.write(frames[i]);
+                    frames[i] = null;
+                }
+                out.flush();
+                sentCount += count;
+            }
+        }
+
+        void close() {
+            buffer.close();
+            closeQuietly(socket);
+        }
+    }
+}
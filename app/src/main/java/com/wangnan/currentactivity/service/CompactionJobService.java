@@ -0,0 +1,96 @@
+package com.wangnan.currentactivity.service;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import com.wangnan.currentactivity.data.LogCompactor;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName: CompactionJobService
+ * @Description: 切换日志压缩任务（仅在设备空闲且充电时执行）
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class CompactionJobService extends JobService {
+
+    /**
+     * 任务ID
+     */
+    private static final int JOB_ID = 0x2000;
+
+    /**
+     * 执行周期
+     */
+    private static final long PERIOD_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * 正在执行的压缩器
+     */
+    private volatile LogCompactor mCompactor;
+
+    /**
+     * 安排周期性压缩任务（已安排时不重复安排）
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) {
+            return;
+        }
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, CompactionJobService.class))
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setPeriodic(PERIOD_MILLIS)
+                .build();
+        scheduler.schedule(job);
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        final File dir = new File(getFilesDir(), MAccessibilityService.LOG_DIR_NAME);
+        if (!dir.exists()) {
+            return false;
+        }
+        final long maxBytes = ServiceFeatures.getRetentionBytes(this);
+        final long maxAgeMillis = ServiceFeatures.getRetentionMillis(this);
+        mCompactor = new LogCompactor(dir);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    LogCompactor.Result result = mCompactor.run(maxBytes, maxAgeMillis, System.currentTimeMillis());
+                    Log.d("CompactionJobService", result.toString());
+                    // 已封存的段都已压缩为自带字典的文件，下次刷盘时重建全局字典
+                    ActivityMonitor.getInstance().requestDictionaryRebuild();
+                } catch (Exception e) {
+                    Log.d("ERROR", Log.getStackTraceString(e));
+                }
+                jobFinished(params, false);
+            }
+        }, "LogCompactor").start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // 设备退出空闲或断开充电，停止压缩，下个周期继续
+        LogCompactor compactor = mCompactor;
+        if (compactor != null) {
+            compactor.cancel();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,232 @@
+package com.wangnan.currentactivity.service;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
+import android.view.Choreographer;
+
+import com.wangnan.currentactivity.data.ActivityEvent;
+import com.wangnan.currentactivity.data.NameTable;
+import com.wangnan.currentactivity.ui.window.WindowViewContainer;
+import com.wangnan.currentactivity.util.NotificationUpdater;
+
+/**
+ * @ClassName: EventCoalescer
+ * @Description: 事件合并器（同一帧内的多次窗口变化只保留最后一次，按垂直同步信号刷新悬浮窗）
+ * <p>
+ * 由事件处理线程提交最终显示状态，在主线程按帧刷新。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class EventCoalescer implements Choreographer.FrameCallback {
+
+    /**
+     * 窗口视图容器
+     */
+    private final WindowViewContainer mWindowViewContainer;
+
+    /**
+     * 名称驻留表（根据ID获取包名）
+     */
+    private final NameTable mNameTable;
+
+    /**
+     * 主线程Handler（把帧回调注册到主线程的Choreographer）
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * 待刷新的事件及显示文本（当前帧内最后一次事件，受this保护）
+     */
+    private final ActivityEvent mPending = new ActivityEvent();
+    private String mPendingText;
+
+    /**
+     * 是否已安排下一帧回调（受this保护）
+     */
+    private boolean isScheduled;
+
+    /**
+     * 本帧要刷新的事件及显示文本（仅主线程访问）
+     */
+    private final ActivityEvent mFrame = new ActivityEvent();
+    private String mFrameText;
+
+    /**
+     * 悬浮窗当前显示的事件及显示文本（仅主线程访问）
+     */
+    private final ActivityEvent mShown = new ActivityEvent();
+    private String mShownText;
+
+    /**
+     * 悬浮窗当前显示的包名ID（供其它线程读取）
+     */
+    private volatile int mShownPackageId = NameTable.NO_ID;
+
+    /**
+     * 性能指标（未开启时为null，仅主线程访问）
+     */
+    private PipelineMetrics mMetrics;
+
+    /**
+     * 通知栏当前Activity更新器（未开启时为null，仅主线程访问）
+     */
+    private NotificationUpdater mNotificationUpdater;
+
+    /**
+     * 统计：收到的事件数、被同帧合并的事件数、与当前显示重复而丢弃的次数、实际刷新次数
+     */
+    private volatile long mReceivedCount;
+    private volatile long mMergedCount;
+    private volatile long mDuplicateCount;
+    private volatile long mRenderedCount;
+
+    /**
+     * 在主线程注册帧回调
+     */
+    private final Runnable mScheduleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(EventCoalescer.this);
+        }
+    };
+
+    public EventCoalescer(WindowViewContainer windowViewContainer, NameTable nameTable) {
+        mWindowViewContainer = windowViewContainer;
+        mNameTable = nameTable;
+    }
+
+    /**
+     * 提交一次窗口变化（任意线程调用，事件内容会被复制）
+     *
+     * @param event 事件
+     * @param text  显示文本
+     */
+    public void submit(ActivityEvent event, String text) {
+        boolean schedule;
+        synchronized (this) {
+            mReceivedCount++;
+            // 本帧内已有待刷新状态，直接覆盖（只保留最新状态）
+            if (!mPending.isEmpty()) {
+                mMergedCount++;
+            }
+            mPending.set(event);
+            mPendingText = text;
+            schedule = !isScheduled;
+            isScheduled = true;
+        }
+        if (schedule) {
+            mMainHandler.post(mScheduleRunnable);
+        }
+    }
+
+    /**
+     * 垂直同步回调（每帧最多刷新一次悬浮窗）
+     */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        PipelineMetrics metrics = mMetrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        synchronized (this) {
+            isScheduled = false;
+            if (mPending.isEmpty()) {
+                return;
+            }
+            mFrame.set(mPending);
+            mFrameText = mPendingText;
+            mPending.clear();
+            mPendingText = null;
+        }
+        // 与当前显示内容完全相同，丢弃（同一窗口类名的显示文本也可能不同：其下方的Activity、返回栈面包屑）
+        if (mFrame.isSameScreen(mShown) && TextUtils.equals(mFrameText, mShownText)) {
+            mDuplicateCount++;
+            return;
+        }
+        mShown.set(mFrame);
+        mShownText = mFrameText;
+        mShownPackageId = mShown.getPackageId();
+        mRenderedCount++;
+        mWindowViewContainer.updateWindowView(mFrameText, mNameTable.getName(mShown.getPackageId()));
+        if (mNotificationUpdater != null) {
+            mNotificationUpdater.update(mFrameText);
+        }
+        if (metrics != null) {
+            metrics.onRendered(mShown.getEventTime());
+            metrics.addMainThreadTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 设置性能指标（主线程调用，传null关闭统计）
+     */
+    public void setMetrics(PipelineMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * 设置通知栏当前Activity更新器（主线程调用，传null关闭）
+     */
+    public void setNotificationUpdater(NotificationUpdater notificationUpdater) {
+        mNotificationUpdater = notificationUpdater;
+    }
+
+    /**
+     * 丢弃尚未刷新的事件（暂停时调用）
+     */
+    public synchronized void clearPending() {
+        mPending.clear();
+        mPendingText = null;
+    }
+
+    /**
+     * 获取悬浮窗当前显示的包名ID
+     */
+    public int getShownPackageId() {
+        return mShownPackageId;
+    }
+
+    /**
+     * 取消尚未执行的帧回调（主线程调用）
+     */
+    public void cancel() {
+        mMainHandler.removeCallbacks(mScheduleRunnable);
+        Choreographer.getInstance().removeFrameCallback(this);
+        synchronized (this) {
+            isScheduled = false;
+            mPending.clear();
+            mPendingText = null;
+        }
+        Log.d("EventCoalescer", "received=" + mReceivedCount + ", merged=" + mMergedCount
+                + ", duplicate=" + mDuplicateCount + ", rendered=" + mRenderedCount);
+    }
+
+    /**
+     * 获取收到的事件总数
+     */
+    public long getReceivedCount() {
+        return mReceivedCount;
+    }
+
+    /**
+     * 获取同一帧内被合并的事件数
+     */
+    public long getMergedCount() {
+        return mMergedCount;
+    }
+
+    /**
+     * 获取与当前显示内容重复而被丢弃的次数
+     */
+    public long getDuplicateCount() {
+        return mDuplicateCount;
+    }
+
+    /**
+     * 获取实际刷新悬浮窗的次数
+     */
+    public long getRenderedCount() {
+        return mRenderedCount;
+    }
+}
@@ -0,0 +1,528 @@
+package com.wangnan.currentactivity.service;
+
+import android.accessibilityservice.AccessibilityService;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityWindowInfo;
+
+import com.wangnan.currentactivity.data.ActivityEvent;
+import com.wangnan.currentactivity.data.BackStacks;
+import com.wangnan.currentactivity.data.DisplayTextCache;
+import com.wangnan.currentactivity.data.EventQueue;
+import com.wangnan.currentactivity.data.NameTable;
+import com.wangnan.currentactivity.data.RuleMatcher;
+import com.wangnan.currentactivity.data.StreamFrame;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @ClassName: EventWorker
+ * @Description: 事件处理线程（主线程只复制事件字段入队，名称驻留、历史、日志等处理都在该线程完成，最终显示状态交给事件合并器）
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class EventWorker implements EventQueue.Consumer {
+
+    /**
+     * 队列容量
+     */
+    private static final int QUEUE_CAPACITY = 256;
+
+    /**
+     * 切换后延迟刷盘的时间（毫秒，期间的切换合并为一次刷盘）
+     */
+    private static final long LOG_FLUSH_DELAY_MS = 5000;
+
+    /**
+     * 事件队列（主线程生产，处理线程消费）
+     */
+    private final EventQueue mQueue = new EventQueue(QUEUE_CAPACITY);
+
+    /**
+     * 处理线程
+     */
+    private final HandlerThread mThread;
+
+    /**
+     * 处理线程Handler
+     */
+    private final Handler mHandler;
+
+    /**
+     * 辅助服务（事件未携带窗口ID时获取交互窗口）
+     */
+    private final AccessibilityService mService;
+
+    /**
+     * 窗口变化数据中心
+     */
+    private final ActivityMonitor mMonitor;
+
+    /**
+     * 名称驻留表（只在处理线程写入）
+     */
+    private final NameTable mNameTable;
+
+    /**
+     * 事件合并器
+     */
+    private final EventCoalescer mEventCoalescer;
+
+    /**
+     * 窗口类名分类器（只在处理线程使用）
+     */
+    private final ActivityClassifier mClassifier;
+
+    /**
+     * 应用启动计时（只在处理线程使用）
+     */
+    private final LaunchTimer mLaunchTimer;
+
+    /**
+     * 推断的返回栈（只在处理线程使用）
+     */
+    private final BackStacks mBackStacks;
+
+    /**
+     * 视图层级快照（只在处理线程使用）
+     */
+    private final HierarchySnapshotter mSnapshotter;
+
+    /**
+     * 多窗口前台跟踪（只在处理线程使用）
+     */
+    private final WindowTracker mWindowTracker;
+
+    /**
+     * 是否跟踪多窗口
+     */
+    private volatile boolean isMultiWindowEnabled;
+
+    /**
+     * 本地切换推送服务（未开启时为null）
+     */
+    private volatile ActivityStreamServer mStreamServer;
+
+    /**
+     * 界面规则匹配器（只在处理线程写入，未开启时为null）
+     */
+    private volatile RuleMatcher mRuleMatcher;
+
+    /**
+     * 规则匹配监听（在处理线程回调）
+     */
+    private volatile OnRuleMatchListener mRuleListener;
+
+    /**
+     * 是否提取视图层级
+     */
+    private volatile boolean isViewIdsEnabled;
+
+    /**
+     * 是否推断返回栈并在悬浮窗显示面包屑
+     */
+    private volatile boolean isBackStackEnabled;
+
+    /**
+     * 复用的事件记录（只在处理线程使用）
+     */
+    private final ActivityEvent mEvent = new ActivityEvent();
+
+    /**
+     * 最近一次真正的Activity（只在处理线程使用）
+     */
+    private final ActivityEvent mLastActivity = new ActivityEvent();
+
+    /**
+     * 是否已安排一次队列处理（避免每个事件都向Handler投递消息）
+     */
+    private final AtomicBoolean isDrainScheduled = new AtomicBoolean();
+
+    /**
+     * 是否已安排一次切换日志刷盘（只在处理线程使用）
+     */
+    private boolean isFlushScheduled;
+
+    /**
+     * 切换日志刷盘任务
+     */
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isFlushScheduled = false;
+            mMonitor.flushLog();
+        }
+    };
+
+    /**
+     * 队列处理任务
+     */
+    private final Runnable mDrainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // 先清除标记再处理，处理期间新入队的事件会重新安排
+            isDrainScheduled.set(false);
+            mQueue.drain(EventWorker.this);
+        }
+    };
+
+    public EventWorker(AccessibilityService service, ActivityMonitor monitor, EventCoalescer eventCoalescer) {
+        mService = service;
+        mMonitor = monitor;
+        mNameTable = monitor.getNameTable();
+        mEventCoalescer = eventCoalescer;
+        mThread = new HandlerThread("EventWorker", Process.THREAD_PRIORITY_DEFAULT);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+        mClassifier = new ActivityClassifier(service, mNameTable);
+        mLaunchTimer = new LaunchTimer(service, mNameTable, mHandler, monitor.getLaunchStats());
+        mBackStacks = new BackStacks(mNameTable);
+        mSnapshotter = new HierarchySnapshotter(service, mHandler);
+        mWindowTracker = new WindowTracker(service, mHandler, mNameTable);
+    }
+
+    /**
+     * 设置是否跟踪多窗口（任意线程调用，开启时查询一次窗口列表，关闭时清空模型）
+     *
+     * @param listener 窗口列表变化监听（在处理线程回调）
+     */
+    public void setMultiWindowEnabled(boolean enabled, WindowTracker.OnWindowsListener listener) {
+        if (isMultiWindowEnabled == enabled) {
+            return;
+        }
+        isMultiWindowEnabled = enabled;
+        mWindowTracker.setListener(listener);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isMultiWindowEnabled) {
+                    mWindowTracker.start();
+                } else {
+                    mWindowTracker.clear();
+                }
+            }
+        });
+    }
+
+    /**
+     * 设置是否提取视图层级（任意线程调用，关闭时清空缓存）
+     *
+     * @param listener 快照结果监听（在处理线程回调）
+     */
+    public void setViewIdsEnabled(boolean enabled, HierarchySnapshotter.OnSnapshotListener listener) {
+        if (isViewIdsEnabled == enabled) {
+            return;
+        }
+        isViewIdsEnabled = enabled;
+        mSnapshotter.setListener(listener);
+        if (!enabled) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mSnapshotter.clear();
+                }
+            });
+        }
+    }
+
+    /**
+     * 是否需要在主线程复制窗口内容变化事件（供处理线程读取源节点）
+     */
+    public boolean needsContentEventCopy() {
+        return isViewIdsEnabled;
+    }
+
+    /**
+     * 设置本地切换推送服务（任意线程调用，传null关闭推送）
+     */
+    public void setStreamServer(ActivityStreamServer streamServer) {
+        mStreamServer = streamServer;
+    }
+
+    /**
+     * 设置界面规则（任意线程调用，在处理线程编译；传null关闭规则匹配）
+     *
+     * @param listener 规则匹配监听（在处理线程回调）
+     */
+    public void setRules(final String rules, OnRuleMatchListener listener) {
+        mRuleListener = listener;
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mRuleMatcher = rules == null ? null : RuleMatcher.compile(rules);
+            }
+        });
+    }
+
+    /**
+     * 设置启动计时是否等待界面稳定（任意线程调用）
+     */
+    public void setLaunchSettleEnabled(boolean enabled) {
+        mLaunchTimer.setSettleEnabled(enabled);
+    }
+
+    /**
+     * 设置是否推断返回栈（任意线程调用；关闭期间收不到完整的切换，关闭时清空已推断的栈）
+     */
+    public void setBackStackEnabled(boolean enabled) {
+        if (isBackStackEnabled == enabled) {
+            return;
+        }
+        isBackStackEnabled = enabled;
+        if (!enabled) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mBackStacks.clear();
+                }
+            });
+        }
+    }
+
+    /**
+     * 事件入队（主线程调用，只复制字段）
+     *
+     * @param flags 事件标志（窗口变化事件的变化类型，没有时为0）
+     * @return 队列已满返回false
+     */
+    public boolean enqueue(AccessibilityEvent event, int flags, Object extra) {
+        boolean offered = mQueue.offer(event.getEventType(), event.getPackageName(), event.getClassName(),
+                event.getWindowId(), event.getEventTime(), flags, extra);
+        if (!offered && extra instanceof AccessibilityEvent) {
+            HierarchySnapshotter.recycle((AccessibilityEvent) extra);
+        }
+        if (offered && isDrainScheduled.compareAndSet(false, true)) {
+            mHandler.post(mDrainRunnable);
+        }
+        return offered;
+    }
+
+    /**
+     * 在处理线程执行任务（文件读写、Binder调用等）
+     */
+    public void post(Runnable runnable) {
+        mHandler.post(runnable);
+    }
+
+    /**
+     * 处理一个事件（处理线程）
+     */
+    @Override
+    public void onEvent(int eventType, CharSequence packageName, CharSequence className, int windowId, long eventTime,
+                        int flags, Object extra) {
+        if (eventType == AccessibilityEvent.TYPE_WINDOWS_CHANGED) {
+            // 窗口变化事件不携带包名，事件标志为变化类型
+            if (isMultiWindowEnabled) {
+                mWindowTracker.onWindowsChanged(windowId, flags);
+            }
+            return;
+        }
+        if (packageName == null) {
+            if (extra instanceof AccessibilityEvent) {
+                HierarchySnapshotter.recycle((AccessibilityEvent) extra);
+            }
+            return;
+        }
+        switch (eventType) {
+            case AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED: // 窗口状态改变
+                if (className != null) {
+                    onWindowStateChanged(packageName, className, windowId, eventTime);
+                }
+                break;
+            case AccessibilityEvent.TYPE_VIEW_CLICKED: // 视图点击（启动计时）
+                mLaunchTimer.onViewClicked(mNameTable.intern(packageName), eventTime);
+                break;
+            case AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED: // 窗口内容变化（启动计时等待稳定）
+                mLaunchTimer.onContentChanged(mNameTable.intern(packageName), eventTime);
+                if (extra instanceof AccessibilityEvent) {
+                    // 只重新遍历变化的子树（关闭期间入队的副本直接回收）
+                    if (isViewIdsEnabled) {
+                        mSnapshotter.onContentChanged(windowId, (AccessibilityEvent) extra);
+                    } else {
+                        HierarchySnapshotter.recycle((AccessibilityEvent) extra);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 处理窗口状态变化（处理线程）
+     */
+    private void onWindowStateChanged(CharSequence packageName, CharSequence className, int windowId, long eventTime) {
+        // 转换为ID记录（已知名称不分配对象）
+        mEvent.set(mNameTable.intern(packageName), mNameTable.intern(className), eventTime);
+        // 记录切换历史、切换日志（发生切换时延迟刷盘，不在事件处理路径上等待磁盘）
+        boolean isScreenChanged = mMonitor.onActivityEvent(mEvent);
+        if (isScreenChanged && !isFlushScheduled) {
+            isFlushScheduled = true;
+            mHandler.postDelayed(mFlushRunnable, LOG_FLUSH_DELAY_MS);
+        }
+        // 区分真正的Activity与对话框、弹窗等窗口：Activity直接显示，其它窗口显示为"最近的Activity + 当前窗口"
+        DisplayTextCache textCache = mMonitor.getTextCache();
+        String text;
+        boolean isActivity = mClassifier.isActivity(mEvent.getPackageId(), mEvent.getClassId());
+        mLaunchTimer.onWindowStateChanged(mEvent.getPackageId(), eventTime, isActivity);
+        if (isActivity) {
+            // 停留时长、切换图按真正的Activity统计（对话框等窗口计入其下方的Activity）
+            mMonitor.getDwellStats().onScreen(mEvent.getPackageId(), mEvent.getClassId(), ActivityMonitor.toWallTime(eventTime));
+            if (isScreenChanged) {
+                // 同一界面的重复事件不计入访问次数（淘汰节点依据访问次数）
+                mMonitor.getTransitionGraph().onScreen(mMonitor.getScreenTable().intern(mEvent.getPackageId(), mEvent.getClassId()));
+            }
+            mLastActivity.set(mEvent);
+            if (isBackStackEnabled) {
+                mBackStacks.onActivity(mEvent.getPackageId(), mEvent.getClassId(),
+                        windowId >= 0 ? windowId : findActiveWindowId());
+            }
+            text = textCache.getText(mEvent);
+        } else if (!mLastActivity.isEmpty()) {
+            text = textCache.getText(mLastActivity, mEvent);
+        } else {
+            text = textCache.getText(mEvent);
+        }
+        if (isBackStackEnabled) {
+            // 追加当前Activity所属应用的返回栈面包屑（对话框等窗口显示其下方Activity的栈）
+            int packageId = mLastActivity.isEmpty() ? mEvent.getPackageId() : mLastActivity.getPackageId();
+            text = mBackStacks.decorate(packageId, text);
+        }
+        if (isMultiWindowEnabled) {
+            mWindowTracker.onActivity(windowId, mEvent.getPackageId(), mEvent.getClassId());
+        }
+        ActivityStreamServer streamServer = mStreamServer;
+        // 只推送真正的切换，重复事件不占用订阅者的帧缓冲
+        if (streamServer != null && isScreenChanged) {
+            streamServer.publish(isActivity ? StreamFrame.TYPE_ACTIVITY : StreamFrame.TYPE_WINDOW,
+                    ActivityMonitor.toWallTime(eventTime),
+                    mNameTable.getName(mEvent.getPackageId()), mNameTable.getName(mEvent.getClassId()));
+        }
+        RuleMatcher ruleMatcher = mRuleMatcher;
+        // 同一界面重复触发的事件（标题、输入法变化等）不重复执行规则动作
+        if (ruleMatcher != null && isScreenChanged) {
+            // 结果按(包名ID, 类名ID)缓存，已出现过的界面不再扫描
+            RuleMatcher.Match match = ruleMatcher.match(mNameTable, mEvent.getPackageId(), mEvent.getClassId());
+            OnRuleMatchListener listener = mRuleListener;
+            if (match.actions != 0 && listener != null) {
+                listener.onRuleMatched(match, mNameTable.getName(mEvent.getPackageId()), mNameTable.getName(mEvent.getClassId()));
+            }
+        }
+        // 交给事件合并器，下一帧统一更新窗口视图
+        mEventCoalescer.submit(mEvent, text);
+        if (isViewIdsEnabled) {
+            mSnapshotter.onWindowStateChanged(windowId);
+        }
+    }
+
+    /**
+     * 获取活动的应用窗口ID（只在事件未携带窗口ID时调用，获取失败返回{@link BackStacks#NO_WINDOW}）
+     */
+    private int findActiveWindowId() {
+        int windowId = BackStacks.NO_WINDOW;
+        List<AccessibilityWindowInfo> windows = null;
+        try {
+            windows = mService.getWindows();
+            for (AccessibilityWindowInfo window : windows) {
+                if (window.isActive() && window.getType() == AccessibilityWindowInfo.TYPE_APPLICATION) {
+                    windowId = window.getId();
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+        } finally {
+            if (windows != null && Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+                for (AccessibilityWindowInfo window : windows) {
+                    window.recycle();
+                }
+            }
+        }
+        return windowId;
+    }
+
+    /**
+     * 应用安装/更新/卸载（任意线程调用，在处理线程清除该包名的分类结果、启动计时状态、返回栈）
+     */
+    public void onPackageChanged(final String packageName) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                int removed = mClassifier.invalidatePackage(packageName);
+                mLaunchTimer.onPackageChanged(packageName);
+                int packageId = mNameTable.find(packageName);
+                if (packageId != NameTable.NO_ID) {
+                    mBackStacks.remove(packageId);
+                }
+                // 最近的Activity所属应用已变化，不再作为对话框等窗口的归属显示
+                if (packageId != NameTable.NO_ID && mLastActivity.getPackageId() == packageId) {
+                    mLastActivity.clear();
+                }
+                Log.d("ActivityClassifier", packageName + " changed, removed=" + removed);
+            }
+        });
+    }
+
+    /**
+     * 视图层级快照统计（dumpsys，数值可能略有延迟）
+     */
+    public String getSnapshotStats() {
+        return mSnapshotter.getStats();
+    }
+
+    /**
+     * 窗口类名分类统计（dumpsys，数值可能略有延迟）
+     */
+    public String getClassifierStats() {
+        return "lookups=" + mClassifier.getLookupCount() + " hits=" + mClassifier.getHitCount();
+    }
+
+    /**
+     * 多窗口跟踪统计（dumpsys，数值可能略有延迟）
+     */
+    public String getWindowStats() {
+        return mWindowTracker.getStats();
+    }
+
+    /**
+     * 界面规则统计（dumpsys，数值可能略有延迟；未开启时返回null）
+     */
+    public String getRuleStats() {
+        RuleMatcher ruleMatcher = mRuleMatcher;
+        if (ruleMatcher == null) {
+            return null;
+        }
+        return "rules=" + ruleMatcher.getRuleCount()
+                + " invalid=" + ruleMatcher.getInvalidCount()
+                + " nodes=" + ruleMatcher.getNodeCount()
+                + " hit=" + ruleMatcher.getHitCount()
+                + " miss=" + ruleMatcher.getMissCount();
+    }
+
+    /**
+     * 因队列已满丢弃的事件数
+     */
+    public long getDroppedCount() {
+        return mQueue.getDroppedCount();
+    }
+
+    /**
+     * 退出处理线程（已入队的任务执行完后退出）
+     */
+    public void quit() {
+        mThread.quitSafely();
+    }
+
+    /**
+     * 界面规则匹配监听
+     */
+    public interface OnRuleMatchListener {
+        void onRuleMatched(RuleMatcher.Match match, String packageName, String className);
+    }
+}
@@ -0,0 +1,290 @@
+package com.wangnan.currentactivity.service;
+
+import android.accessibilityservice.AccessibilityService;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.JsonWriter;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityWindowInfo;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * @ClassName: HierarchyDumper
+ * @Description: 完整视图层级导出（遍历当前屏幕的无障碍节点树，边遍历边以JSON流式写入文件）
+ * <p>
+ * 不在内存中构建整棵树：同一时刻只持有从根到当前节点路径上的节点，每个子节点写完立即回收，
+ * 输出经缓冲写入，内存占用与节点数无关。能获取交互窗口时导出所有窗口，否则只导出活动窗口。
+ * 在独立的一次性线程执行，不阻塞事件处理；导出失败时删除写了一半的文件。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class HierarchyDumper {
+
+    /**
+     * 导出目录名
+     */
+    public static final String DUMP_DIR_NAME = "dumps";
+
+    /**
+     * 写入缓冲区大小（字节）
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 最大深度（防止异常的循环引用）
+     */
+    private static final int MAX_DEPTH = 256;
+
+    /**
+     * 辅助服务
+     */
+    private final AccessibilityService mService;
+
+    /**
+     * 复用的边界矩形
+     */
+    private final Rect mBounds = new Rect();
+
+    /**
+     * 本次导出的节点数
+     */
+    private int mNodeCount;
+
+    public HierarchyDumper(AccessibilityService service) {
+        mService = service;
+    }
+
+    /**
+     * 导出到目录下的新文件（hierarchy-时间.json）
+     *
+     * @return 导出结果
+     */
+    public Result dump(File dir) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        String time = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS", Locale.US).format(new Date());
+        File file = new File(dir, "hierarchy-" + time + ".json");
+        mNodeCount = 0;
+        JsonWriter writer = new JsonWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), BUFFER_SIZE));
+        boolean isComplete = false;
+        try {
+            writer.beginObject();
+            writer.name("time").value(System.currentTimeMillis());
+            writer.name("sdk").value(Build.VERSION.SDK_INT);
+            writer.name("windows").beginArray();
+            if (!writeWindows(writer)) {
+                writeActiveWindow(writer);
+            }
+            writer.endArray();
+            writer.name("nodeCount").value(mNodeCount);
+            writer.endObject();
+            writer.close();
+            isComplete = true;
+        } finally {
+            if (!isComplete) {
+                // 未写完的文档关闭时会抛出异常，忽略后删除残缺文件
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                }
+                file.delete();
+            }
+        }
+        return new Result(file, mNodeCount, file.length(), SystemClock.elapsedRealtime() - start);
+    }
+
+    /**
+     * 导出所有交互窗口（未开启获取交互窗口时列表为空）
+     *
+     * @return 是否导出了至少一个窗口
+     */
+    private boolean writeWindows(JsonWriter writer) throws IOException {
+        List<AccessibilityWindowInfo> windows = mService.getWindows();
+        if (windows == null || windows.isEmpty()) {
+            return false;
+        }
+        try {
+            for (AccessibilityWindowInfo window : windows) {
+                writer.beginObject();
+                writer.name("id").value(window.getId());
+                writer.name("type").value(window.getType());
+                writer.name("layer").value(window.getLayer());
+                writer.name("active").value(window.isActive());
+                writer.name("focused").value(window.isFocused());
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && window.getTitle() != null) {
+                    writer.name("title").value(window.getTitle().toString());
+                }
+                window.getBoundsInScreen(mBounds);
+                writer.name("bounds");
+                writeBounds(writer);
+                AccessibilityNodeInfo root = window.getRoot();
+                if (root != null) {
+                    writer.name("root");
+                    try {
+                        writeNode(writer, root, 0);
+                    } finally {
+                        recycle(root);
+                    }
+                }
+                writer.endObject();
+            }
+        } finally {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+                for (AccessibilityWindowInfo window : windows) {
+                    window.recycle();
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 导出活动窗口
+     */
+    private void writeActiveWindow(JsonWriter writer) throws IOException {
+        AccessibilityNodeInfo root = mService.getRootInActiveWindow();
+        if (root == null) {
+            return;
+        }
+        try {
+            writer.beginObject();
+            writer.name("id").value(root.getWindowId());
+            writer.name("active").value(true);
+            writer.name("root");
+            writeNode(writer, root, 0);
+            writer.endObject();
+        } finally {
+            recycle(root);
+        }
+    }
+
+    /**
+     * 写入一个节点及其子树（先写完本节点属性，再逐个获取、写入、回收子节点）
+     */
+    private void writeNode(JsonWriter writer, AccessibilityNodeInfo node, int depth) throws IOException {
+        mNodeCount++;
+        writer.beginObject();
+        writeString(writer, "class", node.getClassName());
+        writeString(writer, "package", node.getPackageName());
+        writeString(writer, "id", node.getViewIdResourceName());
+        writeString(writer, "text", node.getText());
+        writeString(writer, "desc", node.getContentDescription());
+        node.getBoundsInScreen(mBounds);
+        writer.name("bounds");
+        writeBounds(writer);
+        writeFlag(writer, "visible", node.isVisibleToUser());
+        writeFlag(writer, "disabled", !node.isEnabled());
+        writeFlag(writer, "clickable", node.isClickable());
+        writeFlag(writer, "longClickable", node.isLongClickable());
+        writeFlag(writer, "focusable", node.isFocusable());
+        writeFlag(writer, "focused", node.isFocused());
+        writeFlag(writer, "scrollable", node.isScrollable());
+        writeFlag(writer, "checkable", node.isCheckable());
+        writeFlag(writer, "checked", node.isChecked());
+        writeFlag(writer, "selected", node.isSelected());
+        writeFlag(writer, "editable", node.isEditable());
+        writeFlag(writer, "password", node.isPassword());
+        int childCount = node.getChildCount();
+        if (childCount > 0 && depth < MAX_DEPTH) {
+            writer.name("children").beginArray();
+            for (int i = 0; i < childCount; i++) {
+                AccessibilityNodeInfo child = node.getChild(i);
+                if (child == null) {
+                    writer.nullValue();
+                    continue;
+                }
+                try {
+                    writeNode(writer, child, depth + 1);
+                } finally {
+                    recycle(child);
+                }
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+    }
+
+    /**
+     * 写入字符串属性（为null时省略）
+     */
+    private static void writeString(JsonWriter writer, String name, CharSequence value) throws IOException {
+        if (value != null) {
+            writer.name(name).value(value.toString());
+        }
+    }
+
+    /**
+     * 写入标志属性（只写入为true的，减小文件体积）
+     */
+    private static void writeFlag(JsonWriter writer, String name, boolean value) throws IOException {
+        if (value) {
+            writer.name(name).value(true);
+        }
+    }
+
+    /**
+     * 写入边界（[left, top, right, bottom]）
+     */
+    private void writeBounds(JsonWriter writer) throws IOException {
+        writer.beginArray()
+                .value(mBounds.left).value(mBounds.top).value(mBounds.right).value(mBounds.bottom)
+                .endArray();
+    }
+
+    /**
+     * 回收节点（Android 13起不再需要）
+     */
+    @SuppressWarnings("deprecation")
+    private static void recycle(AccessibilityNodeInfo node) {
+        if (node != null && Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+            node.recycle();
+        }
+    }
+
+    /**
+     * 导出结果（不可变）
+     */
+    public static final class Result {
+
+        /**
+         * 导出文件
+         */
+        public final File file;
+
+        /**
+         * 节点数
+         */
+        public final int nodeCount;
+
+        /**
+         * 文件大小（字节）
+         */
+        public final long bytes;
+
+        /**
+         * 耗时（毫秒）
+         */
+        public final long elapsedMs;
+
+        Result(File file, int nodeCount, long bytes, long elapsedMs) {
+            this.file = file;
+            this.nodeCount = nodeCount;
+            this.bytes = bytes;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+}
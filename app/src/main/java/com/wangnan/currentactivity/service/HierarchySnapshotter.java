@@ -0,0 +1,452 @@
+package com.wangnan.currentactivity.service;
+
+import android.accessibilityservice.AccessibilityService;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import com.wangnan.currentactivity.data.HierarchySnapshot;
+
+import java.util.Arrays;
+
+/**
+ * @ClassName: HierarchySnapshotter
+ * @Description: 窗口视图层级快照器（提取可见的Fragment容器及关键视图资源ID，显示在悬浮窗）
+ * <p>
+ * 只在事件处理线程运行：窗口切换后延迟遍历一次活动窗口，遍历受节点数和时间预算限制；
+ * 结果按窗口ID缓存（返回已遍历过的窗口时直接显示）。快照为先序数组（见{@link HierarchySnapshot}），
+ * 窗口内容变化时只重新遍历变化事件的源节点子树并拼接回数组，不重新遍历整棵树。
+ * 遍历中获取的每个AccessibilityNodeInfo在处理完后立即回收。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class HierarchySnapshotter {
+
+    /**
+     * 每个快照的节点数预算
+     */
+    private static final int MAX_NODES = 400;
+
+    /**
+     * 每次遍历的时间预算（毫秒）
+     */
+    private static final long TIME_BUDGET_MS = 20;
+
+    /**
+     * 最大遍历深度（超出的子树不遍历）
+     */
+    private static final int MAX_DEPTH = 48;
+
+    /**
+     * 窗口切换后等待布局完成的时间（毫秒）
+     */
+    private static final long WALK_DELAY_MS = 150;
+
+    /**
+     * 内容变化的合并时间（毫秒，期间的多次变化一起处理）
+     */
+    private static final long CHANGE_DELAY_MS = 100;
+
+    /**
+     * 合并期间最多记录的变化子树数（超出时改为整窗口重新遍历）
+     */
+    private static final int MAX_DIRTY = 16;
+
+    /**
+     * 缓存的窗口数量
+     */
+    private static final int CACHE_SIZE = 8;
+
+    /**
+     * 显示的资源ID数量
+     */
+    private static final int SUMMARY_IDS = 6;
+
+    /**
+     * 辅助服务
+     */
+    private final AccessibilityService mService;
+
+    /**
+     * 事件处理线程Handler
+     */
+    private final Handler mHandler;
+
+    /**
+     * 快照结果监听
+     */
+    private volatile OnSnapshotListener mListener;
+
+    /**
+     * 按窗口ID缓存的快照
+     */
+    private final HierarchySnapshot[] mCache = new HierarchySnapshot[CACHE_SIZE];
+
+    /**
+     * 当前窗口ID（没有时为-1）
+     */
+    private int mWindowId = -1;
+
+    /**
+     * 待重新遍历的子树源节点（合并期间记录，数量超出时改为整窗口遍历）
+     */
+    private final AccessibilityNodeInfo[] mDirty = new AccessibilityNodeInfo[MAX_DIRTY];
+    private int mDirtyCount;
+
+    /**
+     * 是否需要整窗口重新遍历
+     */
+    private boolean isFullWalkPending;
+
+    /**
+     * 是否已安排延迟遍历
+     */
+    private boolean isWalkScheduled;
+
+    /**
+     * 最近一次交给监听的结果
+     */
+    private String mPublished;
+
+    /**
+     * 遍历临时数组（子树遍历结果，拼接后复用）
+     */
+    private final HierarchySnapshot mScratch = new HierarchySnapshot();
+
+    /**
+     * 本次遍历的节点数上限、截止时间、是否因预算中止
+     */
+    private int mNodeLimit;
+    private long mDeadline;
+    private boolean isTruncated;
+
+    /**
+     * 统计：整窗口遍历次数、子树遍历次数、访问的节点数
+     */
+    private long mFullWalkCount;
+    private long mSubtreeWalkCount;
+    private long mNodeCount;
+
+    /**
+     * 延迟遍历任务
+     */
+    private final Runnable mWalkRunnable = new Runnable() {
+        @Override
+        public void run() {
+            processPending();
+        }
+    };
+
+    public HierarchySnapshotter(AccessibilityService service, Handler handler) {
+        mService = service;
+        mHandler = handler;
+    }
+
+    /**
+     * 设置快照结果监听（在事件处理线程回调，传null取消）
+     */
+    public void setListener(OnSnapshotListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 窗口状态变化（显示缓存的结果，并安排一次整窗口遍历）
+     */
+    public void onWindowStateChanged(int windowId) {
+        if (windowId != mWindowId) {
+            mWindowId = windowId;
+            clearDirty();
+            HierarchySnapshot snapshot = findSnapshot(windowId);
+            publish(snapshot != null ? snapshot.getSummary() : null);
+        }
+        isFullWalkPending = true;
+        mHandler.removeCallbacks(mWalkRunnable);
+        mHandler.postDelayed(mWalkRunnable, WALK_DELAY_MS);
+        isWalkScheduled = true;
+    }
+
+    /**
+     * 窗口内容变化（记录源节点，合并一段时间后只重新遍历这些子树）
+     *
+     * @param event 事件副本（处理后回收）
+     */
+    public void onContentChanged(int windowId, AccessibilityEvent event) {
+        try {
+            if (windowId != mWindowId || isFullWalkPending) {
+                return;
+            }
+            if (mDirtyCount == MAX_DIRTY) {
+                clearDirty();
+                isFullWalkPending = true;
+            } else {
+                AccessibilityNodeInfo source = event.getSource();
+                if (source == null) {
+                    return;
+                }
+                mDirty[mDirtyCount++] = source;
+            }
+            if (!isWalkScheduled) {
+                mHandler.postDelayed(mWalkRunnable, CHANGE_DELAY_MS);
+                isWalkScheduled = true;
+            }
+        } catch (RuntimeException e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+        } finally {
+            recycle(event);
+        }
+    }
+
+    /**
+     * 处理待遍历的窗口/子树
+     */
+    private void processPending() {
+        isWalkScheduled = false;
+        HierarchySnapshot snapshot = findSnapshot(mWindowId);
+        if (isFullWalkPending || snapshot == null) {
+            isFullWalkPending = false;
+            clearDirty();
+            walkActiveWindow();
+            return;
+        }
+        for (int i = 0; i < mDirtyCount; i++) {
+            if (!rewalkSubtree(snapshot, mDirty[i])) {
+                // 源节点不在快照中（新加入的视图），整窗口重新遍历
+                clearDirty();
+                walkActiveWindow();
+                return;
+            }
+        }
+        clearDirty();
+        updateSummary(snapshot);
+    }
+
+    /**
+     * 整窗口遍历活动窗口
+     */
+    private void walkActiveWindow() {
+        AccessibilityNodeInfo root = null;
+        try {
+            root = mService.getRootInActiveWindow();
+            if (root == null) {
+                return;
+            }
+            int windowId = root.getWindowId();
+            HierarchySnapshot snapshot = obtainSnapshot(windowId);
+            snapshot.clear();
+            startBudget(MAX_NODES);
+            walk(root, snapshot, 0);
+            snapshot.setTruncated(isTruncated);
+            mFullWalkCount++;
+            mWindowId = windowId;
+            updateSummary(snapshot);
+        } catch (RuntimeException e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+        } finally {
+            recycle(root);
+        }
+    }
+
+    /**
+     * 重新遍历快照中一个节点的子树，并替换原有的子树
+     *
+     * @return 节点是否在快照中
+     */
+    private boolean rewalkSubtree(HierarchySnapshot snapshot, AccessibilityNodeInfo source) {
+        int index = snapshot.indexOf(source.hashCode());
+        if (index < 0) {
+            // 快照因预算中止时，未遍历到的节点变化忽略
+            return snapshot.isTruncated();
+        }
+        mScratch.clear();
+        // 子树替换后快照总节点数仍不超过预算
+        startBudget(MAX_NODES - snapshot.size() + (snapshot.getEnd(index) - index));
+        try {
+            walk(source, mScratch, 0);
+        } catch (RuntimeException e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+            return true;
+        }
+        mScratch.setTruncated(isTruncated);
+        snapshot.replace(index, mScratch);
+        mSubtreeWalkCount++;
+        return true;
+    }
+
+    /**
+     * 先序遍历（每个子节点处理完立即回收；超出节点数/时间/深度预算时停止）
+     */
+    private void walk(AccessibilityNodeInfo node, HierarchySnapshot snapshot, int depth) {
+        if (snapshot.size() >= mNodeLimit || SystemClock.uptimeMillis() > mDeadline) {
+            isTruncated = true;
+            return;
+        }
+        mNodeCount++;
+        boolean isVisible = node.isVisibleToUser();
+        int index = snapshot.add(node.hashCode(), isVisible ? node.getViewIdResourceName() : null);
+        // 不可见视图的子视图也不可见，不再遍历
+        if (isVisible && depth < MAX_DEPTH) {
+            int childCount = node.getChildCount();
+            for (int i = 0; i < childCount && !isTruncated; i++) {
+                AccessibilityNodeInfo child = node.getChild(i);
+                if (child == null) {
+                    continue;
+                }
+                try {
+                    walk(child, snapshot, depth + 1);
+                } finally {
+                    recycle(child);
+                }
+            }
+        }
+        snapshot.setEnd(index, snapshot.size());
+    }
+
+    /**
+     * 开始计算本次遍历的预算
+     */
+    private void startBudget(int nodeLimit) {
+        mNodeLimit = nodeLimit;
+        mDeadline = SystemClock.uptimeMillis() + TIME_BUDGET_MS;
+        isTruncated = false;
+    }
+
+    /**
+     * 重新生成摘要并通知监听（当前窗口时）
+     */
+    private void updateSummary(HierarchySnapshot snapshot) {
+        snapshot.setSummary(snapshot.buildSummary(SUMMARY_IDS));
+        if (snapshot.getWindowId() == mWindowId) {
+            publish(snapshot.getSummary());
+        }
+    }
+
+    /**
+     * 通知监听（与上一次相同时不通知）
+     */
+    private void publish(String summary) {
+        if (summary == null ? mPublished == null : summary.equals(mPublished)) {
+            return;
+        }
+        mPublished = summary;
+        OnSnapshotListener listener = mListener;
+        if (listener != null) {
+            listener.onSnapshot(summary);
+        }
+    }
+
+    /**
+     * 查找窗口的缓存快照
+     */
+    private HierarchySnapshot findSnapshot(int windowId) {
+        for (HierarchySnapshot snapshot : mCache) {
+            if (snapshot != null && snapshot.getWindowId() == windowId) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取窗口的快照（没有时复用最久未使用的缓存项）
+     */
+    private HierarchySnapshot obtainSnapshot(int windowId) {
+        HierarchySnapshot snapshot = findSnapshot(windowId);
+        if (snapshot == null) {
+            int slot = 0;
+            for (int i = 0; i < mCache.length; i++) {
+                if (mCache[i] == null) {
+                    slot = i;
+                    break;
+                }
+                if (mCache[i].getLastUsed() < mCache[slot].getLastUsed()) {
+                    slot = i;
+                }
+            }
+            if (mCache[slot] == null) {
+                mCache[slot] = new HierarchySnapshot();
+            }
+            snapshot = mCache[slot];
+            snapshot.setWindowId(windowId);
+            snapshot.setSummary(null);
+        }
+        snapshot.setLastUsed(SystemClock.uptimeMillis());
+        return snapshot;
+    }
+
+    /**
+     * 回收并清除待遍历的源节点
+     */
+    private void clearDirty() {
+        for (int i = 0; i < mDirtyCount; i++) {
+            recycle(mDirty[i]);
+            mDirty[i] = null;
+        }
+        mDirtyCount = 0;
+    }
+
+    /**
+     * 清空缓存（功能关闭时调用）
+     */
+    public void clear() {
+        mHandler.removeCallbacks(mWalkRunnable);
+        isWalkScheduled = false;
+        clearDirty();
+        Arrays.fill(mCache, null);
+        mWindowId = -1;
+        isFullWalkPending = false;
+        publish(null);
+    }
+
+    /**
+     * 输出统计（dumpsys）
+     */
+    public String getStats() {
+        return "fullWalks=" + mFullWalkCount + " subtreeWalks=" + mSubtreeWalkCount + " nodes=" + mNodeCount;
+    }
+
+    /**
+     * 复制事件（在主线程调用，副本交给事件处理线程读取源节点）
+     */
+    @SuppressWarnings("deprecation")
+    public static AccessibilityEvent copyEvent(AccessibilityEvent event) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return new AccessibilityEvent(event);
+        }
+        return AccessibilityEvent.obtain(event);
+    }
+
+    /**
+     * 回收事件副本（Android 13起不再需要）
+     */
+    @SuppressWarnings("deprecation")
+    public static void recycle(AccessibilityEvent event) {
+        if (event != null && Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+            event.recycle();
+        }
+    }
+
+    /**
+     * 回收节点（Android 13起不再需要）
+     */
+    @SuppressWarnings("deprecation")
+    private static void recycle(AccessibilityNodeInfo node) {
+        if (node != null && Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+            node.recycle();
+        }
+    }
+
+    /**
+     * 快照结果监听
+     */
+    public interface OnSnapshotListener {
+
+        /**
+         * 当前窗口的摘要变化（在事件处理线程回调，summary为null表示没有可显示的内容）
+         */
+        void onSnapshot(String summary);
+    }
+}
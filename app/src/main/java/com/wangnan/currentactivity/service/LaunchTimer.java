@@ -0,0 +1,269 @@
+package com.wangnan.currentactivity.service;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.wangnan.currentactivity.data.LaunchStats;
+import com.wangnan.currentactivity.data.NameTable;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * @ClassName: LaunchTimer
+ * @Description: 应用启动计时（从辅助服务已收到的事件流中识别启动：在桌面/最近任务中点击后切换到另一个应用的首个Activity）
+ * <p>
+ * 记录点击到首个窗口的耗时；开启"等待稳定"时，继续观察该应用的窗口内容变化事件，
+ * 连续{@link #SETTLE_QUIET_MS}毫秒没有变化即视为稳定，记录点击到最后一次内容变化的耗时。
+ * 只在事件处理线程调用。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class LaunchTimer {
+
+    /**
+     * 点击后多长时间内出现的新应用窗口才视为由该点击启动（毫秒）
+     */
+    private static final long CLICK_WINDOW_MS = 5000;
+
+    /**
+     * 内容无变化多长时间视为稳定（毫秒）
+     */
+    static final long SETTLE_QUIET_MS = 500;
+
+    /**
+     * 等待稳定的最长时间（毫秒），超时按最后一次内容变化计算
+     */
+    private static final long SETTLE_TIMEOUT_MS = 15000;
+
+    /**
+     * 系统界面包名（通知栏、旧版本最近任务）
+     */
+    private static final String SYSTEM_UI_PACKAGE = "com.android.systemui";
+
+    /**
+     * 包管理器
+     */
+    private final PackageManager mPackageManager;
+
+    /**
+     * 名称驻留表
+     */
+    private final NameTable mNameTable;
+
+    /**
+     * 事件处理线程Handler（稳定检测）
+     */
+    private final Handler mHandler;
+
+    /**
+     * 统计结果
+     */
+    private final LaunchStats mStats;
+
+    /**
+     * 启动来源包名ID（桌面、系统界面；为null时需重新查询）
+     */
+    private int[] mSourcePackageIds;
+
+    /**
+     * 本次服务运行期间已启动过的包名ID
+     */
+    private final BitSet mLaunchedPackages = new BitSet();
+
+    /**
+     * 是否等待界面稳定
+     */
+    private volatile boolean isSettleEnabled;
+
+    /**
+     * 最近一次在启动来源中点击的时间（0表示没有）
+     */
+    private long mClickTime;
+
+    /**
+     * 正在计时的启动：包名ID、启动类型、点击时间、首个窗口耗时、最后一次内容变化时间
+     */
+    private int mLaunchPackageId = NameTable.NO_ID;
+    private long mLaunchClickTime;
+    private int mLaunchKind;
+    private int mFirstWindowMs;
+    private long mLastContentTime;
+
+    /**
+     * 稳定检测任务
+     */
+    private final Runnable mSettleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            checkSettled();
+        }
+    };
+
+    public LaunchTimer(Context context, NameTable nameTable, Handler handler, LaunchStats stats) {
+        mPackageManager = context.getApplicationContext().getPackageManager();
+        mNameTable = nameTable;
+        mHandler = handler;
+        mStats = stats;
+    }
+
+    /**
+     * 设置是否等待界面稳定
+     */
+    public void setSettleEnabled(boolean enabled) {
+        isSettleEnabled = enabled;
+    }
+
+    /**
+     * 视图点击事件（记录启动来源中的点击时间）
+     */
+    public void onViewClicked(int packageId, long eventTime) {
+        if (isSourcePackage(packageId)) {
+            mClickTime = eventTime;
+        }
+    }
+
+    /**
+     * 窗口状态变化事件
+     *
+     * @param isActivity 是否为真正的Activity（见{@link ActivityClassifier}）
+     */
+    public void onWindowStateChanged(int packageId, long eventTime, boolean isActivity) {
+        if (mLaunchPackageId != NameTable.NO_ID && packageId != mLaunchPackageId) {
+            // 等待稳定期间切换到了其它应用，按已有数据结束本次计时
+            finishLaunch();
+        }
+        if (mLaunchPackageId != NameTable.NO_ID) {
+            // 同一应用的后续窗口（如启动页跳转主页）也视为内容变化
+            onContentChanged(packageId, eventTime);
+            return;
+        }
+        if (mClickTime == 0 || !isActivity || isSourcePackage(packageId)) {
+            return;
+        }
+        long clickTime = mClickTime;
+        mClickTime = 0;
+        if (eventTime - clickTime > CLICK_WINDOW_MS || eventTime < clickTime) {
+            return;
+        }
+        int kind = mLaunchedPackages.get(packageId) ? LaunchStats.KIND_REPEAT : LaunchStats.KIND_FIRST;
+        mLaunchedPackages.set(packageId);
+        int firstWindowMs = (int) (eventTime - clickTime);
+        if (!isSettleEnabled) {
+            record(packageId, kind, firstWindowMs, LaunchStats.NO_VALUE);
+            return;
+        }
+        // 等待窗口内容变化平息
+        mLaunchPackageId = packageId;
+        mLaunchKind = kind;
+        mFirstWindowMs = firstWindowMs;
+        mLaunchClickTime = clickTime;
+        mLastContentTime = eventTime;
+        scheduleSettleCheck();
+    }
+
+    /**
+     * 窗口内容变化事件（计时中的应用内容变化时推迟稳定判断）
+     */
+    public void onContentChanged(int packageId, long eventTime) {
+        if (packageId != mLaunchPackageId || mLaunchPackageId == NameTable.NO_ID) {
+            return;
+        }
+        mLastContentTime = eventTime;
+        scheduleSettleCheck();
+    }
+
+    /**
+     * 安排稳定检测
+     */
+    private void scheduleSettleCheck() {
+        mHandler.removeCallbacks(mSettleRunnable);
+        mHandler.postDelayed(mSettleRunnable, SETTLE_QUIET_MS);
+    }
+
+    /**
+     * 稳定检测（距最后一次内容变化已满{@link #SETTLE_QUIET_MS}，或已超时）
+     */
+    private void checkSettled() {
+        if (mLaunchPackageId == NameTable.NO_ID) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        if (now - mLastContentTime < SETTLE_QUIET_MS && now - mLaunchClickTime < SETTLE_TIMEOUT_MS) {
+            mHandler.postAtTime(mSettleRunnable, mLastContentTime + SETTLE_QUIET_MS);
+            return;
+        }
+        finishLaunch();
+    }
+
+    /**
+     * 结束正在计时的启动
+     */
+    private void finishLaunch() {
+        mHandler.removeCallbacks(mSettleRunnable);
+        record(mLaunchPackageId, mLaunchKind, mFirstWindowMs, (int) (mLastContentTime - mLaunchClickTime));
+        mLaunchPackageId = NameTable.NO_ID;
+    }
+
+    /**
+     * 记录一次启动
+     */
+    private void record(int packageId, int kind, int firstWindowMs, int settledMs) {
+        mStats.record(packageId, kind, firstWindowMs, settledMs);
+        Log.d("LaunchTimer", mNameTable.getName(packageId) + (kind == LaunchStats.KIND_FIRST ? " first" : " repeat")
+                + " firstWindow=" + firstWindowMs + "ms settled=" + settledMs + "ms");
+    }
+
+    /**
+     * 是否为启动来源（桌面、系统界面）
+     */
+    private boolean isSourcePackage(int packageId) {
+        if (mSourcePackageIds == null) {
+            mSourcePackageIds = querySourcePackages();
+        }
+        for (int sourceId : mSourcePackageIds) {
+            if (sourceId == packageId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 查询桌面应用（CATEGORY_HOME）包名
+     */
+    private int[] querySourcePackages() {
+        Intent intent = new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_HOME);
+        List<ResolveInfo> homes;
+        try {
+            homes = mPackageManager.queryIntentActivities(intent, 0);
+        } catch (RuntimeException e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+            homes = null;
+        }
+        int size = homes == null ? 0 : homes.size();
+        int[] ids = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            ids[i] = mNameTable.intern(homes.get(i).activityInfo.packageName);
+        }
+        ids[size] = mNameTable.intern(SYSTEM_UI_PACKAGE);
+        return ids;
+    }
+
+    /**
+     * 应用安装/更新/卸载（重新查询桌面应用；更新后的首次启动重新计为首次启动）
+     */
+    public void onPackageChanged(String packageName) {
+        mSourcePackageIds = null;
+        int packageId = mNameTable.find(packageName);
+        if (packageId != NameTable.NO_ID) {
+            mLaunchedPackages.clear(packageId);
+        }
+    }
+}
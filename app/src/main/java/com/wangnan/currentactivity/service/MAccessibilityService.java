@@ -1,22 +1,53 @@
 package com.wangnan.currentactivity.service;
 
 import android.accessibilityservice.AccessibilityService;
+import android.accessibilityservice.AccessibilityServiceInfo;
 import android.annotation.SuppressLint;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.content.Context;
 import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.content.Intent;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.os.VibrationEffect;
+import android.os.Vibrator;
+import android.text.TextUtils;
+import android.text.format.Formatter;
 import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityWindowInfo;
+import android.widget.Toast;
 
 import androidx.annotation.RequiresApi;
 
+import com.wangnan.currentactivity.R;
+import com.wangnan.currentactivity.data.ActivityEvent;
+import com.wangnan.currentactivity.data.NameTable;
+import com.wangnan.currentactivity.data.RuleMatcher;
+import com.wangnan.currentactivity.data.ScreenTable;
+import com.wangnan.currentactivity.data.TransitionGraph;
 import com.wangnan.currentactivity.receiver.MAccessibilityServiceReceiver;
-import com.wangnan.currentactivity.ui.activity.MainActivity;
 import com.wangnan.currentactivity.ui.window.WindowViewContainer;
+import com.wangnan.currentactivity.util.AppInfoResolver;
+import com.wangnan.currentactivity.util.NotificationUpdater;
 import com.wangnan.currentactivity.util.NotificationUtil;
+import com.wangnan.currentactivity.util.PermissionStateCache;
+import com.wangnan.currentactivity.widget.OverlayView;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @ClassName: MAccessibilityService
@@ -38,11 +69,338 @@ public class MAccessibilityService extends AccessibilityService {
      */
     public static final int NOTIFICATION_ID = 0x1000;
 
+    /**
+     * 暂停原因：悬浮窗被隐藏
+     */
+    public static final int SUSPEND_HIDDEN = 1;
+
+    /**
+     * 暂停原因：屏幕关闭
+     */
+    public static final int SUSPEND_SCREEN_OFF = 1 << 1;
+
+    /**
+     * 暂停原因：设备处于空闲（Doze）模式
+     */
+    public static final int SUSPEND_IDLE = 1 << 2;
+
+    /**
+     * 悬浮窗隐藏时仍需处理事件的功能（通知栏显示、事件流、界面规则）
+     */
+    private static final int HIDDEN_EVENT_FEATURES = ServiceFeatures.FEATURE_NOTIFICATION
+            | ServiceFeatures.FEATURE_STREAM | ServiceFeatures.FEATURE_RULES;
+
+    /**
+     * 暂停恢复后、收到新的窗口事件前显示的类名占位文本
+     */
+    private static final String PENDING_CLASS_NAME = "…";
+
+    /**
+     * 系统界面包名（通知栏、快捷设置，恢复显示时不作为前台应用）
+     */
+    private static final String SYSTEM_UI_PACKAGE = "com.android.systemui";
+
+    /**
+     * 切换日志目录名
+     */
+    public static final String LOG_DIR_NAME = "transitions";
+
     /**
      * 窗口视图容器
      */
     private WindowViewContainer mWindowViewContainer;
 
+    /**
+     * 事件合并器（每帧最多刷新一次悬浮窗）
+     */
+    private EventCoalescer mEventCoalescer;
+
+    /**
+     * 功能配置变化监听（功能开关变化时重新配置AccessibilityServiceInfo）
+     */
+    private final SharedPreferences.OnSharedPreferenceChangeListener mFeatureListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            applyServiceInfo();
+            updateFeatures();
+        }
+    };
+
+    /**
+     * 主线程Handler（定时刷新指标行）
+     */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * 性能指标（开启"性能指标"功能时创建）
+     */
+    private PipelineMetrics mMetrics;
+
+    /**
+     * 指标行刷新间隔（毫秒）
+     */
+    private static final long HUD_INTERVAL_MS = 1000;
+
+    /**
+     * 匹配界面规则后悬浮窗高亮时长（毫秒）
+     */
+    private static final long RULE_HIGHLIGHT_MS = 2000;
+
+    /**
+     * 匹配界面规则后振动时长（毫秒）
+     */
+    private static final long RULE_VIBRATE_MS = 80;
+
+    /**
+     * dumpsys输出切换图时每项显示的条数
+     */
+    private static final int DUMP_TOP_COUNT = 5;
+
+    /**
+     * 定时刷新指标行
+     */
+    private final Runnable mHudRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mMetrics == null || mWindowViewContainer == null || mEventCoalescer == null || mEventWorker == null) {
+                return;
+            }
+            mMetrics.tick();
+            mWindowViewContainer.updateHud(mMetrics.formatHud(mEventCoalescer, mEventWorker));
+            mHandler.postDelayed(this, HUD_INTERVAL_MS);
+        }
+    };
+
+    /**
+     * 待显示的视图层级行（处理线程写入，主线程读取）
+     */
+    private volatile String mDetailText;
+
+    /**
+     * 在主线程更新视图层级行
+     */
+    private final Runnable mDetailRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mWindowViewContainer != null) {
+                mWindowViewContainer.updateDetail(mDetailText);
+            }
+        }
+    };
+
+    /**
+     * 视图层级快照结果监听（处理线程回调，转到主线程更新悬浮窗）
+     */
+    private final HierarchySnapshotter.OnSnapshotListener mSnapshotListener = new HierarchySnapshotter.OnSnapshotListener() {
+        @Override
+        public void onSnapshot(String summary) {
+            mDetailText = summary;
+            mHandler.removeCallbacks(mDetailRunnable);
+            mHandler.post(mDetailRunnable);
+        }
+    };
+
+    /**
+     * 多窗口列表（处理线程写入，主线程显示）
+     */
+    private volatile String mWindowsText;
+
+    /**
+     * 在主线程更新多窗口列表
+     */
+    private final Runnable mWindowsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mWindowViewContainer != null) {
+                mWindowViewContainer.updateWindows(mWindowsText);
+            }
+        }
+    };
+
+    /**
+     * 多窗口列表变化监听（处理线程回调，转到主线程更新悬浮窗）
+     */
+    private final WindowTracker.OnWindowsListener mWindowsListener = new WindowTracker.OnWindowsListener() {
+        @Override
+        public void onWindows(String text) {
+            mWindowsText = text;
+            mHandler.removeCallbacks(mWindowsRunnable);
+            mHandler.post(mWindowsRunnable);
+        }
+    };
+
+    /**
+     * 已应用的界面规则文本（未开启时为null，规则未变化时不重新编译）
+     */
+    private String mRulesText;
+
+    /**
+     * 最近一次匹配的规则（处理线程写入，主线程显示）
+     */
+    private volatile String mRuleText;
+
+    /**
+     * 在主线程高亮悬浮窗并显示匹配的规则
+     */
+    private final Runnable mRuleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mWindowViewContainer != null) {
+                mWindowViewContainer.updateRule(mRuleText);
+                mHandler.removeCallbacks(mRuleClearRunnable);
+                mHandler.postDelayed(mRuleClearRunnable, RULE_HIGHLIGHT_MS);
+            }
+        }
+    };
+
+    /**
+     * 取消悬浮窗高亮
+     */
+    private final Runnable mRuleClearRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mWindowViewContainer != null) {
+                mWindowViewContainer.updateRule(null);
+            }
+        }
+    };
+
+    /**
+     * 界面规则匹配监听（处理线程回调：日志标记直接输出，振动直接调用，高亮转到主线程）
+     */
+    private final EventWorker.OnRuleMatchListener mRuleListener = new EventWorker.OnRuleMatchListener() {
+        @Override
+        public void onRuleMatched(RuleMatcher.Match match, String packageName, String className) {
+            if ((match.actions & RuleMatcher.ACTION_LOG) != 0) {
+                Log.i("ActivityRule", "[" + match.label + "] " + packageName + "/" + className);
+            }
+            if ((match.actions & RuleMatcher.ACTION_VIBRATE) != 0) {
+                vibrate();
+            }
+            if ((match.actions & RuleMatcher.ACTION_HIGHLIGHT) != 0) {
+                mRuleText = "★ " + match.label;
+                mHandler.removeCallbacks(mRuleRunnable);
+                mHandler.post(mRuleRunnable);
+            }
+        }
+    };
+
+    /**
+     * 悬浮窗绘制完成监听（统计事件到绘制的延迟）
+     */
+    private final OverlayView.OnDrawnListener mDrawnListener = new OverlayView.OnDrawnListener() {
+        @Override
+        public void onDrawn() {
+            if (mMetrics != null) {
+                mMetrics.onDrawn();
+            }
+        }
+    };
+
+    /**
+     * 当前暂停原因（位掩码，非0时不订阅也不处理任何事件）
+     */
+    private int mSuspendReasons;
+
+    /**
+     * 悬浮窗是否显示
+     */
+    private boolean isOverlayShown = true;
+
+    /**
+     * 是否开启了悬浮窗隐藏时仍需处理事件的功能（见{@link #HIDDEN_EVENT_FEATURES}，功能开关变化时更新）
+     */
+    private boolean isHiddenEventsNeeded;
+
+    /**
+     * 悬浮窗显示状态变化监听（隐藏时暂停事件处理，开启了通知栏、事件流或界面规则时除外）
+     */
+    private final WindowViewContainer.OnShowStateChangeListener mShowStateListener = new WindowViewContainer.OnShowStateChangeListener() {
+        @Override
+        public void onShowStateChanged(boolean isShow) {
+            isOverlayShown = isShow;
+            updateHiddenSuspend();
+        }
+    };
+
+    /**
+     * 窗口变化数据中心（名称驻留表、显示文本缓存、切换历史）
+     */
+    private final ActivityMonitor mMonitor = ActivityMonitor.getInstance();
+
+    /**
+     * 名称驻留表（包名/类名 -> int ID，只在事件处理线程写入）
+     */
+    private final NameTable mNameTable = mMonitor.getNameTable();
+
+    /**
+     * 恢复时使用的事件记录（只在事件处理线程使用）
+     */
+    private final ActivityEvent mRefreshEvent = new ActivityEvent();
+
+    /**
+     * 暂停停留时长计时、断开切换链、切换日志刷盘（在事件处理线程执行）
+     */
+    private final Runnable mPauseStatsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mMonitor.getDwellStats().pause(System.currentTimeMillis());
+            mMonitor.getTransitionGraph().breakChain();
+            mMonitor.flushLog();
+        }
+    };
+
+    /**
+     * 事件处理线程
+     */
+    private EventWorker mEventWorker;
+
+    /**
+     * 恢复时显示当前前台应用（在事件处理线程执行）
+     */
+    private final Runnable mRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            refreshForeground();
+        }
+    };
+
+    /**
+     * 是否正在导出视图层级（同一时刻只导出一份）
+     */
+    private final AtomicBoolean isDumping = new AtomicBoolean();
+
+    /**
+     * 导出视图层级（在独立线程执行，避免遍历大型节点树时阻塞事件处理；完成后在主线程提示结果）
+     */
+    private final Runnable mDumpRunnable = new Runnable() {
+        @Override
+        public void run() {
+            String message;
+            try {
+                // 导出内容包含屏幕上的文字，只写入应用私有目录
+                File dir = new File(getFilesDir(), HierarchyDumper.DUMP_DIR_NAME);
+                HierarchyDumper.Result result = new HierarchyDumper(MAccessibilityService.this).dump(dir);
+                message = getString(R.string.string_dump_done, result.nodeCount,
+                        Formatter.formatFileSize(MAccessibilityService.this, result.bytes), result.elapsedMs,
+                        result.file.getAbsolutePath());
+            } catch (IOException | RuntimeException e) {
+                Log.d("ERROR", Log.getStackTraceString(e));
+                message = getString(R.string.string_dump_failed, e.getMessage());
+            } finally {
+                isDumping.set(false);
+            }
+            Log.d("HierarchyDumper", message);
+            final String text = message;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    Toast.makeText(MAccessibilityService.this, text, Toast.LENGTH_LONG).show();
+                }
+            });
+        }
+    };
+
     /**
      * 广播接收器
      */
@@ -53,6 +411,16 @@ public class MAccessibilityService extends AccessibilityService {
      */
     private NotificationManager mNotificationManager;
 
+    /**
+     * 通知栏当前Activity更新器（开启"通知栏"功能时创建）
+     */
+    private NotificationUpdater mNotificationUpdater;
+
+    /**
+     * 本地切换推送服务（开启"本地推送"功能时创建）
+     */
+    private ActivityStreamServer mStreamServer;
+
     /**
      * 服务连接完成
      */
@@ -65,26 +433,76 @@ public class MAccessibilityService extends AccessibilityService {
         try {
             // 添加通知栏消息（将服务提升到前台）- 必须先启动前台服务
             addNotification();
+
+            // 初始暂停状态（服务可能在灭屏时连接）
+            PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+            if (powerManager != null && !powerManager.isInteractive()) {
+                mSuspendReasons |= SUSPEND_SCREEN_OFF;
+            }
+
+            // 精简模式：按已开启的功能重新配置事件类型、标签等，并监听功能开关变化
+            applyServiceInfo();
+            ServiceFeatures.getPreferences(this).registerOnSharedPreferenceChangeListener(mFeatureListener);
             
             // 添加窗口
             mWindowViewContainer = WindowViewContainer.getInstance(this);
             mWindowViewContainer.addWindowView();
+            mWindowViewContainer.setOnShowStateChangeListener(mShowStateListener);
+            mEventCoalescer = new EventCoalescer(mWindowViewContainer, mNameTable);
+
+            // 启动事件处理线程，并在该线程打开切换日志（恢复上次写入的尾部）
+            mEventWorker = new EventWorker(this, mMonitor, mEventCoalescer);
+            final File logDir = new File(getFilesDir(), LOG_DIR_NAME);
+            mEventWorker.post(new Runnable() {
+                @Override
+                public void run() {
+                    mMonitor.openLog(logDir);
+                }
+            });
+            // 安排日志压缩任务（空闲且充电时执行）
+            CompactionJobService.schedule(this);
+            // 按功能开关初始化运行时组件
+            updateFeatures();
             
             // 注册广播接收器
             mReceiver = new MAccessibilityServiceReceiver();
             IntentFilter intentFilter = new IntentFilter();
             intentFilter.addAction(MAccessibilityServiceReceiver.SWITCH_ACTION);
             intentFilter.addAction(MAccessibilityServiceReceiver.CLOSE_ACTION);
+            intentFilter.addAction(Intent.ACTION_SCREEN_OFF);
+            intentFilter.addAction(Intent.ACTION_SCREEN_ON);
+            intentFilter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                intentFilter.addAction(PowerManager.ACTION_DEVICE_IDLE_MODE_CHANGED);
+            }
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
                 registerReceiver(mReceiver, intentFilter, Context.RECEIVER_NOT_EXPORTED);
             } else {
                 registerReceiver(mReceiver, intentFilter);
             }
-            
-            // 更新主界面UI
-            if (MainActivity.mActivity != null) {
-                MainActivity.mActivity.updateUI();
+            // 导出视图层级广播（Android 13以下动态注册的接收器默认导出，需要签名级权限，只有本应用的通知能触发）
+            IntentFilter dumpFilter = new IntentFilter(MAccessibilityServiceReceiver.DUMP_ACTION);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                registerReceiver(mReceiver, dumpFilter, MAccessibilityServiceReceiver.DUMP_PERMISSION, null,
+                        Context.RECEIVER_NOT_EXPORTED);
+            } else {
+                registerReceiver(mReceiver, dumpFilter, MAccessibilityServiceReceiver.DUMP_PERMISSION, null);
             }
+            // 应用安装/更新/卸载广播（清除窗口类名分类缓存，需指定package数据协议）
+            IntentFilter packageFilter = new IntentFilter();
+            packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+            packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+            packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+            packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+            packageFilter.addDataScheme("package");
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                registerReceiver(mReceiver, packageFilter, Context.RECEIVER_NOT_EXPORTED);
+            } else {
+                registerReceiver(mReceiver, packageFilter);
+            }
+            
+            // 更新服务状态缓存（主界面通过监听更新UI）
+            PermissionStateCache.getInstance(this).setServiceRunning(true);
         } catch (Exception e) {
             Log.d("ERROR", Log.getStackTraceString(e));
         }
@@ -131,19 +549,375 @@ public class MAccessibilityService extends AccessibilityService {
         }
     }
 
+    /**
+     * 按已开启的功能配置AccessibilityServiceInfo（未开启任何功能时只订阅窗口状态变化事件）
+     */
+    private void applyServiceInfo() {
+        AccessibilityServiceInfo info = getServiceInfo();
+        if (info == null) {
+            return;
+        }
+        int features = ServiceFeatures.getFeatures(this);
+        String[] packages = ServiceFeatures.getPackageAllowList(this);
+        // 配置未变化时不再发起IPC
+        if (ServiceFeatures.applyTo(info, features, packages, mSuspendReasons != 0)) {
+            setServiceInfo(info);
+        }
+    }
+
+    /**
+     * 设置/取消暂停（悬浮窗隐藏、灭屏、设备空闲时暂停，全部原因解除后恢复）
+     *
+     * @param reason    暂停原因（{@link #SUSPEND_HIDDEN}、{@link #SUSPEND_SCREEN_OFF}、{@link #SUSPEND_IDLE}）
+     * @param suspended 是否暂停
+     */
+    public void setSuspended(int reason, boolean suspended) {
+        int oldReasons = mSuspendReasons;
+        mSuspendReasons = suspended ? (oldReasons | reason) : (oldReasons & ~reason);
+        // 暂停/运行状态未发生变化
+        if ((oldReasons == 0) == (mSuspendReasons == 0)) {
+            return;
+        }
+        // 暂停时取消所有事件订阅，恢复时重新订阅（功能组件不随暂停变化，只启停指标行刷新）
+        applyServiceInfo();
+        updateHudSchedule();
+        if (mEventCoalescer == null || mEventWorker == null) {
+            return;
+        }
+        if (mSuspendReasons != 0) {
+            mEventCoalescer.clearPending();
+            // 暂停期间收不到切换事件，停止停留时长计时
+            mEventWorker.post(mPauseStatsRunnable);
+        } else {
+            mEventWorker.post(mRefreshRunnable);
+        }
+    }
+
+    /**
+     * 启动/停止本地切换推送服务
+     */
+    private void updateStreamServer(boolean enabled) {
+        if (enabled && mStreamServer == null) {
+            ActivityStreamServer server = new ActivityStreamServer();
+            try {
+                server.start();
+                mStreamServer = server;
+                mEventWorker.setStreamServer(server);
+            } catch (IOException e) {
+                // 套接字名称被占用等
+                Log.d("ERROR", Log.getStackTraceString(e));
+            }
+        } else if (!enabled && mStreamServer != null) {
+            mEventWorker.setStreamServer(null);
+            mStreamServer.stop();
+            mStreamServer = null;
+        }
+    }
+
+    /**
+     * 开启/关闭界面规则（规则文本变化时在处理线程重新编译）
+     */
+    private void updateRules(boolean enabled) {
+        String rules = enabled ? ServiceFeatures.getRules(this) : null;
+        if (TextUtils.equals(rules, mRulesText)) {
+            return;
+        }
+        mRulesText = rules;
+        mEventWorker.setRules(rules, mRuleListener);
+        if (rules == null) {
+            mHandler.removeCallbacks(mRuleRunnable);
+            mHandler.removeCallbacks(mRuleClearRunnable);
+            mWindowViewContainer.updateRule(null);
+        }
+    }
+
+    /**
+     * 振动一次（界面规则的振动动作，任意线程调用）
+     */
+    @SuppressWarnings("deprecation")
+    private void vibrate() {
+        Vibrator vibrator = (Vibrator) getSystemService(Context.VIBRATOR_SERVICE);
+        if (vibrator == null || !vibrator.hasVibrator()) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            vibrator.vibrate(VibrationEffect.createOneShot(RULE_VIBRATE_MS, VibrationEffect.DEFAULT_AMPLITUDE));
+        } else {
+            vibrator.vibrate(RULE_VIBRATE_MS);
+        }
+    }
+
+    /**
+     * 导出当前屏幕的完整视图层级到文件（正在导出时忽略）
+     */
+    public void dumpHierarchy() {
+        if (!isDumping.compareAndSet(false, true)) {
+            return;
+        }
+        new Thread(mDumpRunnable, "HierarchyDumper").start();
+    }
+
+    /**
+     * 按功能开关更新运行时组件（启动计时是否等待稳定、是否推断返回栈、提取视图层级；创建/释放性能指标，并在未暂停时定时刷新指标行）
+     */
+    private void updateFeatures() {
+        if (mWindowViewContainer == null || mEventCoalescer == null || mEventWorker == null) {
+            return;
+        }
+        int features = ServiceFeatures.getFeatures(this);
+        mEventWorker.setLaunchSettleEnabled((features & ServiceFeatures.FEATURE_LAUNCH_SETTLE) != 0);
+        mEventWorker.setBackStackEnabled((features & ServiceFeatures.FEATURE_BACK_STACK) != 0);
+        mEventWorker.setViewIdsEnabled((features & ServiceFeatures.FEATURE_VIEW_IDS) != 0, mSnapshotListener);
+        mEventWorker.setMultiWindowEnabled((features & ServiceFeatures.FEATURE_MULTI_WINDOW) != 0, mWindowsListener);
+        updateStreamServer((features & ServiceFeatures.FEATURE_STREAM) != 0);
+        updateRules((features & ServiceFeatures.FEATURE_RULES) != 0);
+        boolean notificationEnabled = (features & ServiceFeatures.FEATURE_NOTIFICATION) != 0 && mNotificationManager != null;
+        if (notificationEnabled && mNotificationUpdater == null) {
+            mNotificationUpdater = new NotificationUpdater(this, mNotificationManager, NOTIFICATION_ID);
+            mEventCoalescer.setNotificationUpdater(mNotificationUpdater);
+        } else if (!notificationEnabled && mNotificationUpdater != null) {
+            mEventCoalescer.setNotificationUpdater(null);
+            mNotificationUpdater.stop();
+            mNotificationUpdater = null;
+        }
+        boolean enabled = (features & ServiceFeatures.FEATURE_METRICS) != 0;
+        if (enabled && mMetrics == null) {
+            mMetrics = new PipelineMetrics();
+            mEventCoalescer.setMetrics(mMetrics);
+            mWindowViewContainer.setOnDrawnListener(mDrawnListener);
+        } else if (!enabled && mMetrics != null) {
+            mMetrics = null;
+            mEventCoalescer.setMetrics(null);
+            mWindowViewContainer.setOnDrawnListener(null);
+            mWindowViewContainer.updateHud(null);
+        }
+        updateHudSchedule();
+        // 通知栏、事件流、界面规则在悬浮窗隐藏时仍需处理事件
+        isHiddenEventsNeeded = (features & HIDDEN_EVENT_FEATURES) != 0;
+        updateHiddenSuspend();
+    }
+
+    /**
+     * 按悬浮窗显示状态及已开启的功能设置/取消"悬浮窗隐藏"暂停原因（唯一计算该原因的地方）
+     */
+    private void updateHiddenSuspend() {
+        setSuspended(SUSPEND_HIDDEN, !isOverlayShown && !isHiddenEventsNeeded);
+    }
+
+    /**
+     * 开启性能指标且未暂停时定时刷新指标行，否则停止刷新
+     */
+    private void updateHudSchedule() {
+        mHandler.removeCallbacks(mHudRunnable);
+        if (mMetrics != null && mSuspendReasons == 0) {
+            mHandler.post(mHudRunnable);
+        }
+    }
+
+    /**
+     * 应用安装/更新/卸载（清除该包名的窗口类名分类结果、应用名称及图标缓存）
+     */
+    public void onPackageChanged(String packageName) {
+        if (packageName == null) {
+            return;
+        }
+        if (mEventWorker != null) {
+            mEventWorker.onPackageChanged(packageName);
+        }
+        // 清除应用名称及图标缓存
+        if (mWindowViewContainer != null) {
+            mWindowViewContainer.onPackageChanged(packageName);
+        } else {
+            AppInfoResolver.getInstance(this).invalidate(packageName);
+        }
+    }
+
+    /**
+     * 恢复时立即显示当前前台应用（暂停期间没有收到事件，通过活动窗口获取前台包名，在事件处理线程执行）
+     * <p>
+     * 暂停期间可能已在应用内切换了Activity，无论包名是否变化都清除类名行，等待下一次窗口状态变化事件。
+     * 从通知栏恢复时活动窗口通常是系统界面，此时沿用悬浮窗显示的包名。
+     */
+    private void refreshForeground() {
+        EventCoalescer eventCoalescer = mEventCoalescer;
+        if (eventCoalescer == null) {
+            return;
+        }
+        try {
+            String packageName = findForegroundPackage();
+            int packageId = packageName != null ? mNameTable.intern(packageName) : eventCoalescer.getShownPackageId();
+            if (packageId == NameTable.NO_ID) {
+                return;
+            }
+            mRefreshEvent.set(packageId, mNameTable.intern(PENDING_CLASS_NAME), SystemClock.uptimeMillis());
+            eventCoalescer.submit(mRefreshEvent, mMonitor.getTextCache().getText(mRefreshEvent));
+        } catch (Exception e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+        }
+    }
+
+    /**
+     * 获取前台应用包名（获取交互窗口时取活动的应用窗口，否则取活动窗口；系统界面、本应用及非应用窗口返回null）
+     */
+    private String findForegroundPackage() {
+        List<AccessibilityWindowInfo> windows = getWindows();
+        AccessibilityNodeInfo root = null;
+        try {
+            if (windows.isEmpty()) {
+                // 未开启获取交互窗口的功能时窗口列表为空
+                root = getRootInActiveWindow();
+            } else {
+                for (AccessibilityWindowInfo window : windows) {
+                    if (window.isActive() && window.getType() == AccessibilityWindowInfo.TYPE_APPLICATION) {
+                        root = window.getRoot();
+                        break;
+                    }
+                }
+            }
+            CharSequence packageName = root != null ? root.getPackageName() : null;
+            if (packageName == null || SYSTEM_UI_PACKAGE.contentEquals(packageName)
+                    || getPackageName().contentEquals(packageName)) {
+                return null;
+            }
+            return packageName.toString();
+        } finally {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+                if (root != null) {
+                    root.recycle();
+                }
+                for (AccessibilityWindowInfo window : windows) {
+                    window.recycle();
+                }
+            }
+        }
+    }
+
     /**
      * 接收辅助服务事件
      */
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
-        if (event == null) {
+        // 暂停状态下不做任何处理（取消订阅生效前可能仍有少量事件到达）
+        if (event == null || mSuspendReasons != 0) {
             return;
         }
-        if (event.getEventType() == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) { // 窗口状态改变
-            if (event.getPackageName() != null && event.getClassName() != null) {
-                // 更新窗口视图
-                mWindowViewContainer.updateWindowView(event.getPackageName() + "\n" + event.getClassName());
+        PipelineMetrics metrics = mMetrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        if (mEventWorker != null) {
+            // 只复制事件字段入队，其余处理都在事件处理线程完成（订阅的事件类型由已开启的功能决定）
+            // 开启视图层级时复制窗口内容变化事件，处理线程据此只重新遍历变化的子树
+            Object extra = null;
+            int flags = 0;
+            if (event.getEventType() == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED && mEventWorker.needsContentEventCopy()) {
+                extra = HierarchySnapshotter.copyEvent(event);
+            } else if (event.getEventType() == AccessibilityEvent.TYPE_WINDOWS_CHANGED
+                    && Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                // 窗口变化标志（处理线程据此决定是否需要查询窗口列表，按int存入槽位，不装箱）
+                flags = event.getWindowChanges();
             }
+            mEventWorker.enqueue(event, flags, extra);
+        }
+        if (metrics != null) {
+            metrics.onEventReceived();
+            metrics.addMainThreadTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 输出服务状态（adb shell dumpsys activity service com.wangnan.currentactivity/.service.MAccessibilityService）
+     * <p>
+     * 参数graph [k]：输出切换图的常见切换及长度为k的常见路径；参数matrix：导出完整转移矩阵
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println("suspendReasons=" + mSuspendReasons + " features=" + ServiceFeatures.getFeatures(this));
+        if (mEventCoalescer != null) {
+            writer.println("coalescer: received=" + mEventCoalescer.getReceivedCount()
+                    + " merged=" + mEventCoalescer.getMergedCount()
+                    + " duplicate=" + mEventCoalescer.getDuplicateCount()
+                    + " rendered=" + mEventCoalescer.getRenderedCount());
+        }
+        if (mEventWorker != null) {
+            writer.println("worker: dropped=" + mEventWorker.getDroppedCount());
+            writer.println("classifier: " + mEventWorker.getClassifierStats());
+            writer.println("snapshot: " + mEventWorker.getSnapshotStats());
+            writer.println("windows: " + mEventWorker.getWindowStats());
+            String ruleStats = mEventWorker.getRuleStats();
+            if (ruleStats != null) {
+                writer.println("rules: " + ruleStats);
+            }
+        }
+        if (mNotificationUpdater != null) {
+            writer.println("notification: " + mNotificationUpdater.getStats());
+        }
+        if (mStreamServer != null) {
+            writer.println("stream: " + mStreamServer.getStats());
+        }
+        if (mWindowViewContainer != null) {
+            writer.println("overlay: relayout=" + mWindowViewContainer.getRelayoutCount()
+                    + " redraw=" + mWindowViewContainer.getRedrawCount()
+                    + " recover=" + mWindowViewContainer.getRecoverCount());
+        }
+        writer.println("history: size=" + mMonitor.getHistory().size() + " total=" + mMonitor.getHistory().getTotalCount());
+        TransitionGraph graph = mMonitor.getTransitionGraph();
+        writer.println("graph: nodes=" + graph.getNodeCount() + " edges=" + graph.getEdgeCount()
+                + " transitions=" + graph.getTransitionCount() + " evicted=" + graph.getEvictedCount());
+        if (args != null && args.length > 0 && "graph".equals(args[0])) {
+            dumpGraph(writer, graph, args.length > 1 ? parseInt(args[1], 3) : 3);
+        } else if (args != null && args.length > 0 && "matrix".equals(args[0])) {
+            try {
+                graph.exportMatrix(writer, mMonitor.getScreenTable(), mMonitor.getNameTable());
+            } catch (IOException e) {
+                Log.d("ERROR", Log.getStackTraceString(e));
+            }
+        }
+        if (mMetrics != null) {
+            mMetrics.dump(writer);
+        } else {
+            writer.println("Pipeline metrics disabled");
+        }
+    }
+
+    /**
+     * 输出切换图：访问最多的界面及其常见去向、长度为pathLength的常见路径
+     */
+    private void dumpGraph(PrintWriter writer, TransitionGraph graph, int pathLength) {
+        ScreenTable screens = mMonitor.getScreenTable();
+        NameTable names = mMonitor.getNameTable();
+        int[] targets = new int[DUMP_TOP_COUNT];
+        long[] counts = new long[DUMP_TOP_COUNT];
+        for (int screenId = 0; screenId < screens.size(); screenId++) {
+            long total = graph.getOutTotal(screenId);
+            if (total == 0) {
+                continue;
+            }
+            writer.println("  " + TransitionGraph.screenName(screens, names, screenId)
+                    + " visits=" + graph.getVisits(screenId) + " out=" + total);
+            int count = graph.copyTopOutgoing(screenId, targets, counts);
+            for (int i = 0; i < count; i++) {
+                writer.println(String.format(Locale.US, "    -> %s %d (%.1f%%)",
+                        TransitionGraph.screenName(screens, names, targets[i]), counts[i], counts[i] * 100f / total));
+            }
+        }
+        writer.println("Top paths (length " + pathLength + "):");
+        for (TransitionGraph.Path path : graph.findTopPaths(pathLength, DUMP_TOP_COUNT)) {
+            StringBuilder builder = new StringBuilder(String.format(Locale.US, "  %.1f", path.score));
+            for (int i = 0; i < path.screenIds.length; i++) {
+                builder.append(i == 0 ? " " : " -> ")
+                        .append(TransitionGraph.screenName(screens, names, path.screenIds[i]));
+            }
+            writer.println(builder);
+        }
+    }
+
+    /**
+     * 解析整数参数（失败返回默认值）
+     */
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
         }
     }
 
@@ -160,12 +934,46 @@ public class MAccessibilityService extends AccessibilityService {
      */
     @Override
     public void onDestroy() {
+        // 取消功能配置监听
+        ServiceFeatures.getPreferences(this).unregisterOnSharedPreferenceChangeListener(mFeatureListener);
+        // 停止刷新指标行、视图层级行、多窗口行、规则高亮
+        mHandler.removeCallbacks(mHudRunnable);
+        mHandler.removeCallbacks(mDetailRunnable);
+        mHandler.removeCallbacks(mWindowsRunnable);
+        mHandler.removeCallbacks(mRuleRunnable);
+        mHandler.removeCallbacks(mRuleClearRunnable);
+        mMetrics = null;
+        // 取消未执行的帧回调
+        if (mEventCoalescer != null) {
+            mEventCoalescer.cancel();
+            mEventCoalescer = null;
+        }
+        // 停止本地切换推送服务
+        if (mStreamServer != null) {
+            mStreamServer.stop();
+            mStreamServer = null;
+        }
+        // 在事件处理线程关闭切换日志（刷盘），然后退出该线程
+        if (mEventWorker != null) {
+            mEventWorker.post(new Runnable() {
+                @Override
+                public void run() {
+                    mMonitor.closeLog();
+                }
+            });
+            mEventWorker.quit();
+            mEventWorker = null;
+        }
         // 移除窗口视图，销毁视图容器
         if (mWindowViewContainer != null) {
             mWindowViewContainer.destory();
             mWindowViewContainer = null;
         }
-        // 取消通知栏消息显示
+        // 停止更新通知栏当前Activity，取消通知栏消息显示
+        if (mNotificationUpdater != null) {
+            mNotificationUpdater.cancel();
+            mNotificationUpdater = null;
+        }
         if (mNotificationManager != null) {
             mNotificationManager.cancel(MAccessibilityService.NOTIFICATION_ID);
             mNotificationManager = null;
@@ -175,10 +983,8 @@ public class MAccessibilityService extends AccessibilityService {
             unregisterReceiver(mReceiver);
             mReceiver = null;
         }
-        // 如果主界面未被销毁，更新主界面UI
-        if (MainActivity.mActivity != null) {
-            MainActivity.mActivity.updateUI();
-        }
+        // 更新服务状态缓存（主界面通过监听更新UI）
+        PermissionStateCache.getInstance(this).setServiceRunning(false);
         // 停止前台服务
         stopForeground(true);
         super.onDestroy();
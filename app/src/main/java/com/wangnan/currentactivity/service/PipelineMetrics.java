@@ -0,0 +1,154 @@
+package com.wangnan.currentactivity.service;
+
+import android.os.SystemClock;
+
+import com.wangnan.currentactivity.data.LatencyHistogram;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * @ClassName: PipelineMetrics
+ * @Description: 事件处理链路自身的性能指标（每秒事件数、合并/丢弃数、事件到悬浮窗绘制的延迟分布、每个事件占用的主线程时间）
+ * <p>
+ * 仅在开启"性能指标"功能时创建，用于确认本工具不会干扰被测应用。所有方法只在主线程调用。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class PipelineMetrics {
+
+    /**
+     * 事件时间到悬浮窗绘制的延迟分布
+     */
+    private final LatencyHistogram mLatency = new LatencyHistogram();
+
+    /**
+     * 开始统计的时间（uptimeMillis）
+     */
+    private final long mStartTime = SystemClock.uptimeMillis();
+
+    /**
+     * 收到的事件数
+     */
+    private long mReceivedCount;
+
+    /**
+     * 上次计算速率时的事件数、时间
+     */
+    private long mLastTickCount;
+    private long mLastTickTime = mStartTime;
+
+    /**
+     * 最近一秒的事件速率、峰值速率（个/秒）
+     */
+    private float mEventsPerSecond;
+    private float mPeakEventsPerSecond;
+
+    /**
+     * 主线程耗时：总和、最大值（纳秒）
+     */
+    private long mMainThreadNanos;
+    private long mMainThreadMaxNanos;
+
+    /**
+     * 已刷新到悬浮窗、等待绘制的事件时间（0表示没有）
+     */
+    private long mPendingDrawEventTime;
+
+    /**
+     * 收到一个事件
+     */
+    public void onEventReceived() {
+        mReceivedCount++;
+    }
+
+    /**
+     * 累加一次主线程耗时（事件回调、帧回调）
+     */
+    public void addMainThreadTime(long nanos) {
+        mMainThreadNanos += nanos;
+        if (nanos > mMainThreadMaxNanos) {
+            mMainThreadMaxNanos = nanos;
+        }
+    }
+
+    /**
+     * 事件已交给悬浮窗（等待下一次绘制）
+     *
+     * @param eventTime 事件时间（uptimeMillis时间基准）
+     */
+    public void onRendered(long eventTime) {
+        mPendingDrawEventTime = eventTime;
+    }
+
+    /**
+     * 悬浮窗完成绘制（记录事件到绘制的延迟）
+     */
+    public void onDrawn() {
+        if (mPendingDrawEventTime == 0) {
+            return;
+        }
+        mLatency.record(SystemClock.uptimeMillis() - mPendingDrawEventTime);
+        mPendingDrawEventTime = 0;
+    }
+
+    /**
+     * 计算最近一段时间的事件速率（由悬浮窗指标行定时调用）
+     */
+    public void tick() {
+        long now = SystemClock.uptimeMillis();
+        long elapsed = now - mLastTickTime;
+        if (elapsed <= 0) {
+            return;
+        }
+        mEventsPerSecond = (mReceivedCount - mLastTickCount) * 1000f / elapsed;
+        mPeakEventsPerSecond = Math.max(mPeakEventsPerSecond, mEventsPerSecond);
+        mLastTickCount = mReceivedCount;
+        mLastTickTime = now;
+    }
+
+    /**
+     * 平均每个事件占用的主线程时间（微秒）
+     */
+    private double getMainThreadMicrosPerEvent() {
+        return mReceivedCount == 0 ? 0 : mMainThreadNanos / 1000d / mReceivedCount;
+    }
+
+    /**
+     * 悬浮窗指标行文本
+     */
+    public String formatHud(EventCoalescer eventCoalescer, EventWorker eventWorker) {
+        return String.format(Locale.US, "%.1f ev/s  merged %d  drop %d  p50 %dms p99 %dms max %dms  main %.0fµs/ev",
+                mEventsPerSecond,
+                eventCoalescer.getMergedCount() + eventCoalescer.getDuplicateCount(),
+                eventWorker.getDroppedCount(),
+                mLatency.getPercentile(50), mLatency.getPercentile(99), mLatency.getMax(),
+                getMainThreadMicrosPerEvent());
+    }
+
+    /**
+     * 输出完整指标（dumpsys）
+     */
+    public void dump(PrintWriter writer) {
+        writer.println("Pipeline metrics (" + (SystemClock.uptimeMillis() - mStartTime) / 1000 + "s):");
+        writer.println(String.format(Locale.US, "  events: received=%d rate=%.1f/s peak=%.1f/s",
+                mReceivedCount, mEventsPerSecond, mPeakEventsPerSecond));
+        writer.println(String.format(Locale.US, "  main thread: total=%.1fms perEvent=%.1fus max=%.1fus",
+                mMainThreadNanos / 1e6, getMainThreadMicrosPerEvent(), mMainThreadMaxNanos / 1e3));
+        writer.println(String.format(Locale.US, "  event->draw latency: count=%d mean=%.1fms p50=%dms p99=%dms max=%dms",
+                mLatency.getCount(), mLatency.getMean(), mLatency.getPercentile(50),
+                mLatency.getPercentile(99), mLatency.getMax()));
+        StringBuilder buckets = new StringBuilder("  buckets:");
+        for (int i = 0; i < mLatency.getBucketCount(); i++) {
+            long count = mLatency.getCountInBucket(i);
+            if (count == 0) {
+                continue;
+            }
+            long bound = mLatency.getBucketBound(i);
+            buckets.append(' ').append(bound == Long.MAX_VALUE ? ">" + mLatency.getBucketBound(i - 1) : "<=" + bound)
+                    .append("ms:").append(count);
+        }
+        writer.println(buckets);
+    }
+}
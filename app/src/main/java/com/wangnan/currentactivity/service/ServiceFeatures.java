@@ -0,0 +1,261 @@
+package com.wangnan.currentactivity.service;
+
+import android.accessibilityservice.AccessibilityServiceInfo;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.view.accessibility.AccessibilityEvent;
+
+import java.util.Arrays;
+
+/**
+ * @ClassName: ServiceFeatures
+ * @Description: 辅助服务功能开关及精简模式配置（根据已开启的功能在运行时计算AccessibilityServiceInfo）
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class ServiceFeatures {
+
+    /**
+     * SharedPreferences文件名
+     */
+    public static final String PREF_NAME = "service_features";
+
+    /**
+     * 功能：性能指标（悬浮窗显示事件处理链路指标，不需要额外的事件类型）
+     */
+    public static final int FEATURE_METRICS = 1;
+
+    /**
+     * 功能：启动计时（桌面/最近任务点击后到新应用首个Activity的耗时，需要视图点击事件）
+     */
+    public static final int FEATURE_LAUNCH_TIMER = 1 << 1;
+
+    /**
+     * 功能：启动计时等待界面稳定（需要窗口内容变化事件，事件量较大）
+     */
+    public static final int FEATURE_LAUNCH_SETTLE = 1 << 2;
+
+    /**
+     * 功能：返回栈（悬浮窗显示推断的返回栈面包屑，事件未携带窗口ID时需要获取交互窗口）
+     */
+    public static final int FEATURE_BACK_STACK = 1 << 3;
+
+    /**
+     * 功能：视图层级（悬浮窗显示可见的Fragment容器及视图资源ID，需要窗口内容变化事件及上报视图ID）
+     */
+    public static final int FEATURE_VIEW_IDS = 1 << 4;
+
+    /**
+     * 功能：多窗口（分屏、自由窗口、多屏幕时悬浮窗每个可见应用窗口显示一行，需要窗口变化事件及获取交互窗口）
+     */
+    public static final int FEATURE_MULTI_WINDOW = 1 << 5;
+
+    /**
+     * 功能：通知栏（通知栏显示当前应用及Activity，开启后隐藏悬浮窗不再暂停事件处理，不需要额外的事件类型）
+     */
+    public static final int FEATURE_NOTIFICATION = 1 << 6;
+
+    /**
+     * 功能：本地推送（通过本地套接字向adb转发的客户端推送每次切换，不需要额外的事件类型）
+     */
+    public static final int FEATURE_STREAM = 1 << 7;
+
+    /**
+     * 功能：界面规则（出现匹配规则的界面时高亮悬浮窗、振动或输出日志标记，不需要额外的事件类型）
+     */
+    public static final int FEATURE_RULES = 1 << 8;
+
+    /**
+     * 已开启功能（位掩码）
+     */
+    private static final String KEY_FEATURES = "features";
+
+    /**
+     * 包名白名单（多个包名用","分割，为空表示不限制）
+     */
+    private static final String KEY_PACKAGE_ALLOW_LIST = "package_allow_list";
+
+    /**
+     * 界面规则（每行一条，格式见RuleMatcher）
+     */
+    private static final String KEY_RULES = "rules";
+
+    /**
+     * 切换日志保留大小上限（MB）
+     */
+    private static final String KEY_RETENTION_MB = "retention_mb";
+
+    /**
+     * 切换日志保留天数
+     */
+    private static final String KEY_RETENTION_DAYS = "retention_days";
+
+    /**
+     * 默认保留大小上限（MB）/ 天数
+     */
+    private static final int DEFAULT_RETENTION_MB = 64;
+    private static final int DEFAULT_RETENTION_DAYS = 30;
+
+    /**
+     * 精简模式下的事件类型（只需要窗口状态变化）
+     */
+    private static final int BASE_EVENT_TYPES = AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED;
+
+    /**
+     * 精简模式下的标签（不获取交互窗口、不上报视图ID）
+     */
+    private static final int BASE_FLAGS = AccessibilityServiceInfo.DEFAULT;
+
+    /**
+     * 事件通知间隔（毫秒，固定为0：该间隔对所有事件类型生效，大于0会同时推迟窗口状态变化事件；
+     * 内容变化等高频事件由事件处理线程自行合并）
+     */
+    private static final long BASE_NOTIFICATION_TIMEOUT = 0;
+
+    /**
+     * 各功能的额外需求：{功能位, 事件类型, 标签}
+     */
+    private static final int[][] FEATURE_SPECS = {
+            {FEATURE_LAUNCH_TIMER, AccessibilityEvent.TYPE_VIEW_CLICKED, 0},
+            {FEATURE_LAUNCH_SETTLE, AccessibilityEvent.TYPE_VIEW_CLICKED | AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED, 0},
+            {FEATURE_BACK_STACK, 0, AccessibilityServiceInfo.FLAG_RETRIEVE_INTERACTIVE_WINDOWS},
+            {FEATURE_VIEW_IDS, AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED, AccessibilityServiceInfo.FLAG_REPORT_VIEW_IDS},
+            {FEATURE_MULTI_WINDOW, AccessibilityEvent.TYPE_WINDOWS_CHANGED, AccessibilityServiceInfo.FLAG_RETRIEVE_INTERACTIVE_WINDOWS},
+    };
+
+    /**
+     * 获取已开启的功能（位掩码）
+     */
+    public static int getFeatures(Context context) {
+        return getPreferences(context).getInt(KEY_FEATURES, 0);
+    }
+
+    /**
+     * 功能是否已开启
+     */
+    public static boolean isEnabled(Context context, int feature) {
+        return (getFeatures(context) & feature) != 0;
+    }
+
+    /**
+     * 开启/关闭功能（运行中的辅助服务会监听该变化并重新配置）
+     */
+    public static void setEnabled(Context context, int feature, boolean enabled) {
+        int features = getFeatures(context);
+        features = enabled ? (features | feature) : (features & ~feature);
+        getPreferences(context).edit().putInt(KEY_FEATURES, features).apply();
+    }
+
+    /**
+     * 获取包名白名单（未设置返回null）
+     */
+    public static String[] getPackageAllowList(Context context) {
+        String packages = getPreferences(context).getString(KEY_PACKAGE_ALLOW_LIST, null);
+        if (TextUtils.isEmpty(packages)) {
+            return null;
+        }
+        return packages.split(",");
+    }
+
+    /**
+     * 设置包名白名单（传null或空数组表示不限制，运行中的辅助服务会监听该变化并只订阅这些应用的事件）
+     */
+    public static void setPackageAllowList(Context context, String[] packages) {
+        String value = packages == null || packages.length == 0 ? null : TextUtils.join(",", packages);
+        getPreferences(context).edit().putString(KEY_PACKAGE_ALLOW_LIST, value).apply();
+    }
+
+    /**
+     * 获取界面规则文本（未设置返回空字符串）
+     */
+    public static String getRules(Context context) {
+        return getPreferences(context).getString(KEY_RULES, "");
+    }
+
+    /**
+     * 设置界面规则文本（运行中的辅助服务会监听该变化并重新编译）
+     */
+    public static void setRules(Context context, String rules) {
+        getPreferences(context).edit().putString(KEY_RULES, rules).apply();
+    }
+
+    /**
+     * 获取切换日志保留大小上限（字节）
+     */
+    public static long getRetentionBytes(Context context) {
+        return getPreferences(context).getInt(KEY_RETENTION_MB, DEFAULT_RETENTION_MB) * 1024L * 1024L;
+    }
+
+    /**
+     * 获取切换日志保留时间（毫秒）
+     */
+    public static long getRetentionMillis(Context context) {
+        return getPreferences(context).getInt(KEY_RETENTION_DAYS, DEFAULT_RETENTION_DAYS) * 24L * 60 * 60 * 1000;
+    }
+
+    /**
+     * 设置切换日志保留策略（下次压缩任务运行时生效）
+     *
+     * @param megabytes 大小上限（MB）
+     * @param days      保留天数
+     */
+    public static void setRetention(Context context, int megabytes, int days) {
+        getPreferences(context).edit().putInt(KEY_RETENTION_MB, megabytes).putInt(KEY_RETENTION_DAYS, days).apply();
+    }
+
+    /**
+     * 获取SharedPreferences（辅助服务通过注册监听响应配置变化）
+     */
+    public static SharedPreferences getPreferences(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * 计算已开启功能所需的事件类型
+     */
+    public static int getEventTypes(int features) {
+        int eventTypes = BASE_EVENT_TYPES;
+        for (int[] spec : FEATURE_SPECS) {
+            if ((features & spec[0]) != 0) {
+                eventTypes |= spec[1];
+            }
+        }
+        return eventTypes;
+    }
+
+    /**
+     * 计算已开启功能所需的标签
+     */
+    public static int getFlags(int features) {
+        int flags = BASE_FLAGS;
+        for (int[] spec : FEATURE_SPECS) {
+            if ((features & spec[0]) != 0) {
+                flags |= spec[2];
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * 按已开启功能配置AccessibilityServiceInfo
+     *
+     * @param suspended 是否处于暂停状态（暂停时不订阅任何事件）
+     * @return 配置是否发生变化
+     */
+    public static boolean applyTo(AccessibilityServiceInfo info, int features, String[] packages, boolean suspended) {
+        int eventTypes = suspended ? 0 : getEventTypes(features);
+        int flags = getFlags(features);
+        long timeout = BASE_NOTIFICATION_TIMEOUT;
+        boolean changed = info.eventTypes != eventTypes
+                || info.flags != flags
+                || info.notificationTimeout != timeout
+                || !Arrays.equals(info.packageNames, packages);
+        info.eventTypes = eventTypes;
+        info.flags = flags;
+        info.notificationTimeout = timeout;
+        info.packageNames = packages;
+        return changed;
+    }
+}
@@ -0,0 +1,292 @@
+package com.wangnan.currentactivity.service;
+
+import android.accessibilityservice.AccessibilityService;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityWindowInfo;
+
+import com.wangnan.currentactivity.data.NameTable;
+import com.wangnan.currentactivity.data.WindowModel;
+
+import java.util.List;
+
+/**
+ * @ClassName: WindowTracker
+ * @Description: 多窗口前台跟踪（分屏、自由窗口、折叠屏及多屏幕时每个可见应用窗口一行，显示在悬浮窗）
+ * <p>
+ * 只在事件处理线程运行。根据窗口变化事件的变化标志（Android 9起）决定是否需要查询窗口列表：
+ * 窗口移除直接更新模型，焦点、无障碍焦点、子窗口等变化忽略，只有新增、位置、层级变化才查询；
+ * 一段时间内的多次变化合并为一次查询。查询结果与{@link WindowModel}增量比较，
+ * 只有新窗口才读取根节点获取包名，窗口的Activity由窗口状态变化事件更新，不遍历视图树。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class WindowTracker {
+
+    /**
+     * 悬浮窗显示窗口列表的最少可见窗口数（单窗口时悬浮窗已显示当前Activity）
+     */
+    private static final int MIN_WINDOWS = 2;
+
+    /**
+     * 窗口变化的合并时间（毫秒，期间的多次变化只查询一次窗口列表）
+     */
+    private static final long REFRESH_DELAY_MS = 50;
+
+    /**
+     * 需要查询窗口列表的变化（新增、位置、层级；Android 9以下事件不携带变化标志，总是查询）
+     */
+    private static final int REFRESH_CHANGES = AccessibilityEvent.WINDOWS_CHANGE_ADDED
+            | AccessibilityEvent.WINDOWS_CHANGE_BOUNDS
+            | AccessibilityEvent.WINDOWS_CHANGE_LAYER;
+
+    /**
+     * 辅助服务
+     */
+    private final AccessibilityService mService;
+
+    /**
+     * 事件处理线程Handler
+     */
+    private final Handler mHandler;
+
+    /**
+     * 名称驻留表（只在处理线程写入）
+     */
+    private final NameTable mNameTable;
+
+    /**
+     * 窗口模型
+     */
+    private final WindowModel mModel = new WindowModel();
+
+    /**
+     * 窗口列表变化监听
+     */
+    private volatile OnWindowsListener mListener;
+
+    /**
+     * 是否已安排窗口列表查询
+     */
+    private boolean isRefreshScheduled;
+
+    /**
+     * 最近一次交给监听的结果
+     */
+    private String mPublished;
+
+    /**
+     * 复用的边界矩形
+     */
+    private final Rect mBounds = new Rect();
+
+    /**
+     * 统计：收到的窗口变化、无需查询直接处理的变化、窗口列表查询次数、读取根节点次数
+     */
+    private long mChangeCount;
+    private long mSkippedCount;
+    private long mRefreshCount;
+    private long mRootCount;
+
+    /**
+     * 窗口列表查询任务
+     */
+    private final Runnable mRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isRefreshScheduled = false;
+            refresh();
+        }
+    };
+
+    public WindowTracker(AccessibilityService service, Handler handler, NameTable nameTable) {
+        mService = service;
+        mHandler = handler;
+        mNameTable = nameTable;
+    }
+
+    /**
+     * 设置窗口列表变化监听（任意线程调用）
+     */
+    public void setListener(OnWindowsListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 开始跟踪（处理线程，立即查询一次窗口列表）
+     */
+    public void start() {
+        scheduleRefresh(0);
+    }
+
+    /**
+     * 窗口变化事件（处理线程）
+     *
+     * @param changes 变化标志（Android 9以下为0）
+     */
+    public void onWindowsChanged(int windowId, int changes) {
+        mChangeCount++;
+        if (changes == 0) {
+            scheduleRefresh(REFRESH_DELAY_MS);
+            return;
+        }
+        boolean changed = false;
+        if ((changes & AccessibilityEvent.WINDOWS_CHANGE_REMOVED) != 0) {
+            changed = mModel.remove(windowId);
+        }
+        if ((changes & REFRESH_CHANGES) != 0) {
+            scheduleRefresh(REFRESH_DELAY_MS);
+        } else {
+            mSkippedCount++;
+            if (changed) {
+                publish();
+            }
+        }
+    }
+
+    /**
+     * 窗口中切换到一个Activity（处理线程，窗口ID未知时忽略）
+     */
+    public void onActivity(int windowId, int packageId, int classId) {
+        if (windowId >= 0 && mModel.setActivity(windowId, packageId, classId)) {
+            publish();
+        }
+    }
+
+    /**
+     * 清空模型（处理线程，关闭功能时调用）
+     */
+    public void clear() {
+        mHandler.removeCallbacks(mRefreshRunnable);
+        isRefreshScheduled = false;
+        mModel.clear();
+        mPublished = null;
+    }
+
+    /**
+     * 统计信息（dumpsys，数值可能略有延迟）
+     */
+    public String getStats() {
+        return "changes=" + mChangeCount + " skipped=" + mSkippedCount + " refreshes=" + mRefreshCount
+                + " roots=" + mRootCount + " windows=" + mModel.getVisibleCount();
+    }
+
+    /**
+     * 安排一次窗口列表查询（已安排时合并）
+     */
+    private void scheduleRefresh(long delayMillis) {
+        if (!isRefreshScheduled) {
+            isRefreshScheduled = true;
+            mHandler.postDelayed(mRefreshRunnable, delayMillis);
+        }
+    }
+
+    /**
+     * 查询所有显示屏的窗口列表，增量更新模型
+     */
+    private void refresh() {
+        mRefreshCount++;
+        mModel.beginUpdate();
+        boolean changed;
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                SparseArray<List<AccessibilityWindowInfo>> displays = mService.getWindowsOnAllDisplays();
+                for (int i = 0; i < displays.size(); i++) {
+                    updateWindows(displays.keyAt(i), displays.valueAt(i));
+                }
+            } else {
+                updateWindows(0, mService.getWindows());
+            }
+            changed = mModel.endUpdate();
+        } catch (RuntimeException e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+            // 查询中途失败：未遍历到的窗口不能视为已关闭，保留原有记录
+            changed = mModel.abortUpdate();
+        }
+        if (changed) {
+            publish();
+        }
+    }
+
+    /**
+     * 用一个显示屏的窗口列表更新模型（只处理可见的应用窗口，处理完回收）
+     */
+    private void updateWindows(int displayId, List<AccessibilityWindowInfo> windows) {
+        if (windows == null) {
+            return;
+        }
+        try {
+            for (AccessibilityWindowInfo window : windows) {
+                if (window.getType() != AccessibilityWindowInfo.TYPE_APPLICATION) {
+                    continue;
+                }
+                window.getBoundsInScreen(mBounds);
+                if (mBounds.isEmpty()) {
+                    continue;
+                }
+                if (mModel.update(window.getId(), displayId, window.getLayer())) {
+                    // 新窗口尚未收到Activity切换，读取根节点获取包名（每个窗口只读取一次，失败也不重试）
+                    resolvePackage(window);
+                }
+            }
+        } finally {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+                for (AccessibilityWindowInfo window : windows) {
+                    window.recycle();
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取窗口根节点的包名
+     */
+    @SuppressWarnings("deprecation")
+    private void resolvePackage(AccessibilityWindowInfo window) {
+        AccessibilityNodeInfo root = window.getRoot();
+        if (root == null) {
+            return;
+        }
+        mRootCount++;
+        CharSequence packageName = root.getPackageName();
+        if (packageName != null) {
+            mModel.setPackage(window.getId(), mNameTable.intern(packageName));
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU) {
+            root.recycle();
+        }
+    }
+
+    /**
+     * 把显示文本交给监听（与上一次相同时不回调）
+     */
+    private void publish() {
+        String text = mModel.getText(mNameTable, MIN_WINDOWS);
+        if (TextUtils.equals(text, mPublished)) {
+            return;
+        }
+        mPublished = text;
+        OnWindowsListener listener = mListener;
+        if (listener != null) {
+            listener.onWindows(text);
+        }
+    }
+
+    /**
+     * 窗口列表变化监听
+     */
+    public interface OnWindowsListener {
+
+        /**
+         * 可见应用窗口列表变化（在事件处理线程回调，text为null表示可见窗口少于两个）
+         */
+        void onWindows(String text);
+    }
+}
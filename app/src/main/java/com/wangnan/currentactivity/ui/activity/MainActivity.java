@@ -1,21 +1,44 @@
 package com.wangnan.currentactivity.ui.activity;
 
 import android.annotation.SuppressLint;
+import android.app.AlertDialog;
+import android.content.DialogInterface;
 import android.os.Build;
 import android.os.Bundle;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.SwitchCompat;
+import android.graphics.drawable.BitmapDrawable;
 import android.text.Html;
+import android.text.InputType;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.TextUtils;
+import android.text.style.ImageSpan;
+import android.view.Gravity;
 import android.view.View;
+import android.widget.EditText;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
 import com.wangnan.currentactivity.R;
-import com.wangnan.currentactivity.service.MAccessibilityService;
+import com.wangnan.currentactivity.data.DwellStats;
+import com.wangnan.currentactivity.data.LaunchStats;
+import com.wangnan.currentactivity.data.NameTable;
+import com.wangnan.currentactivity.data.ScreenTable;
+import com.wangnan.currentactivity.data.TransitionHistory;
+import com.wangnan.currentactivity.service.ActivityMonitor;
+import com.wangnan.currentactivity.service.ServiceFeatures;
 import com.wangnan.currentactivity.ui.window.WindowViewContainer;
 import com.wangnan.currentactivity.util.ActivityUtil;
+import com.wangnan.currentactivity.util.AppInfoResolver;
 import com.wangnan.currentactivity.util.DialogUtil;
-import com.wangnan.currentactivity.util.PermissionUtil;
+import com.wangnan.currentactivity.util.PermissionStateCache;
 
 
 /**
@@ -27,6 +50,16 @@ import com.wangnan.currentactivity.util.PermissionUtil;
 
 public class MainActivity extends AppCompatActivity {
 
+    /**
+     * 主界面显示的切换记录条数
+     */
+    private static final int HISTORY_COUNT = 50;
+
+    /**
+     * 主界面显示的停留时长条数（每组）
+     */
+    private static final int DWELL_COUNT = 10;
+
     /**
      * 当前Activity静态引用
      */
@@ -46,7 +79,61 @@ public class MainActivity extends AppCompatActivity {
     private TextView mNotifyTV; // 通知栏权限（提示文本）
     private SwitchCompat mNotifySC; // 通知栏权限（开关按钮）
 
+    private TextView mAllowListTV; // 包名白名单
+    private TextView mRetentionTV; // 切换日志保留策略
     private View mCloseV; // 关闭辅助服务按钮
+    private TextView mLaunchStatsTV; // 启动耗时统计
+    private TextView mDwellTV; // 停留时长
+
+    private final int[] mDwellIds = new int[DWELL_COUNT]; // 停留时长（包名ID或界面ID）
+    private final long[] mDwellMillis = new long[DWELL_COUNT]; // 停留时长（毫秒）
+
+    private View mHistoryTitleV; // 切换记录标题（点击刷新）
+    private TextView mHistoryTV; // 切换记录
+
+    private final long[] mHistoryTimes = new long[HISTORY_COUNT]; // 切换记录（时间）
+    private final int[] mHistoryPackageIds = new int[HISTORY_COUNT]; // 切换记录（包名ID）
+    private final int[] mHistoryClassIds = new int[HISTORY_COUNT]; // 切换记录（类名ID）
+    private final SimpleDateFormat mTimeFormat = new SimpleDateFormat("HH:mm:ss", Locale.getDefault()); // 时间格式
+
+    private CharSequence[] mOverlayTips; // 悬浮窗权限提示文本（未开启/已开启，只解析一次Html）
+    private CharSequence[] mNotifyTips; // 通知栏权限提示文本（未开启/已开启，只解析一次Html）
+
+    private AppInfoResolver mAppInfoResolver; // 应用名称及图标解析器
+    private PermissionStateCache mStateCache; // 权限及服务状态缓存
+    private boolean isOverlayChecked; // 是否已完成悬浮窗权限检查（首次读取到状态后检查）
+
+    /**
+     * 权限及服务状态变化监听
+     */
+    private final PermissionStateCache.OnStateChangeListener mStateListener = new PermissionStateCache.OnStateChangeListener() {
+        @Override
+        public void onStateChanged(PermissionStateCache.Snapshot snapshot) {
+            checkOverlayPermission(snapshot);
+            updateUI();
+        }
+    };
+
+    /**
+     * 刷新切换记录任务（多个应用信息加载完成时合并为一次刷新）
+     */
+    private final Runnable mHistoryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            updateHistory();
+        }
+    };
+
+    /**
+     * 应用信息加载完成监听（刷新切换记录中的应用名称及图标）
+     */
+    private final AppInfoResolver.OnAppInfoLoadedListener mAppInfoListener = new AppInfoResolver.OnAppInfoLoadedListener() {
+        @Override
+        public void onAppInfoLoaded(String packageName, AppInfoResolver.AppInfo info) {
+            mHistoryTV.removeCallbacks(mHistoryRunnable);
+            mHistoryTV.post(mHistoryRunnable);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -70,7 +157,19 @@ public class MainActivity extends AppCompatActivity {
         mNotifyLL = findViewById(R.id.ll_notify);
         mNotifyTV = findViewById(R.id.tv_notify);
         mNotifySC = findViewById(R.id.sc_notify);
+        mAllowListTV = findViewById(R.id.tv_package_allow_list);
+        mRetentionTV = findViewById(R.id.tv_retention);
         mCloseV = findViewById(R.id.tv_close);
+        mLaunchStatsTV = findViewById(R.id.tv_launch_stats);
+        mDwellTV = findViewById(R.id.tv_dwell);
+        mHistoryTitleV = findViewById(R.id.tv_history_title);
+        mHistoryTV = findViewById(R.id.tv_history);
+        mOverlayTips = new CharSequence[]{
+                Html.fromHtml(getString(R.string.string_service_overlay_tip1)),
+                Html.fromHtml(getString(R.string.string_service_overlay_tip2))};
+        mNotifyTips = new CharSequence[]{
+                Html.fromHtml(getString(R.string.string_service_notify_tip1)),
+                Html.fromHtml(getString(R.string.string_service_notify_tip2))};
     }
 
     /**
@@ -98,6 +197,39 @@ public class MainActivity extends AppCompatActivity {
                 ActivityUtil.turnToNotifyPermission(MainActivity.this);
             }
         });
+        // 功能开关监听（运行中的辅助服务监听配置变化）
+        bindFeatureSwitch(R.id.sc_metrics, ServiceFeatures.FEATURE_METRICS);
+        bindFeatureSwitch(R.id.sc_launch, ServiceFeatures.FEATURE_LAUNCH_TIMER);
+        bindFeatureSwitch(R.id.sc_launch_settle, ServiceFeatures.FEATURE_LAUNCH_SETTLE);
+        bindFeatureSwitch(R.id.sc_back_stack, ServiceFeatures.FEATURE_BACK_STACK);
+        bindFeatureSwitch(R.id.sc_view_ids, ServiceFeatures.FEATURE_VIEW_IDS);
+        bindFeatureSwitch(R.id.sc_multi_window, ServiceFeatures.FEATURE_MULTI_WINDOW);
+        bindFeatureSwitch(R.id.sc_notification, ServiceFeatures.FEATURE_NOTIFICATION);
+        bindFeatureSwitch(R.id.sc_stream, ServiceFeatures.FEATURE_STREAM);
+        bindFeatureSwitch(R.id.sc_rules, ServiceFeatures.FEATURE_RULES);
+        // "界面规则"点击监听（编辑规则）
+        findViewById(R.id.tv_rules).setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showRulesDialog();
+            }
+        });
+        // "应用范围"点击监听（编辑包名白名单）
+        updateAllowList();
+        mAllowListTV.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showAllowListDialog();
+            }
+        });
+        // "切换日志"点击监听（编辑保留策略）
+        updateRetention();
+        mRetentionTV.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showRetentionDialog();
+            }
+        });
         // "关闭辅助服务"点击监听
         mCloseV.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -105,6 +237,151 @@ public class MainActivity extends AppCompatActivity {
                 ActivityUtil.toAuthAccessibilityService(MainActivity.this);
             }
         });
+        // "切换记录"点击监听（刷新）
+        mHistoryTitleV.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                updateLaunchStats();
+                updateDwell();
+                updateHistory();
+            }
+        });
+    }
+
+    /**
+     * 绑定功能开关（显示当前状态，点击时保存）
+     */
+    private void bindFeatureSwitch(int id, final int feature) {
+        final SwitchCompat switchCompat = findViewById(id);
+        switchCompat.setChecked(ServiceFeatures.isEnabled(this, feature));
+        switchCompat.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                ServiceFeatures.setEnabled(MainActivity.this, feature, switchCompat.isChecked());
+                if (feature == ServiceFeatures.FEATURE_LAUNCH_TIMER) {
+                    updateLaunchStats();
+                }
+            }
+        });
+    }
+
+    /**
+     * 显示界面规则编辑对话框（保存后运行中的辅助服务重新编译规则）
+     */
+    private void showRulesDialog() {
+        final EditText editText = new EditText(this);
+        editText.setGravity(Gravity.TOP);
+        editText.setMinLines(4);
+        editText.setHint(R.string.string_rules_hint);
+        editText.setText(ServiceFeatures.getRules(this));
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.string_rules_title)
+                .setView(editText)
+                .setNegativeButton(R.string.string_rules_cancel, null)
+                .setPositiveButton(R.string.string_rules_save, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        ServiceFeatures.setRules(MainActivity.this, editText.getText().toString());
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * 显示包名白名单编辑对话框（保存后运行中的辅助服务只订阅这些应用的事件）
+     */
+    private void showAllowListDialog() {
+        final EditText editText = new EditText(this);
+        editText.setGravity(Gravity.TOP);
+        editText.setMinLines(4);
+        editText.setHint(R.string.string_package_allow_list_hint);
+        String[] packages = ServiceFeatures.getPackageAllowList(this);
+        editText.setText(packages == null ? "" : TextUtils.join("\n", packages));
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.string_package_allow_list_title)
+                .setView(editText)
+                .setNegativeButton(R.string.string_rules_cancel, null)
+                .setPositiveButton(R.string.string_rules_save, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        List<String> list = new ArrayList<>();
+                        for (String packageName : editText.getText().toString().split("[\\s,]+")) {
+                            if (!packageName.isEmpty()) {
+                                list.add(packageName);
+                            }
+                        }
+                        ServiceFeatures.setPackageAllowList(MainActivity.this, list.toArray(new String[0]));
+                        updateAllowList();
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * 刷新包名白名单显示
+     */
+    private void updateAllowList() {
+        String[] packages = ServiceFeatures.getPackageAllowList(this);
+        mAllowListTV.setText(getString(R.string.string_package_allow_list, packages == null
+                ? getString(R.string.string_package_allow_list_all) : TextUtils.join(", ", packages)));
+    }
+
+    /**
+     * 显示切换日志保留策略编辑对话框（下次压缩任务运行时生效，输入无效时不保存）
+     */
+    private void showRetentionDialog() {
+        final EditText megabytesET = new EditText(this);
+        megabytesET.setInputType(InputType.TYPE_CLASS_NUMBER);
+        megabytesET.setHint(R.string.string_retention_mb_hint);
+        megabytesET.setText(String.valueOf(getRetentionMegabytes()));
+        final EditText daysET = new EditText(this);
+        daysET.setInputType(InputType.TYPE_CLASS_NUMBER);
+        daysET.setHint(R.string.string_retention_days_hint);
+        daysET.setText(String.valueOf(getRetentionDays()));
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.addView(megabytesET);
+        layout.addView(daysET);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.string_retention_title)
+                .setView(layout)
+                .setNegativeButton(R.string.string_rules_cancel, null)
+                .setPositiveButton(R.string.string_rules_save, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        try {
+                            int megabytes = Integer.parseInt(megabytesET.getText().toString().trim());
+                            int days = Integer.parseInt(daysET.getText().toString().trim());
+                            if (megabytes > 0 && days > 0) {
+                                ServiceFeatures.setRetention(MainActivity.this, megabytes, days);
+                                updateRetention();
+                            }
+                        } catch (NumberFormatException ignored) {
+                        }
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * 刷新切换日志保留策略显示
+     */
+    private void updateRetention() {
+        mRetentionTV.setText(getString(R.string.string_retention, getRetentionMegabytes(), getRetentionDays()));
+    }
+
+    /**
+     * 切换日志保留大小上限（MB）
+     */
+    private int getRetentionMegabytes() {
+        return (int) (ServiceFeatures.getRetentionBytes(this) / (1024L * 1024L));
+    }
+
+    /**
+     * 切换日志保留天数
+     */
+    private int getRetentionDays() {
+        return (int) (ServiceFeatures.getRetentionMillis(this) / (24L * 60 * 60 * 1000));
     }
 
     /**
@@ -113,8 +390,24 @@ public class MainActivity extends AppCompatActivity {
     private void initData() {
         // 当前Activity静态引用赋值
         mActivity = this;
-        // 检查是否有悬浮窗权限，没有给出弹框提醒
-        if (!PermissionUtil.hasOverlayPermission(this)) {
+        // 监听权限及服务状态变化（状态在后台线程读取）
+        mStateCache = PermissionStateCache.getInstance(this);
+        mStateCache.addListener(mStateListener);
+        checkOverlayPermission(mStateCache.getSnapshot());
+        // 切换记录中的应用名称及图标（后台加载）
+        mAppInfoResolver = AppInfoResolver.getInstance(this);
+        mAppInfoResolver.addListener(mAppInfoListener);
+    }
+
+    /**
+     * 检查是否有悬浮窗权限，没有给出弹框提醒（仅在首次读取到状态后检查一次）
+     */
+    private void checkOverlayPermission(PermissionStateCache.Snapshot snapshot) {
+        if (isOverlayChecked || !snapshot.isLoaded) {
+            return;
+        }
+        isOverlayChecked = true;
+        if (!snapshot.hasOverlayPermission) {
             DialogUtil.showOverlayAlertDialog(this);
         }
     }
@@ -122,7 +415,128 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
+        // 从设置页返回时权限可能已变化，后台刷新，变化后通过监听更新界面
+        mStateCache.refresh();
         updateUI();
+        updateLaunchStats();
+        updateDwell();
+        updateHistory();
+    }
+
+    /**
+     * 更新停留时长（今日按应用、累计按界面，各取时长最长的{@link #DWELL_COUNT}项）
+     */
+    private void updateDwell() {
+        ActivityMonitor monitor = ActivityMonitor.getInstance();
+        DwellStats dwellStats = monitor.getDwellStats();
+        NameTable nameTable = monitor.getNameTable();
+        ScreenTable screenTable = monitor.getScreenTable();
+        long now = System.currentTimeMillis();
+        StringBuilder builder = new StringBuilder();
+        int count = dwellStats.copySorted(DwellStats.GROUP_PACKAGE, DwellStats.PERIOD_DAY, dwellStats.dayIndex(now),
+                now, mDwellIds, mDwellMillis);
+        if (count > 0) {
+            builder.append(getString(R.string.string_dwell_today_title));
+            for (int i = 0; i < count; i++) {
+                builder.append('\n');
+                appendDuration(builder, mDwellMillis[i]);
+                builder.append(' ').append(nameTable.getName(mDwellIds[i]));
+            }
+        }
+        count = dwellStats.copySorted(DwellStats.GROUP_SCREEN, DwellStats.PERIOD_ALL, 0, now, mDwellIds, mDwellMillis);
+        if (count > 0) {
+            builder.append(builder.length() > 0 ? "\n\n" : "").append(getString(R.string.string_dwell_total_title));
+            for (int i = 0; i < count; i++) {
+                builder.append('\n');
+                appendDuration(builder, mDwellMillis[i]);
+                builder.append(' ').append(nameTable.getName(screenTable.getPackageId(mDwellIds[i])))
+                        .append('/').append(nameTable.getName(screenTable.getClassId(mDwellIds[i])));
+            }
+        }
+        mDwellTV.setText(builder);
+        mDwellTV.setVisibility(builder.length() > 0 ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * 追加时长（时:分:秒）
+     */
+    private static void appendDuration(StringBuilder builder, long millis) {
+        long seconds = millis / 1000;
+        builder.append(String.format(Locale.US, "%3d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60));
+    }
+
+    /**
+     * 更新启动耗时统计（按包名及启动类型分组）
+     */
+    private void updateLaunchStats() {
+        List<LaunchStats.Summary> summaries = ActivityMonitor.getInstance().getLaunchStats().getSummaries();
+        if (summaries.isEmpty() || !ServiceFeatures.isEnabled(this, ServiceFeatures.FEATURE_LAUNCH_TIMER)) {
+            mLaunchStatsTV.setVisibility(View.GONE);
+            return;
+        }
+        NameTable nameTable = ActivityMonitor.getInstance().getNameTable();
+        StringBuilder builder = new StringBuilder(getString(R.string.string_launch_stats_title));
+        for (LaunchStats.Summary summary : summaries) {
+            builder.append('\n').append(nameTable.getName(summary.packageId))
+                    .append(summary.kind == LaunchStats.KIND_FIRST ? " 首次" : " 重复")
+                    .append(" ×").append(summary.count)
+                    .append("\n  首个窗口 ");
+            appendRange(builder, summary.firstWindow);
+            builder.append("  界面稳定 ");
+            appendRange(builder, summary.settled);
+        }
+        mLaunchStatsTV.setText(builder);
+        mLaunchStatsTV.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * 追加"最小/中位/最大"
+     */
+    private static void appendRange(StringBuilder builder, int[] range) {
+        if (range[0] == LaunchStats.NO_VALUE) {
+            builder.append('-');
+            return;
+        }
+        builder.append(range[0]).append('/').append(range[1]).append('/').append(range[2]);
+    }
+
+    /**
+     * 更新切换记录（从辅助服务内存中读取最近{@link #HISTORY_COUNT}条）
+     */
+    private void updateHistory() {
+        ActivityMonitor monitor = ActivityMonitor.getInstance();
+        TransitionHistory history = monitor.getHistory();
+        int count = history.copyRecent(0, HISTORY_COUNT, mHistoryTimes, mHistoryPackageIds, mHistoryClassIds);
+        if (count == 0) {
+            mHistoryTV.setText(R.string.string_history_empty);
+            return;
+        }
+        NameTable nameTable = monitor.getNameTable();
+        Date date = new Date();
+        int iconSize = mHistoryTV.getLineHeight();
+        SpannableStringBuilder builder = new SpannableStringBuilder();
+        for (int i = 0; i < count; i++) {
+            date.setTime(mHistoryTimes[i]);
+            String packageName = nameTable.getName(mHistoryPackageIds[i]);
+            builder.append(mTimeFormat.format(date)).append(' ');
+            // 应用图标 + 名称（未加载时先只显示包名，加载完成后通过监听刷新）
+            AppInfoResolver.AppInfo info = mAppInfoResolver.get(packageName);
+            if (info != null && info.icon != null) {
+                BitmapDrawable icon = new BitmapDrawable(getResources(), info.icon);
+                icon.setBounds(0, 0, iconSize, iconSize);
+                int start = builder.length();
+                builder.append(' ');
+                builder.setSpan(new ImageSpan(icon), start, builder.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                builder.append(' ');
+            }
+            if (info != null && info.label != null) {
+                builder.append(info.label).append(' ');
+            }
+            builder.append(packageName).append('/')
+                    .append(nameTable.getName(mHistoryClassIds[i])).append('\n');
+        }
+        builder.append("共").append(String.valueOf(history.size())).append("条（容量").append(String.valueOf(history.capacity())).append("）");
+        mHistoryTV.setText(builder);
     }
 
     /**
@@ -130,6 +544,7 @@ public class MainActivity extends AppCompatActivity {
      */
     @SuppressLint("ObsoleteSdkInt")
     public void updateUI() {
+        PermissionStateCache.Snapshot snapshot = mStateCache.getSnapshot();
         // 设置"打开/关闭悬浮窗"提示
         boolean isShow = WindowViewContainer.getInstance(this).getWinodwViewShowState();
         mSwitchTV.setText(isShow ? R.string.string_service_close : R.string.string_service_start);
@@ -137,8 +552,8 @@ public class MainActivity extends AppCompatActivity {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
             mOverlayLL.setVisibility(View.GONE);
         } else {
-            boolean overlay = PermissionUtil.hasOverlayPermission(this);
-            mOverlayTV.setText(Html.fromHtml(getString(overlay ? R.string.string_service_overlay_tip2 : R.string.string_service_overlay_tip1)));
+            boolean overlay = snapshot.hasOverlayPermission;
+            mOverlayTV.setText(mOverlayTips[overlay ? 1 : 0]);
             mOverlaySC.setChecked(overlay);
             mOverlayLL.setVisibility(View.VISIBLE);
         }
@@ -147,13 +562,13 @@ public class MainActivity extends AppCompatActivity {
             mNotifyLL.setVisibility(View.GONE);
             mHintTV.setVisibility(View.GONE);
         } else {
-            boolean notify = PermissionUtil.hasNotifyPermission(this);
-            mNotifyTV.setText(Html.fromHtml(getString(notify ? R.string.string_service_notify_tip2 : R.string.string_service_notify_tip1)));
+            boolean notify = snapshot.hasNotifyPermission;
+            mNotifyTV.setText(mNotifyTips[notify ? 1 : 0]);
             mNotifySC.setChecked(notify);
             mNotifyLL.setVisibility(View.VISIBLE);
         }
         // 设置"关闭辅助服务按钮"的显示和隐藏
-        if (PermissionUtil.getServiceState(this, MAccessibilityService.SERVCE_NAME)){
+        if (snapshot.isServiceEnabled) {
             mCloseV.setVisibility(View.VISIBLE);
         } else {
             mCloseV.setVisibility(View.GONE);
@@ -164,13 +579,14 @@ public class MainActivity extends AppCompatActivity {
      * 显示/隐藏窗口视图
      */
     private void switchWindow() {
+        PermissionStateCache.Snapshot snapshot = mStateCache.getSnapshot();
         // 检查是否有悬浮窗权限，没有给出弹框提醒
-        if (!PermissionUtil.hasOverlayPermission(this)) {
+        if (!snapshot.hasOverlayPermission) {
             DialogUtil.showOverlayAlertDialog(this);
             return;
         }
         // 检查用户是否已授权开启"辅助功能"
-        if (!PermissionUtil.getServiceState(this, MAccessibilityService.SERVCE_NAME)) {
+        if (!snapshot.isServiceEnabled) {
             DialogUtil.showAccessibilityServiceAlertDialog(this, "【打开悬浮窗】需要去【辅助功能】开启", "取消", "去开启");
             return;
         }
@@ -183,6 +599,9 @@ public class MainActivity extends AppCompatActivity {
     protected void onDestroy() {
         // 当前Activity静态引用赋空
         mActivity = null;
+        mStateCache.removeListener(mStateListener);
+        mAppInfoResolver.removeListener(mAppInfoListener);
+        mHistoryTV.removeCallbacks(mHistoryRunnable);
         super.onDestroy();
     }
 
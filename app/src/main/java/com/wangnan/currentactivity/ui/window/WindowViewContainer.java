@@ -9,9 +9,10 @@ import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.WindowManager;
-import android.widget.TextView;
 
 import com.wangnan.currentactivity.R;
+import com.wangnan.currentactivity.util.AppInfoResolver;
+import com.wangnan.currentactivity.widget.OverlayView;
 
 /**
  * @ClassName: WindowViewContainer
@@ -53,7 +54,7 @@ public class WindowViewContainer {
     /**
      * 窗口文本视图（显示包名+类名）
      */
-    private TextView mTextView;
+    private OverlayView mOverlayView;
 
     /**
      * 窗口管理器
@@ -70,13 +71,64 @@ public class WindowViewContainer {
      */
     private boolean isShow;
 
+    /**
+     * 视图是否真实附着在窗口上（由attach/detach回调维护）
+     */
+    private boolean isAttached;
+
+    /**
+     * 窗口被系统移除后重新添加的次数
+     */
+    private int mRecoverCount;
+
+    /**
+     * 显示状态变化监听
+     */
+    private OnShowStateChangeListener mOnShowStateChangeListener;
+
+    /**
+     * 应用名称及图标解析器
+     */
+    private AppInfoResolver mAppInfoResolver;
+
+    /**
+     * 当前标题行对应的包名
+     */
+    private String mShownPackageName;
+
+    /**
+     * 应用信息加载完成监听（加载的是当前显示的应用时更新标题行）
+     */
+    private final AppInfoResolver.OnAppInfoLoadedListener mAppInfoListener = new AppInfoResolver.OnAppInfoLoadedListener() {
+        @Override
+        public void onAppInfoLoaded(String packageName, AppInfoResolver.AppInfo info) {
+            if (packageName.equals(mShownPackageName)) {
+                mOverlayView.setAppInfo(info.label, info.icon);
+            }
+        }
+    };
+
     /**
      * 初始化视图
      *
      */
     @SuppressLint("InflateParams")
     private void initView(Context context) {
-        mTextView = (TextView) LayoutInflater.from(context).inflate(R.layout.lay_window, null);
+        mOverlayView = (OverlayView) LayoutInflater.from(context).inflate(R.layout.lay_window, null);
+        // 监听视图附着状态，用于判断窗口是否被系统（或某些ROM）移除
+        mOverlayView.addOnAttachStateChangeListener(new View.OnAttachStateChangeListener() {
+            @Override
+            public void onViewAttachedToWindow(View v) {
+                isAttached = true;
+            }
+
+            @Override
+            public void onViewDetachedFromWindow(View v) {
+                isAttached = false;
+            }
+        });
+        mAppInfoResolver = AppInfoResolver.getInstance(context);
+        mAppInfoResolver.addListener(mAppInfoListener);
     }
 
     /**
@@ -116,8 +168,8 @@ public class WindowViewContainer {
         // 设置布局宽/高为自适应
         mParams.width = WindowManager.LayoutParams.WRAP_CONTENT;
         mParams.height = WindowManager.LayoutParams.WRAP_CONTENT;
-        // 添加TextView
-        mWindowManager.addView(mTextView, mParams);
+        // 添加悬浮窗视图
+        mWindowManager.addView(mOverlayView, mParams);
         // 记录视图已被添加、显示
         isAdded = true;
         isShow = true;
@@ -126,20 +178,117 @@ public class WindowViewContainer {
     /**
      * 更新窗口视图
      *
-     * @param text 显示内容
+     * @param text        显示内容
+     * @param packageName 包名（标题行显示该应用的名称及图标）
      */
-    public void updateWindowView(String text) {
+    public void updateWindowView(String text, String packageName) {
         if (isAdded) {
-            mTextView.setText(text);
+            mOverlayView.setText(text);
+            updateAppInfo(packageName);
             // 防止某些低版本的手机（或模拟器）按Back键应用退出时，Window窗口被移除无法恢复
-            try {
-                addView();
-            } catch (Exception e) {
-                Log.d("ERROR", Log.getStackTraceString(e));
-            }
+            recoverWindowView();
         }
     }
 
+    /**
+     * 更新指标行（传null不显示）
+     */
+    public void updateHud(CharSequence text) {
+        mOverlayView.setHudText(text);
+    }
+
+    /**
+     * 更新多窗口行（传null不显示）
+     */
+    public void updateWindows(CharSequence text) {
+        mOverlayView.setWindowsText(text);
+    }
+
+    /**
+     * 更新视图层级行（传null不显示）
+     */
+    public void updateDetail(CharSequence text) {
+        mOverlayView.setDetailText(text);
+    }
+
+    /**
+     * 更新规则行并高亮悬浮窗（传null取消高亮）
+     */
+    public void updateRule(CharSequence text) {
+        mOverlayView.setRuleText(text);
+    }
+
+    /**
+     * 设置悬浮窗绘制完成监听（性能指标统计延迟）
+     */
+    public void setOnDrawnListener(OverlayView.OnDrawnListener listener) {
+        mOverlayView.setOnDrawnListener(listener);
+    }
+
+    /**
+     * 更新标题行（内存缓存命中时立即显示，否则先不显示，加载完成后通过监听更新）
+     */
+    private void updateAppInfo(String packageName) {
+        if (packageName == null || packageName.equals(mShownPackageName)) {
+            return;
+        }
+        mShownPackageName = packageName;
+        AppInfoResolver.AppInfo info = mAppInfoResolver.get(packageName);
+        if (info != null) {
+            mOverlayView.setAppInfo(info.label, info.icon);
+        } else {
+            mOverlayView.setAppInfo(null, null);
+        }
+    }
+
+    /**
+     * 应用安装/更新/卸载（清除缓存，正在显示该应用时重新加载）
+     */
+    public void onPackageChanged(String packageName) {
+        mAppInfoResolver.invalidate(packageName);
+        if (packageName.equals(mShownPackageName)) {
+            mShownPackageName = null;
+            updateAppInfo(packageName);
+        }
+    }
+
+    /**
+     * 窗口被移除时重新添加（仅在视图确实脱离窗口时执行，正常情况下无任何Binder调用）
+     */
+    private void recoverWindowView() {
+        // 已附着，或已添加但尚未完成首次附着（此时父视图已是ViewRootImpl）
+        if (isAttached || mOverlayView.getParent() != null) {
+            return;
+        }
+        try {
+            addView();
+            mRecoverCount++;
+        } catch (Exception e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+        }
+    }
+
+    /**
+     * 获取窗口被移除后重新添加的次数
+     */
+    public int getRecoverCount() {
+        return mRecoverCount;
+    }
+
+    /**
+     * 获取悬浮窗重新布局次数
+     */
+    public long getRelayoutCount() {
+        return mOverlayView.getRelayoutCount();
+    }
+
+    /**
+     * 获取悬浮窗仅重绘次数
+     */
+    public long getRedrawCount() {
+        return mOverlayView.getRedrawCount();
+    }
+
     /**
      * 移除窗口视图
      */
@@ -147,7 +296,7 @@ public class WindowViewContainer {
         if (!isAdded) {
             return;
         }
-        mWindowManager.removeView(mTextView);
+        mWindowManager.removeView(mOverlayView);
         isAdded = false;
         isShow = false;
     }
@@ -158,10 +307,20 @@ public class WindowViewContainer {
     public void switchWindowView() {
         if (isAdded) {
             isShow = !isShow;
-            mTextView.setVisibility(isShow ? View.VISIBLE : View.INVISIBLE);
+            mOverlayView.setVisibility(isShow ? View.VISIBLE : View.INVISIBLE);
+            if (mOnShowStateChangeListener != null) {
+                mOnShowStateChangeListener.onShowStateChanged(isShow);
+            }
         }
     }
 
+    /**
+     * 设置显示状态变化监听（辅助服务据此暂停/恢复事件处理）
+     */
+    public void setOnShowStateChangeListener(OnShowStateChangeListener listener) {
+        mOnShowStateChangeListener = listener;
+    }
+
     /**
      * 获取窗口视图的显示状态
      */
@@ -174,6 +333,16 @@ public class WindowViewContainer {
      */
     public void destory() {
         removeWindowView();
+        mOnShowStateChangeListener = null;
+        mOverlayView.setOnDrawnListener(null);
+        mAppInfoResolver.removeListener(mAppInfoListener);
         mCustomWindowView = null;
     }
+
+    /**
+     * 显示状态变化监听
+     */
+    public interface OnShowStateChangeListener {
+        void onShowStateChanged(boolean isShow);
+    }
 }
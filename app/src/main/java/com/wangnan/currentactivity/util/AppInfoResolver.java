@@ -0,0 +1,425 @@
+package com.wangnan.currentactivity.util;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.TypedValue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @ClassName: AppInfoResolver
+ * @Description: 应用名称及图标解析器（两级缓存：按字节数限制的内存LRU + 磁盘缩略图缓存）
+ * <p>
+ * 主线程只读内存缓存，未命中时在后台线程加载：先读磁盘缩略图（与应用更新时间一致才使用），
+ * 否则通过PackageManager加载名称和图标，缩放到悬浮窗图标尺寸后写入磁盘。加载完成后在主线程通知监听者。
+ * 应用安装/更新/卸载时清除对应的两级缓存。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class AppInfoResolver {
+
+    /***
+     * 解析器（引用变量）
+     */
+    @SuppressLint("StaticFieldLeak")
+    private static AppInfoResolver mInstance;
+
+    /**
+     * 私有构造器
+     */
+    private AppInfoResolver(Context context) {
+        mContext = context.getApplicationContext();
+        mPackageManager = mContext.getPackageManager();
+        mIconSize = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, ICON_SIZE_DP, mContext.getResources().getDisplayMetrics());
+        mDiskDir = new File(mContext.getCacheDir(), DISK_DIR_NAME);
+        HandlerThread thread = new HandlerThread("AppInfoLoader", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mWorkHandler = new Handler(thread.getLooper());
+        mMainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * 获取解析器
+     */
+    public static synchronized AppInfoResolver getInstance(Context context) {
+        if (mInstance == null) {
+            mInstance = new AppInfoResolver(context);
+        }
+        return mInstance;
+    }
+
+    /*******************************************************************************************/
+
+    /**
+     * 图标尺寸（dp）
+     */
+    public static final int ICON_SIZE_DP = 20;
+
+    /**
+     * 内存缓存大小（字节）
+     */
+    private static final int MEMORY_CACHE_BYTES = 2 * 1024 * 1024;
+
+    /**
+     * 磁盘缓存目录名
+     */
+    private static final String DISK_DIR_NAME = "app_icons";
+
+    /**
+     * 磁盘缓存文件后缀
+     */
+    private static final String DISK_FILE_SUFFIX = ".thumb";
+
+    /**
+     * 磁盘缓存文件魔数（"CAIC"）及版本（文件头：魔数 + 版本 + 图标尺寸 + 应用更新时间 + 应用名称，之后为PNG数据）
+     */
+    private static final int DISK_MAGIC = 0x43414943;
+    private static final int DISK_VERSION = 1;
+
+    private final Context mContext;
+
+    /**
+     * 包管理器
+     */
+    private final PackageManager mPackageManager;
+
+    /**
+     * 图标尺寸（px）
+     */
+    private final int mIconSize;
+
+    /**
+     * 磁盘缓存目录
+     */
+    private final File mDiskDir;
+
+    /**
+     * 后台线程Handler（读写磁盘、查询PackageManager）
+     */
+    private final Handler mWorkHandler;
+
+    /**
+     * 主线程Handler（写入内存缓存、通知监听者）
+     */
+    private final Handler mMainHandler;
+
+    /**
+     * 内存缓存（按位图字节数限制大小）
+     */
+    private final LruCache<String, AppInfo> mMemoryCache = new LruCache<String, AppInfo>(MEMORY_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, AppInfo value) {
+            int size = 64 + key.length() * 2;
+            if (value.label != null) {
+                size += value.label.length() * 2;
+            }
+            if (value.icon != null) {
+                size += value.icon.getByteCount();
+            }
+            return size;
+        }
+    };
+
+    /**
+     * 正在加载的包名（仅在主线程访问，避免重复加载）
+     */
+    private final Set<String> mLoading = new HashSet<>();
+
+    /**
+     * 每个包名的缓存代数（仅在主线程访问，清除缓存时递增；加载结果的代数不一致时丢弃）
+     */
+    private final HashMap<String, Integer> mGenerations = new HashMap<>();
+
+    /**
+     * 加载完成监听者（仅在主线程访问）
+     */
+    private final List<OnAppInfoLoadedListener> mListeners = new ArrayList<>();
+
+    /**
+     * 统计：内存命中次数、磁盘命中次数、PackageManager加载次数
+     */
+    private long mMemoryHitCount;
+    private volatile long mDiskHitCount;
+    private volatile long mLoadCount;
+
+    /**
+     * 获取应用信息（需在主线程调用，内存未命中时返回null并在后台加载，完成后通知监听者）
+     */
+    public AppInfo get(final String packageName) {
+        AppInfo info = mMemoryCache.get(packageName);
+        if (info != null) {
+            mMemoryHitCount++;
+            return info;
+        }
+        if (mLoading.add(packageName)) {
+            startLoad(packageName);
+        }
+        return null;
+    }
+
+    /**
+     * 在后台线程开始加载（需在主线程调用，记录当前缓存代数）
+     */
+    private void startLoad(final String packageName) {
+        final int generation = getGeneration(packageName);
+        mWorkHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                load(packageName, generation);
+            }
+        });
+    }
+
+    /**
+     * 获取包名的缓存代数（需在主线程调用）
+     */
+    private int getGeneration(String packageName) {
+        Integer generation = mGenerations.get(packageName);
+        return generation == null ? 0 : generation;
+    }
+
+    /**
+     * 应用安装/更新/卸载时清除缓存（需在主线程调用）
+     */
+    public void invalidate(final String packageName) {
+        // 正在进行的加载可能读到旧的名称和图标，递增代数使其结果作废
+        mGenerations.put(packageName, getGeneration(packageName) + 1);
+        mMemoryCache.remove(packageName);
+        mWorkHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                File file = getDiskFile(packageName);
+                if (file.exists() && !file.delete()) {
+                    Log.d("AppInfoResolver", "delete failed: " + file);
+                }
+            }
+        });
+    }
+
+    /**
+     * 在后台线程加载应用信息（磁盘 -> PackageManager）
+     */
+    private void load(final String packageName, final int generation) {
+        AppInfo info;
+        try {
+            PackageInfo packageInfo = mPackageManager.getPackageInfo(packageName, 0);
+            File file = getDiskFile(packageName);
+            info = readDisk(file, packageInfo.lastUpdateTime);
+            if (info != null) {
+                mDiskHitCount++;
+            } else {
+                info = loadFromPackageManager(packageInfo.applicationInfo);
+                mLoadCount++;
+                writeDisk(file, packageInfo.lastUpdateTime, info);
+            }
+        } catch (PackageManager.NameNotFoundException e) {
+            // 系统窗口等没有对应应用，缓存空结果避免重复查询
+            info = AppInfo.EMPTY;
+        } catch (RuntimeException e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+            info = AppInfo.EMPTY;
+        }
+        final AppInfo result = info;
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != getGeneration(packageName)) {
+                    // 加载期间缓存已被清除：丢弃结果并重新加载（磁盘文件的删除排在本次加载之后，不会读到旧文件）
+                    startLoad(packageName);
+                    return;
+                }
+                mLoading.remove(packageName);
+                mMemoryCache.put(packageName, result);
+                for (int i = mListeners.size() - 1; i >= 0; i--) {
+                    mListeners.get(i).onAppInfoLoaded(packageName, result);
+                }
+            }
+        });
+    }
+
+    /**
+     * 通过PackageManager加载名称及图标，并将图标缩放为悬浮窗尺寸
+     */
+    private AppInfo loadFromPackageManager(ApplicationInfo applicationInfo) {
+        String label = applicationInfo.loadLabel(mPackageManager).toString();
+        Drawable drawable = applicationInfo.loadIcon(mPackageManager);
+        Bitmap icon = Bitmap.createBitmap(mIconSize, mIconSize, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(icon);
+        drawable.setBounds(0, 0, mIconSize, mIconSize);
+        drawable.draw(canvas);
+        return new AppInfo(label, icon);
+    }
+
+    /**
+     * 读取磁盘缩略图（尺寸或应用更新时间不一致时返回null）
+     */
+    private AppInfo readDisk(File file, long lastUpdateTime) {
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != DISK_MAGIC || input.readInt() != DISK_VERSION
+                    || input.readInt() != mIconSize || input.readLong() != lastUpdateTime) {
+                return null;
+            }
+            String label = input.readUTF();
+            Bitmap icon = BitmapFactory.decodeStream(input);
+            return icon == null ? null : new AppInfo(label, icon);
+        } catch (IOException e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    /**
+     * 写入磁盘缩略图（先写临时文件再重命名，避免读到写了一半的文件）
+     */
+    private void writeDisk(File file, long lastUpdateTime, AppInfo info) {
+        if (!mDiskDir.exists() && !mDiskDir.mkdirs()) {
+            return;
+        }
+        File temp = new File(mDiskDir, file.getName() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            output.writeInt(DISK_MAGIC);
+            output.writeInt(DISK_VERSION);
+            output.writeInt(mIconSize);
+            output.writeLong(lastUpdateTime);
+            output.writeUTF(info.label);
+            info.icon.compress(Bitmap.CompressFormat.PNG, 100, output);
+            output.close();
+            output = null;
+            if (!temp.renameTo(file)) {
+                Log.d("AppInfoResolver", "rename failed: " + file);
+            }
+        } catch (IOException e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+        } finally {
+            closeQuietly(output);
+            if (temp.exists() && !temp.delete()) {
+                Log.d("AppInfoResolver", "delete failed: " + temp);
+            }
+        }
+    }
+
+    /**
+     * 获取磁盘缓存文件
+     */
+    private File getDiskFile(String packageName) {
+        return new File(mDiskDir, packageName + DISK_FILE_SUFFIX);
+    }
+
+    /**
+     * 关闭流（忽略异常）
+     */
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+        }
+    }
+
+    /**
+     * 添加加载完成监听（需在主线程调用）
+     */
+    public void addListener(OnAppInfoLoadedListener listener) {
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    /**
+     * 移除加载完成监听（需在主线程调用）
+     */
+    public void removeListener(OnAppInfoLoadedListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * 获取图标尺寸（px）
+     */
+    public int getIconSize() {
+        return mIconSize;
+    }
+
+    public long getMemoryHitCount() {
+        return mMemoryHitCount;
+    }
+
+    public long getDiskHitCount() {
+        return mDiskHitCount;
+    }
+
+    public long getLoadCount() {
+        return mLoadCount;
+    }
+
+    /**
+     * 应用信息（不可变）
+     */
+    public static final class AppInfo {
+
+        /**
+         * 空结果（没有对应应用）
+         */
+        public static final AppInfo EMPTY = new AppInfo(null, null);
+
+        /**
+         * 应用名称
+         */
+        public final String label;
+
+        /**
+         * 应用图标（已缩放为悬浮窗尺寸）
+         */
+        public final Bitmap icon;
+
+        AppInfo(String label, Bitmap icon) {
+            this.label = label;
+            this.icon = icon;
+        }
+    }
+
+    /**
+     * 加载完成监听
+     */
+    public interface OnAppInfoLoadedListener {
+        void onAppInfoLoaded(String packageName, AppInfo info);
+    }
+}
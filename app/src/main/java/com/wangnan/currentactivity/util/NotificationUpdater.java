@@ -0,0 +1,196 @@
+package com.wangnan.currentactivity.util;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+
+import com.wangnan.currentactivity.R;
+
+/**
+ * @ClassName: NotificationUpdater
+ * @Description: 通知栏当前Activity更新器（限制更新频率，只在主线程使用）
+ * <p>
+ * 系统对每个应用的通知更新有频率限制，超出的更新会被丢弃。这里每{@link #MIN_INTERVAL_MS}毫秒最多更新一次：
+ * 间隔内的多次变化只保留最后一次，间隔结束时一定会刷新最终状态；与已显示内容相同时不更新。
+ * 通知建造者、点击意图只创建一次并复用；RemoteViews每次更新新建（复用同一个对象会不断累积操作）。
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class NotificationUpdater {
+
+    /**
+     * 两次更新的最小间隔（毫秒，每秒最多4次）
+     */
+    private static final long MIN_INTERVAL_MS = 250;
+
+    /**
+     * 上下文
+     */
+    private final Context mContext;
+
+    /**
+     * 通知栏管理器
+     */
+    private final NotificationManager mNotificationManager;
+
+    /**
+     * 通知ID
+     */
+    private final int mNotificationId;
+
+    /**
+     * 主线程Handler（延迟刷新）
+     */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * 复用的通知建造者（Android O以上 / 以下，首次更新时创建）
+     */
+    private Notification.Builder mBuilder;
+    private NotificationCompat.Builder mCompatBuilder;
+
+    /**
+     * 复用的点击意图（首次更新时创建）
+     */
+    private PendingIntent[] mIntents;
+
+    /**
+     * 待显示的文本（为null时不显示当前Activity）
+     */
+    private CharSequence mPendingText;
+
+    /**
+     * 已显示的文本
+     */
+    private CharSequence mPostedText;
+
+    /**
+     * 上一次更新通知的时间（SystemClock.uptimeMillis）
+     */
+    private long mLastPostTime = -MIN_INTERVAL_MS;
+
+    /**
+     * 是否已安排延迟刷新
+     */
+    private boolean isFlushScheduled;
+
+    /**
+     * 统计：请求更新次数、实际更新次数、内容未变化而跳过的次数
+     */
+    private long mRequestCount;
+    private long mPostCount;
+    private long mSkipCount;
+
+    /**
+     * 延迟刷新任务
+     */
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            isFlushScheduled = false;
+            flush();
+        }
+    };
+
+    public NotificationUpdater(Context context, NotificationManager notificationManager, int notificationId) {
+        mContext = context;
+        mNotificationManager = notificationManager;
+        mNotificationId = notificationId;
+    }
+
+    /**
+     * 更新当前Activity（间隔内的多次调用只保留最后一次）
+     *
+     * @param text 显示文本（为null时不显示当前Activity）
+     */
+    public void update(CharSequence text) {
+        mRequestCount++;
+        mPendingText = text;
+        if (isFlushScheduled) {
+            return;
+        }
+        long nextTime = mLastPostTime + MIN_INTERVAL_MS;
+        if (SystemClock.uptimeMillis() >= nextTime) {
+            flush();
+        } else {
+            isFlushScheduled = true;
+            mHandler.postAtTime(mFlushRunnable, nextTime);
+        }
+    }
+
+    /**
+     * 停止更新（取消延迟刷新，已显示当前Activity时恢复为不带当前Activity的通知）
+     */
+    public void stop() {
+        mHandler.removeCallbacks(mFlushRunnable);
+        isFlushScheduled = false;
+        mPendingText = null;
+        flush();
+    }
+
+    /**
+     * 取消延迟刷新（服务退出时调用，不再更新通知）
+     */
+    public void cancel() {
+        mHandler.removeCallbacks(mFlushRunnable);
+        isFlushScheduled = false;
+    }
+
+    /**
+     * 统计信息（dumpsys）
+     */
+    public String getStats() {
+        return "requests=" + mRequestCount + " posts=" + mPostCount + " skipped=" + mSkipCount;
+    }
+
+    /**
+     * 刷新待显示的文本（与已显示内容相同时跳过）
+     */
+    private void flush() {
+        if (TextUtils.equals(mPendingText, mPostedText)) {
+            mSkipCount++;
+            return;
+        }
+        try {
+            mNotificationManager.notify(mNotificationId, build(mPendingText));
+            mPostedText = mPendingText;
+            mLastPostTime = SystemClock.uptimeMillis();
+            mPostCount++;
+        } catch (RuntimeException e) {
+            Log.d("ERROR", Log.getStackTraceString(e));
+        }
+    }
+
+    /**
+     * 用复用的建造者构建通知
+     */
+    private Notification build(CharSequence text) {
+        if (mIntents == null) {
+            mIntents = NotificationUtil.getActionIntents(mContext);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            if (mBuilder == null) {
+                mBuilder = NotificationUtil.getOBuilder(mContext);
+            }
+            return mBuilder.setCustomContentView(NotificationUtil.getRemoteViews(mContext, mIntents, text)).build();
+        }
+        if (mCompatBuilder == null) {
+            mCompatBuilder = NotificationUtil.getCompatBuilder(mContext);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return mCompatBuilder.setCustomContentView(NotificationUtil.getRemoteViews(mContext, mIntents, text)).build();
+        }
+        // Android 7.0以下没有自定义视图，显示在消息内容中
+        return mCompatBuilder.setContentText(text != null ? text : mContext.getString(R.string.service_running)).build();
+    }
+}
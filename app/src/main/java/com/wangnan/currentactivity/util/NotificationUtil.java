@@ -6,6 +6,7 @@ import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
+import android.view.View;
 import androidx.annotation.RequiresApi;
 import androidx.core.app.NotificationCompat;
 import android.widget.RemoteViews;
@@ -52,60 +53,91 @@ public class NotificationUtil {
      */
     @RequiresApi(api = Build.VERSION_CODES.O)
     private static Notification getONotification(Context context) {
+        // 设置自定义视图并构建Notification实例
+        return getOBuilder(context).setCustomContentView(getRemoteViews(context, getActionIntents(context), null)).build();
+    }
+
+    /**
+     * 获取Android N以上Notification对象 (不包含Android O及其之上)
+     */
+    private static Notification getNNotification(Context context) {
+        // 设置自定义视图并构建Notification实例
+        return getCompatBuilder(context).setCustomContentView(getRemoteViews(context, getActionIntents(context), null)).build();
+    }
+
+    /**
+     * 获取Android 7.0以下Notification对象
+     */
+    private static Notification getNotification(Context context) {
+        // 构建Notification实例并返回
+        return getCompatBuilder(context).build();
+    }
+
+    /**
+     * 获取Android O以上通知建造者（已设置小图标、渠道ID，可复用）
+     */
+    @RequiresApi(api = Build.VERSION_CODES.O)
+    public static Notification.Builder getOBuilder(Context context) {
         // 创建通知建造者
         Notification.Builder builder = new Notification.Builder(context, null);
         // 设置通知小图标
         builder.setSmallIcon(R.mipmap.ic_launcher);
         // 设置渠道ID
         builder.setChannelId(CHANNEL_ID);
-        // 设置自定义视图
-        RemoteViews remoteViews = new RemoteViews(context.getPackageName(), R.layout.lay_custom_notification);
-        // 设置自定义视图点击意图（传递给"MAccessibilityServiceReceiver，显示/隐藏悬浮窗、关闭悬浮窗）
-        @SuppressLint("ObsoleteSdkInt") int flags = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0;
-        remoteViews.setOnClickPendingIntent(R.id.tv_switch, PendingIntent.getBroadcast(context, 0, new Intent(MAccessibilityServiceReceiver.SWITCH_ACTION), flags));
-        remoteViews.setOnClickPendingIntent(R.id.tv_close, PendingIntent.getBroadcast(context, 0, new Intent(MAccessibilityServiceReceiver.CLOSE_ACTION), flags));
-        // 设置自定义视图
-        builder.setCustomContentView(remoteViews);
-        // 构建Notification实例并返回
-        return builder.build();
+        // 只在首次显示时提示（更新当前Activity时不重复提示）
+        builder.setOnlyAlertOnce(true);
+        return builder;
     }
 
     /**
-     * 获取Android N以上Notification对象 (不包含Android O及其之上)
+     * 获取Android O以下通知建造者（已设置小图标；Android 7.0以下不使用自定义视图，已设置标题、内容及内容意图，可复用）
      */
-    private static Notification getNNotification(Context context) {
+    public static NotificationCompat.Builder getCompatBuilder(Context context) {
         // 创建通知建造者
         NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID);
         // 设置通知小图标
         builder.setSmallIcon(R.mipmap.ic_launcher);
-        // 设置自定义视图
-        RemoteViews remoteViews = new RemoteViews(context.getPackageName(), R.layout.lay_custom_notification);
-        // 设置自定义视图点击意图（传递给"MAccessibilityServiceReceiver，显示/隐藏悬浮窗、关闭悬浮窗）
-        int flags = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0;
-        remoteViews.setOnClickPendingIntent(R.id.tv_switch, PendingIntent.getBroadcast(context, 0, new Intent(MAccessibilityServiceReceiver.SWITCH_ACTION), flags));
-        remoteViews.setOnClickPendingIntent(R.id.tv_close, PendingIntent.getBroadcast(context, 0, new Intent(MAccessibilityServiceReceiver.CLOSE_ACTION), flags));
-        // 设置自定义视图
-        builder.setCustomContentView(remoteViews);
-        // 构建Notification实例并返回
-        return builder.build();
+        // 只在首次显示时提示（更新当前Activity时不重复提示）
+        builder.setOnlyAlertOnce(true);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            // 设置标题
+            builder.setContentTitle(context.getString(R.string.app_name));
+            // 设置消息内容
+            builder.setContentText(context.getString(R.string.service_running));
+            // 设置内容意图（跳转"辅助功能"）
+            int flags = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0;
+            builder.setContentIntent(PendingIntent.getActivity(context, 0, new Intent(android.provider.Settings.ACTION_ACCESSIBILITY_SETTINGS), flags));
+        }
+        return builder;
     }
 
     /**
-     * 获取Android 7.0以下Notification对象
+     * 获取自定义视图点击意图（传递给MAccessibilityServiceReceiver：显示/隐藏悬浮窗、关闭悬浮窗、导出视图层级，可复用）
      */
-    private static Notification getNotification(Context context) {
-        // 创建通知建造者
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID);
-        // 设置通知小图标
-        builder.setSmallIcon(R.mipmap.ic_launcher);
-        // 设置标题
-        builder.setContentTitle(context.getString(R.string.app_name));
-        // 设置消息内容
-        builder.setContentText(context.getString(R.string.service_running));
-        // 设置内容意图（跳转"辅助功能"）
-        int flags = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0;
-        builder.setContentIntent(PendingIntent.getActivity(context, 0, new Intent(android.provider.Settings.ACTION_ACCESSIBILITY_SETTINGS), flags));
-        // 构建Notification实例并返回
-        return builder.build();
+    public static PendingIntent[] getActionIntents(Context context) {
+        @SuppressLint("ObsoleteSdkInt") int flags = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0;
+        return new PendingIntent[]{
+                PendingIntent.getBroadcast(context, 0, new Intent(MAccessibilityServiceReceiver.SWITCH_ACTION), flags),
+                PendingIntent.getBroadcast(context, 0, new Intent(MAccessibilityServiceReceiver.CLOSE_ACTION), flags),
+                PendingIntent.getBroadcast(context, 0, new Intent(MAccessibilityServiceReceiver.DUMP_ACTION), flags),
+        };
+    }
+
+    /**
+     * 创建自定义视图
+     *
+     * @param intents 点击意图（{@link #getActionIntents(Context)}）
+     * @param text    当前Activity（为null时不显示该行）
+     */
+    public static RemoteViews getRemoteViews(Context context, PendingIntent[] intents, CharSequence text) {
+        RemoteViews remoteViews = new RemoteViews(context.getPackageName(), R.layout.lay_custom_notification);
+        remoteViews.setOnClickPendingIntent(R.id.tv_switch, intents[0]);
+        remoteViews.setOnClickPendingIntent(R.id.tv_close, intents[1]);
+        remoteViews.setOnClickPendingIntent(R.id.tv_dump, intents[2]);
+        if (text != null) {
+            remoteViews.setTextViewText(R.id.tv_activity, text);
+            remoteViews.setViewVisibility(R.id.tv_activity, View.VISIBLE);
+        }
+        return remoteViews;
     }
 }
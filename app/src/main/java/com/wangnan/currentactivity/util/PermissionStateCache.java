@@ -0,0 +1,265 @@
+package com.wangnan.currentactivity.util;
+
+import android.annotation.SuppressLint;
+import android.app.AppOpsManager;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.provider.Settings;
+
+import com.wangnan.currentactivity.service.MAccessibilityService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @ClassName: PermissionStateCache
+ * @Description: 权限及辅助服务状态缓存（在后台线程读取系统设置，通过ContentObserver及服务生命周期保持最新，主线程O(1)读取快照）
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class PermissionStateCache {
+
+    /***
+     * 状态缓存（引用变量）
+     */
+    @SuppressLint("StaticFieldLeak")
+    private static PermissionStateCache mInstance;
+
+    /**
+     * 私有构造器
+     */
+    private PermissionStateCache(Context context) {
+        mContext = context.getApplicationContext();
+        HandlerThread thread = new HandlerThread("PermissionState");
+        thread.start();
+        mWorkHandler = new Handler(thread.getLooper());
+        mMainHandler = new Handler(Looper.getMainLooper());
+        registerObservers();
+        refresh();
+    }
+
+    /**
+     * 获取状态缓存
+     */
+    public static synchronized PermissionStateCache getInstance(Context context) {
+        if (mInstance == null) {
+            mInstance = new PermissionStateCache(context);
+        }
+        return mInstance;
+    }
+
+    /*******************************************************************************************/
+
+    private final Context mContext;
+
+    /**
+     * 后台线程Handler（读取系统设置）
+     */
+    private final Handler mWorkHandler;
+
+    /**
+     * 主线程Handler（通知监听者）
+     */
+    private final Handler mMainHandler;
+
+    /**
+     * 当前状态快照
+     */
+    private volatile Snapshot mSnapshot = new Snapshot(false, false, false, false, false);
+
+    /**
+     * 辅助服务是否已连接（由服务生命周期回调维护）
+     */
+    private volatile boolean isServiceRunning;
+
+    /**
+     * 状态变化监听者（仅在主线程访问）
+     */
+    private final List<OnStateChangeListener> mListeners = new ArrayList<>();
+
+    /**
+     * 后台刷新任务
+     */
+    private final Runnable mRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            boolean overlay = PermissionUtil.hasOverlayPermission(mContext);
+            boolean notify = PermissionUtil.hasNotifyPermission(mContext);
+            boolean serviceEnabled = PermissionUtil.getServiceState(mContext, MAccessibilityService.SERVCE_NAME);
+            publish(new Snapshot(true, overlay, notify, serviceEnabled, isServiceRunning));
+        }
+    };
+
+    /**
+     * 注册系统设置观察者（辅助功能开关、悬浮窗权限）
+     */
+    private void registerObservers() {
+        ContentObserver observer = new ContentObserver(mWorkHandler) {
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                refresh();
+            }
+        };
+        Uri[] uris = {
+                Settings.Secure.getUriFor(Settings.Secure.ACCESSIBILITY_ENABLED),
+                Settings.Secure.getUriFor(Settings.Secure.ENABLED_ACCESSIBILITY_SERVICES)
+        };
+        for (Uri uri : uris) {
+            mContext.getContentResolver().registerContentObserver(uri, false, observer);
+        }
+        // 悬浮窗权限不在Settings中，通过AppOps监听（Android 6.0以上）
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            AppOpsManager appOpsManager = (AppOpsManager) mContext.getSystemService(Context.APP_OPS_SERVICE);
+            if (appOpsManager != null) {
+                appOpsManager.startWatchingMode(AppOpsManager.OPSTR_SYSTEM_ALERT_WINDOW, mContext.getPackageName(),
+                        new AppOpsManager.OnOpChangedListener() {
+                            @Override
+                            public void onOpChanged(String op, String packageName) {
+                                refresh();
+                            }
+                        });
+            }
+        }
+    }
+
+    /**
+     * 在后台线程重新读取状态（多次调用会被合并为一次）
+     */
+    public void refresh() {
+        mWorkHandler.removeCallbacks(mRefreshRunnable);
+        mWorkHandler.post(mRefreshRunnable);
+    }
+
+    /**
+     * 辅助服务连接/断开时调用
+     */
+    public void setServiceRunning(boolean running) {
+        isServiceRunning = running;
+        Snapshot snapshot = mSnapshot;
+        publish(new Snapshot(snapshot.isLoaded, snapshot.hasOverlayPermission, snapshot.hasNotifyPermission,
+                snapshot.isServiceEnabled || running, running));
+        refresh();
+    }
+
+    /**
+     * 获取当前状态快照（不访问ContentResolver，任意线程O(1)）
+     */
+    public Snapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * 添加状态变化监听（需在主线程调用）
+     */
+    public void addListener(OnStateChangeListener listener) {
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    /**
+     * 移除状态变化监听（需在主线程调用）
+     */
+    public void removeListener(OnStateChangeListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * 发布新快照，状态有变化时在主线程通知监听者
+     */
+    private void publish(final Snapshot snapshot) {
+        synchronized (this) {
+            if (snapshot.equals(mSnapshot)) {
+                return;
+            }
+            mSnapshot = snapshot;
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = mListeners.size() - 1; i >= 0; i--) {
+                    mListeners.get(i).onStateChanged(snapshot);
+                }
+            }
+        });
+    }
+
+    /**
+     * 状态快照（不可变）
+     */
+    public static final class Snapshot {
+
+        /**
+         * 是否已完成首次读取
+         */
+        public final boolean isLoaded;
+
+        /**
+         * 是否有悬浮窗权限
+         */
+        public final boolean hasOverlayPermission;
+
+        /**
+         * 是否有通知栏权限
+         */
+        public final boolean hasNotifyPermission;
+
+        /**
+         * 辅助服务是否已在系统设置中开启
+         */
+        public final boolean isServiceEnabled;
+
+        /**
+         * 辅助服务是否已连接
+         */
+        public final boolean isServiceRunning;
+
+        Snapshot(boolean isLoaded, boolean hasOverlayPermission, boolean hasNotifyPermission,
+                 boolean isServiceEnabled, boolean isServiceRunning) {
+            this.isLoaded = isLoaded;
+            this.hasOverlayPermission = hasOverlayPermission;
+            this.hasNotifyPermission = hasNotifyPermission;
+            this.isServiceEnabled = isServiceEnabled;
+            this.isServiceRunning = isServiceRunning;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Snapshot)) {
+                return false;
+            }
+            Snapshot other = (Snapshot) o;
+            return isLoaded == other.isLoaded
+                    && hasOverlayPermission == other.hasOverlayPermission
+                    && hasNotifyPermission == other.hasNotifyPermission
+                    && isServiceEnabled == other.isServiceEnabled
+                    && isServiceRunning == other.isServiceRunning;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = isLoaded ? 1 : 0;
+            result = 31 * result + (hasOverlayPermission ? 1 : 0);
+            result = 31 * result + (hasNotifyPermission ? 1 : 0);
+            result = 31 * result + (isServiceEnabled ? 1 : 0);
+            result = 31 * result + (isServiceRunning ? 1 : 0);
+            return result;
+        }
+    }
+
+    /**
+     * 状态变化监听
+     */
+    public interface OnStateChangeListener {
+        void onStateChanged(Snapshot snapshot);
+    }
+}
@@ -0,0 +1,415 @@
+package com.wangnan.currentactivity.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Build;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.util.LruCache;
+import android.util.TypedValue;
+import android.view.View;
+
+/**
+ * @ClassName: OverlayView
+ * @Description: 悬浮窗轻量文本视图（缓存每段文本的StaticLayout，窗口宽度按档位变化，切换文本时尽量只重绘不重新布局）
+ * @Author wangnan7
+ * @Date: 2026/10/17
+ */
+
+public class OverlayView extends View {
+
+    /**
+     * 缓存的文本布局数量
+     */
+    private static final int LAYOUT_CACHE_SIZE = 64;
+
+    /**
+     * 宽度档位（dp）
+     */
+    private static final int WIDTH_BUCKET_DP = 48;
+
+    /**
+     * 默认文字大小（sp）
+     */
+    private static final int TEXT_SIZE_SP = 14;
+
+    /**
+     * 指标行文字大小（sp）
+     */
+    private static final int HUD_TEXT_SIZE_SP = 10;
+
+    /**
+     * 文字画笔
+     */
+    private final TextPaint mTextPaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+
+    /**
+     * 文本布局缓存（键为显示文本）
+     */
+    private final LruCache<CharSequence, StaticLayout> mLayoutCache = new LruCache<>(LAYOUT_CACHE_SIZE);
+
+    /**
+     * 宽度档位（px）
+     */
+    private final int mWidthBucket;
+
+    /**
+     * 当前显示的文本布局
+     */
+    private StaticLayout mLayout;
+
+    /**
+     * 标题行：应用图标、应用名称布局（未设置时为null）
+     */
+    private Bitmap mIcon;
+    private StaticLayout mLabelLayout;
+
+    /**
+     * 指标行布局（未设置时为null，内容每秒变化，不进入布局缓存）
+     */
+    private StaticLayout mHudLayout;
+
+    /**
+     * 多窗口行布局（每个可见应用窗口一行，为null时不显示）
+     */
+    private StaticLayout mWindowsLayout;
+
+    /**
+     * 视图层级行布局（Fragment及视图资源ID，为null时不显示）
+     */
+    private StaticLayout mDetailLayout;
+
+    /**
+     * 指标行画笔（较小字号）
+     */
+    private final TextPaint mHudPaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+
+    /**
+     * 多窗口行画笔（较小字号）
+     */
+    private final TextPaint mWindowsPaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+
+    /**
+     * 视图层级行画笔（较小字号）
+     */
+    private final TextPaint mDetailPaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+
+    /**
+     * 规则行文本布局（匹配界面规则时显示，为null时不显示）
+     */
+    private StaticLayout mRuleLayout;
+
+    /**
+     * 规则行画笔（较小字号）
+     */
+    private final TextPaint mRulePaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+
+    /**
+     * 规则高亮边框画笔
+     */
+    private final Paint mHighlightPaint = new Paint();
+
+    /**
+     * 绘制完成监听
+     */
+    private OnDrawnListener mOnDrawnListener;
+
+    /**
+     * 图标与应用名称的间距（px）
+     */
+    private final int mIconGap;
+
+    /**
+     * 当前视图宽/高（按档位取整后的值）
+     */
+    private int mViewWidth;
+    private int mViewHeight;
+
+    /**
+     * 统计：重新布局次数、仅重绘次数
+     */
+    private long mRelayoutCount;
+    private long mRedrawCount;
+
+    public OverlayView(Context context) {
+        this(context, null);
+    }
+
+    public OverlayView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        mTextPaint.setColor(Color.WHITE);
+        mTextPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, TEXT_SIZE_SP, getResources().getDisplayMetrics()));
+        mWidthBucket = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, WIDTH_BUCKET_DP, getResources().getDisplayMetrics());
+        mIconGap = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 4, getResources().getDisplayMetrics());
+        mHudPaint.setColor(Color.YELLOW);
+        mHudPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, HUD_TEXT_SIZE_SP, getResources().getDisplayMetrics()));
+        mDetailPaint.setColor(Color.CYAN);
+        mDetailPaint.setTextSize(mHudPaint.getTextSize());
+        mWindowsPaint.setColor(Color.GREEN);
+        mWindowsPaint.setTextSize(mHudPaint.getTextSize());
+        mRulePaint.setColor(Color.MAGENTA);
+        mRulePaint.setTextSize(mHudPaint.getTextSize());
+        mHighlightPaint.setColor(Color.MAGENTA);
+        mHighlightPaint.setStyle(Paint.Style.STROKE);
+        mHighlightPaint.setStrokeWidth(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 2, getResources().getDisplayMetrics()));
+    }
+
+    /**
+     * 设置显示文本（尺寸仍在当前档位内时只重绘）
+     */
+    public void setText(CharSequence text) {
+        StaticLayout layout = getLayout(text);
+        if (layout == mLayout) {
+            return;
+        }
+        mLayout = layout;
+        updateSize();
+    }
+
+    /**
+     * 设置标题行（应用图标 + 应用名称，均为null时不显示标题行）
+     */
+    public void setAppInfo(CharSequence label, Bitmap icon) {
+        StaticLayout labelLayout = label == null ? null : getLayout(label);
+        if (labelLayout == mLabelLayout && icon == mIcon) {
+            return;
+        }
+        mLabelLayout = labelLayout;
+        mIcon = icon;
+        updateSize();
+    }
+
+    /**
+     * 设置指标行（显示在最下方，传null不显示）
+     */
+    public void setHudText(CharSequence text) {
+        if (text == null) {
+            if (mHudLayout == null) {
+                return;
+            }
+            mHudLayout = null;
+        } else {
+            mHudLayout = createLayout(text, mHudPaint);
+        }
+        updateSize();
+    }
+
+    /**
+     * 设置多窗口行（显示在文本下方，传null不显示）
+     */
+    public void setWindowsText(CharSequence text) {
+        if (text == null) {
+            if (mWindowsLayout == null) {
+                return;
+            }
+            mWindowsLayout = null;
+        } else {
+            mWindowsLayout = createLayout(text, mWindowsPaint);
+        }
+        updateSize();
+    }
+
+    /**
+     * 设置视图层级行（显示在多窗口行下方，传null不显示）
+     */
+    public void setDetailText(CharSequence text) {
+        if (text == null) {
+            if (mDetailLayout == null) {
+                return;
+            }
+            mDetailLayout = null;
+        } else {
+            mDetailLayout = createLayout(text, mDetailPaint);
+        }
+        updateSize();
+    }
+
+    /**
+     * 设置规则行（显示在视图层级行下方并高亮边框，传null取消高亮）
+     */
+    public void setRuleText(CharSequence text) {
+        if (text == null) {
+            if (mRuleLayout == null) {
+                return;
+            }
+            mRuleLayout = null;
+        } else {
+            mRuleLayout = createLayout(text, mRulePaint);
+        }
+        updateSize();
+    }
+
+    /**
+     * 设置绘制完成监听
+     */
+    public void setOnDrawnListener(OnDrawnListener listener) {
+        mOnDrawnListener = listener;
+    }
+
+    /**
+     * 标题行高度
+     */
+    private int getHeaderHeight() {
+        int height = mIcon == null ? 0 : mIcon.getHeight();
+        if (mLabelLayout != null) {
+            height = Math.max(height, mLabelLayout.getHeight());
+        }
+        return height;
+    }
+
+    /**
+     * 标题行宽度
+     */
+    private int getHeaderWidth() {
+        int width = mIcon == null ? 0 : mIcon.getWidth() + mIconGap;
+        if (mLabelLayout != null) {
+            width += mLabelLayout.getWidth();
+        }
+        return width;
+    }
+
+    /**
+     * 根据内容更新视图尺寸（尺寸仍在当前档位内时只重绘）
+     */
+    private void updateSize() {
+        int contentWidth = Math.max(getHeaderWidth(), mLayout == null ? 0 : mLayout.getWidth());
+        int contentHeight = getHeaderHeight() + (mLayout == null ? 0 : mLayout.getHeight());
+        if (mWindowsLayout != null) {
+            contentWidth = Math.max(contentWidth, mWindowsLayout.getWidth());
+            contentHeight += mWindowsLayout.getHeight();
+        }
+        if (mDetailLayout != null) {
+            contentWidth = Math.max(contentWidth, mDetailLayout.getWidth());
+            contentHeight += mDetailLayout.getHeight();
+        }
+        if (mRuleLayout != null) {
+            contentWidth = Math.max(contentWidth, mRuleLayout.getWidth());
+            contentHeight += mRuleLayout.getHeight();
+        }
+        if (mHudLayout != null) {
+            contentWidth = Math.max(contentWidth, mHudLayout.getWidth());
+            contentHeight += mHudLayout.getHeight();
+        }
+        int width = bucketWidth(contentWidth + getPaddingLeft() + getPaddingRight());
+        int height = contentHeight + getPaddingTop() + getPaddingBottom();
+        // 需要变宽、高度变化，或比当前窄了两个档位以上时才重新布局（避免来回抖动）
+        if (width > mViewWidth || height != mViewHeight || width <= mViewWidth - 2 * mWidthBucket) {
+            mViewWidth = width;
+            mViewHeight = height;
+            mRelayoutCount++;
+            requestLayout();
+        } else {
+            mRedrawCount++;
+        }
+        invalidate();
+    }
+
+    /**
+     * 获取（或创建并缓存）文本布局
+     */
+    private StaticLayout getLayout(CharSequence text) {
+        StaticLayout layout = mLayoutCache.get(text);
+        if (layout == null) {
+            layout = createLayout(text, mTextPaint);
+            mLayoutCache.put(text, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * 创建文本布局（宽度为文本实际宽度，不超过屏幕宽度）
+     */
+    private StaticLayout createLayout(CharSequence text, TextPaint paint) {
+        int maxWidth = getResources().getDisplayMetrics().widthPixels - getPaddingLeft() - getPaddingRight();
+        int width = Math.min((int) Math.ceil(Layout.getDesiredWidth(text, paint)), maxWidth);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return StaticLayout.Builder.obtain(text, 0, text.length(), paint, width).build();
+        }
+        return new StaticLayout(text, paint, width, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+    }
+
+    /**
+     * 将宽度向上取整到档位
+     */
+    private int bucketWidth(int width) {
+        return (width + mWidthBucket - 1) / mWidthBucket * mWidthBucket;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(resolveSize(mViewWidth, widthMeasureSpec), resolveSize(mViewHeight, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        // 标题行：图标与应用名称垂直居中
+        int headerHeight = getHeaderHeight();
+        int left = 0;
+        if (mIcon != null) {
+            canvas.drawBitmap(mIcon, 0, (headerHeight - mIcon.getHeight()) / 2f, null);
+            left = mIcon.getWidth() + mIconGap;
+        }
+        if (mLabelLayout != null) {
+            canvas.save();
+            canvas.translate(left, (headerHeight - mLabelLayout.getHeight()) / 2f);
+            mLabelLayout.draw(canvas);
+            canvas.restore();
+        }
+        canvas.translate(0, headerHeight);
+        if (mLayout != null) {
+            mLayout.draw(canvas);
+            canvas.translate(0, mLayout.getHeight());
+        }
+        if (mWindowsLayout != null) {
+            mWindowsLayout.draw(canvas);
+            canvas.translate(0, mWindowsLayout.getHeight());
+        }
+        if (mDetailLayout != null) {
+            mDetailLayout.draw(canvas);
+            canvas.translate(0, mDetailLayout.getHeight());
+        }
+        if (mRuleLayout != null) {
+            mRuleLayout.draw(canvas);
+            canvas.translate(0, mRuleLayout.getHeight());
+        }
+        if (mHudLayout != null) {
+            mHudLayout.draw(canvas);
+        }
+        canvas.restore();
+        if (mRuleLayout != null) {
+            float inset = mHighlightPaint.getStrokeWidth() / 2;
+            canvas.drawRect(inset, inset, getWidth() - inset, getHeight() - inset, mHighlightPaint);
+        }
+        if (mOnDrawnListener != null) {
+            mOnDrawnListener.onDrawn();
+        }
+    }
+
+    /**
+     * 获取重新布局次数
+     */
+    public long getRelayoutCount() {
+        return mRelayoutCount;
+    }
+
+    /**
+     * 获取仅重绘次数
+     */
+    public long getRedrawCount() {
+        return mRedrawCount;
+    }
+
+    /**
+     * 绘制完成监听
+     */
+    public interface OnDrawnListener {
+        void onDrawn();
+    }
+}
@@ -0,0 +1,79 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 推断返回栈单元测试
+ */
+public class BackStacksTest {
+
+    private final NameTable mNames = new NameTable();
+
+    private final BackStacks mStacks = new BackStacks(mNames);
+
+    private final int mPackage = mNames.intern("com.example");
+
+    private final int mOther = mNames.intern("com.other");
+
+    private int cls(String name) {
+        return mNames.intern("com.example.ui." + name);
+    }
+
+    @Test
+    public void onActivity_pushesAndPopsByWindowId() throws Exception {
+        mStacks.onActivity(mPackage, cls("Main"), 1);
+        mStacks.onActivity(mPackage, cls("List"), 2);
+        mStacks.onActivity(mPackage, cls("Detail"), 3);
+        assertEquals(3, mStacks.getDepth(mPackage));
+        assertEquals("[3] Main › List › Detail", mStacks.getBreadcrumb(mPackage));
+        // 返回到List
+        mStacks.onActivity(mPackage, cls("List"), 2);
+        assertEquals(2, mStacks.getDepth(mPackage));
+        // 同一类名的新实例压栈
+        mStacks.onActivity(mPackage, cls("List"), 4);
+        assertEquals(3, mStacks.getDepth(mPackage));
+        int[] classIds = new int[8];
+        assertEquals(3, mStacks.copyClassIds(mPackage, classIds));
+        assertEquals(cls("List"), classIds[2]);
+    }
+
+    @Test
+    public void onActivity_resetsWhenTaskRecreated() throws Exception {
+        mStacks.onActivity(mPackage, cls("Main"), 1);
+        mStacks.onActivity(mPackage, cls("Detail"), 2);
+        mStacks.onActivity(mOther, mNames.intern("com.other.Home"), 10);
+        // 返回原窗口不影响栈
+        mStacks.onActivity(mPackage, cls("Detail"), 2);
+        assertEquals(2, mStacks.getDepth(mPackage));
+        mStacks.onActivity(mOther, mNames.intern("com.other.Home"), 10);
+        // 任务被重建：栈底类名、新窗口ID
+        mStacks.onActivity(mPackage, cls("Main"), 5);
+        assertEquals(1, mStacks.getDepth(mPackage));
+        assertNull(mStacks.getBreadcrumb(mPackage));
+    }
+
+    @Test
+    public void onActivity_matchesClassWithoutWindowId() throws Exception {
+        mStacks.onActivity(mPackage, cls("Main"), BackStacks.NO_WINDOW);
+        mStacks.onActivity(mPackage, cls("List"), BackStacks.NO_WINDOW);
+        mStacks.onActivity(mPackage, cls("Detail"), BackStacks.NO_WINDOW);
+        mStacks.onActivity(mPackage, cls("Main"), BackStacks.NO_WINDOW);
+        assertEquals(1, mStacks.getDepth(mPackage));
+    }
+
+    @Test
+    public void getBreadcrumb_elidesMiddle() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            mStacks.onActivity(mPackage, cls("A" + i), i);
+        }
+        String breadcrumb = mStacks.getBreadcrumb(mPackage);
+        assertEquals("[6] A0 › … › A3 › A4 › A5", breadcrumb);
+        assertSame(breadcrumb, mStacks.getBreadcrumb(mPackage));
+        String text = mStacks.decorate(mPackage, "title");
+        assertEquals("title\n" + breadcrumb, text);
+        assertSame(text, mStacks.decorate(mPackage, "title"));
+        assertEquals("x", mStacks.decorate(mOther, "x"));
+    }
+}
@@ -0,0 +1,76 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * 停留时长统计单元测试
+ */
+public class DwellStatsTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    /**
+     * 2026-10-17 00:00 UTC
+     */
+    private static final long DAY_START = 20743L * 24 * HOUR;
+
+    private DwellStats newStats() {
+        DwellStats stats = new DwellStats(new ScreenTable());
+        stats.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return stats;
+    }
+
+    @Test
+    public void onScreen_accruesPerScreenAndPackage() throws Exception {
+        DwellStats stats = newStats();
+        stats.onScreen(1, 10, DAY_START);
+        stats.onScreen(1, 11, DAY_START + 1000);
+        stats.onScreen(2, 20, DAY_START + 4000);
+        stats.pause(DAY_START + 10000);
+        int[] ids = new int[8];
+        long[] millis = new long[8];
+        int count = stats.copySorted(DwellStats.GROUP_PACKAGE, DwellStats.PERIOD_ALL, 0, DAY_START + 20000, ids, millis);
+        assertEquals(2, count);
+        assertEquals(2, ids[0]);
+        assertEquals(6000, millis[0]);
+        assertEquals(1, ids[1]);
+        assertEquals(4000, millis[1]);
+        count = stats.copySorted(DwellStats.GROUP_SCREEN, DwellStats.PERIOD_ALL, 0, DAY_START + 20000, ids, millis);
+        assertEquals(3, count);
+        assertEquals(3000, millis[1]);
+        assertEquals(11, stats.getScreens().getClassId(ids[1]));
+    }
+
+    @Test
+    public void accrue_splitsAcrossHours() throws Exception {
+        DwellStats stats = newStats();
+        stats.onScreen(1, 10, DAY_START + HOUR / 2);
+        stats.pause(DAY_START + 2 * HOUR + 1000);
+        long hour = stats.hourIndex(DAY_START);
+        assertEquals(HOUR / 2, stats.getMillis(DwellStats.GROUP_PACKAGE, DwellStats.PERIOD_HOUR, hour, 1));
+        assertEquals(HOUR, stats.getMillis(DwellStats.GROUP_PACKAGE, DwellStats.PERIOD_HOUR, hour + 1, 1));
+        assertEquals(1000, stats.getMillis(DwellStats.GROUP_PACKAGE, DwellStats.PERIOD_HOUR, hour + 2, 1));
+        assertEquals(HOUR / 2 + HOUR + 1000,
+                stats.getMillis(DwellStats.GROUP_SCREEN, DwellStats.PERIOD_DAY, stats.dayIndex(DAY_START), 0));
+    }
+
+    @Test
+    public void copySorted_keepsTopN() throws Exception {
+        DwellStats stats = newStats();
+        long time = DAY_START;
+        for (int i = 1; i <= 20; i++) {
+            stats.onScreen(i, i, time);
+            time += i * 1000;
+        }
+        stats.pause(time);
+        int[] ids = new int[3];
+        long[] millis = new long[3];
+        assertEquals(3, stats.copySorted(DwellStats.GROUP_PACKAGE, DwellStats.PERIOD_ALL, 0, time, ids, millis));
+        assertArrayEquals(new int[]{20, 19, 18}, ids);
+        assertArrayEquals(new long[]{20000, 19000, 18000}, millis);
+    }
+}
@@ -0,0 +1,73 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 事件队列单元测试
+ */
+public class EventQueueTest {
+
+    @Test
+    public void drain_preservesOrderAndDropsWhenFull() throws Exception {
+        EventQueue queue = new EventQueue(3);
+        for (int i = 0; i < 6; i++) {
+            boolean offered = queue.offer(i, "pkg" + i, "cls" + i, i, 100 + i, 1000 + i, null);
+            assertEquals(i < 4, offered);
+        }
+        assertEquals(4, queue.size());
+        assertEquals(2, queue.getDroppedCount());
+        final List<String> names = new ArrayList<>();
+        int count = queue.drain(new EventQueue.Consumer() {
+            @Override
+            public void onEvent(int eventType, CharSequence packageName, CharSequence className, int windowId, long eventTime, int flags, Object extra) {
+                assertEquals(100 + eventType, eventTime);
+                assertEquals(1000 + eventType, flags);
+                names.add(packageName + "/" + className);
+            }
+        });
+        assertEquals(4, count);
+        assertEquals("[pkg0/cls0, pkg1/cls1, pkg2/cls2, pkg3/cls3]", names.toString());
+        assertEquals(0, queue.size());
+        assertTrue(queue.offer(0, "a", "b", 0, 1, 0, null));
+    }
+
+    @Test
+    public void drain_acrossThreadsDeliversEveryAcceptedEvent() throws Exception {
+        final EventQueue queue = new EventQueue(64);
+        final int total = 100000;
+        final long[] sum = new long[1];
+        final int[] received = new int[1];
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                EventQueue.Consumer sink = new EventQueue.Consumer() {
+                    @Override
+                    public void onEvent(int eventType, CharSequence packageName, CharSequence className, int windowId, long eventTime, int flags, Object extra) {
+                        sum[0] += eventTime;
+                        received[0]++;
+                    }
+                };
+                while (received[0] < total) {
+                    queue.drain(sink);
+                }
+            }
+        });
+        consumer.start();
+        long expected = 0;
+        for (int i = 1; i <= total; i++) {
+            // 队列满时等待消费者
+            while (!queue.offer(0, "p", "c", 0, i, 0, null)) {
+                Thread.yield();
+            }
+            expected += i;
+        }
+        consumer.join(10000);
+        assertEquals(total, received[0]);
+        assertEquals(expected, sum[0]);
+    }
+}
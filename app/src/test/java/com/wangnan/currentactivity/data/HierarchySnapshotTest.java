@@ -0,0 +1,78 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 视图层级快照单元测试
+ */
+public class HierarchySnapshotTest {
+
+    /**
+     * 按(键, 子节点数)先序构造：root(1) -> [a(2) -> [a1(3), a2(4)], b(5) -> [b1(6)]]
+     */
+    private static HierarchySnapshot build() {
+        HierarchySnapshot snapshot = new HierarchySnapshot();
+        int root = snapshot.add(1, "app:id/nav_host_fragment");
+        int a = snapshot.add(2, "app:id/toolbar");
+        snapshot.add(3, "android:id/title");
+        snapshot.add(4, null);
+        snapshot.setEnd(a, snapshot.size());
+        int b = snapshot.add(5, "app:id/list");
+        snapshot.add(6, "app:id/item");
+        snapshot.setEnd(b, snapshot.size());
+        snapshot.setEnd(root, snapshot.size());
+        return snapshot;
+    }
+
+    @Test
+    public void replace_growsSubtreeAndShiftsFollowingNodes() throws Exception {
+        HierarchySnapshot snapshot = build();
+        HierarchySnapshot subtree = new HierarchySnapshot();
+        int a = subtree.add(2, "app:id/toolbar");
+        subtree.add(7, "app:id/search");
+        subtree.add(8, null);
+        subtree.add(9, null);
+        subtree.setEnd(a, subtree.size());
+        snapshot.replace(snapshot.indexOf(2), subtree);
+        assertEquals(7, snapshot.size());
+        assertEquals(7, snapshot.getEnd(0));
+        assertEquals(5, snapshot.getEnd(1));
+        int b = snapshot.indexOf(5);
+        assertEquals(5, b);
+        assertEquals(7, snapshot.getEnd(b));
+        assertEquals(7, snapshot.getEnd(snapshot.indexOf(6)));
+        assertEquals(-1, snapshot.indexOf(3));
+    }
+
+    @Test
+    public void replace_shrinksSubtree() throws Exception {
+        HierarchySnapshot snapshot = build();
+        HierarchySnapshot subtree = new HierarchySnapshot();
+        subtree.add(2, null);
+        snapshot.replace(1, subtree);
+        assertEquals(4, snapshot.size());
+        assertEquals(4, snapshot.getEnd(0));
+        assertEquals(2, snapshot.getEnd(1));
+        assertEquals(4, snapshot.getEnd(2));
+        assertEquals("app:id/item", snapshot.getId(3));
+        // 替换末尾子树，后面没有节点
+        HierarchySnapshot leaf = new HierarchySnapshot();
+        leaf.add(6, "app:id/empty");
+        leaf.setTruncated(true);
+        snapshot.replace(snapshot.indexOf(6), leaf);
+        assertEquals("app:id/empty", snapshot.getId(3));
+        assertTrue(snapshot.isTruncated());
+    }
+
+    @Test
+    public void buildSummary_putsFragmentsFirstAndSkipsFramework() throws Exception {
+        HierarchySnapshot snapshot = build();
+        assertEquals("▣ #nav_host_fragment  #toolbar #list #item", snapshot.buildSummary(6));
+        assertEquals("▣ #nav_host_fragment  #toolbar", snapshot.buildSummary(2));
+        snapshot.clear();
+        snapshot.add(1, "android:id/content");
+        assertNull(snapshot.buildSummary(6));
+    }
+}
@@ -0,0 +1,40 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 延迟直方图单元测试
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentile_returnsBucketUpperBound() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 0; i < 98; i++) {
+            histogram.record(10);
+        }
+        histogram.record(40);
+        histogram.record(7000);
+        assertEquals(100, histogram.getCount());
+        // 10ms落在(8, 12]桶
+        assertEquals(12, histogram.getPercentile(50));
+        assertEquals(50, histogram.getPercentile(99));
+        assertEquals(7000, histogram.getPercentile(100));
+        assertEquals(7000, histogram.getMax());
+        assertEquals((98 * 10 + 40 + 7000) / 100d, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    public void percentile_neverExceedsMax() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        assertEquals(3, histogram.getPercentile(99));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+}
@@ -0,0 +1,49 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 启动耗时统计单元测试
+ */
+public class LaunchStatsTest {
+
+    @Test
+    public void summaries_groupByPackageAndKind() throws Exception {
+        LaunchStats stats = new LaunchStats();
+        stats.record(3, LaunchStats.KIND_FIRST, 900, 1500);
+        stats.record(3, LaunchStats.KIND_REPEAT, 200, LaunchStats.NO_VALUE);
+        stats.record(3, LaunchStats.KIND_REPEAT, 300, 700);
+        stats.record(3, LaunchStats.KIND_REPEAT, 250, 500);
+        List<LaunchStats.Summary> summaries = stats.getSummaries();
+        assertEquals(2, summaries.size());
+        LaunchStats.Summary first = summaries.get(0);
+        assertEquals(LaunchStats.KIND_FIRST, first.kind);
+        assertEquals(1, first.count);
+        assertArrayEquals(new int[]{900, 900, 900}, first.firstWindow);
+        LaunchStats.Summary repeat = summaries.get(1);
+        assertEquals(3, repeat.packageId);
+        assertEquals(3, repeat.count);
+        assertArrayEquals(new int[]{200, 250, 300}, repeat.firstWindow);
+        // 无数据的样本不参与统计
+        assertArrayEquals(new int[]{500, 600, 700}, repeat.settled);
+    }
+
+    @Test
+    public void summaries_keepOnlyRecentSamples() throws Exception {
+        LaunchStats stats = new LaunchStats();
+        for (int i = 0; i < 100; i++) {
+            stats.record(1, LaunchStats.KIND_REPEAT, i, LaunchStats.NO_VALUE);
+        }
+        LaunchStats.Summary summary = stats.getSummaries().get(0);
+        assertEquals(100, summary.count);
+        assertEquals(36, summary.firstWindow[0]);
+        assertEquals(99, summary.firstWindow[2]);
+        assertArrayEquals(new int[]{LaunchStats.NO_VALUE, LaunchStats.NO_VALUE, LaunchStats.NO_VALUE}, summary.settled);
+        stats.clear();
+        assertTrue(stats.getSummaries().isEmpty());
+    }
+}
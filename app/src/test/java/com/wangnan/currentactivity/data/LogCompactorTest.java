@@ -0,0 +1,138 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * 切换日志压缩单元测试
+ */
+public class LogCompactorTest {
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws Exception {
+        mDir = Files.createTempDirectory("log-compactor").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void run_compactsSealedSegmentsAndKeepsRecords() throws Exception {
+        NameTable names = new NameTable();
+        int[] classes = {names.intern("a.Main"), names.intern("a.List"), names.intern("a.Detail")};
+        int pkg = names.intern("a");
+        int total = TransitionLog.RECORDS_PER_SEGMENT * 2 + 5;
+        TransitionLog log = TransitionLog.open(mDir);
+        for (int i = 0; i < total; i++) {
+            log.append(names, pkg, classes[i % 3], 1_700_000_000_000L + i * 1500L);
+        }
+        log.close();
+        assertEquals(3, TransitionLog.listSegments(mDir).length);
+
+        LogCompactor.Result result = new LogCompactor(mDir).run(Long.MAX_VALUE, Long.MAX_VALUE, 0);
+        assertEquals(2, result.compactedSegments);
+        assertEquals(1, TransitionLog.listSegments(mDir).length);
+        File[] compacted = LogCompactor.listCompacted(mDir);
+        assertEquals(1, compacted.length);
+        assertTrue(compacted[0].length() < 2L * TransitionLog.SEGMENT_SIZE / 3);
+
+        final long[] expectedTime = {1_700_000_000_000L};
+        final int[] index = {0};
+        int count = LogCompactor.readCompacted(compacted[0], new LogCompactor.NamedRecordVisitor() {
+            @Override
+            public void onRecord(long time, String packageName, String className) {
+                assertEquals(expectedTime[0], time);
+                assertEquals("a", packageName);
+                assertEquals(new String[]{"a.Main", "a.List", "a.Detail"}[index[0] % 3], className);
+                expectedTime[0] += 1500L;
+                index[0]++;
+            }
+        });
+        assertEquals(TransitionLog.RECORDS_PER_SEGMENT * 2, count);
+    }
+
+    @Test
+    public void run_keepsTimeDeltasBeyondIntRange() throws Exception {
+        NameTable names = new NameTable();
+        int pkg = names.intern("a");
+        int cls = names.intern("a.Main");
+        // 间隔30天、回拨60天，时间差均超出int范围
+        final long[] times = new long[TransitionLog.RECORDS_PER_SEGMENT];
+        long time = 1_700_000_000_000L;
+        for (int i = 0; i < times.length; i++) {
+            time += i == 1 ? 30L * 24 * 3600 * 1000 : i == 2 ? -60L * 24 * 3600 * 1000 : 1000L;
+            times[i] = time;
+        }
+        TransitionLog log = TransitionLog.open(mDir);
+        for (long t : times) {
+            log.append(names, pkg, cls, t);
+        }
+        log.append(names, pkg, cls, time + 1000L);
+        log.close();
+
+        new LogCompactor(mDir).run(Long.MAX_VALUE, Long.MAX_VALUE, 0);
+        File[] compacted = LogCompactor.listCompacted(mDir);
+        assertEquals(1, compacted.length);
+        final int[] index = {0};
+        LogCompactor.readCompacted(compacted[0], new LogCompactor.NamedRecordVisitor() {
+            @Override
+            public void onRecord(long time, String packageName, String className) {
+                assertEquals(times[index[0]++], time);
+            }
+        });
+        assertEquals(times.length, index[0]);
+    }
+
+    @Test
+    public void run_enforcesSizeBudgetButKeepsActiveSegment() throws Exception {
+        NameTable names = new NameTable();
+        int pkg = names.intern("p");
+        int cls = names.intern("c");
+        TransitionLog log = TransitionLog.open(mDir);
+        for (int i = 1; i <= TransitionLog.RECORDS_PER_SEGMENT * 3; i++) {
+            log.append(names, pkg, cls, i);
+        }
+        log.close();
+
+        LogCompactor.Result result = new LogCompactor(mDir).run(0, Long.MAX_VALUE, 0);
+        assertEquals(1, result.deletedFiles);
+        assertEquals(0, LogCompactor.listCompacted(mDir).length);
+        assertEquals(1, TransitionLog.listSegments(mDir).length);
+    }
+
+    @Test
+    public void run_expiresSegmentsByLastRecordTime() throws Exception {
+        NameTable names = new NameTable();
+        int pkg = names.intern("p");
+        int cls = names.intern("c");
+        TransitionLog log = TransitionLog.open(mDir);
+        for (int i = 1; i <= TransitionLog.RECORDS_PER_SEGMENT + 1; i++) {
+            log.append(names, pkg, cls, i);
+        }
+        log.close();
+        // 没有字典时不压缩，直接对段文件应用保留策略：按段内最后一条记录的时间判断过期（文件修改时间为刚才）
+        assertTrue(new File(mDir, TransitionLog.DICTIONARY_NAME).delete());
+        long lastTime = TransitionLog.RECORDS_PER_SEGMENT;
+        LogCompactor.Result result = new LogCompactor(mDir).run(Long.MAX_VALUE, 1000, lastTime + 1000);
+        assertEquals(0, result.deletedFiles);
+        result = new LogCompactor(mDir).run(Long.MAX_VALUE, 1000, lastTime + 1001);
+        assertEquals(1, result.deletedFiles);
+        assertEquals(1, TransitionLog.listSegments(mDir).length);
+    }
+}
@@ -0,0 +1,57 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * long键LRU缓存单元测试
+ */
+public class LongIntLruCacheTest {
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() throws Exception {
+        LongIntLruCache cache = new LongIntLruCache(3);
+        cache.put(1, 10);
+        cache.put(2, 20);
+        cache.put(3, 30);
+        // 访问1后，最久未使用的是2
+        assertEquals(10, cache.get(1, -1));
+        cache.put(4, 40);
+        assertEquals(-1, cache.get(2, -1));
+        assertEquals(10, cache.get(1, -1));
+        assertEquals(30, cache.get(3, -1));
+        assertEquals(40, cache.get(4, -1));
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void removeIf_removesMatchingKeysAndReusesEntries() throws Exception {
+        LongIntLruCache cache = new LongIntLruCache(64);
+        for (int packageId = 0; packageId < 4; packageId++) {
+            for (int classId = 0; classId < 16; classId++) {
+                cache.put(ActivityEvent.pairKey(packageId, classId), classId);
+            }
+        }
+        int removed = cache.removeIf(new LongObjectMap.KeyPredicate() {
+            @Override
+            public boolean test(long key) {
+                return (int) (key >>> 32) == 2;
+            }
+        });
+        assertEquals(16, removed);
+        assertEquals(48, cache.size());
+        for (int classId = 0; classId < 16; classId++) {
+            assertEquals(-1, cache.get(ActivityEvent.pairKey(2, classId), -1));
+            assertEquals(classId, cache.get(ActivityEvent.pairKey(3, classId), -1));
+        }
+        for (int classId = 0; classId < 16; classId++) {
+            cache.put(ActivityEvent.pairKey(5, classId), classId);
+        }
+        assertEquals(64, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+        assertTrue(cache.remove(ActivityEvent.pairKey(5, 0)));
+        assertFalse(cache.remove(ActivityEvent.pairKey(5, 0)));
+    }
+}
@@ -0,0 +1,59 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * long键long值哈希表单元测试
+ */
+public class LongLongMapTest {
+
+    @Test
+    public void addPutRemove() throws Exception {
+        LongLongMap map = new LongLongMap(4);
+        for (int i = 0; i < 1000; i++) {
+            map.add(ActivityEvent.pairKey(i % 7, i), i);
+            map.add(ActivityEvent.pairKey(i % 7, i), 1);
+        }
+        assertEquals(1000, map.size());
+        assertEquals(1, map.get(0L, -1));
+        for (int i = 0; i < 1000; i += 2) {
+            assertTrue(map.remove(ActivityEvent.pairKey(i % 7, i)));
+        }
+        assertFalse(map.remove(0L));
+        assertEquals(500, map.size());
+        for (int i = 0; i < 1000; i++) {
+            long expected = i % 2 == 0 ? -1 : i + 1;
+            assertEquals(expected, map.get(ActivityEvent.pairKey(i % 7, i), -1));
+        }
+        map.put(5L, 42);
+        assertEquals(42, map.get(5L, 0));
+        assertTrue(map.containsKey(5L));
+    }
+
+    @Test
+    public void removeIf_removesMatchingKeysOnly() throws Exception {
+        LongLongMap map = new LongLongMap();
+        for (int i = 0; i < 300; i++) {
+            map.put(ActivityEvent.pairKey(i % 3, i), i);
+        }
+        int removed = map.removeIf(new LongObjectMap.KeyPredicate() {
+            @Override
+            public boolean test(long key) {
+                return (int) (key >>> 32) == 1;
+            }
+        });
+        assertEquals(100, removed);
+        assertEquals(200, map.size());
+        int visited = 0;
+        for (int i = 0; i < map.capacity(); i++) {
+            if (map.isOccupied(i)) {
+                assertNotEquals(1, (int) (map.keyAt(i) >>> 32));
+                assertEquals((int) map.keyAt(i), map.valueAt(i));
+                visited++;
+            }
+        }
+        assertEquals(200, visited);
+    }
+}
@@ -0,0 +1,65 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * long键哈希表单元测试
+ */
+public class LongObjectMapTest {
+
+    @Test
+    public void putGetRemove() throws Exception {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        for (int i = 0; i < 1000; i++) {
+            map.put(ActivityEvent.pairKey(i % 7, i), "v" + i);
+        }
+        assertEquals(1000, map.size());
+        assertEquals("v0", map.get(0L));
+        for (int i = 0; i < 1000; i += 2) {
+            assertEquals("v" + i, map.remove(ActivityEvent.pairKey(i % 7, i)));
+        }
+        assertEquals(500, map.size());
+        for (int i = 0; i < 1000; i++) {
+            String expected = i % 2 == 0 ? null : "v" + i;
+            assertEquals(expected, map.get(ActivityEvent.pairKey(i % 7, i)));
+        }
+    }
+
+    @Test
+    public void iteration_visitsEveryEntryOnce() throws Exception {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(i * 31L, "v" + i);
+        }
+        map.remove(0L);
+        int count = 0;
+        for (int i = 0; i < map.capacity(); i++) {
+            if (map.isOccupied(i)) {
+                assertEquals("v" + map.keyAt(i) / 31, map.valueAt(i));
+                count++;
+            }
+        }
+        assertEquals(99, count);
+    }
+
+    @Test
+    public void removeIf_removesMatchingKeysOnly() throws Exception {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        for (int i = 0; i < 300; i++) {
+            map.put(ActivityEvent.pairKey(i % 3, i), "v" + i);
+        }
+        int removed = map.removeIf(new LongObjectMap.KeyPredicate() {
+            @Override
+            public boolean test(long key) {
+                return (int) (key >>> 32) == 1;
+            }
+        });
+        assertEquals(100, removed);
+        assertEquals(200, map.size());
+        for (int i = 0; i < 300; i++) {
+            assertEquals(i % 3 == 1 ? null : "v" + i, map.get(ActivityEvent.pairKey(i % 3, i)));
+        }
+    }
+}
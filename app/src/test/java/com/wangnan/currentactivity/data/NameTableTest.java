@@ -0,0 +1,34 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 名称驻留表单元测试
+ */
+public class NameTableTest {
+
+    @Test
+    public void intern_returnsSameIdForEqualContent() throws Exception {
+        NameTable table = new NameTable();
+        int id = table.intern("com.example.app");
+        assertEquals(id, table.intern(new StringBuilder("com.example.app")));
+        assertEquals("com.example.app", table.getName(id));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void intern_survivesGrowth() throws Exception {
+        NameTable table = new NameTable();
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, table.intern("name" + i));
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, table.find("name" + i));
+            assertEquals("name" + i, table.getName(i));
+        }
+        assertEquals(NameTable.NO_ID, table.find("missing"));
+        assertNull(table.getName(5000));
+    }
+}
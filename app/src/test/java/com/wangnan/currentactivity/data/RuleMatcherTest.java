@@ -0,0 +1,88 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 界面规则匹配器单元测试
+ */
+public class RuleMatcherTest {
+
+    @Test
+    public void compile_parsesActionsAndCountsInvalidLines() {
+        RuleMatcher matcher = RuleMatcher.compile("# 注释\n"
+                + "*.CheckoutActivity\n"
+                + "com.shop*/*Pay* vibrate,log\n"
+                + "\n"
+                + "a/b/c\n"
+                + "*.Main beep\n");
+        assertEquals(2, matcher.getRuleCount());
+        assertEquals(2, matcher.getInvalidCount());
+        NameTable names = new NameTable();
+        RuleMatcher.Match match = matcher.match(names, names.intern("com.shop.app"), names.intern("com.shop.app.PayActivity"));
+        assertEquals(RuleMatcher.ACTION_VIBRATE | RuleMatcher.ACTION_LOG, match.actions);
+        assertEquals("com.shop*/*Pay*", match.label);
+        match = matcher.match(names, names.intern("com.other"), names.intern("com.other.CheckoutActivity"));
+        assertEquals(RuleMatcher.ACTION_HIGHLIGHT | RuleMatcher.ACTION_LOG, match.actions);
+    }
+
+    @Test
+    public void scan_anchorsAndOrdersSegments() {
+        RuleMatcher matcher = RuleMatcher.compile("*.CheckoutActivity\n"
+                + "com.shop/*\n"
+                + "*/*a*a\n"
+                + "*\n");
+        assertArrayEquals(new int[]{0, 1, 3}, matcher.scan("com.shop", "a.CheckoutActivity"));
+        // 类名后缀锚定
+        assertArrayEquals(new int[]{3}, matcher.scan("com.shop.pro", "x.CheckoutActivityX"));
+        // 同一片段需出现两次且不重叠
+        assertArrayEquals(new int[]{3}, matcher.scan("p", "ba"));
+        assertArrayEquals(new int[]{2, 3}, matcher.scan("p", "aa"));
+        // 每次扫描后状态复位
+        assertArrayEquals(new int[]{1, 3}, matcher.scan("com.shop", "Main"));
+    }
+
+    @Test
+    public void scan_sharedAndOverlappingSegments() {
+        RuleMatcher matcher = RuleMatcher.compile("*/*she*\n"
+                + "*/*he*rs\n"
+                + "*/*hers*\n"
+                + "*/ushers\n");
+        assertArrayEquals(new int[]{0, 1, 2, 3}, matcher.scan("p", "ushers"));
+        assertArrayEquals(new int[]{1}, matcher.scan("p", "heXrs"));
+        assertEquals(0, matcher.scan("p", "her").length);
+    }
+
+    @Test
+    public void scan_dropsBareAnchorsAndKeepsSegmentsOnTheirSide() {
+        // 只有锚点或分隔符的片段不放入自动机：根节点 + ".Main"与尾锚点
+        assertEquals(7, RuleMatcher.compile("*.Main").getNodeCount());
+        RuleMatcher matcher = RuleMatcher.compile("*a*/*\n"
+                + "*/*b*\n"
+                + "*/*\n");
+        assertArrayEquals(new int[]{0, 2}, matcher.scan("xa", "y"));
+        // 包名片段出现在类名中、类名片段出现在包名中都不算匹配
+        assertArrayEquals(new int[]{1, 2}, matcher.scan("x", "ab"));
+        assertArrayEquals(new int[]{2}, matcher.scan("b", "x"));
+        assertArrayEquals(new int[]{2}, matcher.scan("", ""));
+    }
+
+    @Test
+    public void match_cachesResultsPerPair() {
+        NameTable names = new NameTable();
+        int pkg = names.intern("com.shop");
+        int checkout = names.intern("com.shop.CheckoutActivity");
+        int main = names.intern("com.shop.MainActivity");
+        RuleMatcher matcher = RuleMatcher.compile("com.shop/*Activity log\n*.CheckoutActivity highlight");
+        RuleMatcher.Match first = matcher.match(names, pkg, checkout);
+        assertSame(first, matcher.match(names, pkg, checkout));
+        assertEquals(RuleMatcher.ACTION_LOG | RuleMatcher.ACTION_HIGHLIGHT, first.actions);
+        assertEquals("com.shop/*Activity, *.CheckoutActivity", first.label);
+        assertEquals(RuleMatcher.ACTION_LOG, matcher.match(names, pkg, main).actions);
+        assertSame(RuleMatcher.NO_MATCH, matcher.match(names, main, pkg));
+        assertEquals(1, matcher.getHitCount());
+        assertEquals(3, matcher.getMissCount());
+        assertSame(RuleMatcher.NO_MATCH, RuleMatcher.compile(null).match(names, pkg, main));
+    }
+}
@@ -0,0 +1,58 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * 切换推送帧及订阅者缓冲区单元测试
+ */
+public class StreamFrameTest {
+
+    @Test
+    public void encode_roundTrip() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] frame = StreamFrame.encode(StreamFrame.TYPE_ACTIVITY, 1234567890123L, "com.example", "com.example.ui.Détail");
+        out.write(frame);
+        out.write(StreamFrame.encodeDropped(5L, 42));
+        out.write(StreamFrame.encodeNone(6L));
+        // 长度前缀为负载长度
+        assertEquals(frame.length - StreamFrame.HEADER_SIZE, ((frame[2] & 0xFF) << 8) | (frame[3] & 0xFF));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        StreamFrame activity = StreamFrame.read(in);
+        assertEquals(StreamFrame.TYPE_ACTIVITY, activity.type);
+        assertEquals(1234567890123L, activity.time);
+        assertEquals("com.example", activity.packageName);
+        assertEquals("com.example.ui.Détail", activity.className);
+        StreamFrame dropped = StreamFrame.read(in);
+        assertEquals(StreamFrame.TYPE_DROPPED, dropped.type);
+        assertEquals(42, dropped.droppedCount);
+        assertEquals(StreamFrame.TYPE_NONE, StreamFrame.read(in).type);
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    public void frameBuffer_dropsOldestWhenFull() throws Exception {
+        FrameBuffer buffer = new FrameBuffer(2);
+        byte[] a = {1};
+        byte[] b = {2};
+        byte[] c = {3};
+        assertTrue(buffer.offer(a));
+        assertTrue(buffer.offer(b));
+        assertTrue(buffer.offer(c));
+        assertEquals(1, buffer.getDroppedCount());
+        byte[][] out = new byte[2][];
+        assertEquals(2, buffer.drainTo(out));
+        assertSame(b, out[0]);
+        assertSame(c, out[1]);
+        assertEquals(1, buffer.takeUnreportedDropped());
+        assertEquals(0, buffer.takeUnreportedDropped());
+        buffer.close();
+        assertFalse(buffer.offer(a));
+        assertEquals(-1, buffer.drainTo(out));
+    }
+}
@@ -0,0 +1,119 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 界面切换图单元测试
+ */
+public class TransitionGraphTest {
+
+    private static void visit(TransitionGraph graph, int... screenIds) {
+        for (int screenId : screenIds) {
+            graph.onScreen(screenId);
+        }
+    }
+
+    @Test
+    public void onScreen_countsEdgesAndSkipsRepeats() throws Exception {
+        TransitionGraph graph = new TransitionGraph();
+        visit(graph, 0, 1, 1, 0, 2, 0, 1);
+        assertEquals(3, graph.getNodeCount());
+        assertEquals(4, graph.getEdgeCount());
+        assertEquals(2, graph.getCount(0, 1));
+        assertEquals(1, graph.getCount(0, 2));
+        assertEquals(3, graph.getOutTotal(0));
+        assertEquals(5, graph.getTransitionCount());
+        graph.breakChain();
+        visit(graph, 2);
+        assertEquals(1, graph.getCount(1, 0));
+        assertEquals(0, graph.getCount(1, 2));
+    }
+
+    @Test
+    public void copyTopOutgoing_sortsByCount() throws Exception {
+        TransitionGraph graph = new TransitionGraph();
+        for (int to = 1; to <= 6; to++) {
+            for (int i = 0; i < to; i++) {
+                visit(graph, 0, to);
+            }
+        }
+        int[] targets = new int[3];
+        long[] counts = new long[3];
+        assertEquals(3, graph.copyTopOutgoing(0, targets, counts));
+        assertArrayEquals(new int[]{6, 5, 4}, targets);
+        assertArrayEquals(new long[]{6, 5, 4}, counts);
+        assertEquals(0, graph.copyTopOutgoing(42, targets, counts));
+    }
+
+    @Test
+    public void findTopPaths_followsMostLikelyChain() throws Exception {
+        TransitionGraph graph = new TransitionGraph();
+        for (int i = 0; i < 10; i++) {
+            visit(graph, 0, 1, 2);
+            graph.breakChain();
+        }
+        visit(graph, 0, 3);
+        List<TransitionGraph.Path> paths = graph.findTopPaths(2, 2);
+        assertEquals(1, paths.size());
+        assertArrayEquals(new int[]{0, 1, 2}, paths.get(0).screenIds);
+        assertEquals(10, paths.get(0).score, 1e-9);
+    }
+
+    @Test
+    public void evictLeastUsed_removesNodeAndEdges() throws Exception {
+        TransitionGraph graph = new TransitionGraph(4, 100);
+        for (int i = 0; i < 5; i++) {
+            visit(graph, 0, 1, 2);
+        }
+        visit(graph, 3, 0, 4);
+        assertTrue(graph.getNodeCount() <= 4);
+        assertEquals(1, graph.getEvictedCount());
+        assertEquals(0, graph.getVisits(3));
+        assertEquals(0, graph.getCount(3, 0));
+        assertEquals(0, graph.getCount(2, 3));
+        assertEquals(1, graph.getVisits(4));
+        assertEquals(5, graph.getCount(0, 1));
+        assertEquals(graph.getCount(0, 1) + graph.getCount(0, 4), graph.getOutTotal(0));
+        assertEquals(graph.getCount(2, 0), graph.getOutTotal(2));
+    }
+
+    @Test
+    public void evictLeastUsed_recyclesSlotsForLargeScreenIds() throws Exception {
+        TransitionGraph graph = new TransitionGraph(4, 100);
+        // 界面ID很大且不断增长，节点数组只按节点数上限占用槽位
+        for (int i = 0; i < 1000; i++) {
+            visit(graph, 1000000 + i);
+        }
+        assertTrue(graph.getNodeCount() <= 4);
+        assertEquals(1, graph.getVisits(1000999));
+        assertEquals(0, graph.getVisits(1000000));
+        visit(graph, 1000999, 7, 1000999, 7);
+        assertEquals(2, graph.getCount(1000999, 7));
+        assertEquals(1, graph.getCount(7, 1000999));
+        List<TransitionGraph.Path> paths = graph.findTopPaths(2, 1);
+        assertEquals(1, paths.size());
+        assertEquals(3, paths.get(0).screenIds.length);
+        assertTrue(paths.get(0).screenIds[1] == 7 || paths.get(0).screenIds[1] == 1000999);
+    }
+
+    @Test
+    public void exportMatrix_writesEveryEdge() throws Exception {
+        NameTable names = new NameTable();
+        ScreenTable screens = new ScreenTable();
+        int a = screens.intern(names.intern("p"), names.intern("A"));
+        int b = screens.intern(names.intern("p"), names.intern("B"));
+        TransitionGraph graph = new TransitionGraph();
+        visit(graph, a, b, a);
+        StringWriter writer = new StringWriter();
+        graph.exportMatrix(writer, screens, names);
+        String text = writer.toString();
+        assertTrue(text.contains("p/A\tp/B\t1\t1.0\n"));
+        assertTrue(text.contains("p/B\tp/A\t1\t1.0\n"));
+        assertEquals(3, text.split("\n").length);
+    }
+}
@@ -0,0 +1,55 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 切换历史环形缓冲区单元测试
+ */
+public class TransitionHistoryTest {
+
+    @Test
+    public void copyRecent_returnsNewestFirstAfterWrap() throws Exception {
+        TransitionHistory history = new TransitionHistory(4);
+        for (int i = 0; i < 6; i++) {
+            history.add(i, i + 100, i * 10L);
+        }
+        assertEquals(4, history.size());
+        assertEquals(6, history.getTotalCount());
+
+        long[] times = new long[8];
+        int[] packageIds = new int[8];
+        int[] classIds = new int[8];
+        int n = history.copyRecent(0, 8, times, packageIds, classIds);
+        assertEquals(4, n);
+        assertArrayEquals(new int[]{5, 4, 3, 2}, java.util.Arrays.copyOf(packageIds, n));
+        assertEquals(105, classIds[0]);
+        assertEquals(20L, times[3]);
+
+        n = history.copyRecent(3, 8, times, packageIds, classIds);
+        assertEquals(1, n);
+        assertEquals(2, packageIds[0]);
+    }
+
+    @Test
+    public void copyBefore_isStableAcrossWrites() throws Exception {
+        TransitionHistory history = new TransitionHistory(4);
+        for (int i = 0; i < 6; i++) {
+            history.add(i, i + 100, i * 10L);
+        }
+        long[] times = new long[8];
+        int[] packageIds = new int[8];
+        int[] classIds = new int[8];
+        // 序号4及更早的可用记录：4, 3, 2
+        assertEquals(3, history.copyBefore(4, 8, times, packageIds, classIds));
+        assertArrayEquals(new int[]{4, 3, 2}, java.util.Arrays.copyOf(packageIds, 3));
+        // 写入新记录后同一序号仍指向同一条记录，已被覆盖的不再返回
+        history.add(6, 106, 60L);
+        assertEquals(2, history.copyBefore(4, 8, times, packageIds, classIds));
+        assertEquals(4, packageIds[0]);
+        assertEquals(104, classIds[0]);
+        assertEquals(0, history.copyBefore(1, 8, times, packageIds, classIds));
+        assertEquals(0, history.copyBefore(7, 8, times, packageIds, classIds));
+    }
+}
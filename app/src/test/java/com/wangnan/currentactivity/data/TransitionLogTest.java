@@ -0,0 +1,151 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * 切换日志单元测试
+ */
+public class TransitionLogTest {
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws Exception {
+        mDir = Files.createTempDirectory("transition-log").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void reopen_recoversTailAndDiscardsTornRecord() throws Exception {
+        NameTable names = new NameTable();
+        int pkg = names.intern("com.example");
+        int main = names.intern("com.example.MainActivity");
+        int detail = names.intern("com.example.DetailActivity");
+
+        TransitionLog log = TransitionLog.open(mDir);
+        log.append(names, pkg, main, 1000L);
+        log.append(names, pkg, detail, 2000L);
+        log.close();
+
+        // 模拟进程在写入时间前崩溃：只写了包名/类名
+        File segment = TransitionLog.listSegments(mDir)[0];
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.seek(TransitionLog.HEADER_SIZE + 2 * TransitionLog.RECORD_SIZE);
+        file.writeInt(0);
+        file.writeInt(1);
+        file.close();
+
+        log = TransitionLog.open(mDir);
+        assertEquals(2, log.getRecoveredCount());
+        assertEquals(1, log.getDiscardedCount());
+        log.append(names, pkg, main, 3000L);
+        log.close();
+
+        final LogDictionary dictionary = LogDictionary.read(new File(mDir, TransitionLog.DICTIONARY_NAME));
+        final StringBuilder builder = new StringBuilder();
+        int count = TransitionLog.readSegment(segment, new TransitionLog.RecordVisitor() {
+            @Override
+            public void onRecord(long time, int packageId, int classId) {
+                builder.append(time).append(':').append(dictionary.getName(classId)).append(';');
+            }
+        });
+        assertEquals(3, count);
+        assertEquals("1000:com.example.MainActivity;2000:com.example.DetailActivity;3000:com.example.MainActivity;",
+                builder.toString());
+    }
+
+    @Test
+    public void append_rollsOverToNewSegment() throws Exception {
+        NameTable names = new NameTable();
+        int pkg = names.intern("p");
+        int cls = names.intern("c");
+        TransitionLog log = TransitionLog.open(mDir);
+        int total = TransitionLog.RECORDS_PER_SEGMENT + 10;
+        for (int i = 1; i <= total; i++) {
+            log.append(names, pkg, cls, i);
+        }
+        assertEquals(2, log.getSequence());
+        assertEquals(10, log.getSegmentRecordCount());
+        log.close();
+
+        File[] segments = TransitionLog.listSegments(mDir);
+        assertEquals(2, segments.length);
+        TransitionLog.RecordVisitor ignore = new TransitionLog.RecordVisitor() {
+            @Override
+            public void onRecord(long time, int packageId, int classId) {
+            }
+        };
+        assertEquals(TransitionLog.RECORDS_PER_SEGMENT, TransitionLog.readSegment(segments[0], ignore));
+        assertEquals(10, TransitionLog.readSegment(segments[1], ignore));
+    }
+
+    @Test
+    public void rebuildDictionary_keepsOnlyNamesOfActiveSegment() throws Exception {
+        NameTable names = new NameTable();
+        int pkg = names.intern("p");
+        int old = names.intern("p.Old");
+        int current = names.intern("p.Current");
+        TransitionLog log = TransitionLog.open(mDir);
+        for (int i = 1; i <= TransitionLog.RECORDS_PER_SEGMENT; i++) {
+            log.append(names, pkg, old, i);
+        }
+        log.append(names, pkg, current, TransitionLog.RECORDS_PER_SEGMENT + 1);
+        // 还有未压缩的已封存段时不重建
+        assertFalse(log.rebuildDictionary());
+        new LogCompactor(mDir).run(Long.MAX_VALUE, Long.MAX_VALUE, 0);
+        assertTrue(log.rebuildDictionary());
+        assertEquals(2, log.getDictionary().size());
+        // 重建后继续追加，新名称写入新字典
+        int later = names.intern("p.Later");
+        log.append(names, pkg, later, TransitionLog.RECORDS_PER_SEGMENT + 2);
+        log.close();
+
+        File[] segments = TransitionLog.listSegments(mDir);
+        assertEquals(1, segments.length);
+        final LogDictionary dictionary = LogDictionary.read(new File(mDir, TransitionLog.DICTIONARY_NAME));
+        final StringBuilder classes = new StringBuilder();
+        TransitionLog.readSegment(segments[0], new TransitionLog.RecordVisitor() {
+            @Override
+            public void onRecord(long time, int packageId, int classId) {
+                classes.append(dictionary.getName(packageId)).append('/').append(dictionary.getName(classId)).append(' ');
+            }
+        });
+        assertEquals("p/p.Current p/p.Later ", classes.toString());
+        assertEquals(3, dictionary.size());
+    }
+
+    @Test
+    public void open_rollsBackInterruptedRebuild() throws Exception {
+        NameTable names = new NameTable();
+        TransitionLog log = TransitionLog.open(mDir);
+        log.append(names, names.intern("p"), names.intern("p.Main"), 1000L);
+        log.close();
+        // 字典尚未替换时崩溃：删除临时文件，保留原数据
+        assertTrue(new File(mDir, TransitionLog.DICTIONARY_NAME + TransitionLog.TEMP_SUFFIX).createNewFile());
+        assertTrue(new File(mDir, TransitionLog.segmentName(2) + TransitionLog.TEMP_SUFFIX).createNewFile());
+
+        log = TransitionLog.open(mDir);
+        assertEquals(1, log.getRecoveredCount());
+        assertEquals(1, log.getSequence());
+        log.close();
+        assertEquals(2, mDir.listFiles().length);
+    }
+}
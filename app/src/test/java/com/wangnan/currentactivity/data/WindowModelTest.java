@@ -0,0 +1,111 @@
+package com.wangnan.currentactivity.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 可见应用窗口模型单元测试
+ */
+public class WindowModelTest {
+
+    private final NameTable mNames = new NameTable();
+
+    private final WindowModel mModel = new WindowModel();
+
+    private final int mPackageA = mNames.intern("com.a");
+
+    private final int mPackageB = mNames.intern("com.b");
+
+    @Test
+    public void update_ordersByDisplayThenLayer() throws Exception {
+        mModel.beginUpdate();
+        assertTrue(mModel.update(1, 0, 5));
+        assertTrue(mModel.update(2, 0, 9));
+        assertTrue(mModel.update(3, 1, 1));
+        assertTrue(mModel.endUpdate());
+        mModel.setActivity(1, mPackageA, mNames.intern("com.a.ui.Main"));
+        mModel.setActivity(2, mPackageB, mNames.intern("com.b.Detail"));
+        mModel.setPackage(3, mPackageA);
+        assertEquals("[0] com.b/Detail\n[0] com.a/Main\n[1] com.a", mModel.getText(mNames, 2));
+    }
+
+    @Test
+    public void endUpdate_reportsOnlyRealChanges() throws Exception {
+        mModel.beginUpdate();
+        mModel.update(1, 0, 5);
+        mModel.update(2, 0, 6);
+        assertTrue(mModel.endUpdate());
+        String text = mModel.getText(mNames, 2);
+        // 相同的窗口列表没有变化，文本复用
+        mModel.beginUpdate();
+        mModel.update(2, 0, 6);
+        mModel.update(1, 0, 5);
+        assertFalse(mModel.endUpdate());
+        assertSame(text, mModel.getText(mNames, 2));
+        // 窗口消失
+        mModel.beginUpdate();
+        mModel.update(1, 0, 5);
+        assertTrue(mModel.endUpdate());
+        assertEquals(1, mModel.getVisibleCount());
+        assertNull(mModel.getText(mNames, 2));
+    }
+
+    @Test
+    public void update_requestsRootOnlyOnce() throws Exception {
+        mModel.beginUpdate();
+        assertTrue(mModel.update(1, 0, 5));
+        mModel.endUpdate();
+        // 根节点读取失败（包名仍未知），后续更新不再要求读取
+        mModel.beginUpdate();
+        assertFalse(mModel.update(1, 0, 5));
+        mModel.endUpdate();
+        // 窗口关闭后再出现视为新窗口
+        mModel.beginUpdate();
+        mModel.endUpdate();
+        mModel.beginUpdate();
+        assertTrue(mModel.update(1, 0, 5));
+        mModel.endUpdate();
+    }
+
+    @Test
+    public void abortUpdate_keepsUnvisitedWindows() throws Exception {
+        mModel.beginUpdate();
+        mModel.update(1, 0, 1);
+        mModel.update(2, 0, 2);
+        mModel.endUpdate();
+        mModel.beginUpdate();
+        mModel.update(1, 0, 3);
+        assertTrue(mModel.abortUpdate());
+        assertEquals(2, mModel.getVisibleCount());
+        assertEquals("[0] #1\n[0] #2", mModel.getText(mNames, 1));
+    }
+
+    @Test
+    public void setActivity_beforeWindowListed() throws Exception {
+        assertTrue(mModel.setActivity(7, mPackageA, mNames.intern("com.a.Main")));
+        assertEquals(0, mModel.getVisibleCount());
+        assertFalse(mModel.setActivity(7, mPackageA, mNames.intern("com.a.Main")));
+        mModel.beginUpdate();
+        // 包名已知，不需要读取根节点
+        assertFalse(mModel.update(7, 0, 1));
+        mModel.endUpdate();
+        assertEquals("[0] com.a/Main", mModel.getText(mNames, 1));
+    }
+
+    @Test
+    public void remove_withoutQuery() throws Exception {
+        mModel.beginUpdate();
+        mModel.update(1, 0, 1);
+        mModel.update(2, 0, 2);
+        mModel.update(3, 0, 3);
+        mModel.endUpdate();
+        assertTrue(mModel.remove(3));
+        assertFalse(mModel.remove(3));
+        assertEquals(2, mModel.size());
+        assertEquals("[0] #2\n[0] #1", mModel.getText(mNames, 1));
+        mModel.clear();
+        assertEquals(0, mModel.size());
+        assertNull(mModel.getText(mNames, 1));
+    }
+}